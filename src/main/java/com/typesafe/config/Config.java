@@ -8,6 +8,9 @@ import java.time.Period;
 import java.time.temporal.TemporalAmount;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -153,7 +156,12 @@ import java.util.concurrent.TimeUnit;
  * 
  * <p>
  * Java serialization is supported as well for <code>Config</code> and all
- * subtypes of <code>ConfigValue</code>.
+ * subtypes of <code>ConfigValue</code>. Setting the system property
+ * <code>config.serialization.version</code> to <code>2</code> writes a more
+ * compact format, which is smaller and faster to read, but which versions
+ * of this library from before it was added can't read; leave it unset (or
+ * <code>1</code>) if older versions read what you write. Both formats are
+ * always read.
  * 
  * <p>
  * <strong>This is an interface but don't implement it yourself</strong>
@@ -268,6 +276,27 @@ public interface Config extends ConfigMergeable {
      */
     boolean isResolved();
 
+    /**
+     * Returns a config with the same contents that looks paths up in an
+     * index instead of walking down the tree one key at a time. The index
+     * maps every path in the config to its value; it is built the first
+     * time the returned config is asked for a path, once, and goes away with
+     * the config. After that, getters such as {@link #getString(String)},
+     * {@link #hasPath(String)} and {@link #entrySet()} cost one hash lookup
+     * whatever the depth of the path, which is worth the memory for a large
+     * config that is read constantly.
+     *
+     * <p>
+     * Only resolved configs are indexed; an unresolved config is returned
+     * as it is. The index is not carried over to configs made from this one,
+     * by {@link #withFallback(ConfigMergeable)} or {@link #getConfig(String)}
+     * for example.
+     *
+     * @return a config that indexes its paths, or this config if it already
+     *         does or is not resolved
+     */
+    Config withPathIndex();
+
     /**
      * Like {@link Config#resolve()} except that substitution values are looked
      * up in the given source, rather than in this instance. This is a
@@ -468,6 +497,188 @@ public interface Config extends ConfigMergeable {
      */
     boolean isEmpty();
 
+    /**
+     * Gets the value at the given path, or null if there isn't one. This is
+     * {@code hasPath(path) ? getValue(path) : null} but looks the path up
+     * only once, and a missing setting doesn't cost an exception, so it
+     * suits code that probes for optional settings over and over.
+     *
+     * <p>
+     * As with {@link #hasPath(String)}, a null value, or a path that goes
+     * through a value that is not an object, counts as missing.
+     *
+     * @param path
+     *            the path expression
+     * @return the value at the path, or null if it is missing or null
+     * @throws ConfigException.BadPath
+     *             if the path expression is invalid
+     */
+    ConfigValue lookup(String path);
+
+    /**
+     * Gets the boolean at the given path if there is one. This is
+     * {@code hasPath(path) ? Optional.of(getBoolean(path)) : Optional.empty()}
+     * but looks the path up only once; see {@link #lookup(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the boolean value at the requested path, or empty if it is
+     *         missing or null
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to boolean
+     */
+    java.util.Optional<Boolean> findBoolean(String path);
+
+    /**
+     * Gets the int at the given path if there is one. This is
+     * {@code hasPath(path) ? OptionalInt.of(getInt(path)) : OptionalInt.empty()}
+     * but looks the path up only once; see {@link #lookup(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the 32-bit integer value at the requested path, or empty if
+     *         it is missing or null
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to an int (for example it is
+     *             out of range, or it's a boolean value)
+     */
+    OptionalInt findInt(String path);
+
+    /**
+     * Gets the long at the given path if there is one. This is
+     * {@code hasPath(path) ? OptionalLong.of(getLong(path)) : OptionalLong.empty()}
+     * but looks the path up only once; see {@link #lookup(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the 64-bit long value at the requested path, or empty if it
+     *         is missing or null
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to a long
+     */
+    OptionalLong findLong(String path);
+
+    /**
+     * Gets the double at the given path if there is one. This is
+     * {@code hasPath(path) ? OptionalDouble.of(getDouble(path)) : OptionalDouble.empty()}
+     * but looks the path up only once; see {@link #lookup(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the floating-point value at the requested path, or empty if
+     *         it is missing or null
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to a double
+     */
+    OptionalDouble findDouble(String path);
+
+    /**
+     * Gets the string at the given path if there is one. This is
+     * {@code hasPath(path) ? Optional.of(getString(path)) : Optional.empty()}
+     * but looks the path up only once; see {@link #lookup(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the string value at the requested path, or empty if it is
+     *         missing or null
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to a string
+     */
+    java.util.Optional<String> findString(String path);
+
+    /**
+     * Gets the object at the given path as a {@code Config} if there is
+     * one. This is
+     * {@code hasPath(path) ? Optional.of(getConfig(path)) : Optional.empty()}
+     * but looks the path up only once; see {@link #lookup(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the nested {@code Config} at the requested path, or empty if
+     *         it is missing or null
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to a {@code Config}
+     */
+    java.util.Optional<Config> findConfig(String path);
+
+    /**
+     * Gets the boolean at the given path, or a default if there isn't one.
+     * This is {@code hasPath(path) ? getBoolean(path) : defaultValue} but
+     * looks the path up only once and doesn't box; see
+     * {@link #lookup(String)}.
+     *
+     * @param path
+     *            path expression
+     * @param defaultValue
+     *            what to return if the path is missing or null
+     * @return the boolean value at the requested path, or the default
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to boolean
+     */
+    boolean getBooleanOrElse(String path, boolean defaultValue);
+
+    /**
+     * Gets the int at the given path, or a default if there isn't one.
+     * This is {@code hasPath(path) ? getInt(path) : defaultValue} but looks
+     * the path up only once and doesn't box; see {@link #lookup(String)}.
+     *
+     * @param path
+     *            path expression
+     * @param defaultValue
+     *            what to return if the path is missing or null
+     * @return the 32-bit integer value at the requested path, or the default
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to an int (for example it is
+     *             out of range, or it's a boolean value)
+     */
+    int getIntOrElse(String path, int defaultValue);
+
+    /**
+     * Gets the long at the given path, or a default if there isn't one.
+     * This is {@code hasPath(path) ? getLong(path) : defaultValue} but looks
+     * the path up only once and doesn't box; see {@link #lookup(String)}.
+     *
+     * @param path
+     *            path expression
+     * @param defaultValue
+     *            what to return if the path is missing or null
+     * @return the 64-bit long value at the requested path, or the default
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to a long
+     */
+    long getLongOrElse(String path, long defaultValue);
+
+    /**
+     * Gets the double at the given path, or a default if there isn't one.
+     * This is {@code hasPath(path) ? getDouble(path) : defaultValue} but
+     * looks the path up only once and doesn't box; see
+     * {@link #lookup(String)}.
+     *
+     * @param path
+     *            path expression
+     * @param defaultValue
+     *            what to return if the path is missing or null
+     * @return the floating-point value at the requested path, or the default
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to a double
+     */
+    double getDoubleOrElse(String path, double defaultValue);
+
+    /**
+     * Gets the string at the given path, or a default if there isn't one.
+     * This is {@code hasPath(path) ? getString(path) : defaultValue} but
+     * looks the path up only once; see {@link #lookup(String)}.
+     *
+     * @param path
+     *            path expression
+     * @param defaultValue
+     *            what to return if the path is missing or null; may be null
+     * @return the string value at the requested path, or the default
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to a string
+     */
+    String getStringOrElse(String path, String defaultValue);
+
     /**
      * Returns the set of path-value pairs, excluding any null values, found by
      * recursing {@link #root() the root object}. Note that this is very
@@ -923,6 +1134,71 @@ public interface Config extends ConfigMergeable {
      */
     List<Double> getDoubleList(String path);
 
+    /**
+     * Gets a list value with boolean elements as an array, the same values
+     * as {@link #getBooleanList(String)} but without boxing them. Lists of
+     * numbers or booleans that were parsed from a file are stored as
+     * arrays, so for those this is a copy. Throws if the path is unset or
+     * null or not a list or contains values not convertible to boolean.
+     *
+     * @param path
+     *            the path to the list value.
+     * @return a new array with the elements of the list at the path
+     * @throws ConfigException.Missing
+     *             if value is absent or null
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to a list of booleans
+     */
+    boolean[] getBooleanArray(String path);
+
+    /**
+     * Gets a list value with int elements as an array, the same values
+     * as {@link #getIntList(String)} but without boxing them. Throws
+     * if the path is unset or null or not a list or contains values not
+     * convertible to int.
+     *
+     * @param path
+     *            the path to the list value.
+     * @return a new array with the elements of the list at the path
+     * @throws ConfigException.Missing
+     *             if value is absent or null
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to a list of ints
+     */
+    int[] getIntArray(String path);
+
+    /**
+     * Gets a list value with long elements as an array, the same values
+     * as {@link #getLongList(String)} but without boxing them. Throws
+     * if the path is unset or null or not a list or contains values not
+     * convertible to long.
+     *
+     * @param path
+     *            the path to the list value.
+     * @return a new array with the elements of the list at the path
+     * @throws ConfigException.Missing
+     *             if value is absent or null
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to a list of longs
+     */
+    long[] getLongArray(String path);
+
+    /**
+     * Gets a list value with double elements as an array, the same values
+     * as {@link #getDoubleList(String)} but without boxing them. Throws
+     * if the path is unset or null or not a list or contains values not
+     * convertible to double.
+     *
+     * @param path
+     *            the path to the list value.
+     * @return a new array with the elements of the list at the path
+     * @throws ConfigException.Missing
+     *             if value is absent or null
+     * @throws ConfigException.WrongType
+     *             if value is not convertible to a list of doubles
+     */
+    double[] getDoubleArray(String path);
+
     /**
      * Gets a list value with string elements.  Throws if the
      * path is unset or null or not a list or contains values not
@@ -0,0 +1,260 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config;
+
+import java.time.Duration;
+import java.time.Period;
+import java.time.temporal.TemporalAmount;
+import java.util.concurrent.TimeUnit;
+
+import com.typesafe.config.impl.ConfigImpl;
+
+/**
+ * A path expression and the type to read it as, ready to be read from any
+ * number of configs. Code that reads the same setting over and over can make
+ * a key once, typically in a static field:
+ *
+ * <pre>
+ *     static final ConfigKey&lt;Duration&gt; TIMEOUT = ConfigKey.duration("db.pool.timeout");
+ *     ...
+ *     Duration timeout = TIMEOUT.get(config);
+ * </pre>
+ *
+ * <p>
+ * The path is parsed when the key is made, so an invalid path throws
+ * {@link ConfigException.BadPath} right away, and each {@code get} reads the
+ * setting exactly as the matching {@link Config} getter would, with the same
+ * conversions, exceptions and messages; {@code ConfigKey.duration(path).get(config)}
+ * is {@code config.getDuration(path)}. Because configs are immutable, a key
+ * that converts the setting to a Java value, such as a number, string or
+ * duration, remembers the last config it was read from and its value, and
+ * reading the same config again returns that value without looking anything
+ * up. It holds the config weakly, so a key in a static field doesn't keep an
+ * old config alive. Keys for a {@link ConfigValue}, {@link ConfigList},
+ * {@link ConfigObject} or {@link Config}, which are part of the config they
+ * are read from, remember nothing.
+ *
+ * <p>
+ * Keys are safe to share between threads. Keys are not meant to be
+ * implemented outside this library.
+ *
+ * @param <T>
+ *            the type of the value the key reads
+ */
+public interface ConfigKey<T> {
+    /**
+     * The path expression the key reads.
+     *
+     * @return the path expression
+     */
+    String path();
+
+    /**
+     * Reads the key's path from a config.
+     *
+     * @param config
+     *            the config to read
+     * @return the value at the path
+     * @throws ConfigException.Missing
+     *             if the path is missing
+     * @throws ConfigException.WrongType
+     *             if the value is not convertible to the key's type
+     * @throws ConfigException.BadValue
+     *             if the value is not valid for the key's type
+     */
+    T get(Config config);
+
+    /**
+     * A key that reads like {@link Config#getBoolean(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<Boolean> booleanValue(String path) {
+        return ConfigImpl.booleanValueKey(path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getNumber(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<Number> number(String path) {
+        return ConfigImpl.numberKey(path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getInt(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<Integer> intValue(String path) {
+        return ConfigImpl.intValueKey(path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getLong(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<Long> longValue(String path) {
+        return ConfigImpl.longValueKey(path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getDouble(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<Double> doubleValue(String path) {
+        return ConfigImpl.doubleValueKey(path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getString(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<String> string(String path) {
+        return ConfigImpl.stringKey(path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getEnum(Class, String)}.
+     *
+     * @param <E>
+     *            a generic denoting a specific type of enum
+     * @param enumClass
+     *            an enum class
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static <E extends Enum<E>> ConfigKey<E> enumValue(Class<E> enumClass, String path) {
+        return ConfigImpl.enumValueKey(enumClass, path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getValue(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<ConfigValue> value(String path) {
+        return ConfigImpl.valueKey(path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getList(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<ConfigList> list(String path) {
+        return ConfigImpl.listKey(path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getObject(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<ConfigObject> object(String path) {
+        return ConfigImpl.objectKey(path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getConfig(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<Config> config(String path) {
+        return ConfigImpl.configKey(path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getBytes(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<Long> bytes(String path) {
+        return ConfigImpl.bytesKey(path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getMemorySize(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<ConfigMemorySize> memorySize(String path) {
+        return ConfigImpl.memorySizeKey(path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getDuration(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<Duration> duration(String path) {
+        return ConfigImpl.durationKey(path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getDuration(String, TimeUnit)}.
+     *
+     * @param path
+     *            path expression
+     * @param unit
+     *            convert the return value to this time unit
+     * @return the key
+     */
+    static ConfigKey<Long> duration(String path, TimeUnit unit) {
+        return ConfigImpl.durationKey(path, unit);
+    }
+
+    /**
+     * A key that reads like {@link Config#getPeriod(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<Period> period(String path) {
+        return ConfigImpl.periodKey(path);
+    }
+
+    /**
+     * A key that reads like {@link Config#getTemporal(String)}.
+     *
+     * @param path
+     *            path expression
+     * @return the key
+     */
+    static ConfigKey<TemporalAmount> temporal(String path) {
+        return ConfigImpl.temporalKey(path);
+    }
+}
@@ -4,6 +4,9 @@
 package com.typesafe.config;
 
 
+import java.io.File;
+import java.util.concurrent.Executor;
+
 import com.typesafe.config.impl.ConfigImplUtil;
 
 /**
@@ -28,14 +31,28 @@ public final class ConfigParseOptions {
     final boolean allowMissing;
     final ConfigIncluder includer;
     final ClassLoader classLoader;
+    final long memoryMapThreshold;
+    final Executor executor;
+    final boolean lazyObjects;
+    final ConfigStringPool stringPool;
+    final boolean keepNumberText;
+    final File parseCacheDirectory;
 
     private ConfigParseOptions(ConfigSyntax syntax, String originDescription, boolean allowMissing,
-            ConfigIncluder includer, ClassLoader classLoader) {
+            ConfigIncluder includer, ClassLoader classLoader, long memoryMapThreshold,
+            Executor executor, boolean lazyObjects, ConfigStringPool stringPool,
+            boolean keepNumberText, File parseCacheDirectory) {
         this.syntax = syntax;
         this.originDescription = originDescription;
         this.allowMissing = allowMissing;
         this.includer = includer;
         this.classLoader = classLoader;
+        this.memoryMapThreshold = memoryMapThreshold;
+        this.executor = executor;
+        this.lazyObjects = lazyObjects;
+        this.stringPool = stringPool;
+        this.keepNumberText = keepNumberText;
+        this.parseCacheDirectory = parseCacheDirectory;
     }
 
     /**
@@ -45,7 +62,7 @@ public final class ConfigParseOptions {
      * @return the default parse options
      */
     public static ConfigParseOptions defaults() {
-        return new ConfigParseOptions(null, null, true, null, null);
+        return new ConfigParseOptions(null, null, true, null, null, -1, null, false, null, true, null);
     }
 
     /**
@@ -61,7 +78,8 @@ public final class ConfigParseOptions {
             return this;
         else
             return new ConfigParseOptions(syntax, this.originDescription, this.allowMissing,
-                    this.includer, this.classLoader);
+                    this.includer, this.classLoader, this.memoryMapThreshold, this.executor,
+                    this.lazyObjects, this.stringPool, this.keepNumberText, this.parseCacheDirectory);
     }
 
     /**
@@ -103,7 +121,8 @@ public final class ConfigParseOptions {
             return this;
         else
             return new ConfigParseOptions(this.syntax, originDescription, this.allowMissing,
-                    this.includer, this.classLoader);
+                    this.includer, this.classLoader, this.memoryMapThreshold, this.executor,
+                    this.lazyObjects, this.stringPool, this.keepNumberText, this.parseCacheDirectory);
     }
 
     /**
@@ -136,7 +155,8 @@ public final class ConfigParseOptions {
             return this;
         else
             return new ConfigParseOptions(this.syntax, this.originDescription, allowMissing,
-                    this.includer, this.classLoader);
+                    this.includer, this.classLoader, this.memoryMapThreshold, this.executor,
+                    this.lazyObjects, this.stringPool, this.keepNumberText, this.parseCacheDirectory);
     }
 
     /**
@@ -159,7 +179,8 @@ public final class ConfigParseOptions {
             return this;
         else
             return new ConfigParseOptions(this.syntax, this.originDescription, this.allowMissing,
-                    includer, this.classLoader);
+                    includer, this.classLoader, this.memoryMapThreshold, this.executor,
+                    this.lazyObjects, this.stringPool, this.keepNumberText, this.parseCacheDirectory);
     }
 
     /**
@@ -223,7 +244,8 @@ public final class ConfigParseOptions {
             return this;
         else
             return new ConfigParseOptions(this.syntax, this.originDescription, this.allowMissing,
-                    this.includer, loader);
+                    this.includer, loader, this.memoryMapThreshold, this.executor,
+                    this.lazyObjects, this.stringPool, this.keepNumberText, this.parseCacheDirectory);
     }
 
     /**
@@ -239,4 +261,202 @@ public final class ConfigParseOptions {
         else
             return this.classLoader;
     }
+
+    /**
+     * Set the size in bytes from which files are read through a memory
+     * mapping instead of a stream. Mapped files are decoded straight into
+     * the parser's buffer, which avoids copying large files through an
+     * {@code InputStream}. This applies to files parsed with
+     * {@link ConfigFactory#parseFile} and
+     * {@link com.typesafe.config.parser.ConfigDocumentFactory#parseFile}, and
+     * to files they include. Negative (the default) never maps files.
+     *
+     * @param bytes
+     *            the smallest file size to map, or a negative number to
+     *            never map files
+     * @return options with the memory map threshold set
+     */
+    public ConfigParseOptions setMemoryMapThreshold(long bytes) {
+        if (bytes < 0)
+            bytes = -1;
+        if (this.memoryMapThreshold == bytes)
+            return this;
+        else
+            return new ConfigParseOptions(this.syntax, this.originDescription, this.allowMissing,
+                    this.includer, this.classLoader, bytes, this.executor, this.lazyObjects,
+                    this.stringPool, this.keepNumberText, this.parseCacheDirectory);
+    }
+
+    /**
+     * Gets the size in bytes from which files are memory mapped, or -1 if
+     * files are never mapped.
+     * @return the memory map threshold
+     */
+    public long getMemoryMapThreshold() {
+        return memoryMapThreshold;
+    }
+
+    /**
+     * Set an executor used to parse sources that don't depend on each other
+     * at the same time: the resources found under one name on the
+     * classpath, for example the {@code reference.conf} of every jar, and
+     * the include statements of an object. The results are merged in the
+     * same order as a sequential parse, so the outcome does not change,
+     * but the includer may be called from several threads at once. The
+     * calling thread runs any parse the executor has not started yet, so
+     * even a single-thread executor can't deadlock on nested loads. Set to
+     * null (the default) to parse everything on the calling thread.
+     *
+     * @param executor
+     *            the executor to parse on, or null to parse sequentially
+     * @return options with the executor set
+     */
+    public ConfigParseOptions setExecutor(Executor executor) {
+        if (this.executor == executor)
+            return this;
+        else
+            return new ConfigParseOptions(this.syntax, this.originDescription, this.allowMissing,
+                    this.includer, this.classLoader, this.memoryMapThreshold, executor,
+                    this.lazyObjects, this.stringPool, this.keepNumberText, this.parseCacheDirectory);
+    }
+
+    /**
+     * Gets the executor used to parse independent sources concurrently, or
+     * null if they are parsed sequentially.
+     * @return the executor or null
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set whether objects at the top level of a file are built only when
+     * they are first used. The parser still reads and checks the whole
+     * file, but for an object such as {@code akka { ... }} it keeps the
+     * tokens and builds the object the first time a value inside it is
+     * looked up or it is merged with another object; subtrees that are
+     * never read are never built. Objects containing {@code ${}}
+     * substitutions, {@code +=} or include statements are always built
+     * right away. This is off by default.
+     *
+     * @param lazyObjects
+     *            true to build top-level objects on first use
+     * @return options with the lazy objects flag set
+     */
+    public ConfigParseOptions setLazyObjects(boolean lazyObjects) {
+        if (this.lazyObjects == lazyObjects)
+            return this;
+        else
+            return new ConfigParseOptions(this.syntax, this.originDescription, this.allowMissing,
+                    this.includer, this.classLoader, this.memoryMapThreshold, this.executor,
+                    lazyObjects, this.stringPool, this.keepNumberText, this.parseCacheDirectory);
+    }
+
+    /**
+     * Gets whether top-level objects are built on first use.
+     * @return whether objects are built lazily
+     */
+    public boolean getLazyObjects() {
+        return lazyObjects;
+    }
+
+    /**
+     * Set a pool for the strings of the keys and values the parser builds,
+     * so that a string that appears many times, within one parse or across
+     * many, is kept only once; see {@link ConfigStringPool} for how to choose
+     * its scope. The pool is used for included files too. Set to null (the
+     * default) to not pool strings.
+     *
+     * @param stringPool
+     *            the pool to use, or null to not pool strings
+     * @return options with the string pool set
+     */
+    public ConfigParseOptions setStringPool(ConfigStringPool stringPool) {
+        if (this.stringPool == stringPool)
+            return this;
+        else
+            return new ConfigParseOptions(this.syntax, this.originDescription, this.allowMissing,
+                    this.includer, this.classLoader, this.memoryMapThreshold, this.executor,
+                    this.lazyObjects, stringPool, this.keepNumberText, this.parseCacheDirectory);
+    }
+
+    /**
+     * Gets the pool for the strings of parsed keys and values, or null if
+     * strings are not pooled.
+     * @return the string pool or null
+     */
+    public ConfigStringPool getStringPool() {
+        return stringPool;
+    }
+
+    /**
+     * Set whether numbers keep the text they were written with. A number
+     * such as {@code 1.50} or {@code 1e3} is converted to a string, for
+     * example by {@link Config#getString} or when it is concatenated with
+     * other values, exactly as it was written; without its text it is
+     * converted the way Java prints its value, {@code 1.5} and {@code 1000}.
+     * Whole numbers written the way Java prints them never need their text,
+     * so this only saves memory for other numbers. Keys and documents are
+     * not affected. This is on by default.
+     *
+     * @param keepNumberText
+     *            false to drop the text of numbers
+     * @return options with the keep number text flag set
+     */
+    public ConfigParseOptions setKeepNumberText(boolean keepNumberText) {
+        if (this.keepNumberText == keepNumberText)
+            return this;
+        else
+            return new ConfigParseOptions(this.syntax, this.originDescription, this.allowMissing,
+                    this.includer, this.classLoader, this.memoryMapThreshold, this.executor,
+                    this.lazyObjects, this.stringPool, keepNumberText, this.parseCacheDirectory);
+    }
+
+    /**
+     * Gets whether numbers keep the text they were written with.
+     * @return whether number text is kept
+     */
+    public boolean getKeepNumberText() {
+        return keepNumberText;
+    }
+
+    /**
+     * Set a directory in which to keep the parsed, unresolved contents of
+     * config files, so that a file that has not changed since it was last
+     * parsed is read back from the directory instead of parsed again. An entry
+     * is only used if the file and every file it included still have the same
+     * modification time and size as when it was written; stale, corrupt or
+     * unreadable entries are ignored and the file is parsed as usual.
+     *
+     * <p>
+     * Only files, and resources in jar files or class directories, are kept.
+     * Includes of files and classpath resources are tracked too, including
+     * ones that were not found: an entry is dropped when a missing file is
+     * created or a resource is found at different URLs. Files that include
+     * other URLs, or that are parsed with a custom {@link ConfigIncluder},
+     * are always parsed. The directory is created when needed and may be
+     * shared by several processes. Set to null (the default) to always parse.
+     *
+     * @param directory
+     *            the directory for parsed files, or null for none
+     * @return options with the parse cache directory set
+     */
+    public ConfigParseOptions setParseCacheDirectory(File directory) {
+        if (this.parseCacheDirectory == directory
+                || (directory != null && directory.equals(this.parseCacheDirectory)))
+            return this;
+        else
+            return new ConfigParseOptions(this.syntax, this.originDescription, this.allowMissing,
+                    this.includer, this.classLoader, this.memoryMapThreshold, this.executor,
+                    this.lazyObjects, this.stringPool, this.keepNumberText, directory);
+    }
+
+    /**
+     * Gets the directory parsed files are kept in, or null if files are
+     * always parsed.
+     * @return the parse cache directory or null
+     */
+    public File getParseCacheDirectory() {
+        return parseCacheDirectory;
+    }
 }
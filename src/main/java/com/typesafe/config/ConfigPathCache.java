@@ -0,0 +1,83 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config;
+
+import com.typesafe.config.impl.ConfigImpl;
+
+/**
+ * Controls the process-wide cache of parsed path expressions. Every
+ * {@link Config} getter, such as {@link Config#getString(String)} or
+ * {@link Config#hasPath(String)}, has to turn its path expression into a
+ * list of keys; with the cache, an expression that was used recently is not
+ * parsed again, so code that reads the same few paths over and over doesn't
+ * parse or allocate for them.
+ *
+ * <p>
+ * The cache has a fixed number of slots, {@link #maxSize()}, and each
+ * expression can only go in two of them, so a new expression may replace
+ * one that was cached before; the expressions that are actually used keep
+ * their slots. The default size is 4096 and can be set with the system
+ * property {@code config.path_cache_size} or with {@link #setMaxSize(int)};
+ * a size of 0 turns the cache off. The cache is safe to use from several
+ * threads at once, and lookups never lock.
+ */
+public final class ConfigPathCache {
+    private ConfigPathCache() {
+    }
+
+    /**
+     * Replaces the cache with an empty one of the given size, rounded up to
+     * a power of two and at most 2^20, or turns it off if the size is 0.
+     *
+     * @param maxSize
+     *            the number of path expressions the cache can hold
+     */
+    public static void setMaxSize(int maxSize) {
+        ConfigImpl.setPathCacheMaxSize(maxSize);
+    }
+
+    /**
+     * The number of path expressions the cache can hold, 0 if it is off.
+     *
+     * @return the maximum size
+     */
+    public static int maxSize() {
+        return ConfigImpl.pathCacheMaxSize();
+    }
+
+    /**
+     * The number of path expressions in the cache.
+     *
+     * @return the size of the cache
+     */
+    public static int size() {
+        return ConfigImpl.pathCacheSize();
+    }
+
+    /**
+     * The number of path expressions that were found in the cache.
+     *
+     * @return the hit count
+     */
+    public static long hitCount() {
+        return ConfigImpl.pathCacheHitCount();
+    }
+
+    /**
+     * The number of path expressions that were not found in the cache and
+     * had to be parsed.
+     *
+     * @return the miss count
+     */
+    public static long missCount() {
+        return ConfigImpl.pathCacheMissCount();
+    }
+
+    /**
+     * Empties the cache and resets the hit and miss counts.
+     */
+    public static void clear() {
+        ConfigImpl.clearPathCache();
+    }
+}
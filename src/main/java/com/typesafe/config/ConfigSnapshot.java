@@ -0,0 +1,65 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config;
+
+import java.io.File;
+
+import com.typesafe.config.impl.ConfigImpl;
+
+/**
+ * Contains static methods for writing a resolved {@link Config} to a binary
+ * snapshot file and for reading one back by memory mapping it.
+ *
+ * <p>
+ * A mapped snapshot is not decoded up front: looking up a path searches the
+ * file and decodes only the values on that path, so mapping is cheap however
+ * large the config is, and processes that map the same snapshot share its
+ * pages through the operating system instead of each holding the whole tree
+ * on the heap. The {@code Config} you get back behaves like any other
+ * resolved config; {@link Config#withFallback}, {@link ConfigValue#render()},
+ * {@code equals()} and everything else work, decoding what they need.
+ *
+ * <p>
+ * A snapshot keeps origins and comments, but it is a cache and not an
+ * interchange format; it can only be read by a library version that writes
+ * the same format, and should be rewritten from the source files when that
+ * changes. Snapshots are replaced all at once, so writing a new one while
+ * other processes have the old one mapped is safe. The file stays mapped
+ * until the config and everything taken from it is garbage collected, and
+ * some platforms don't allow a mapped file to be deleted until then.
+ */
+public final class ConfigSnapshot {
+    private ConfigSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of a resolved config to a file, replacing any file
+     * that is there.
+     *
+     * @param config
+     *            the config to write
+     * @param file
+     *            the file to write to
+     * @throws ConfigException.NotResolved
+     *             if the config is not resolved
+     * @throws ConfigException.IO
+     *             if the file can't be written
+     */
+    public static void write(Config config, File file) {
+        ConfigImpl.writeSnapshot(config, file);
+    }
+
+    /**
+     * Maps a snapshot written by {@link #write(Config, File)}.
+     *
+     * @param file
+     *            the snapshot file
+     * @return the resolved config in the snapshot
+     * @throws ConfigException.IO
+     *             if the file can't be read or is not a snapshot
+     */
+    public static Config map(File file) {
+        return ConfigImpl.mapSnapshot(file);
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of strings shared by the config values and keys the parser builds,
+ * see {@link ConfigParseOptions#setStringPool(ConfigStringPool)}. Keys such as
+ * {@code enabled} or {@code timeout} and common values appear in many files;
+ * with a pool each distinct string is kept once instead of once per
+ * occurrence.
+ *
+ * <p>
+ * A pool only lives as long as it is referenced. To share strings within
+ * one parse, including the files it includes, set a new pool for that
+ * parse; to share them across the whole process, keep one pool and set it
+ * on every parse. Pools are safe to use from several threads at once.
+ *
+ * <p>
+ * A pool holds at most {@link #maxSize()} strings; once it is full, strings
+ * not already in it are used as they are. Long strings, which are rarely
+ * repeated, are never pooled.
+ */
+public final class ConfigStringPool {
+    // longer strings are not worth a pool entry
+    private static final int MAX_STRING_LENGTH = 128;
+
+    final private int maxSize;
+    final private ConcurrentHashMap<String, String> strings;
+    final private AtomicInteger size;
+    final private AtomicLong hits;
+    final private AtomicLong misses;
+
+    private ConfigStringPool(int maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("Attempt to construct ConfigStringPool with negative size: " + maxSize);
+        this.maxSize = maxSize;
+        this.strings = new ConcurrentHashMap<String, String>();
+        this.size = new AtomicInteger();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * Creates an empty pool that holds up to the given number of strings.
+     *
+     * @param maxSize
+     *            the most strings the pool will hold
+     * @return a new pool
+     */
+    public static ConfigStringPool newPool(int maxSize) {
+        return new ConfigStringPool(maxSize);
+    }
+
+    /**
+     * Returns the pooled string equal to the given one, adding the given
+     * string to the pool if there is none and the pool is not full.
+     *
+     * @param s
+     *            a string
+     * @return a string equal to s, from the pool if possible
+     */
+    public String intern(String s) {
+        if (s.length() > MAX_STRING_LENGTH)
+            return s;
+        String pooled = strings.get(s);
+        if (pooled != null) {
+            hits.incrementAndGet();
+            return pooled;
+        }
+        misses.incrementAndGet();
+        // reserve a slot first so the pool never grows past maxSize
+        if (size.get() >= maxSize)
+            return s;
+        if (size.incrementAndGet() > maxSize) {
+            size.decrementAndGet();
+            return s;
+        }
+        pooled = strings.putIfAbsent(s, s);
+        if (pooled == null)
+            return s;
+        // another thread added it first
+        size.decrementAndGet();
+        return pooled;
+    }
+
+    /**
+     * The number of strings that were found in the pool.
+     *
+     * @return the hit count
+     */
+    public long hitCount() {
+        return hits.get();
+    }
+
+    /**
+     * The number of strings that were not found in the pool, whether or not
+     * they were then added.
+     *
+     * @return the miss count
+     */
+    public long missCount() {
+        return misses.get();
+    }
+
+    /**
+     * The number of strings in the pool.
+     *
+     * @return the size of the pool
+     */
+    public int size() {
+        return strings.size();
+    }
+
+    /**
+     * The most strings the pool will hold.
+     *
+     * @return the maximum size
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigStringPool(size=" + size() + ", maxSize=" + maxSize + ", hits=" + hitCount()
+                + ", misses=" + missCount() + ")";
+    }
+}
@@ -7,7 +7,29 @@ import com.typesafe.config.parser.ConfigNode;
 import java.util.Collection;
 
 abstract class AbstractConfigNode implements ConfigNode {
+    // nodes are immutable, so this is computed once; -1 until then
+    private int renderedLength = -1;
+
     abstract Collection<Token> tokens();
+
+    // the length of render(), without rendering
+    final int renderedLength() {
+        int length = renderedLength;
+        if (length < 0) {
+            length = computeRenderedLength();
+            renderedLength = length;
+        }
+        return length;
+    }
+
+    int computeRenderedLength() {
+        int length = 0;
+        for (Token t : tokens()) {
+            length += t.tokenText().length();
+        }
+        return length;
+    }
+
     final public String render() {
         StringBuilder origText = new StringBuilder();
         Iterable<Token> tokens = tokens();
@@ -96,18 +96,15 @@ abstract class AbstractConfigObject extends AbstractConfigValue implements Confi
         try {
             // we'll fail if anything along the path can't
             // be looked at without resolving.
-            Path next = path.remainder();
-            AbstractConfigValue v = self.attemptPeekWithPartialResolve(path.first());
-
-            if (next == null) {
-                return v;
-            } else {
-                if (v instanceof AbstractConfigObject) {
-                    return peekPath((AbstractConfigObject) v, next);
-                } else {
+            int last = path.length() - 1;
+            for (int i = 0; i < last; ++i) {
+                AbstractConfigValue v = self.attemptPeekWithPartialResolve(path.element(i));
+                if (v instanceof AbstractConfigObject)
+                    self = (AbstractConfigObject) v;
+                else
                     return null;
-                }
             }
+            return self.attemptPeekWithPartialResolve(path.element(last));
         } catch (ConfigException.NotResolved e) {
             throw ConfigImpl.improveNotResolved(path, e);
         }
@@ -382,6 +382,34 @@ abstract class AbstractConfigValue implements ConfigValue, MergeableValue {
         return null;
     }
 
+    /**
+     * What a getter parsed a string or number into, such as a Duration or
+     * a memory size, kept on the value so reading the same setting again
+     * needn't parse it again. Only types from the JDK are kept, so a value
+     * never holds on to an application's class loader. Values are
+     * immutable, so the result can't go stale; the fields are final so it
+     * can be handed between threads through a volatile field with nothing
+     * else in the way.
+     */
+    static final class Conversion {
+        final Class<?> type;
+        final Object converted;
+
+        Conversion(Class<?> type, Object converted) {
+            this.type = type;
+            this.converted = converted;
+        }
+    }
+
+    // what this value was last converted to if it was converted to the
+    // given type, or null; only strings and numbers remember
+    Object conversion(Class<?> type) {
+        return null;
+    }
+
+    void rememberConversion(Class<?> type, Object converted) {
+    }
+
     SimpleConfig atKey(ConfigOrigin origin, String key) {
         Map<String, AbstractConfigValue> m = Collections.singletonMap(key, this);
         return (new SimpleConfigObject(origin, m)).toConfig();
@@ -76,6 +76,10 @@ final class ConfigConcatenation extends AbstractConfigValue implements Unmergeab
         return false;
     }
 
+    List<AbstractConfigValue> pieces() {
+        return pieces;
+    }
+
     @Override
     public Collection<ConfigConcatenation> unmergedValues() {
         return Collections.singleton(this);
@@ -3,6 +3,7 @@
  */
 package com.typesafe.config.impl;
 
+import java.io.StringReader;
 import java.util.*;
 
 import com.typesafe.config.*;
@@ -20,6 +21,75 @@ final class ConfigDocumentParser {
         return context.parseSingleValue();
     }
 
+    // Parses the text of one field of an object, for an edit inside that
+    // field; returns null if the text isn't exactly one field.
+    static ConfigNodeField parseField(String text, ConfigOrigin origin, ConfigParseOptions options) {
+        ConfigSyntax syntax = options.getSyntax() == null ? ConfigSyntax.CONF : options.getSyntax();
+        StringReader reader = new StringReader(text);
+        try {
+            ParseContext context = new ParseContext(syntax, origin, Tokenizer.tokenize(origin, reader, syntax));
+            return context.parseSingleField();
+        } catch (ConfigException e) {
+            // maybe the field only works in context, let the caller decide
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    static final String ExpectingClosingParenthesisError = "expecting a close parentheses ')' here, not: ";
+
+    static String addQuoteSuggestion(Path lastPath, boolean insideEquals, String badToken,
+                                     String message) {
+        String previousFieldName = lastPath != null ? lastPath.render() : null;
+
+        String part;
+        if (badToken.equals(Tokens.END.toString())) {
+            // EOF requires special handling for the error to make sense.
+            if (previousFieldName != null)
+                part = message + " (if you intended '" + previousFieldName
+                        + "' to be part of a value, instead of a key, "
+                        + "try adding double quotes around the whole value";
+            else
+                return message;
+        } else {
+            if (previousFieldName != null) {
+                part = message + " (if you intended " + badToken
+                        + " to be part of the value for '" + previousFieldName + "', "
+                        + "try enclosing the value in double quotes";
+            } else {
+                part = message + " (if you intended " + badToken
+                        + " to be part of a key or string value, "
+                        + "try enclosing the key or value in double quotes";
+            }
+        }
+
+        if (insideEquals)
+            return part
+                    + ", or you may be able to rename the file .properties rather than .conf)";
+        else
+            return part + ")";
+    }
+
+    static boolean isIncludeKeyword(Token t) {
+        return Tokens.isUnquotedText(t)
+                && Tokens.getUnquotedText(t).equals("include");
+    }
+
+    static boolean isUnquotedWhitespace(Token t) {
+        if (!Tokens.isUnquotedText(t))
+            return false;
+
+        String s = Tokens.getUnquotedText(t);
+
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (!ConfigImplUtil.isWhitespace(c))
+                return false;
+        }
+        return true;
+    }
+
     static private final class ParseContext {
         private int lineNumber;
         final private Stack<Token> buffer;
@@ -207,34 +277,7 @@ final class ConfigDocumentParser {
 
         private String addQuoteSuggestion(Path lastPath, boolean insideEquals, String badToken,
                                           String message) {
-            String previousFieldName = lastPath != null ? lastPath.render() : null;
-
-            String part;
-            if (badToken.equals(Tokens.END.toString())) {
-                // EOF requires special handling for the error to make sense.
-                if (previousFieldName != null)
-                    part = message + " (if you intended '" + previousFieldName
-                            + "' to be part of a value, instead of a key, "
-                            + "try adding double quotes around the whole value";
-                else
-                    return message;
-            } else {
-                if (previousFieldName != null) {
-                    part = message + " (if you intended " + badToken
-                            + " to be part of the value for '" + previousFieldName + "', "
-                            + "try enclosing the value in double quotes";
-                } else {
-                    part = message + " (if you intended " + badToken
-                            + " to be part of a key or string value, "
-                            + "try enclosing the key or value in double quotes";
-                }
-            }
-
-            if (insideEquals)
-                return part
-                        + ", or you may be able to rename the file .properties rather than .conf)";
-            else
-                return part + ")";
+            return ConfigDocumentParser.addQuoteSuggestion(lastPath, insideEquals, badToken, message);
         }
 
         private AbstractConfigNodeValue parseValue(Token t) {
@@ -285,25 +328,6 @@ final class ConfigDocumentParser {
             }
         }
 
-        private static boolean isIncludeKeyword(Token t) {
-            return Tokens.isUnquotedText(t)
-                    && Tokens.getUnquotedText(t).equals("include");
-        }
-
-        private static boolean isUnquotedWhitespace(Token t) {
-            if (!Tokens.isUnquotedText(t))
-                return false;
-
-            String s = Tokens.getUnquotedText(t);
-
-            for (int i = 0; i < s.length(); ++i) {
-                char c = s.charAt(i);
-                if (!ConfigImplUtil.isWhitespace(c))
-                    return false;
-            }
-            return true;
-        }
-
         private boolean isKeyValueSeparatorToken(Token t) {
             if (flavor == ConfigSyntax.JSON) {
                 return t == Tokens.COLON;
@@ -312,8 +336,6 @@ final class ConfigDocumentParser {
             }
         }
 
-        private final String ExpectingClosingParenthesisError = "expecting a close parentheses ')' here, not: ";
-
         private ConfigNodeInclude parseInclude(ArrayList<AbstractConfigNode> children) {
 
             Token t = nextTokenCollectingWhitespace(children);
@@ -670,6 +692,25 @@ final class ConfigDocumentParser {
             }
         }
 
+        // Parse a given input stream into a single field node, or null if it's
+        // something else. Used when editing the text inside a ConfigDocument.
+        ConfigNodeField parseSingleField() {
+            Token t = nextToken();
+            if (t != Tokens.START) {
+                throw new ConfigException.BugOrBroken(
+                        "token stream did not begin with START, had " + t);
+            }
+
+            ConfigNodeComplexValue object = parseObject(false);
+            if (nextToken() != Tokens.END)
+                return null;
+            Collection<AbstractConfigNode> children = object.children();
+            if (children.size() != 1)
+                return null;
+            AbstractConfigNode node = children.iterator().next();
+            return node instanceof ConfigNodeField ? (ConfigNodeField) node : null;
+        }
+
         // Parse a given input stream into a single value node. Used when doing a replace inside a ConfigDocument.
         AbstractConfigNodeValue parseSingleValue() {
             Token t = nextToken();
@@ -4,9 +4,12 @@
 package com.typesafe.config.impl;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.time.Duration;
+import java.time.Period;
+import java.time.temporal.TemporalAmount;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -15,10 +18,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigException;
 import com.typesafe.config.ConfigIncluder;
+import com.typesafe.config.ConfigKey;
+import com.typesafe.config.ConfigList;
 import com.typesafe.config.ConfigMemorySize;
 import com.typesafe.config.ConfigObject;
 import com.typesafe.config.ConfigOrigin;
@@ -152,6 +158,119 @@ public class ConfigImpl {
         return emptyObject(origin);
     }
 
+    public static void writeSnapshot(Config config, File file) {
+        if (!config.isResolved())
+            throw new ConfigException.NotResolved(
+                    "need to Config#resolve() before writing a snapshot of a config");
+        try {
+            MappedConfigImage.write(config.root(), file);
+        } catch (IOException e) {
+            throw new ConfigException.IO(SimpleConfigOrigin.newFile(file.getPath()),
+                    "failed to write config snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    public static Config mapSnapshot(File file) {
+        try {
+            return MappedConfigImage.map(file).root().toConfig();
+        } catch (IOException e) {
+            throw new ConfigException.IO(SimpleConfigOrigin.newFile(file.getPath()),
+                    "failed to map config snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    public static void setPathCacheMaxSize(int maxSize) {
+        PathCache.setMaxSize(maxSize);
+    }
+
+    public static int pathCacheMaxSize() {
+        return PathCache.maxSize();
+    }
+
+    public static int pathCacheSize() {
+        return PathCache.size();
+    }
+
+    public static long pathCacheHitCount() {
+        return PathCache.hitCount();
+    }
+
+    public static long pathCacheMissCount() {
+        return PathCache.missCount();
+    }
+
+    public static void clearPathCache() {
+        PathCache.clear();
+    }
+
+    public static ConfigKey<Boolean> booleanValueKey(String path) {
+        return SimpleConfigKey.booleanValue(path);
+    }
+
+    public static ConfigKey<Number> numberKey(String path) {
+        return SimpleConfigKey.number(path);
+    }
+
+    public static ConfigKey<Integer> intValueKey(String path) {
+        return SimpleConfigKey.intValue(path);
+    }
+
+    public static ConfigKey<Long> longValueKey(String path) {
+        return SimpleConfigKey.longValue(path);
+    }
+
+    public static ConfigKey<Double> doubleValueKey(String path) {
+        return SimpleConfigKey.doubleValue(path);
+    }
+
+    public static ConfigKey<String> stringKey(String path) {
+        return SimpleConfigKey.string(path);
+    }
+
+    public static <E extends Enum<E>> ConfigKey<E> enumValueKey(Class<E> enumClass, String path) {
+        return SimpleConfigKey.enumValue(enumClass, path);
+    }
+
+    public static ConfigKey<ConfigValue> valueKey(String path) {
+        return SimpleConfigKey.value(path);
+    }
+
+    public static ConfigKey<ConfigList> listKey(String path) {
+        return SimpleConfigKey.list(path);
+    }
+
+    public static ConfigKey<ConfigObject> objectKey(String path) {
+        return SimpleConfigKey.object(path);
+    }
+
+    public static ConfigKey<Config> configKey(String path) {
+        return SimpleConfigKey.config(path);
+    }
+
+    public static ConfigKey<Long> bytesKey(String path) {
+        return SimpleConfigKey.bytes(path);
+    }
+
+    public static ConfigKey<ConfigMemorySize> memorySizeKey(String path) {
+        return SimpleConfigKey.memorySize(path);
+    }
+
+    public static ConfigKey<Duration> durationKey(String path) {
+        return SimpleConfigKey.duration(path);
+    }
+
+    public static ConfigKey<Long> durationKey(String path, TimeUnit unit) {
+        return SimpleConfigKey.duration(path, unit);
+    }
+
+    public static ConfigKey<Period> periodKey(String path) {
+        return SimpleConfigKey.period(path);
+    }
+
+    public static ConfigKey<TemporalAmount> temporalKey(String path) {
+        return SimpleConfigKey.temporal(path);
+    }
+
     // default origin for values created with fromAnyRef and no origin specified
     final private static ConfigOrigin defaultValueOrigin = SimpleConfigOrigin
             .newSimple("hardcoded value");
@@ -25,6 +25,15 @@ abstract class ConfigNodeComplexValue extends AbstractConfigNodeValue {
         return tokens;
     }
 
+    @Override
+    int computeRenderedLength() {
+        int length = 0;
+        for (AbstractConfigNode child : children) {
+            length += child.renderedLength();
+        }
+        return length;
+    }
+
     protected ConfigNodeComplexValue indentText(AbstractConfigNode indentation) {
         ArrayList<AbstractConfigNode> childrenCopy = new ArrayList<AbstractConfigNode>(children);
         for (int i = 0; i < childrenCopy.size(); i++) {
@@ -25,6 +25,26 @@ final class ConfigNodeField extends AbstractConfigNode {
         return tokens;
     }
 
+    @Override
+    int computeRenderedLength() {
+        int length = 0;
+        for (AbstractConfigNode child : children) {
+            length += child.renderedLength();
+        }
+        return length;
+    }
+
+    // where the value starts in the rendered field
+    int valueOffset() {
+        int offset = 0;
+        for (AbstractConfigNode child : children) {
+            if (child instanceof AbstractConfigNodeValue)
+                return offset;
+            offset += child.renderedLength();
+        }
+        throw new ConfigException.BugOrBroken("Field node doesn't have a value");
+    }
+
     public ConfigNodeField replaceValue(AbstractConfigNodeValue newValue) {
         ArrayList<AbstractConfigNode> childrenCopy = new ArrayList<AbstractConfigNode>(children);
         for (int i = 0; i < childrenCopy.size(); i++) {
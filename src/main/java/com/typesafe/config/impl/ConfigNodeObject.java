@@ -1,5 +1,7 @@
 package com.typesafe.config.impl;
 
+import com.typesafe.config.ConfigOrigin;
+import com.typesafe.config.ConfigParseOptions;
 import com.typesafe.config.ConfigSyntax;
 
 import java.util.ArrayList;
@@ -278,4 +280,56 @@ final class ConfigNodeObject extends ConfigNodeComplexValue {
         Path path = PathParser.parsePathNode(desiredPath, flavor).value();
         return changeValueOnPath(path, null, flavor);
     }
+
+    // Replaces [start, end) of the rendered object, which must lie strictly
+    // inside one of its fields, by parsing that field again on its own; the
+    // innermost field is used if the field's value is an object too. Returns
+    // null if the edit isn't inside a field or the edited text isn't a single
+    // field anymore, and the caller has to parse the whole document.
+    ConfigNodeObject withEditInField(int start, int end, String replacement, ConfigOrigin origin,
+            ConfigParseOptions options) {
+        int offset = 0;
+        for (int i = 0; i < children.size(); i++) {
+            AbstractConfigNode child = children.get(i);
+            int length = child.renderedLength();
+            if (start < offset + length) {
+                // the first or last char of a field may join with its
+                // neighbors, so those are left to the full parser
+                if (!(child instanceof ConfigNodeField) || start <= offset || end >= offset + length)
+                    return null;
+                ConfigNodeField field = (ConfigNodeField) child;
+                ConfigNodeField edited = null;
+
+                AbstractConfigNodeValue value = field.value();
+                if (value instanceof ConfigNodeObject) {
+                    int valueStart = offset + field.valueOffset();
+                    if (start > valueStart && end < valueStart + value.renderedLength()) {
+                        ConfigNodeObject editedValue = ((ConfigNodeObject) value).withEditInField(start - valueStart,
+                                end - valueStart, replacement, origin, options);
+                        if (editedValue != null)
+                            edited = field.replaceValue(editedValue);
+                    }
+                }
+
+                if (edited == null) {
+                    String text = field.render();
+                    String newText = text.substring(0, start - offset) + replacement + text.substring(end - offset);
+                    edited = ConfigDocumentParser.parseField(newText, origin, options);
+                    if (edited == null)
+                        return null;
+                    // JSON doesn't allow duplicate keys, which only the
+                    // whole object can check
+                    if (options.getSyntax() == ConfigSyntax.JSON
+                            && !edited.path().value().equals(field.path().value()))
+                        return null;
+                }
+
+                ArrayList<AbstractConfigNode> childrenCopy = new ArrayList<AbstractConfigNode>(children);
+                childrenCopy.set(i, edited);
+                return new ConfigNodeObject(childrenCopy);
+            }
+            offset += length;
+        }
+        return null;
+    }
 }
@@ -2,6 +2,7 @@ package com.typesafe.config.impl;
 
 import com.typesafe.config.ConfigException;
 import com.typesafe.config.ConfigOrigin;
+import com.typesafe.config.ConfigParseOptions;
 import com.typesafe.config.ConfigSyntax;
 
 import java.util.ArrayList;
@@ -49,6 +50,33 @@ final class ConfigNodeRoot extends ConfigNodeComplexValue {
         throw new ConfigException.BugOrBroken("ConfigNodeRoot did not contain a value");
     }
 
+    ConfigOrigin origin() {
+        return origin;
+    }
+
+    // see ConfigNodeObject.withEditInField(); null if the edit has to be
+    // handled by parsing the whole document
+    ConfigNodeRoot withEditInField(int start, int end, String replacement, ConfigParseOptions options) {
+        int offset = 0;
+        for (int i = 0; i < children.size(); i++) {
+            AbstractConfigNode child = children.get(i);
+            int length = child.renderedLength();
+            if (start < offset + length) {
+                if (!(child instanceof ConfigNodeObject) || start < offset || end > offset + length)
+                    return null;
+                ConfigNodeObject edited = ((ConfigNodeObject) child).withEditInField(start - offset, end - offset,
+                        replacement, origin, options);
+                if (edited == null)
+                    return null;
+                ArrayList<AbstractConfigNode> childrenCopy = new ArrayList<AbstractConfigNode>(children);
+                childrenCopy.set(i, edited);
+                return new ConfigNodeRoot(childrenCopy, origin);
+            }
+            offset += length;
+        }
+        return null;
+    }
+
     protected boolean hasValue(String desiredPath) {
         Path path = PathParser.parsePath(desiredPath);
         ArrayList<AbstractConfigNode> childrenCopy = new ArrayList<AbstractConfigNode>(children);
@@ -23,6 +23,12 @@ final class ConfigNodeSimpleValue extends AbstractConfigNodeValue {
     protected Token token() { return token; }
 
     protected AbstractConfigValue value() {
+        return value(token);
+    }
+
+    // the value of a simple value token, also used by ConfigParser which
+    // does not create nodes for its tokens
+    static AbstractConfigValue value(Token token) {
         if (Tokens.isValue(token))
             return Tokens.getValue(token);
         else if (Tokens.isUnquotedText(token))
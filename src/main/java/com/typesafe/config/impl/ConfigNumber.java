@@ -19,11 +19,25 @@ abstract class ConfigNumber extends AbstractConfigValue implements Serializable
     // for example.
     final protected String originalText;
 
+    // the last conversion a getter made of this value, see Conversion
+    private transient volatile Conversion conversion;
+
     protected ConfigNumber(ConfigOrigin origin, String originalText) {
         super(origin);
         this.originalText = originalText;
     }
 
+    @Override
+    Object conversion(Class<?> type) {
+        Conversion c = conversion;
+        return c != null && c.type == type ? c.converted : null;
+    }
+
+    @Override
+    void rememberConversion(Class<?> type, Object converted) {
+        conversion = new Conversion(type, converted);
+    }
+
     @Override
     public abstract Number unwrapped();
 
@@ -32,6 +46,12 @@ abstract class ConfigNumber extends AbstractConfigValue implements Serializable
         return originalText;
     }
 
+    // true if the value alone converts back to the original text, so the
+    // text needn't be kept
+    boolean textIsRedundant() {
+        return originalText == null || originalText.equals(unwrapped().toString());
+    }
+
     int intValueRangeChecked(String path) {
         long l = longValue();
         if (l < Integer.MIN_VALUE || l > Integer.MAX_VALUE) {
@@ -6,69 +6,601 @@ package com.typesafe.config.impl;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import com.typesafe.config.*;
 
+/**
+ * Builds config values straight from the token stream. This accepts exactly
+ * the input {@link ConfigDocumentParser} accepts and fails with the same
+ * errors, but it never creates the {@link ConfigNodeRoot} syntax tree; the
+ * whitespace, newline and comment tokens that would have become nodes are
+ * handed to the {@link Scope} of the value they appear in, which uses them
+ * for line numbers and for attaching comments to values. A failed include
+ * is only reported once the whole document has been parsed, so a syntax
+ * error is still reported first.
+ * <p>
+ * With an executor in the parse options, includes are handed to it as soon as
+ * they are seen, so the includes of an object are parsed in parallel with each
+ * other and with the rest of the object; they are merged into the object in
+ * source order when it ends.
+ * <p>
+ * With lazy objects in the parse options, an object that is the value of a
+ * top-level field is only scanned: {@link LazyScan} checks its syntax and
+ * counts its newlines the way the parser would, and the tokens are kept in a
+ * {@link RecordedObject} that {@link LazyConfigObject} parses on first use.
+ */
 final class ConfigParser {
-    static AbstractConfigValue parse(ConfigNodeRoot document,
+    static AbstractConfigValue parse(Iterator<Token> tokens,
                                      ConfigOrigin origin, ConfigParseOptions options,
                                      ConfigIncludeContext includeContext) {
-        ParseContext context = new ParseContext(options.getSyntax(), origin, document,
-                SimpleIncluder.makeFull(options.getIncluder()), includeContext);
+        ConfigSyntax syntax = options.getSyntax() == null ? ConfigSyntax.CONF : options.getSyntax();
+        ParseContext context = new ParseContext(syntax, origin, tokens,
+                SimpleIncluder.makeFull(options.getIncluder()), includeContext, options.getExecutor(),
+                options.getLazyObjects(), options.getStringPool());
         return context.parse();
     }
 
+    // The tokens of an object, from just after its open brace up to and
+    // including its close brace, along with the parser state needed to
+    // parse them later. They hold no substitutions or includes, and were
+    // already checked for syntax errors.
+    static final class RecordedObject {
+        final private ConfigSyntax flavor;
+        final private ConfigOrigin baseOrigin;
+        final private int lineNumber;
+        final private int tokenLineNumber;
+        final private ConfigStringPool stringPool;
+        // ends with END; dropped once parsed
+        private Token[] tokens;
+        private AbstractConfigObject parsed;
+
+        RecordedObject(ConfigSyntax flavor, ConfigOrigin baseOrigin, int lineNumber,
+                int tokenLineNumber, ConfigStringPool stringPool, Token[] tokens) {
+            this.flavor = flavor;
+            this.baseOrigin = baseOrigin;
+            this.lineNumber = lineNumber;
+            this.tokenLineNumber = tokenLineNumber;
+            this.stringPool = stringPool;
+            this.tokens = tokens;
+        }
+
+        synchronized AbstractConfigObject parse() {
+            if (parsed == null) {
+                ParseContext context = new ParseContext(flavor, baseOrigin,
+                        Arrays.asList(tokens).iterator(), null, null, null, false, stringPool);
+                context.lineNumber = lineNumber;
+                context.tokenLineNumber = tokenLineNumber;
+                parsed = context.parseObject(true);
+                tokens = null;
+            }
+            return parsed;
+        }
+    }
+
     static private final class ParseContext {
+        // the line number used for the origins of objects and arrays; this
+        // only counts newlines that are directly inside an object, array or
+        // the document, which is not always the line the token is on
         private int lineNumber;
-        final private ConfigNodeRoot document;
+        // the line number of the last token, used for syntax errors
+        private int tokenLineNumber;
+        final private ArrayDeque<Token> buffer;
+        final private Iterator<Token> tokens;
         final private FullIncluder includer;
         final private ConfigIncludeContext includeContext;
+        // null to parse includes on the calling thread
+        final private Executor executor;
+        // whether the objects of top-level fields become LazyConfigObject
+        final private boolean lazyObjects;
+        // null if strings are not pooled
+        final private ConfigStringPool stringPool;
         final private ConfigSyntax flavor;
         final private ConfigOrigin baseOrigin;
         final private LinkedList<Path> pathStack;
+        // tokens of the last key we parsed, kept to render it in errors
+        final private List<Token> keyTokens;
 
         // the number of lists we are inside; this is used to detect the "cannot
         // generate a reference to a list element" problem, and once we fix that
         // problem we should be able to get rid of this variable.
         int arrayCount;
+        // this is the number of "equals" we are inside,
+        // used to modify the error message to reflect that
+        // someone may think this is .properties format.
+        int equalsCount;
+        // includes are parsed as they are reached, but a failed one is only
+        // reported once the whole document has been parsed, so a syntax
+        // error anywhere in it still comes first; this is the failure of
+        // the first include in the document that failed
+        private ConfigException includeError;
+        private int includeErrorIndex;
+        // the number of include statements so far
+        private int includeCount;
 
-        ParseContext(ConfigSyntax flavor, ConfigOrigin origin, ConfigNodeRoot document,
-                FullIncluder includer, ConfigIncludeContext includeContext) {
+        ParseContext(ConfigSyntax flavor, ConfigOrigin origin, Iterator<Token> tokens,
+                FullIncluder includer, ConfigIncludeContext includeContext, Executor executor,
+                boolean lazyObjects, ConfigStringPool stringPool) {
             lineNumber = 1;
-            this.document = document;
+            tokenLineNumber = 1;
+            this.buffer = new ArrayDeque<Token>();
+            this.tokens = tokens;
             this.flavor = flavor;
             this.baseOrigin = origin;
             this.includer = includer;
             this.includeContext = includeContext;
+            this.executor = executor;
+            this.lazyObjects = lazyObjects;
+            this.stringPool = stringPool;
             this.pathStack = new LinkedList<Path>();
+            this.keyTokens = new ArrayList<Token>();
             this.arrayCount = 0;
+            this.equalsCount = 0;
+            this.includeError = null;
+            this.includeErrorIndex = 0;
+            this.includeCount = 0;
+        }
+
+        // with an executor, includes can fail out of order
+        private void includeFailed(int index, ConfigException e) {
+            if (includeError == null || index < includeErrorIndex) {
+                includeError = e;
+                includeErrorIndex = index;
+            }
+        }
+
+        // Receives the tokens around values that don't become values
+        // themselves: whitespace, commas, newlines and comments.
+        private abstract class Scope {
+            void comment(Token t) {
+            }
+
+            void newline(Token t) {
+            }
+
+            // ignored whitespace, unquoted whitespace or a comma
+            void separator(Token t) {
+            }
+        }
+
+        // for tokens that can't affect any value, e.g. inside an include
+        private final Scope ignoreScope = new Scope() {
+        };
+
+        // holds on to tokens until we know which scope they belong to
+        private final class DeferredScope extends Scope {
+            final private List<Token> deferred = new ArrayList<Token>();
+
+            @Override
+            void comment(Token t) {
+                deferred.add(t);
+            }
+
+            @Override
+            void newline(Token t) {
+                deferred.add(t);
+            }
+
+            @Override
+            void separator(Token t) {
+                deferred.add(t);
+            }
+
+            void replay(Scope scope) {
+                for (Token t : deferred) {
+                    if (Tokens.isNewline(t))
+                        scope.newline(t);
+                    else if (Tokens.isComment(t))
+                        scope.comment(t);
+                    else
+                        scope.separator(t);
+                }
+            }
+        }
+
+        // the tokens between a key and its value
+        private final class FieldScope extends Scope {
+            private List<String> comments = null;
+
+            @Override
+            void comment(Token t) {
+                if (comments == null)
+                    comments = new ArrayList<String>();
+                comments.add(Tokens.getCommentText(t));
+            }
+        }
+
+        private final class RootScope extends Scope {
+            final private List<String> comments = new ArrayList<String>();
+            private boolean lastWasNewLine = false;
+            private AbstractConfigValue result = null;
+            // set once the line after the result has ended, we ignore
+            // anything after that
+            private boolean done = false;
+
+            @Override
+            void comment(Token t) {
+                if (done)
+                    return;
+                comments.add(Tokens.getCommentText(t));
+                lastWasNewLine = false;
+            }
+
+            @Override
+            void newline(Token t) {
+                if (done)
+                    return;
+                lineNumber++;
+                if (lastWasNewLine && result == null) {
+                    comments.clear();
+                } else if (result != null) {
+                    result = result.withOrigin(result.origin().appendComments(new ArrayList<String>(comments)));
+                    comments.clear();
+                    done = true;
+                }
+                lastWasNewLine = true;
+            }
+
+            void value(AbstractConfigValue v) {
+                result = withComments(v, comments);
+                lastWasNewLine = false;
+            }
         }
 
-        // merge a bunch of adjacent values into one
-        // value; change unquoted text into a string
-        // value.
-        private AbstractConfigValue parseConcatenation(ConfigNodeConcatenation n) {
+        private final class ObjectScope extends Scope {
+            final private SimpleConfigOrigin origin;
+            final private Map<String, AbstractConfigValue> values = new HashMap<String, AbstractConfigValue>();
+            final private List<String> comments = new ArrayList<String>();
+            private boolean lastWasNewline = false;
+            // the last field is held back until we know whether a comment
+            // follows it on the same line, which then goes with that field
+            private Path pendingPath = null;
+            private AbstractConfigValue pendingValue = null;
+            // once an include is being parsed on the executor, everything
+            // after it is merged when the object ends, to keep source order
+            private List<Runnable> deferredMerges = null;
+
+            ObjectScope(SimpleConfigOrigin origin) {
+                this.origin = origin;
+            }
+
+            @Override
+            void comment(Token t) {
+                if (pendingPath != null) {
+                    pendingValue = pendingValue.withOrigin(pendingValue.origin().appendComments(
+                            Collections.singletonList(Tokens.getCommentText(t))));
+                    flushField();
+                } else {
+                    lastWasNewline = false;
+                    comments.add(Tokens.getCommentText(t));
+                }
+            }
+
+            @Override
+            void newline(Token t) {
+                flushField();
+                lineNumber++;
+                if (lastWasNewline) {
+                    // Drop all comments if there was a blank line and start a new comment block
+                    comments.clear();
+                }
+                lastWasNewline = true;
+            }
+
+            @Override
+            void separator(Token t) {
+                // a trailing comment may still come after commas and whitespace
+                if (t != Tokens.COMMA && !Tokens.isIgnoredWhitespace(t))
+                    flushField();
+            }
+
+            void include(ConfigIncludeKind kind, String name, boolean isRequired) {
+                flushField();
+                lastWasNewline = false;
+                final int index = includeCount++;
+                // no include after one that failed can be reported, so
+                // only the syntax of the rest matters
+                if (includeError != null)
+                    return;
+                final boolean insideArray = arrayCount > 0;
+                final Path prefix = pathStack.isEmpty() ? null : fullCurrentPath();
+                final SimpleConfigOrigin includeOrigin = lineOrigin();
+                try {
+                    final Include include = new Include(kind, name, isRequired);
+                    if (executor == null) {
+                        mergeInclude(values, include.call(), insideArray, prefix, includeOrigin);
+                    } else {
+                        final FutureTask<AbstractConfigObject> task = Parseable.fork(executor, include);
+                        defer(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    mergeInclude(values, Parseable.join(task, includeOrigin), insideArray,
+                                            prefix, includeOrigin);
+                                } catch (ConfigException e) {
+                                    includeFailed(index, e);
+                                }
+                            }
+                        });
+                    }
+                } catch (ConfigException e) {
+                    includeFailed(index, e);
+                }
+            }
+
+            void startField() {
+                flushField();
+                lastWasNewline = false;
+            }
+
+            AbstractConfigValue fieldValue(FieldScope fieldScope, AbstractConfigValue value) {
+                // comments from the key token go to the value token
+                if (fieldScope.comments != null)
+                    comments.addAll(fieldScope.comments);
+                return withComments(value, comments);
+            }
+
+            void field(Path path, AbstractConfigValue value) {
+                pendingPath = path;
+                pendingValue = value;
+            }
+
+            boolean hasKey(String key) {
+                return values.containsKey(key);
+            }
+
+            private void flushField() {
+                if (pendingPath != null) {
+                    if (deferredMerges == null) {
+                        putField(values, pendingPath, pendingValue);
+                    } else {
+                        final Path path = pendingPath;
+                        final AbstractConfigValue value = pendingValue;
+                        defer(new Runnable() {
+                            @Override
+                            public void run() {
+                                putField(values, path, value);
+                            }
+                        });
+                    }
+                    pendingPath = null;
+                    pendingValue = null;
+                }
+            }
+
+            private void defer(Runnable merge) {
+                if (deferredMerges == null)
+                    deferredMerges = new ArrayList<Runnable>();
+                deferredMerges.add(merge);
+            }
+
+            AbstractConfigObject end() {
+                flushField();
+                if (deferredMerges != null) {
+                    for (Runnable merge : deferredMerges)
+                        merge.run();
+                }
+                return new SimpleConfigObject(origin, values);
+            }
+        }
+
+        private final class ArrayScope extends Scope {
+            final private SimpleConfigOrigin origin;
+            final private List<AbstractConfigValue> values = new ArrayList<AbstractConfigValue>();
+            final private List<String> comments = new ArrayList<String>();
+            private boolean lastWasNewLine = false;
+            // the last element is held back until the end of its line,
+            // so comments on that line go with it
+            private AbstractConfigValue v = null;
+
+            ArrayScope(SimpleConfigOrigin origin) {
+                this.origin = origin;
+            }
+
+            @Override
+            void comment(Token t) {
+                comments.add(Tokens.getCommentText(t));
+                lastWasNewLine = false;
+            }
+
+            @Override
+            void newline(Token t) {
+                lineNumber++;
+                if (lastWasNewLine && v == null) {
+                    comments.clear();
+                } else if (v != null) {
+                    values.add(v.withOrigin(v.origin().appendComments(new ArrayList<String>(comments))));
+                    comments.clear();
+                    v = null;
+                }
+                lastWasNewLine = true;
+            }
+
+            void value(AbstractConfigValue value) {
+                lastWasNewLine = false;
+                if (v != null) {
+                    values.add(v.withOrigin(v.origin().appendComments(new ArrayList<String>(comments))));
+                    comments.clear();
+                }
+                v = withComments(value, comments);
+            }
+
+            SimpleConfigList end() {
+                // There shouldn't be any comments at this point, but add them just in case
+                if (v != null) {
+                    values.add(v.withOrigin(v.origin().appendComments(new ArrayList<String>(comments))));
+                }
+                return SimpleConfigList.packed(origin, values);
+            }
+        }
+
+        private static AbstractConfigValue withComments(AbstractConfigValue v, List<String> comments) {
+            if (!comments.isEmpty()) {
+                v = v.withOrigin(v.origin().prependComments(new ArrayList<String>(comments)));
+                comments.clear();
+            }
+            return v;
+        }
+
+        private Token popToken() {
+            if (buffer.isEmpty()) {
+                return tokens.next();
+            }
+            return buffer.pop();
+        }
+
+        private Token nextToken() {
+            Token t = popToken();
+            if (flavor == ConfigSyntax.JSON) {
+                if (Tokens.isUnquotedText(t) && !ConfigDocumentParser.isUnquotedWhitespace(t)) {
+                    throw syntaxError("Token not allowed in valid JSON: '"
+                            + Tokens.getUnquotedText(t) + "'");
+                } else if (Tokens.isSubstitution(t)) {
+                    throw syntaxError("Substitutions (${} syntax) not allowed in JSON");
+                }
+            }
+            return t;
+        }
+
+        private Token nextTokenCollectingWhitespace(Scope scope) {
+            while (true) {
+                Token t = nextToken();
+                if (Tokens.isNewline(t)) {
+                    scope.newline(t);
+                    tokenLineNumber = t.lineNumber() + 1;
+                } else if (Tokens.isIgnoredWhitespace(t) || ConfigDocumentParser.isUnquotedWhitespace(t)) {
+                    scope.separator(t);
+                } else if (Tokens.isComment(t)) {
+                    scope.comment(t);
+                } else {
+                    int newNumber = t.lineNumber();
+                    if (newNumber >= 0)
+                        tokenLineNumber = newNumber;
+                    return t;
+                }
+            }
+        }
+
+        private void putBack(Token token) {
+            buffer.push(token);
+        }
+
+        // In arrays and objects, comma can be omitted
+        // as long as there's at least one newline instead.
+        // this skips any newlines in front of a comma,
+        // skips the comma, and returns true if it found
+        // either a newline or a comma. The iterator
+        // is left just after the comma or the newline.
+        private boolean checkElementSeparator(Scope scope) {
+            if (flavor == ConfigSyntax.JSON) {
+                Token t = nextTokenCollectingWhitespace(scope);
+                if (t == Tokens.COMMA) {
+                    scope.separator(t);
+                    return true;
+                } else {
+                    putBack(t);
+                    return false;
+                }
+            } else {
+                boolean sawSeparatorOrNewline = false;
+                Token t = nextToken();
+                while (true) {
+                    if (Tokens.isIgnoredWhitespace(t) || ConfigDocumentParser.isUnquotedWhitespace(t)) {
+                        scope.separator(t);
+                    } else if (Tokens.isComment(t)) {
+                        scope.comment(t);
+                    } else if (Tokens.isNewline(t)) {
+                        sawSeparatorOrNewline = true;
+                        tokenLineNumber++;
+                        scope.newline(t);
+                        // we want to continue to also eat
+                        // a comma if there is one.
+                    } else if (t == Tokens.COMMA) {
+                        scope.separator(t);
+                        return true;
+                    } else {
+                        // non-newline-or-comma
+                        putBack(t);
+                        return sawSeparatorOrNewline;
+                    }
+                    t = nextToken();
+                }
+            }
+        }
+
+        private static boolean isValueStart(Token t) {
+            return Tokens.isValue(t) || Tokens.isUnquotedText(t)
+                    || Tokens.isSubstitution(t) || t == Tokens.OPEN_CURLY
+                    || t == Tokens.OPEN_SQUARE;
+        }
+
+        // parse a concatenation. If there is no concatenation, return the next value
+        private AbstractConfigValue consolidateValues(Scope scope) {
             // this trick is not done in JSON
             if (flavor == ConfigSyntax.JSON)
-                throw new ConfigException.BugOrBroken("Found a concatenation node in JSON");
+                return null;
 
-            List<AbstractConfigValue> values = new ArrayList<AbstractConfigValue>(n.children().size());
+            // create only if we have a second value
+            AbstractConfigValue first = null;
+            List<AbstractConfigValue> values = null;
+            // the tokenizer merges adjacent whitespace, so there is at
+            // most one whitespace token after each value
+            Token whitespace = null;
 
-            for (AbstractConfigNode node : n.children()) {
-                AbstractConfigValue v = null;
-                if (node instanceof AbstractConfigNodeValue) {
-                    v = parseValue((AbstractConfigNodeValue)node, null);
-                    values.add(v);
+            // ignore a newline up front
+            Token t = nextTokenCollectingWhitespace(scope);
+            while (true) {
+                if (Tokens.isIgnoredWhitespace(t)) {
+                    whitespace = t;
+                    t = nextToken();
+                    continue;
+                } else if (isValueStart(t)) {
+                    // whitespace between values means nothing, the
+                    // concatenation only has the unquoted whitespace
+                    whitespace = null;
+                    // there may be newlines _within_ the objects and arrays
+                    AbstractConfigValue v = parseValue(t);
+                    if (first == null) {
+                        first = v;
+                    } else {
+                        if (values == null) {
+                            values = new ArrayList<AbstractConfigValue>();
+                            values.add(first);
+                        }
+                        values.add(v);
+                    }
+                } else {
+                    break;
                 }
+
+                t = nextToken(); // but don't consolidate across a newline
             }
 
+            putBack(t);
+
+            // Put back any trailing whitespace, as the parent value is
+            // responsible for tracking any leading/trailing whitespace
+            if (whitespace != null && first != null)
+                putBack(whitespace);
+
+            // No concatenation was seen, but a single value may have been parsed, so return it
+            if (values == null)
+                return first;
+
             return ConfigConcatenation.concatenate(values);
         }
 
@@ -84,6 +616,16 @@ final class ConfigParser {
             return new ConfigException.Parse(lineOrigin(), message, cause);
         }
 
+        // errors in the token stream use the line of the token rather
+        // than the line used for origins
+        private ConfigException syntaxError(String message) {
+            return new ConfigException.Parse(baseOrigin.withLineNumber(tokenLineNumber), message, null);
+        }
+
+        private String addQuoteSuggestion(String badToken, String message) {
+            return ConfigDocumentParser.addQuoteSuggestion(null, equalsCount > 0, badToken, message);
+        }
+
         private Path fullCurrentPath() {
             // pathStack has top of stack at front
             if (pathStack.isEmpty())
@@ -92,28 +634,28 @@ final class ConfigParser {
                 return new Path(pathStack.descendingIterator());
         }
 
-        private AbstractConfigValue parseValue(AbstractConfigNodeValue n, List<String> comments) {
+        private AbstractConfigValue parseValue(Token t) {
             AbstractConfigValue v;
 
             int startingArrayCount = arrayCount;
+            int startingEqualsCount = equalsCount;
 
-            if (n instanceof ConfigNodeSimpleValue) {
-                v = ((ConfigNodeSimpleValue) n).value();
-            } else if (n instanceof ConfigNodeObject) {
-                v = parseObject((ConfigNodeObject)n);
-            } else if (n instanceof ConfigNodeArray) {
-                v = parseArray((ConfigNodeArray)n);
-            } else if (n instanceof ConfigNodeConcatenation) {
-                v = parseConcatenation((ConfigNodeConcatenation)n);
+            if (Tokens.isValue(t) || Tokens.isUnquotedText(t) || Tokens.isSubstitution(t)) {
+                v = ConfigNodeSimpleValue.value(t);
+            } else if (t == Tokens.OPEN_CURLY) {
+                if (lazyObjects && arrayCount == 0 && pathStack.size() == 1)
+                    v = parseLazyObject();
+                else
+                    v = parseObject(true);
+            } else if (t == Tokens.OPEN_SQUARE) {
+                v = parseArray();
             } else {
-                throw parseError("Expecting a value but got wrong node type: " + n.getClass());
-            }
-
-            if (comments != null && !comments.isEmpty()) {
-                v = v.withOrigin(v.origin().prependComments(new ArrayList<String>(comments)));
-                comments.clear();
+                throw syntaxError(addQuoteSuggestion(t.toString(),
+                        "Expecting a value but got wrong token: " + t));
             }
 
+            if (equalsCount != startingEqualsCount)
+                throw new ConfigException.BugOrBroken("Bug in config parser: unbalanced equals count");
             if (arrayCount != startingArrayCount)
                 throw new ConfigException.BugOrBroken("Bug in config parser: unbalanced array count");
 
@@ -156,52 +698,205 @@ final class ConfigParser {
             return o;
         }
 
-        private void parseInclude(Map<String, AbstractConfigValue> values, ConfigNodeInclude n) {
-            boolean isRequired = n.isRequired();
-            ConfigIncludeContext cic = includeContext.setParseOptions(includeContext.parseOptions().setAllowMissing(!isRequired));
+        private Path parseKey(Token token) {
+            keyTokens.clear();
+            if (flavor == ConfigSyntax.JSON) {
+                if (Tokens.isValueWithType(token, ConfigValueType.STRING)) {
+                    keyTokens.add(token);
+                    return PathParser.parsePathExpression(keyTokens.iterator(),
+                            baseOrigin.withLineNumber(tokenLineNumber), stringPool);
+                } else {
+                    throw syntaxError("Expecting close brace } or a field name here, got "
+                            + token);
+                }
+            } else {
+                Token t = token;
+                while (Tokens.isValue(t) || Tokens.isUnquotedText(t)) {
+                    keyTokens.add(t);
+                    t = nextToken(); // note: don't cross a newline
+                }
+
+                if (keyTokens.isEmpty()) {
+                    throw syntaxError(ConfigDocumentParser.ExpectingClosingParenthesisError + t);
+                }
+
+                putBack(t); // put back the token we ended with
+                return PathParser.parsePathExpression(keyTokens.iterator(),
+                        baseOrigin.withLineNumber(tokenLineNumber), stringPool);
+            }
+        }
+
+        private String renderKey() {
+            StringBuilder sb = new StringBuilder();
+            for (Token t : keyTokens)
+                sb.append(t.tokenText());
+            return sb.toString();
+        }
 
-            AbstractConfigObject obj;
-            switch (n.kind()) {
-                case URL:
-                    URL url;
+        private boolean isKeyValueSeparatorToken(Token t) {
+            if (flavor == ConfigSyntax.JSON) {
+                return t == Tokens.COLON;
+            } else {
+                return t == Tokens.COLON || t == Tokens.EQUALS || t == Tokens.PLUS_EQUALS;
+            }
+        }
+
+        private void parseInclude(ObjectScope scope) {
+            Token t = nextTokenCollectingWhitespace(ignoreScope);
+
+            // we either have a 'required()' or a quoted string or the "file()" syntax
+            if (Tokens.isUnquotedText(t)) {
+                String kindText = Tokens.getUnquotedText(t);
+
+                if (kindText.startsWith("required(")) {
+                    String r = kindText.replaceFirst("required\\(","");
+                    if (r.length()>0) {
+                        putBack(Tokens.newUnquotedText(t.origin(),r));
+                    }
+
+                    parseIncludeResource(scope, true);
+
+                    t = nextTokenCollectingWhitespace(ignoreScope);
+
+                    if (Tokens.isUnquotedText(t) && Tokens.getUnquotedText(t).equals(")")) {
+                        // OK, close paren
+                    } else {
+                        throw syntaxError(ConfigDocumentParser.ExpectingClosingParenthesisError + t);
+                    }
+                } else {
+                    putBack(t);
+                    parseIncludeResource(scope, false);
+                }
+            }
+            else {
+                putBack(t);
+                parseIncludeResource(scope, false);
+            }
+        }
+
+        private void parseIncludeResource(ObjectScope scope, boolean isRequired) {
+            Token t = nextTokenCollectingWhitespace(ignoreScope);
+
+            // we either have a quoted string or the "file()" syntax
+            if (Tokens.isUnquotedText(t)) {
+                // get foo(
+                String kindText = Tokens.getUnquotedText(t);
+                ConfigIncludeKind kind;
+                String prefix;
+
+                if (kindText.startsWith("url(")) {
+                    kind = ConfigIncludeKind.URL;
+                    prefix = "url(";
+                } else if (kindText.startsWith("file(")) {
+                    kind = ConfigIncludeKind.FILE;
+                    prefix = "file(";
+                } else if (kindText.startsWith("classpath(")) {
+                    kind = ConfigIncludeKind.CLASSPATH;
+                    prefix = "classpath(";
+                } else {
+                    throw syntaxError("expecting include parameter to be quoted filename, file(), classpath(), or url(). No spaces are allowed before the open paren. Not expecting: "
+                            + t);
+                }
+                String r = kindText.replaceFirst("[^(]*\\(","");
+                if (r.length()>0) {
+                    putBack(Tokens.newUnquotedText(t.origin(),r));
+                }
+
+                // skip space inside parens
+                t = nextTokenCollectingWhitespace(ignoreScope);
+
+                // quoted string
+                if (!Tokens.isValueWithType(t, ConfigValueType.STRING)) {
+                    throw syntaxError("expecting include " + prefix + ") parameter to be a quoted string, rather than: " + t);
+                }
+                Token name = t;
+                // skip space after string, inside parens
+                t = nextTokenCollectingWhitespace(ignoreScope);
+
+                if (Tokens.isUnquotedText(t) && Tokens.getUnquotedText(t).startsWith(")")) {
+                    String rest = Tokens.getUnquotedText(t).substring(1);
+                    if (rest.length()>0) {
+                        putBack(Tokens.newUnquotedText(t.origin(),rest));
+                    }
+                    // OK, close paren
+                } else {
+                    throw syntaxError(ConfigDocumentParser.ExpectingClosingParenthesisError + t);
+                }
+
+                scope.include(kind, (String) Tokens.getValue(name).unwrapped(), isRequired);
+            } else if (Tokens.isValueWithType(t, ConfigValueType.STRING)) {
+                scope.include(ConfigIncludeKind.HEURISTIC, (String) Tokens.getValue(t).unwrapped(),
+                        isRequired);
+            } else {
+                throw syntaxError("include keyword is not followed by a quoted string, but by: " + t);
+            }
+        }
+
+        // One include statement, callable on any thread; everything it needs
+        // from the parse context is captured when it is created.
+        private final class Include implements Callable<AbstractConfigObject> {
+            final private ConfigIncludeKind kind;
+            final private String name;
+            final private URL url;
+            final private ConfigIncludeContext cic;
+
+            Include(ConfigIncludeKind kind, String name, boolean isRequired) {
+                this.kind = kind;
+                this.name = name;
+                if (kind == ConfigIncludeKind.URL) {
                     try {
-                        url = new URL(n.name());
+                        this.url = new URL(name);
                     } catch (MalformedURLException e) {
-                        throw parseError("include url() specifies an invalid URL: " + n.name(), e);
+                        throw parseError("include url() specifies an invalid URL: " + name, e);
                     }
-                    obj = (AbstractConfigObject) includer.includeURL(cic, url);
-                    break;
+                } else {
+                    this.url = null;
+                }
+                ConfigParseOptions options = includeContext.parseOptions().setAllowMissing(!isRequired);
+                // the include may not run on this thread, so don't leave the
+                // class loader to whichever thread's context loader that is
+                if (executor != null)
+                    options = options.setClassLoader(options.getClassLoader());
+                this.cic = includeContext.setParseOptions(options);
+            }
 
-                case FILE:
-                    obj = (AbstractConfigObject) includer.includeFile(cic,
-                            new File(n.name()));
-                    break;
+            @Override
+            public AbstractConfigObject call() {
+                switch (kind) {
+                    case URL:
+                        return (AbstractConfigObject) includer.includeURL(cic, url);
 
-                case CLASSPATH:
-                    obj = (AbstractConfigObject) includer.includeResources(cic, n.name());
-                    break;
+                    case FILE:
+                        return (AbstractConfigObject) includer.includeFile(cic,
+                                new File(name));
 
-                case HEURISTIC:
-                    obj = (AbstractConfigObject) includer
-                            .include(cic, n.name());
-                    break;
+                    case CLASSPATH:
+                        return (AbstractConfigObject) includer.includeResources(cic, name);
 
-                default:
-                    throw new ConfigException.BugOrBroken("should not be reached");
+                    case HEURISTIC:
+                        return (AbstractConfigObject) includer
+                                .include(cic, name);
+
+                    default:
+                        throw new ConfigException.BugOrBroken("should not be reached");
+                }
             }
+        }
 
+        // prefix is null for an include at the root; includeOrigin is the
+        // origin errors about the include statement are reported at
+        private static void mergeInclude(Map<String, AbstractConfigValue> values, AbstractConfigObject obj,
+                boolean insideArray, Path prefix, SimpleConfigOrigin includeOrigin) {
             // we really should make this work, but for now throwing an
             // exception is better than producing an incorrect result.
             // See https://github.com/lightbend/config/issues/160
-            if (arrayCount > 0 && obj.resolveStatus() != ResolveStatus.RESOLVED)
-                throw parseError("Due to current limitations of the config parser, when an include statement is nested inside a list value, "
+            if (insideArray && obj.resolveStatus() != ResolveStatus.RESOLVED)
+                throw new ConfigException.Parse(includeOrigin, "Due to current limitations of the config parser, when an include statement is nested inside a list value, "
                         + "${} substitutions inside the included file cannot be resolved correctly. Either move the include outside of the list value or "
                         + "remove the ${} statements from the included file.");
 
-            if (!pathStack.isEmpty()) {
-                Path prefix = fullCurrentPath();
+            if (prefix != null)
                 obj = obj.relativized(prefix);
-            }
 
             for (String key : obj.keySet()) {
                 AbstractConfigValue v = obj.get(key);
@@ -214,36 +909,43 @@ final class ConfigParser {
             }
         }
 
-        private AbstractConfigObject parseObject(ConfigNodeObject n) {
-            Map<String, AbstractConfigValue> values = new HashMap<String, AbstractConfigValue>();
-            SimpleConfigOrigin objectOrigin = lineOrigin();
-            boolean lastWasNewline = false;
+        private AbstractConfigObject parseObject(boolean hadOpenCurly) {
+            return parseObject(hadOpenCurly, new ObjectScope(lineOrigin()));
+        }
+
+        private AbstractConfigObject parseObject(boolean hadOpenCurly, ObjectScope scope) {
+            // invoked just after the OPEN_CURLY (or START, if !hadOpenCurly)
+            boolean afterComma = false;
+            boolean lastInsideEquals = false;
 
-            ArrayList<AbstractConfigNode> nodes = new ArrayList<AbstractConfigNode>(n.children());
-            List<String> comments = new ArrayList<String>();
-            for (int i = 0; i < nodes.size(); i++) {
-                AbstractConfigNode node = nodes.get(i);
-                if (node instanceof ConfigNodeComment) {
-                    lastWasNewline = false;
-                    comments.add(((ConfigNodeComment) node).commentText());
-                } else if (node instanceof ConfigNodeSingleToken && Tokens.isNewline(((ConfigNodeSingleToken) node).token())) {
-                    lineNumber++;
-                    if (lastWasNewline) {
-                        // Drop all comments if there was a blank line and start a new comment block
-                        comments.clear();
+            while (true) {
+                Token t = nextTokenCollectingWhitespace(scope);
+                if (t == Tokens.CLOSE_CURLY) {
+                    if (flavor == ConfigSyntax.JSON && afterComma) {
+                        throw syntaxError(addQuoteSuggestion(t.toString(),
+                                "expecting a field name after a comma, got a close brace } instead"));
+                    } else if (!hadOpenCurly) {
+                        throw syntaxError(addQuoteSuggestion(t.toString(),
+                                "unbalanced close brace '}' with no open brace"));
                     }
-                    lastWasNewline = true;
-                } else if (flavor != ConfigSyntax.JSON && node instanceof ConfigNodeInclude) {
-                    parseInclude(values, (ConfigNodeInclude)node);
-                    lastWasNewline = false;
-                } else if (node instanceof ConfigNodeField) {
-                    lastWasNewline = false;
-                    Path path = ((ConfigNodeField) node).path().value();
-                    comments.addAll(((ConfigNodeField) node).comments());
+                    break;
+                } else if (t == Tokens.END && !hadOpenCurly) {
+                    putBack(t);
+                    break;
+                } else if (flavor != ConfigSyntax.JSON && ConfigDocumentParser.isIncludeKeyword(t)) {
+                    parseInclude(scope);
+                    afterComma = false;
+                } else {
+                    scope.startField();
+                    FieldScope fieldScope = new FieldScope();
+                    Path path = parseKey(t);
+                    Token afterKey = nextTokenCollectingWhitespace(fieldScope);
+                    boolean insideEquals = false;
+                    boolean plusEquals = afterKey == Tokens.PLUS_EQUALS;
 
                     // path must be on-stack while we parse the value
                     pathStack.push(path);
-                    if (((ConfigNodeField) node).separator() == Tokens.PLUS_EQUALS) {
+                    if (plusEquals) {
                         // we really should make this work, but for now throwing
                         // an exception is better than producing an incorrect
                         // result. See
@@ -259,15 +961,36 @@ final class ConfigParser {
                         arrayCount += 1;
                     }
 
-                    AbstractConfigNodeValue valueNode;
                     AbstractConfigValue newValue;
+                    if (flavor == ConfigSyntax.CONF && afterKey == Tokens.OPEN_CURLY) {
+                        // can omit the ':' or '=' before an object value
+                        newValue = parseValue(afterKey);
+                    } else {
+                        if (!isKeyValueSeparatorToken(afterKey)) {
+                            throw syntaxError(addQuoteSuggestion(afterKey.toString(),
+                                    "Key '" + renderKey() + "' may not be followed by token: "
+                                            + afterKey));
+                        }
+
+                        if (afterKey == Tokens.EQUALS) {
+                            insideEquals = true;
+                            equalsCount += 1;
+                        }
 
-                    valueNode = ((ConfigNodeField) node).value();
+                        newValue = consolidateValues(fieldScope);
+                        if (newValue == null) {
+                            newValue = parseValue(nextTokenCollectingWhitespace(fieldScope));
+                        }
+                    }
+
+                    if (insideEquals) {
+                        equalsCount -= 1;
+                    }
+                    lastInsideEquals = insideEquals;
 
-                    // comments from the key token go to the value token
-                    newValue = parseValue(valueNode, comments);
+                    newValue = scope.fieldValue(fieldScope, newValue);
 
-                    if (((ConfigNodeField) node).separator() == Tokens.PLUS_EQUALS) {
+                    if (plusEquals) {
                         arrayCount -= 1;
 
                         List<AbstractConfigValue> concat = new ArrayList<AbstractConfigValue>(2);
@@ -280,143 +1003,438 @@ final class ConfigParser {
                         newValue = ConfigConcatenation.concatenate(concat);
                     }
 
-                    // Grab any trailing comments on the same line
-                    if (i < nodes.size() - 1) {
-                        i++;
-                        while (i < nodes.size()) {
-                            if (nodes.get(i) instanceof ConfigNodeComment) {
-                                ConfigNodeComment comment = (ConfigNodeComment) nodes.get(i);
-                                newValue = newValue.withOrigin(newValue.origin().appendComments(
-                                            Collections.singletonList(comment.commentText())));
-                                break;
-                            } else if (nodes.get(i) instanceof ConfigNodeSingleToken) {
-                                ConfigNodeSingleToken curr = (ConfigNodeSingleToken) nodes.get(i);
-                                if (curr.token() == Tokens.COMMA || Tokens.isIgnoredWhitespace(curr.token())) {
-                                    // keep searching, as there could still be a comment
-                                } else {
-                                    i--;
-                                    break;
-                                }
-                            } else {
-                                i--;
-                                break;
-                            }
-                            i++;
-                        }
+                    pathStack.pop();
+
+                    // In strict JSON, dups should be an error; while in
+                    // our custom config language, they should be merged
+                    // if the value is an object (or substitution that
+                    // could become an object).
+                    if (flavor == ConfigSyntax.JSON && scope.hasKey(path.first())) {
+                        throw syntaxError("JSON does not allow duplicate fields: '"
+                                + path.first()
+                                + "' was already seen");
                     }
 
-                    pathStack.pop();
+                    afterComma = false;
+                    scope.field(path, newValue);
+                }
 
-                    String key = path.first();
-                    Path remaining = path.remainder();
-
-                    if (remaining == null) {
-                        AbstractConfigValue existing = values.get(key);
-                        if (existing != null) {
-                            // In strict JSON, dups should be an error; while in
-                            // our custom config language, they should be merged
-                            // if the value is an object (or substitution that
-                            // could become an object).
-
-                            if (flavor == ConfigSyntax.JSON) {
-                                throw parseError("JSON does not allow duplicate fields: '"
-                                    + key
-                                    + "' was already seen at "
-                                    + existing.origin().description());
-                            } else {
-                                newValue = newValue.withFallback(existing);
-                            }
+                if (checkElementSeparator(scope)) {
+                    // continue looping
+                    afterComma = true;
+                } else {
+                    t = nextTokenCollectingWhitespace(scope);
+                    if (t == Tokens.CLOSE_CURLY) {
+                        if (!hadOpenCurly) {
+                            throw syntaxError(ConfigDocumentParser.addQuoteSuggestion(null, lastInsideEquals,
+                                    t.toString(), "unbalanced close brace '}' with no open brace"));
                         }
-                        values.put(key, newValue);
+                        break;
+                    } else if (hadOpenCurly) {
+                        throw syntaxError(ConfigDocumentParser.addQuoteSuggestion(null, lastInsideEquals,
+                                t.toString(), "Expecting close brace } or a comma, got " + t));
                     } else {
-                        if (flavor == ConfigSyntax.JSON) {
-                            throw new ConfigException.BugOrBroken(
-                                    "somehow got multi-element path in JSON mode");
-                        }
-
-                        AbstractConfigObject obj = createValueUnderPath(
-                                remaining, newValue);
-                        AbstractConfigValue existing = values.get(key);
-                        if (existing != null) {
-                            obj = obj.withFallback(existing);
+                        if (t == Tokens.END) {
+                            putBack(t);
+                            break;
+                        } else {
+                            throw syntaxError(ConfigDocumentParser.addQuoteSuggestion(null, lastInsideEquals,
+                                    t.toString(), "Expecting end of input or a comma, got " + t));
                         }
-                        values.put(key, obj);
                     }
                 }
             }
 
-            return new SimpleConfigObject(objectOrigin, values);
+            return scope.end();
+        }
+
+        private void putField(Map<String, AbstractConfigValue> values, Path path,
+                AbstractConfigValue newValue) {
+            String key = path.first();
+            Path remaining = path.remainder();
+
+            if (remaining == null) {
+                AbstractConfigValue existing = values.get(key);
+                if (existing != null) {
+                    newValue = newValue.withFallback(existing);
+                }
+                values.put(key, newValue);
+            } else {
+                if (flavor == ConfigSyntax.JSON) {
+                    throw new ConfigException.BugOrBroken(
+                            "somehow got multi-element path in JSON mode");
+                }
+
+                AbstractConfigObject obj = createValueUnderPath(
+                        remaining, newValue);
+                AbstractConfigValue existing = values.get(key);
+                if (existing != null) {
+                    obj = obj.withFallback(existing);
+                }
+                values.put(key, obj);
+            }
         }
 
-        private SimpleConfigList parseArray(ConfigNodeArray n) {
+        private SimpleConfigList parseArray() {
+            // invoked just after the OPEN_SQUARE
             arrayCount += 1;
 
-            SimpleConfigOrigin arrayOrigin = lineOrigin();
-            List<AbstractConfigValue> values = new ArrayList<AbstractConfigValue>();
-
-            boolean lastWasNewLine = false;
-            List<String> comments = new ArrayList<String>();
-
-            AbstractConfigValue v = null;
-
-            for (AbstractConfigNode node : n.children()) {
-                if (node instanceof ConfigNodeComment) {
-                    comments.add(((ConfigNodeComment) node).commentText());
-                    lastWasNewLine = false;
-                } else if (node instanceof ConfigNodeSingleToken && Tokens.isNewline(((ConfigNodeSingleToken) node).token())) {
-                    lineNumber++;
-                    if (lastWasNewLine && v == null) {
-                        comments.clear();
-                    } else if (v != null) {
-                        values.add(v.withOrigin(v.origin().appendComments(new ArrayList<String>(comments))));
-                        comments.clear();
-                        v = null;
+            ArrayScope scope = new ArrayScope(lineOrigin());
+            Token t;
+
+            AbstractConfigValue nextValue = consolidateValues(scope);
+            if (nextValue != null) {
+                scope.value(nextValue);
+            } else {
+                t = nextTokenCollectingWhitespace(scope);
+
+                // special-case the first element
+                if (t == Tokens.CLOSE_SQUARE) {
+                    arrayCount -= 1;
+                    return scope.end();
+                } else if (isValueStart(t)) {
+                    scope.value(parseValue(t));
+                } else {
+                    throw syntaxError("List should have ] or a first element after the open [, instead had token: "
+                            + t
+                            + " (if you want "
+                            + t
+                            + " to be part of a string value, then double-quote it)");
+                }
+            }
+
+            // now remaining elements
+            while (true) {
+                // just after a value
+                if (checkElementSeparator(scope)) {
+                    // comma (or newline equivalent) consumed
+                } else {
+                    t = nextTokenCollectingWhitespace(scope);
+                    if (t == Tokens.CLOSE_SQUARE) {
+                        arrayCount -= 1;
+                        return scope.end();
+                    } else {
+                        throw syntaxError("List should have ended with ] or had a comma, instead had token: "
+                                + t
+                                + " (if you want "
+                                + t
+                                + " to be part of a string value, then double-quote it)");
                     }
-                    lastWasNewLine = true;
-                } else if (node instanceof AbstractConfigNodeValue) {
-                    lastWasNewLine = false;
-                    if (v != null) {
-                        values.add(v.withOrigin(v.origin().appendComments(new ArrayList<String>(comments))));
-                        comments.clear();
+                }
+
+                // now just after a comma
+                nextValue = consolidateValues(scope);
+                if (nextValue != null) {
+                    scope.value(nextValue);
+                } else {
+                    t = nextTokenCollectingWhitespace(scope);
+                    if (isValueStart(t)) {
+                        scope.value(parseValue(t));
+                    } else if (flavor != ConfigSyntax.JSON && t == Tokens.CLOSE_SQUARE) {
+                        // we allow one trailing comma
+                        putBack(t);
+                    } else {
+                        throw syntaxError("List should have had new element after a comma, instead had token: "
+                                + t
+                                + " (if you want the comma or "
+                                + t
+                                + " to be part of a string value, then double-quote it)");
                     }
-                    v = parseValue((AbstractConfigNodeValue)node, comments);
                 }
             }
-            // There shouldn't be any comments at this point, but add them just in case
-            if (v != null) {
-                values.add(v.withOrigin(v.origin().appendComments(new ArrayList<String>(comments))));
+        }
+
+        // parseObject(true) for the value of a top-level field, which keeps
+        // the tokens for a LazyConfigObject if LazyScan accepts them
+        private AbstractConfigObject parseLazyObject() {
+            SimpleConfigOrigin origin = lineOrigin();
+            LazyScan scan = new LazyScan();
+            if (scan.object()) {
+                RecordedObject recorded = new RecordedObject(flavor, baseOrigin, lineNumber,
+                        tokenLineNumber, stringPool, scan.recordedTokens());
+                lineNumber += scan.newlines;
+                tokenLineNumber = scan.tokenLine;
+                return new LazyConfigObject(origin, recorded);
+            } else {
+                // read the same tokens again with the full parser
+                for (int i = scan.tokens.size() - 1; i >= 0; --i)
+                    putBack(scan.tokens.get(i));
+                return parseObject(true);
             }
-            arrayCount -= 1;
-            return new SimpleConfigList(arrayOrigin, values);
         }
 
-        AbstractConfigValue parse() {
-            AbstractConfigValue result = null;
-            ArrayList<String> comments = new ArrayList<String>();
-            boolean lastWasNewLine = false;
-            for (AbstractConfigNode node : document.children()) {
-                if (node instanceof ConfigNodeComment) {
-                    comments.add(((ConfigNodeComment) node).commentText());
-                    lastWasNewLine = false;
-                } else if (node instanceof ConfigNodeSingleToken) {
-                    Token t = ((ConfigNodeSingleToken) node).token();
+        // Reads the tokens of an object without building anything. Each
+        // method follows the parse method of the same shape above, counting
+        // the newlines it would count for origins and tracking the line it
+        // would use for errors. Methods give up, returning false or -1, on a
+        // syntax error or on anything that needs the full parser: a
+        // substitution, +=, an include, or a concatenation of objects or
+        // arrays, which can fail when merged.
+        private final class LazyScan {
+            // every token read, in order, including any still pushed back
+            final private List<Token> tokens = new ArrayList<Token>();
+            final private ArrayDeque<Token> pushedBack = new ArrayDeque<Token>();
+            final private List<Token> keyTokens = new ArrayList<Token>();
+            private int newlines = 0;
+            private int tokenLine = tokenLineNumber;
+
+            // ignored whitespace makes no difference to the parser, and
+            // there is a lot of it, so it isn't kept
+            Token[] recordedTokens() {
+                List<Token> kept = new ArrayList<Token>(tokens.size() + 1);
+                for (Token t : tokens) {
+                    if (!Tokens.isIgnoredWhitespace(t))
+                        kept.add(t);
+                }
+                kept.add(Tokens.END);
+                return kept.toArray(new Token[kept.size()]);
+            }
+
+            // null to give up
+            private Token next() {
+                Token t;
+                if (pushedBack.isEmpty()) {
+                    t = popToken();
+                    tokens.add(t);
+                } else {
+                    t = pushedBack.pop();
+                }
+                if (t == Tokens.END || t == Tokens.PLUS_EQUALS || Tokens.isSubstitution(t))
+                    return null;
+                else if (flavor == ConfigSyntax.JSON && Tokens.isUnquotedText(t)
+                        && !ConfigDocumentParser.isUnquotedWhitespace(t))
+                    return null;
+                else
+                    return t;
+            }
+
+            private Token nextCollectingWhitespace(boolean countNewlines) {
+                while (true) {
+                    Token t = next();
+                    if (t == null) {
+                        return null;
+                    } else if (Tokens.isNewline(t)) {
+                        if (countNewlines)
+                            newlines += 1;
+                        tokenLine = t.lineNumber() + 1;
+                    } else if (!Tokens.isIgnoredWhitespace(t) && !ConfigDocumentParser.isUnquotedWhitespace(t)
+                            && !Tokens.isComment(t)) {
+                        if (t.lineNumber() >= 0)
+                            tokenLine = t.lineNumber();
+                        return t;
+                    }
+                }
+            }
+
+            // 1 if a comma or newline was skipped, 0 if not, -1 to give up
+            private int elementSeparator() {
+                if (flavor == ConfigSyntax.JSON) {
+                    Token t = nextCollectingWhitespace(true);
+                    if (t == null)
+                        return -1;
+                    if (t == Tokens.COMMA)
+                        return 1;
+                    pushedBack.push(t);
+                    return 0;
+                }
+                boolean sawNewline = false;
+                Token t = next();
+                while (t != null) {
                     if (Tokens.isNewline(t)) {
-                        lineNumber++;
-                        if (lastWasNewLine && result == null) {
-                            comments.clear();
-                        } else if (result != null) {
-                            result = result.withOrigin(result.origin().appendComments(new ArrayList<String>(comments)));
-                            comments.clear();
-                            break;
-                        }
-                        lastWasNewLine = true;
+                        sawNewline = true;
+                        tokenLine += 1;
+                        newlines += 1;
+                    } else if (t == Tokens.COMMA) {
+                        return 1;
+                    } else if (!Tokens.isIgnoredWhitespace(t) && !ConfigDocumentParser.isUnquotedWhitespace(t)
+                            && !Tokens.isComment(t)) {
+                        pushedBack.push(t);
+                        return sawNewline ? 1 : 0;
                     }
-                } else if (node instanceof ConfigNodeComplexValue) {
-                    result = parseValue((ConfigNodeComplexValue)node, comments);
-                    lastWasNewLine = false;
+                    t = next();
                 }
+                return -1;
+            }
+
+            // 1 if a value was read, 0 if there was none, -1 to give up
+            private int concatenation(boolean countNewlines) {
+                if (flavor == ConfigSyntax.JSON)
+                    return 0;
+                int count = 0;
+                boolean hasObjectOrArray = false;
+                Token whitespace = null;
+                Token t = nextCollectingWhitespace(countNewlines);
+                while (t != null) {
+                    if (Tokens.isIgnoredWhitespace(t)) {
+                        whitespace = t;
+                        t = next();
+                        continue;
+                    } else if (isValueStart(t)) {
+                        whitespace = null;
+                        count += 1;
+                        if (t == Tokens.OPEN_CURLY || t == Tokens.OPEN_SQUARE)
+                            hasObjectOrArray = true;
+                        if (!value(t))
+                            return -1;
+                    } else {
+                        break;
+                    }
+                    t = next();
+                }
+                if (t == null || (count > 1 && hasObjectOrArray))
+                    return -1;
+                pushedBack.push(t);
+                if (whitespace != null && count > 0)
+                    pushedBack.push(whitespace);
+                return count > 0 ? 1 : 0;
+            }
+
+            private boolean value(Token t) {
+                if (t == Tokens.OPEN_CURLY)
+                    return object();
+                else if (t == Tokens.OPEN_SQUARE)
+                    return array();
+                else
+                    return t != null && (Tokens.isValue(t) || Tokens.isUnquotedText(t));
+            }
+
+            private boolean key(Token t, Set<String> jsonKeys) {
+                if (flavor == ConfigSyntax.JSON) {
+                    if (!Tokens.isValueWithType(t, ConfigValueType.STRING))
+                        return false;
+                    keyTokens.clear();
+                    keyTokens.add(t);
+                } else {
+                    if (ConfigDocumentParser.isIncludeKeyword(t))
+                        return false;
+                    keyTokens.clear();
+                    while (t != null && (Tokens.isValue(t) || Tokens.isUnquotedText(t))) {
+                        keyTokens.add(t);
+                        t = next();
+                    }
+                    if (t == null || keyTokens.isEmpty())
+                        return false;
+                    pushedBack.push(t);
+                }
+                Path path;
+                try {
+                    path = PathParser.parsePathExpression(keyTokens.iterator(),
+                            baseOrigin.withLineNumber(tokenLine));
+                } catch (ConfigException e) {
+                    return false;
+                }
+                return jsonKeys == null || jsonKeys.add(path.first());
+            }
+
+            boolean object() {
+                Set<String> jsonKeys = flavor == ConfigSyntax.JSON ? new HashSet<String>() : null;
+                boolean afterComma = false;
+                while (true) {
+                    Token t = nextCollectingWhitespace(true);
+                    if (t == Tokens.CLOSE_CURLY)
+                        return !(flavor == ConfigSyntax.JSON && afterComma);
+                    if (t == null || !key(t, jsonKeys))
+                        return false;
+
+                    Token afterKey = nextCollectingWhitespace(false);
+                    if (flavor == ConfigSyntax.CONF && afterKey == Tokens.OPEN_CURLY) {
+                        if (!object())
+                            return false;
+                    } else if (afterKey == Tokens.COLON
+                            || (flavor == ConfigSyntax.CONF && afterKey == Tokens.EQUALS)) {
+                        int found = concatenation(false);
+                        if (found < 0 || (found == 0 && !value(nextCollectingWhitespace(false))))
+                            return false;
+                    } else {
+                        return false;
+                    }
+
+                    int separator = elementSeparator();
+                    if (separator < 0)
+                        return false;
+                    else if (separator == 0)
+                        return nextCollectingWhitespace(true) == Tokens.CLOSE_CURLY;
+                    afterComma = true;
+                }
+            }
+
+            private boolean array() {
+                int found = concatenation(true);
+                if (found < 0)
+                    return false;
+                if (found == 0) {
+                    Token t = nextCollectingWhitespace(true);
+                    if (t == Tokens.CLOSE_SQUARE)
+                        return true;
+                    else if (t == null || !isValueStart(t) || !value(t))
+                        return false;
+                }
+                while (true) {
+                    int separator = elementSeparator();
+                    if (separator < 0)
+                        return false;
+                    else if (separator == 0)
+                        return nextCollectingWhitespace(true) == Tokens.CLOSE_SQUARE;
+
+                    found = concatenation(true);
+                    if (found < 0)
+                        return false;
+                    if (found == 0) {
+                        Token t = nextCollectingWhitespace(true);
+                        if (flavor != ConfigSyntax.JSON && t == Tokens.CLOSE_SQUARE)
+                            pushedBack.push(t);
+                        else if (t == null || !isValueStart(t) || !value(t))
+                            return false;
+                    }
+                }
+            }
+        }
+
+        AbstractConfigValue parse() {
+            Token t = nextToken();
+            if (t == Tokens.START) {
+                // OK
+            } else {
+                throw new ConfigException.BugOrBroken(
+                        "token stream did not begin with START, had " + t);
+            }
+
+            // comments before the first token belong to the root object if
+            // it has no braces, and to the document otherwise
+            DeferredScope leading = new DeferredScope();
+            RootScope root = new RootScope();
+            t = nextTokenCollectingWhitespace(leading);
+            if (t == Tokens.OPEN_CURLY || t == Tokens.OPEN_SQUARE) {
+                leading.replay(root);
+                root.value(parseValue(t));
+            } else {
+                if (flavor == ConfigSyntax.JSON) {
+                    if (t == Tokens.END) {
+                        throw syntaxError("Empty document");
+                    } else {
+                        throw syntaxError("Document must have an object or array at root, unexpected token: "
+                                + t);
+                    }
+                } else {
+                    // the root object can omit the surrounding braces.
+                    // this token should be the first field's key, or part
+                    // of it, so put it back.
+                    putBack(t);
+                    ObjectScope scope = new ObjectScope(lineOrigin());
+                    leading.replay(scope);
+                    root.value(parseObject(false, scope));
+                }
+            }
+
+            t = nextTokenCollectingWhitespace(root);
+            if (t != Tokens.END) {
+                throw syntaxError("Document has trailing tokens after first object or array: "
+                        + t);
+            } else if (includeError != null) {
+                throw includeError;
+            } else {
+                return root.result;
             }
-            return result;
         }
     }
 }
@@ -25,7 +25,7 @@ final class ConfigReference extends AbstractConfigValue implements Unmergeable {
         this(origin, expr, 0);
     }
 
-    private ConfigReference(ConfigOrigin origin, SubstitutionExpression expr, int prefixLength) {
+    ConfigReference(ConfigOrigin origin, SubstitutionExpression expr, int prefixLength) {
         super(origin);
         this.expr = expr;
         this.prefixLength = prefixLength;
@@ -159,4 +159,8 @@ final class ConfigReference extends AbstractConfigValue implements Unmergeable {
     SubstitutionExpression expression() {
         return expr;
     }
+
+    int prefixLength() {
+        return prefixLength;
+    }
 }
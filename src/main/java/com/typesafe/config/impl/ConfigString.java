@@ -16,11 +16,25 @@ abstract class ConfigString extends AbstractConfigValue implements Serializable
 
     final protected String value;
 
+    // the last conversion a getter made of this value, see Conversion
+    private transient volatile Conversion conversion;
+
     protected ConfigString(ConfigOrigin origin, String value) {
         super(origin);
         this.value = value;
     }
 
+    @Override
+    Object conversion(Class<?> type) {
+        Conversion c = conversion;
+        return c != null && c.type == type ? c.converted : null;
+    }
+
+    @Override
+    void rememberConversion(Class<?> type, Object converted) {
+        conversion = new Conversion(type, converted);
+    }
+
 
     final static class Quoted extends ConfigString {
         Quoted(ConfigOrigin origin, String value) {
@@ -0,0 +1,446 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigOrigin;
+import com.typesafe.config.ConfigParseOptions;
+import com.typesafe.config.ConfigStringPool;
+
+/**
+ * Parses plain JSON straight from the characters, without the tokenizer. It
+ * builds exactly what {@link Tokenizer} and {@link ConfigParser} build for the
+ * same input, origins included: like ConfigParser, it leaves the newlines
+ * between a key and its value out of the line numbers of objects and arrays.
+ * <p>
+ * Anything outside RFC 8259 JSON makes it give up, which includes every
+ * syntax error; the caller then reads the input again with ConfigParser,
+ * which accepts a little more in JSON mode and reports the errors.
+ */
+final class JsonParser {
+    private static final int INPUT_BLOCK_SIZE = 4096;
+
+    // thrown to give up, it carries no information
+    private static final class NotPlainJson extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        NotPlainJson() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final NotPlainJson notPlainJson = new NotPlainJson();
+
+    final private SimpleConfigOrigin baseOrigin;
+    final private Reader input;
+    // chars read from input but not yet consumed are
+    // inputBuffer[inputPosition, inputLimit)
+    final private char[] inputBuffer;
+    private int inputPosition;
+    private int inputLimit;
+    private boolean inputEnded;
+    // the line the tokenizer would be on, used for simple values
+    private int lineNumber;
+    private SimpleConfigOrigin lineOrigin;
+    // lineOrigin with the empty comment list ConfigParser gives list elements
+    private SimpleConfigOrigin lineOriginInList;
+    // the line ConfigParser would be on, used for objects and arrays
+    private int parserLineNumber;
+    final private StringBuilder sb;
+    // null if strings are not pooled
+    final private ConfigStringPool stringPool;
+    // whether numbers keep their text when it differs from the text of
+    // their value
+    final private boolean keepNumberText;
+
+    private JsonParser(ConfigOrigin origin, Reader input, ConfigStringPool stringPool,
+            boolean keepNumberText) {
+        this.baseOrigin = (SimpleConfigOrigin) origin;
+        this.input = input;
+        this.inputBuffer = new char[INPUT_BLOCK_SIZE];
+        this.inputPosition = 0;
+        this.inputLimit = 0;
+        this.inputEnded = false;
+        this.lineNumber = 1;
+        this.lineOrigin = baseOrigin.withLineNumber(1);
+        this.lineOriginInList = null;
+        this.parserLineNumber = 1;
+        this.sb = new StringBuilder();
+        this.stringPool = stringPool;
+        this.keepNumberText = keepNumberText;
+    }
+
+    /**
+     * Returns the root object or array, or null if the input is not plain
+     * JSON; the input has been read either way. Strings are pooled and
+     * numbers keep their text as the options say, like the tokenizer does.
+     */
+    static AbstractConfigValue parse(Reader input, ConfigOrigin origin, ConfigParseOptions options) {
+        try {
+            return new JsonParser(origin, input, options.getStringPool(), options.getKeepNumberText())
+                    .parseRoot();
+        } catch (NotPlainJson e) {
+            return null;
+        }
+    }
+
+    private int peek() {
+        if (inputPosition < inputLimit)
+            return inputBuffer[inputPosition];
+        else if (fillInputBuffer())
+            return inputBuffer[inputPosition];
+        else
+            return -1;
+    }
+
+    private int next() {
+        int c = peek();
+        if (c >= 0)
+            inputPosition += 1;
+        return c;
+    }
+
+    // returns false at end of input
+    private boolean fillInputBuffer() {
+        if (inputEnded)
+            return false;
+        try {
+            int n;
+            do {
+                n = input.read(inputBuffer, 0, inputBuffer.length);
+            } while (n == 0);
+            if (n < 0) {
+                inputEnded = true;
+                return false;
+            }
+            inputPosition = 0;
+            inputLimit = n;
+            return true;
+        } catch (IOException e) {
+            throw new ConfigException.IO(baseOrigin, "read error: " + e.getMessage(), e);
+        }
+    }
+
+    // skips whitespace and returns the next char without consuming it;
+    // ConfigParser counts the newlines inside objects and arrays, but not
+    // the ones around the colon after a key
+    private int skipWhitespace(boolean countParserLines) {
+        while (true) {
+            int c = peek();
+            if (c == '\n') {
+                inputPosition += 1;
+                lineNumber += 1;
+                lineOrigin = baseOrigin.withLineNumber(lineNumber);
+                lineOriginInList = null;
+                if (countParserLines)
+                    parserLineNumber += 1;
+            } else if (c == ' ' || c == '\t' || c == '\r') {
+                inputPosition += 1;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    private SimpleConfigOrigin valueOrigin(boolean inList) {
+        if (!inList)
+            return lineOrigin;
+        if (lineOriginInList == null)
+            lineOriginInList = lineOrigin.appendComments(Collections.<String> emptyList());
+        return lineOriginInList;
+    }
+
+    private SimpleConfigOrigin containerOrigin(boolean inList) {
+        SimpleConfigOrigin origin = baseOrigin.withLineNumber(parserLineNumber);
+        if (inList)
+            return origin.appendComments(Collections.<String> emptyList());
+        else
+            return origin;
+    }
+
+    private AbstractConfigValue parseRoot() throws NotPlainJson {
+        AbstractConfigValue root;
+        int c = skipWhitespace(true);
+        if (c == '{') {
+            inputPosition += 1;
+            root = parseObject(false);
+        } else if (c == '[') {
+            inputPosition += 1;
+            root = parseArray(false);
+        } else {
+            throw notPlainJson;
+        }
+
+        boolean sawNewline = false;
+        while ((c = next()) != -1) {
+            if (c == '\n')
+                sawNewline = true;
+            else if (c != ' ' && c != '\t' && c != '\r')
+                throw notPlainJson;
+        }
+        // ConfigParser gives the root the comments on the line after it
+        if (sawNewline)
+            root = root.withOrigin(root.origin().appendComments(Collections.<String> emptyList()));
+        return root;
+    }
+
+    private AbstractConfigValue parseValue(boolean inList) throws NotPlainJson {
+        int c = next();
+        switch (c) {
+        case '{':
+            return parseObject(inList);
+        case '[':
+            return parseArray(inList);
+        case '"':
+            return new ConfigString.Quoted(valueOrigin(inList), parseString());
+        case 't':
+            expectWord("rue");
+            return new ConfigBoolean(valueOrigin(inList), true);
+        case 'f':
+            expectWord("alse");
+            return new ConfigBoolean(valueOrigin(inList), false);
+        case 'n':
+            expectWord("ull");
+            return new ConfigNull(valueOrigin(inList));
+        default:
+            if (c == '-' || isDigit(c))
+                return parseNumber(c, inList);
+            else
+                throw notPlainJson;
+        }
+    }
+
+    private AbstractConfigObject parseObject(boolean inList) throws NotPlainJson {
+        // invoked just after the OPEN_CURLY
+        SimpleConfigOrigin origin = containerOrigin(inList);
+        Map<String, AbstractConfigValue> values = new HashMap<String, AbstractConfigValue>();
+        int c = skipWhitespace(true);
+        if (c == '}') {
+            inputPosition += 1;
+            return new SimpleConfigObject(origin, values);
+        }
+        while (true) {
+            if (c != '"')
+                throw notPlainJson;
+            inputPosition += 1;
+            String key = parseString();
+            if (skipWhitespace(false) != ':')
+                throw notPlainJson;
+            inputPosition += 1;
+            skipWhitespace(false);
+            // duplicate fields are an error in JSON
+            if (values.put(key, parseValue(false)) != null)
+                throw notPlainJson;
+
+            c = nextAfterValue();
+            if (c == '}')
+                return new SimpleConfigObject(origin, values);
+            else if (c != ',')
+                throw notPlainJson;
+            c = skipWhitespace(true);
+        }
+    }
+
+    private SimpleConfigList parseArray(boolean inList) throws NotPlainJson {
+        // invoked just after the OPEN_SQUARE
+        SimpleConfigOrigin origin = containerOrigin(inList);
+        List<AbstractConfigValue> values = new ArrayList<AbstractConfigValue>();
+        int c = skipWhitespace(true);
+        if (c == ']') {
+            inputPosition += 1;
+            return new SimpleConfigList(origin, values);
+        }
+        while (true) {
+            values.add(parseValue(true));
+
+            c = nextAfterValue();
+            if (c == ']')
+                return SimpleConfigList.packed(origin, values);
+            else if (c != ',')
+                throw notPlainJson;
+            skipWhitespace(true);
+        }
+    }
+
+    // consumes the char after a value, skipping whitespace, usually none
+    private int nextAfterValue() {
+        int c = next();
+        if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            inputPosition -= 1;
+            skipWhitespace(true);
+            c = next();
+        }
+        return c;
+    }
+
+    private void expectWord(String rest) throws NotPlainJson {
+        for (int i = 0; i < rest.length(); ++i) {
+            if (next() != rest.charAt(i))
+                throw notPlainJson;
+        }
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private void appendDigits() throws NotPlainJson {
+        if (!isDigit(peek()))
+            throw notPlainJson;
+        do {
+            sb.append((char) next());
+        } while (isDigit(peek()));
+    }
+
+    private AbstractConfigValue parseNumber(int first, boolean inList) throws NotPlainJson {
+        sb.setLength(0);
+        sb.append((char) first);
+        // the integer part is converted while we scan it, negated the way
+        // Long.parseLong() does so that Long.MIN_VALUE fits
+        boolean negative = first == '-';
+        int c = first;
+        if (negative) {
+            c = next();
+            if (!isDigit(c))
+                throw notPlainJson;
+            sb.append((char) c);
+        }
+        long value = -(c - '0');
+        boolean overflow = false;
+        if (c == '0') {
+            // no leading zeros
+            if (isDigit(peek()))
+                throw notPlainJson;
+        } else {
+            while (isDigit(peek())) {
+                int digit = next() - '0';
+                if (value < Long.MIN_VALUE / 10 || value * 10 < Long.MIN_VALUE + digit)
+                    overflow = true;
+                else
+                    value = value * 10 - digit;
+                sb.append((char) ('0' + digit));
+            }
+        }
+        boolean containedDecimalOrE = false;
+        if (peek() == '.') {
+            containedDecimalOrE = true;
+            sb.append((char) next());
+            appendDigits();
+        }
+        c = peek();
+        if (c == 'e' || c == 'E') {
+            containedDecimalOrE = true;
+            sb.append((char) next());
+            c = peek();
+            if (c == '+' || c == '-')
+                sb.append((char) next());
+            appendDigits();
+        }
+
+        // the same conversions as the tokenizer
+        if (containedDecimalOrE) {
+            String s = pooled(sb.toString());
+            return ConfigNumber.newNumber(valueOrigin(inList), Double.parseDouble(s), keepNumberText ? s : null);
+        } else if (overflow || (!negative && value == Long.MIN_VALUE)) {
+            // too large for a long, the tokenizer makes it unquoted text
+            throw notPlainJson;
+        } else if (negative && value == 0) {
+            // "-0" is the only integer that doesn't print as written
+            String s = pooled(sb.toString());
+            return ConfigNumber.newNumber(valueOrigin(inList), 0L, keepNumberText ? s : null);
+        } else {
+            return ConfigNumber.newNumber(valueOrigin(inList), negative ? value : -value, null);
+        }
+    }
+
+    private String parseString() throws NotPlainJson {
+        // the open quote has already been consumed
+        sb.setLength(0);
+        while (true) {
+            // copy runs of plain chars straight from the buffer
+            int start = inputPosition;
+            int end = start;
+            while (end < inputLimit) {
+                char ch = inputBuffer[end];
+                if (ch == '"' || ch == '\\' || ch < 0x20)
+                    break;
+                end += 1;
+            }
+            sb.append(inputBuffer, start, end - start);
+            inputPosition = end;
+
+            int c = next();
+            if (c == '"') {
+                break;
+            } else if (c == '\\') {
+                appendEscape();
+            } else if (c < 0x20) {
+                // end of input or a control char, which JSON requires to be
+                // escaped
+                throw notPlainJson;
+            } else {
+                sb.append((char) c);
+            }
+        }
+        // the tokenizer reads "" followed by a quote as a triple quote
+        if (sb.length() == 0 && peek() == '"')
+            throw notPlainJson;
+        return pooled(sb.toString());
+    }
+
+    private String pooled(String s) {
+        return stringPool == null ? s : stringPool.intern(s);
+    }
+
+    private void appendEscape() throws NotPlainJson {
+        int escaped = next();
+        switch (escaped) {
+        case '"':
+            sb.append('"');
+            break;
+        case '\\':
+            sb.append('\\');
+            break;
+        case '/':
+            sb.append('/');
+            break;
+        case 'b':
+            sb.append('\b');
+            break;
+        case 'f':
+            sb.append('\f');
+            break;
+        case 'n':
+            sb.append('\n');
+            break;
+        case 'r':
+            sb.append('\r');
+            break;
+        case 't':
+            sb.append('\t');
+            break;
+        case 'u': {
+            int value = 0;
+            for (int i = 0; i < 4; ++i) {
+                int digit = Character.digit(next(), 16);
+                if (digit < 0)
+                    throw notPlainJson;
+                value = value * 16 + digit;
+            }
+            sb.append((char) value);
+        }
+            break;
+        default:
+            throw notPlainJson;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config.impl;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import com.typesafe.config.ConfigMergeable;
+import com.typesafe.config.ConfigOrigin;
+import com.typesafe.config.ConfigRenderOptions;
+import com.typesafe.config.ConfigValue;
+
+/**
+ * An object the parser has checked but not built yet, see
+ * {@link com.typesafe.config.ConfigParseOptions#setLazyObjects(boolean)}. It
+ * is parsed the first time anything looks inside it, and then behaves
+ * exactly like the {@link SimpleConfigObject} it parses to. Lazy objects never contain
+ * substitutions, so they are always resolved and resolving leaves them
+ * alone; merging forces them through {@link #toFallbackValue()} and
+ * {@link #withFallback(ConfigMergeable)}.
+ */
+final class LazyConfigObject extends AbstractConfigObject implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // shared with copies that only differ in origin, so it's parsed once
+    final private ConfigParser.RecordedObject recorded;
+    private volatile AbstractConfigObject forced;
+
+    LazyConfigObject(ConfigOrigin origin, ConfigParser.RecordedObject recorded) {
+        super(origin);
+        this.recorded = recorded;
+    }
+
+    AbstractConfigObject force() {
+        AbstractConfigObject o = forced;
+        if (o == null) {
+            // the recorded object has the origin before any comments
+            o = recorded.parse().withOrigin(origin());
+            forced = o;
+        }
+        return o;
+    }
+
+    @Override
+    ResolveStatus resolveStatus() {
+        return ResolveStatus.RESOLVED;
+    }
+
+    @Override
+    protected boolean ignoresFallbacks() {
+        return false;
+    }
+
+    @Override
+    protected AbstractConfigValue withFallbacksIgnored() {
+        return force().withFallbacksIgnored();
+    }
+
+    @Override
+    public AbstractConfigObject toFallbackValue() {
+        return force();
+    }
+
+    @Override
+    public AbstractConfigObject withFallback(ConfigMergeable mergeable) {
+        return force().withFallback(mergeable);
+    }
+
+    @Override
+    protected AbstractConfigObject mergedWithObject(AbstractConfigObject fallback) {
+        return force().withFallback(fallback);
+    }
+
+    @Override
+    protected AbstractConfigObject newCopy(ResolveStatus status, ConfigOrigin origin) {
+        if (status == ResolveStatus.RESOLVED && forced == null)
+            return new LazyConfigObject(origin, recorded);
+        else
+            return force().newCopy(status, origin);
+    }
+
+    @Override
+    ResolveResult<? extends AbstractConfigObject> resolveSubstitutions(ResolveContext context,
+            ResolveSource source) {
+        return ResolveResult.make(context, this);
+    }
+
+    @Override
+    LazyConfigObject relativized(Path prefix) {
+        // there are no substitutions to make relative
+        return this;
+    }
+
+    @Override
+    public AbstractConfigObject withOnlyKey(String key) {
+        return force().withOnlyKey(key);
+    }
+
+    @Override
+    public AbstractConfigObject withoutKey(String key) {
+        return force().withoutKey(key);
+    }
+
+    @Override
+    public AbstractConfigObject withValue(String key, ConfigValue value) {
+        return force().withValue(key, value);
+    }
+
+    @Override
+    protected AbstractConfigObject withOnlyPathOrNull(Path path) {
+        return force().withOnlyPathOrNull(path);
+    }
+
+    @Override
+    AbstractConfigObject withOnlyPath(Path path) {
+        return force().withOnlyPath(path);
+    }
+
+    @Override
+    AbstractConfigObject withoutPath(Path path) {
+        return force().withoutPath(path);
+    }
+
+    @Override
+    AbstractConfigObject withValue(Path path, ConfigValue value) {
+        return force().withValue(path, value);
+    }
+
+    @Override
+    protected AbstractConfigValue attemptPeekWithPartialResolve(String key) {
+        return force().attemptPeekWithPartialResolve(key);
+    }
+
+    @Override
+    public AbstractConfigValue replaceChild(AbstractConfigValue child, AbstractConfigValue replacement) {
+        return force().replaceChild(child, replacement);
+    }
+
+    @Override
+    public boolean hasDescendant(AbstractConfigValue descendant) {
+        return force().hasDescendant(descendant);
+    }
+
+    @Override
+    public Map<String, Object> unwrapped() {
+        return force().unwrapped();
+    }
+
+    @Override
+    public AbstractConfigValue get(Object key) {
+        return force().get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return force().containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return force().containsValue(value);
+    }
+
+    @Override
+    public Set<Map.Entry<String, ConfigValue>> entrySet() {
+        return force().entrySet();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return force().isEmpty();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return force().keySet();
+    }
+
+    @Override
+    public int size() {
+        return force().size();
+    }
+
+    @Override
+    public Collection<ConfigValue> values() {
+        return force().values();
+    }
+
+    @Override
+    protected void render(StringBuilder sb, int indent, boolean atRoot, ConfigRenderOptions options) {
+        force().render(sb, indent, atRoot, options);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return force().equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return force().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return force().toString();
+    }
+
+    // serialization all goes through SerializedConfigValue
+    private Object writeReplace() throws ObjectStreamException {
+        return new SerializedConfigValue(force());
+    }
+}
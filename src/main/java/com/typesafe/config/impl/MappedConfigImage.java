@@ -0,0 +1,564 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigList;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigValue;
+
+/**
+ * A resolved config written out as one binary image that is memory mapped
+ * and read in place, see {@link com.typesafe.config.ConfigSnapshot}. Nothing
+ * is decoded when the image is mapped; an object is a sorted table of key
+ * and value offsets, so a lookup is a binary search that compares the key
+ * against the chars in the image and then decodes only the value it finds.
+ * Processes that map the same image share its pages through the OS page
+ * cache instead of each holding the whole tree on the heap.
+ * <p>
+ * All numbers are big-endian and all references are offsets from the start
+ * of the image. The layout is a header
+ *
+ * <pre>
+ *   int magic, int version, int length, int root offset, int origin table offset
+ * </pre>
+ *
+ * followed by records. A string is an int holding its length shifted left
+ * by one, with the low bit set if its chars take two bytes each rather than
+ * one, and then its chars. A value is a tag byte and an int index into the
+ * origin table, then
+ *
+ * <pre>
+ *   NULL, TRUE, FALSE   nothing
+ *   INT                 int value, int number text string or -1
+ *   LONG                long value, int number text string or -1
+ *   DOUBLE              double value, int number text string or -1
+ *   STRING              int string
+ *   LIST                int count, count x int value
+ *   OBJECT              byte ignores fallbacks, int count, count x (int key string, int value)
+ * </pre>
+ *
+ * with object entries sorted by key in {@link String#compareTo(String)}
+ * order. The origin table is an int count and that many offsets of origin
+ * records, each an int description string, int line number, int end line
+ * number, byte origin type, int url string or -1, int resource string or -1,
+ * int comment count or -1 for none, and that many comment strings. Origins
+ * are decoded the first time a value that has them is, and kept.
+ * <p>
+ * Every record is written after the records it refers to, and reading
+ * checks that each reference points back into the image before the record
+ * holding it. A truncated or damaged image therefore fails with an
+ * IOException when mapped, if the header or origin table is wrong, or with
+ * ConfigException.BugOrBroken when the damaged record is read. It can't
+ * read past the image, make us allocate more than its size, or loop.
+ */
+final class MappedConfigImage {
+    private static final int MAGIC = 0x48434d49; // "HCMI"
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 20;
+    private static final int NONE = -1;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_TRUE = 1;
+    private static final byte TAG_FALSE = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_DOUBLE = 5;
+    private static final byte TAG_STRING = 6;
+    private static final byte TAG_LIST = 7;
+    private static final byte TAG_OBJECT = 8;
+
+    // a value record is its tag and origin index, then its contents
+    private static final int VALUE_HEADER_LENGTH = 5;
+    // an object also has its ignores fallbacks flag and count
+    private static final int OBJECT_HEADER_LENGTH = VALUE_HEADER_LENGTH + 5;
+
+    final private ByteBuffer buffer;
+    final private int originTable;
+    // filled in as origins are decoded; racing threads decode the same
+    // immutable origin, so there is no need to lock
+    final private SimpleConfigOrigin[] origins;
+    // what the whole image is called in error messages
+    final private String description;
+
+    private MappedConfigImage(ByteBuffer buffer, String description) throws IOException {
+        this.buffer = buffer;
+        this.description = description;
+        int capacity = buffer.capacity();
+        if (capacity < HEADER_LENGTH || buffer.getInt(0) != MAGIC)
+            throw new IOException("not a config snapshot");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("unsupported config snapshot version " + buffer.getInt(4));
+        if (buffer.getInt(8) != capacity)
+            throw new IOException("config snapshot is " + capacity + " bytes but should be "
+                    + buffer.getInt(8) + " bytes, it may have been truncated");
+        // the origin table is last and fills the rest of the image
+        this.originTable = buffer.getInt(16);
+        if (originTable < HEADER_LENGTH || originTable > capacity - 4)
+            throw new IOException("config snapshot origin table offset " + originTable + " is out of range");
+        int originCount = buffer.getInt(originTable);
+        if (originCount < 0 || originTable + 4 + 4L * originCount != capacity)
+            throw new IOException("config snapshot has a broken origin table");
+        this.origins = new SimpleConfigOrigin[originCount];
+        int root = buffer.getInt(12);
+        if (root < HEADER_LENGTH || root > originTable - OBJECT_HEADER_LENGTH)
+            throw new IOException("config snapshot root offset " + root + " is out of range");
+        if (buffer.get(root) != TAG_OBJECT)
+            throw new IOException("config snapshot root is not an object");
+        try {
+            checkObject(root, originTable);
+            origin(buffer.getInt(root + 1));
+        } catch (ConfigException.BugOrBroken e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Maps the image in the file. The mapping stays valid after this
+     * returns, until the image is garbage collected.
+     */
+    static MappedConfigImage map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("config snapshot is too large to map: " + size + " bytes");
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedConfigImage(buffer, file.getPath());
+        } finally {
+            raf.close();
+        }
+    }
+
+    MappedConfigObject root() {
+        int offset = buffer.getInt(12);
+        return new MappedConfigObject(origin(buffer.getInt(offset + 1)), this, offset);
+    }
+
+    String description() {
+        return description;
+    }
+
+    // wraps mistakes in the image (which we only find as we read it) so
+    // they say where they come from
+    private ConfigException broken(int offset, String message, RuntimeException cause) {
+        return new ConfigException.BugOrBroken("config snapshot " + description + " is broken at offset "
+                + offset + ": " + message, cause);
+    }
+
+    private ConfigException broken(int offset, String message) {
+        return broken(offset, message, null);
+    }
+
+    private ConfigException broken(int offset, RuntimeException cause) {
+        return broken(offset, cause.getMessage(), cause);
+    }
+
+    // checks that the record of length bytes at offset lies after the header
+    // and before limit. A record only refers to records written before it,
+    // so limit is the start of the record that refers to it; that keeps a
+    // broken reference from pointing past the image, or back at itself.
+    private int checkRecord(int offset, long length, int limit) {
+        if (offset < HEADER_LENGTH || offset + length > limit)
+            throw broken(offset, "a record of " + length + " bytes is out of range, it should end by offset "
+                    + limit);
+        return offset;
+    }
+
+    // checks a count of entries of entryLength bytes that follow the
+    // headerLength bytes of the record at offset
+    private int checkCount(int offset, int headerLength, int count, int entryLength, int limit) {
+        if (count < 0)
+            throw broken(offset, "negative count " + count);
+        checkRecord(offset, headerLength + (long) entryLength * count, limit);
+        return count;
+    }
+
+    private void checkObject(int object, int limit) {
+        checkRecord(object, OBJECT_HEADER_LENGTH, limit);
+        checkCount(object, OBJECT_HEADER_LENGTH, buffer.getInt(object + VALUE_HEADER_LENGTH + 1), 8, limit);
+    }
+
+    // the length in chars of the string at offset, which must end by limit
+    private int stringLength(int offset, int limit) {
+        int header = buffer.getInt(checkRecord(offset, 4, limit));
+        int length = header >>> 1;
+        checkRecord(offset, 4 + ((header & 1) == 0 ? 1L : 2L) * length, limit);
+        return length;
+    }
+
+    private String string(int offset, int limit) {
+        int length = stringLength(offset, limit);
+        boolean wide = (buffer.getInt(offset) & 1) != 0;
+        char[] chars = new char[length];
+        int p = offset + 4;
+        if (!wide) {
+            for (int i = 0; i < length; ++i)
+                chars[i] = (char) (buffer.get(p + i) & 0xff);
+        } else {
+            for (int i = 0; i < length; ++i)
+                chars[i] = buffer.getChar(p + 2 * i);
+        }
+        return new String(chars);
+    }
+
+    private String stringOrNull(int offset, int limit) {
+        return offset == NONE ? null : string(offset, limit);
+    }
+
+    // compares the string at offset to the key without decoding it, in the
+    // same order as String.compareTo
+    private int compareString(int offset, int limit, String key) {
+        int length = stringLength(offset, limit);
+        boolean wide = (buffer.getInt(offset) & 1) != 0;
+        int p = offset + 4;
+        int n = Math.min(length, key.length());
+        for (int i = 0; i < n; ++i) {
+            char c = wide ? buffer.getChar(p + 2 * i) : (char) (buffer.get(p + i) & 0xff);
+            int d = c - key.charAt(i);
+            if (d != 0)
+                return d;
+        }
+        return length - key.length();
+    }
+
+    private SimpleConfigOrigin origin(int index) {
+        if (index < 0 || index >= origins.length)
+            throw broken(originTable, "origin index " + index + " is out of range");
+        SimpleConfigOrigin origin = origins[index];
+        if (origin == null) {
+            int offset = buffer.getInt(originTable + 4 + 4 * index);
+            try {
+                checkRecord(offset, 25, originTable);
+                String description = string(buffer.getInt(offset), offset);
+                int lineNumber = buffer.getInt(offset + 4);
+                int endLineNumber = buffer.getInt(offset + 8);
+                int type = buffer.get(offset + 12);
+                if (type < 0 || type >= OriginType.values().length)
+                    throw broken(offset, "unknown origin type " + type);
+                OriginType originType = OriginType.values()[type];
+                String url = stringOrNull(buffer.getInt(offset + 13), offset);
+                String resource = stringOrNull(buffer.getInt(offset + 17), offset);
+                int commentCount = buffer.getInt(offset + 21);
+                List<String> comments = null;
+                if (commentCount != NONE) {
+                    checkCount(offset, 25, commentCount, 4, originTable);
+                    comments = new ArrayList<String>(commentCount);
+                    for (int i = 0; i < commentCount; ++i)
+                        comments.add(string(buffer.getInt(offset + 25 + 4 * i), offset));
+                }
+                origin = new SimpleConfigOrigin(description, lineNumber, endLineNumber, originType, url,
+                        resource, comments);
+            } catch (ConfigException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw broken(offset, e);
+            }
+            origins[index] = origin;
+        }
+        return origin;
+    }
+
+    // the value at offset, which must end by limit
+    private AbstractConfigValue readValue(int offset, int limit) {
+        try {
+            byte tag = buffer.get(checkRecord(offset, VALUE_HEADER_LENGTH, limit));
+            SimpleConfigOrigin origin = origin(buffer.getInt(offset + 1));
+            int p = offset + VALUE_HEADER_LENGTH;
+            switch (tag) {
+            case TAG_NULL:
+                return new ConfigNull(origin);
+            case TAG_TRUE:
+                return new ConfigBoolean(origin, true);
+            case TAG_FALSE:
+                return new ConfigBoolean(origin, false);
+            case TAG_INT:
+                checkRecord(offset, VALUE_HEADER_LENGTH + 8, limit);
+                return new ConfigInt(origin, buffer.getInt(p), stringOrNull(buffer.getInt(p + 4), offset));
+            case TAG_LONG:
+                checkRecord(offset, VALUE_HEADER_LENGTH + 12, limit);
+                return new ConfigLong(origin, buffer.getLong(p), stringOrNull(buffer.getInt(p + 8), offset));
+            case TAG_DOUBLE:
+                checkRecord(offset, VALUE_HEADER_LENGTH + 12, limit);
+                return new ConfigDouble(origin, buffer.getDouble(p), stringOrNull(buffer.getInt(p + 8), offset));
+            case TAG_STRING:
+                checkRecord(offset, VALUE_HEADER_LENGTH + 4, limit);
+                return new ConfigString.Quoted(origin, string(buffer.getInt(p), offset));
+            case TAG_LIST:
+                checkRecord(offset, VALUE_HEADER_LENGTH + 4, limit);
+                int count = checkCount(offset, VALUE_HEADER_LENGTH + 4, buffer.getInt(p), 4, limit);
+                List<AbstractConfigValue> values = new ArrayList<AbstractConfigValue>(count);
+                for (int i = 0; i < count; ++i)
+                    values.add(readValue(buffer.getInt(p + 4 + 4 * i), offset));
+                return new SimpleConfigList(origin, values, ResolveStatus.RESOLVED);
+            case TAG_OBJECT:
+                checkObject(offset, limit);
+                return new MappedConfigObject(origin, this, offset);
+            default:
+                throw broken(offset, "unknown value tag " + tag);
+            }
+        } catch (ConfigException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw broken(offset, e);
+        }
+    }
+
+    // the object was checked to fit in the image when it was read, so its
+    // own fields and entry table can be read without checking again
+
+    boolean ignoresFallbacks(int object) {
+        return buffer.get(object + VALUE_HEADER_LENGTH) != 0;
+    }
+
+    int size(int object) {
+        return buffer.getInt(object + VALUE_HEADER_LENGTH + 1);
+    }
+
+    String key(int object, int index) {
+        return string(buffer.getInt(object + OBJECT_HEADER_LENGTH + 8 * index), object);
+    }
+
+    AbstractConfigValue value(int object, int index) {
+        return readValue(buffer.getInt(object + OBJECT_HEADER_LENGTH + 8 * index + 4), object);
+    }
+
+    /** The index of the key in the object, or -1 if it's not there. */
+    int find(int object, String key) {
+        int low = 0;
+        int high = size(object) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compareString(buffer.getInt(object + OBJECT_HEADER_LENGTH + 8 * mid), object, key);
+            if (c < 0)
+                low = mid + 1;
+            else if (c > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the image of a resolved object to the file, replacing the file
+     * at once so processes that have the old image mapped keep reading it.
+     */
+    static void write(ConfigObject root, File file) throws IOException {
+        Writer writer = new Writer();
+        byte[] image = writer.write(root);
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        // createTempFile() wants a prefix of at least three chars
+        File temp = File.createTempFile(file.getName() + ".snapshot", ".tmp", directory);
+        try {
+            OutputStream stream = new FileOutputStream(temp);
+            try {
+                stream.write(image);
+            } finally {
+                stream.close();
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+        } finally {
+            if (temp != null)
+                temp.delete();
+        }
+    }
+
+    private static final class Writer {
+        final private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final private DataOutputStream out = new DataOutputStream(bytes);
+        final private Map<String, Integer> strings = new HashMap<String, Integer>();
+        // origins are only equal if their comments are too
+        final private Map<List<Object>, Integer> originIndexes = new HashMap<List<Object>, Integer>();
+        final private List<SimpleConfigOrigin> origins = new ArrayList<SimpleConfigOrigin>();
+
+        byte[] write(ConfigObject root) throws IOException {
+            // the header is filled in at the end
+            out.write(new byte[HEADER_LENGTH]);
+            int rootOffset = writeValue(root);
+
+            // strings first, so each origin record is in one piece
+            int[] originOffsets = new int[origins.size()];
+            for (int i = 0; i < origins.size(); ++i)
+                originOffsets[i] = writeOrigin(origins.get(i));
+            int originTable = out.size();
+            out.writeInt(originOffsets.length);
+            for (int offset : originOffsets)
+                out.writeInt(offset);
+            out.flush();
+
+            byte[] image = bytes.toByteArray();
+            ByteBuffer header = ByteBuffer.wrap(image);
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(8, image.length);
+            header.putInt(12, rootOffset);
+            header.putInt(16, originTable);
+            return image;
+        }
+
+        private int writeString(String s) throws IOException {
+            Integer existing = strings.get(s);
+            if (existing != null)
+                return existing;
+            int offset = out.size();
+            int length = s.length();
+            boolean wide = false;
+            for (int i = 0; i < length && !wide; ++i)
+                wide = s.charAt(i) > 0xff;
+            out.writeInt((length << 1) | (wide ? 1 : 0));
+            for (int i = 0; i < length; ++i) {
+                if (wide)
+                    out.writeChar(s.charAt(i));
+                else
+                    out.writeByte(s.charAt(i));
+            }
+            strings.put(s, offset);
+            return offset;
+        }
+
+        private int writeStringOrNone(String s) throws IOException {
+            return s == null ? NONE : writeString(s);
+        }
+
+        private int originIndex(SimpleConfigOrigin origin) {
+            List<Object> key = Arrays.<Object> asList(origin, origin.commentsOrNull());
+            Integer index = originIndexes.get(key);
+            if (index == null) {
+                index = origins.size();
+                origins.add(origin);
+                originIndexes.put(key, index);
+            }
+            return index;
+        }
+
+        private int writeOrigin(SimpleConfigOrigin origin) throws IOException {
+            int description = writeString(origin.rawDescription());
+            int url = writeStringOrNone(origin.urlOrNull());
+            int resource = writeStringOrNone(origin.resourceOrNull());
+            List<String> comments = origin.commentsOrNull();
+            int[] commentOffsets = new int[comments == null ? 0 : comments.size()];
+            for (int i = 0; i < commentOffsets.length; ++i)
+                commentOffsets[i] = writeString(comments.get(i));
+
+            int offset = out.size();
+            out.writeInt(description);
+            out.writeInt(origin.lineNumber());
+            out.writeInt(origin.endLineNumber());
+            out.writeByte(origin.originType().ordinal());
+            out.writeInt(url);
+            out.writeInt(resource);
+            out.writeInt(comments == null ? NONE : comments.size());
+            for (int c : commentOffsets)
+                out.writeInt(c);
+            return offset;
+        }
+
+        private int writeNumberText(ConfigNumber number) throws IOException {
+            return writeStringOrNone(number.originalText);
+        }
+
+        // writes what the value refers to, then the value, and returns
+        // where the value is
+        private int writeValue(ConfigValue value) throws IOException {
+            if (value instanceof LazyConfigObject)
+                value = ((LazyConfigObject) value).force();
+            AbstractConfigValue v = (AbstractConfigValue) value;
+            if (v.resolveStatus() != ResolveStatus.RESOLVED)
+                throw new ConfigException.NotResolved("need to Config#resolve() before writing a snapshot, "
+                        + "value at " + v.origin().description() + " is not resolved");
+            int originIndex = originIndex(v.origin());
+
+            int offset;
+            switch (v.valueType()) {
+            case NULL:
+                offset = startValue(TAG_NULL, originIndex);
+                break;
+            case BOOLEAN:
+                offset = startValue(((ConfigBoolean) v).unwrapped() ? TAG_TRUE : TAG_FALSE, originIndex);
+                break;
+            case NUMBER:
+                int text = writeNumberText((ConfigNumber) v);
+                if (v instanceof ConfigInt) {
+                    offset = startValue(TAG_INT, originIndex);
+                    out.writeInt(((ConfigInt) v).unwrapped());
+                } else if (v instanceof ConfigLong) {
+                    offset = startValue(TAG_LONG, originIndex);
+                    out.writeLong(((ConfigLong) v).unwrapped());
+                } else {
+                    offset = startValue(TAG_DOUBLE, originIndex);
+                    out.writeDouble(((ConfigDouble) v).unwrapped());
+                }
+                out.writeInt(text);
+                break;
+            case STRING:
+                int string = writeString(((ConfigString) v).unwrapped());
+                offset = startValue(TAG_STRING, originIndex);
+                out.writeInt(string);
+                break;
+            case LIST:
+                ConfigList list = (ConfigList) v;
+                int[] elements = new int[list.size()];
+                for (int i = 0; i < elements.length; ++i)
+                    elements[i] = writeValue(list.get(i));
+                offset = startValue(TAG_LIST, originIndex);
+                out.writeInt(elements.length);
+                for (int e : elements)
+                    out.writeInt(e);
+                break;
+            case OBJECT:
+                AbstractConfigObject obj = (AbstractConfigObject) v;
+                List<String> keys = new ArrayList<String>(obj.keySet());
+                Collections.sort(keys);
+                int[] entries = new int[keys.size() * 2];
+                for (int i = 0; i < keys.size(); ++i) {
+                    entries[2 * i] = writeString(keys.get(i));
+                    entries[2 * i + 1] = writeValue(obj.get(keys.get(i)));
+                }
+                offset = startValue(TAG_OBJECT, originIndex);
+                out.writeByte(obj.ignoresFallbacks() ? 1 : 0);
+                out.writeInt(keys.size());
+                for (int e : entries)
+                    out.writeInt(e);
+                break;
+            default:
+                throw new ConfigException.BugOrBroken("Unknown value type " + v.valueType());
+            }
+            return offset;
+        }
+
+        private int startValue(byte tag, int originIndex) throws IOException {
+            int offset = out.size();
+            out.writeByte(tag);
+            out.writeInt(originIndex);
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config.impl;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.typesafe.config.ConfigMergeable;
+import com.typesafe.config.ConfigOrigin;
+import com.typesafe.config.ConfigRenderOptions;
+import com.typesafe.config.ConfigValue;
+
+/**
+ * An object read in place from a {@link MappedConfigImage}. Looking up a key
+ * searches the image and decodes only the value found; anything else, like
+ * rendering, merging or iterating over entries, builds the
+ * {@link SimpleConfigObject} this object is equal to, one level deep with
+ * the child objects still mapped, and asks it. Images only hold resolved
+ * values, so mapped objects are always resolved and resolving leaves them
+ * alone.
+ */
+final class MappedConfigObject extends AbstractConfigObject implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final private MappedConfigImage image;
+    // where the object's record is in the image
+    final private int offset;
+
+    MappedConfigObject(ConfigOrigin origin, MappedConfigImage image, int offset) {
+        super(origin);
+        this.image = image;
+        this.offset = offset;
+    }
+
+    // not kept, so the heap only holds what callers hold on to
+    private SimpleConfigObject materialize() {
+        int size = image.size(offset);
+        Map<String, AbstractConfigValue> values = new HashMap<String, AbstractConfigValue>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; ++i)
+            values.put(image.key(offset, i), image.value(offset, i));
+        return new SimpleConfigObject(origin(), values, ResolveStatus.RESOLVED, ignoresFallbacks());
+    }
+
+    @Override
+    ResolveStatus resolveStatus() {
+        return ResolveStatus.RESOLVED;
+    }
+
+    @Override
+    protected boolean ignoresFallbacks() {
+        return image.ignoresFallbacks(offset);
+    }
+
+    @Override
+    protected AbstractConfigValue withFallbacksIgnored() {
+        if (ignoresFallbacks())
+            return this;
+        else
+            return materialize().withFallbacksIgnored();
+    }
+
+    @Override
+    public AbstractConfigObject toFallbackValue() {
+        return materialize();
+    }
+
+    @Override
+    public AbstractConfigObject withFallback(ConfigMergeable mergeable) {
+        return materialize().withFallback(mergeable);
+    }
+
+    @Override
+    protected AbstractConfigObject mergedWithObject(AbstractConfigObject fallback) {
+        return materialize().withFallback(fallback);
+    }
+
+    @Override
+    protected AbstractConfigObject newCopy(ResolveStatus status, ConfigOrigin origin) {
+        if (status == ResolveStatus.RESOLVED)
+            return new MappedConfigObject(origin, image, offset);
+        else
+            return materialize().newCopy(status, origin);
+    }
+
+    @Override
+    ResolveResult<? extends AbstractConfigObject> resolveSubstitutions(ResolveContext context,
+            ResolveSource source) {
+        return ResolveResult.make(context, this);
+    }
+
+    @Override
+    MappedConfigObject relativized(Path prefix) {
+        // there are no substitutions to make relative
+        return this;
+    }
+
+    @Override
+    public AbstractConfigObject withOnlyKey(String key) {
+        return materialize().withOnlyKey(key);
+    }
+
+    @Override
+    public AbstractConfigObject withoutKey(String key) {
+        return materialize().withoutKey(key);
+    }
+
+    @Override
+    public AbstractConfigObject withValue(String key, ConfigValue value) {
+        return materialize().withValue(key, value);
+    }
+
+    @Override
+    protected AbstractConfigObject withOnlyPathOrNull(Path path) {
+        return materialize().withOnlyPathOrNull(path);
+    }
+
+    @Override
+    AbstractConfigObject withOnlyPath(Path path) {
+        return materialize().withOnlyPath(path);
+    }
+
+    @Override
+    AbstractConfigObject withoutPath(Path path) {
+        return materialize().withoutPath(path);
+    }
+
+    @Override
+    AbstractConfigObject withValue(Path path, ConfigValue value) {
+        return materialize().withValue(path, value);
+    }
+
+    @Override
+    protected AbstractConfigValue attemptPeekWithPartialResolve(String key) {
+        return get(key);
+    }
+
+    @Override
+    public AbstractConfigValue replaceChild(AbstractConfigValue child, AbstractConfigValue replacement) {
+        return materialize().replaceChild(child, replacement);
+    }
+
+    @Override
+    public boolean hasDescendant(AbstractConfigValue descendant) {
+        return materialize().hasDescendant(descendant);
+    }
+
+    @Override
+    public Map<String, Object> unwrapped() {
+        return materialize().unwrapped();
+    }
+
+    @Override
+    public AbstractConfigValue get(Object key) {
+        if (!(key instanceof String))
+            return null;
+        int index = image.find(offset, (String) key);
+        return index < 0 ? null : image.value(offset, index);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && image.find(offset, (String) key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return materialize().containsValue(value);
+    }
+
+    @Override
+    public Set<Map.Entry<String, ConfigValue>> entrySet() {
+        return materialize().entrySet();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        // decodes each key as it's reached, in sorted order
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size();
+                    }
+
+                    @Override
+                    public String next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        return image.key(offset, next++);
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return MappedConfigObject.this.size();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return image.size(offset);
+    }
+
+    @Override
+    public Collection<ConfigValue> values() {
+        return materialize().values();
+    }
+
+    @Override
+    protected void render(StringBuilder sb, int indent, boolean atRoot, ConfigRenderOptions options) {
+        materialize().render(sb, indent, atRoot, options);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return materialize().equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return materialize().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return materialize().toString();
+    }
+
+    // serialization all goes through SerializedConfigValue
+    private Object writeReplace() throws ObjectStreamException {
+        return new SerializedConfigValue(this);
+    }
+}
@@ -0,0 +1,639 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigOrigin;
+import com.typesafe.config.ConfigParseOptions;
+import com.typesafe.config.ConfigStringPool;
+
+/**
+ * Keeps parsed, unresolved values in a directory, see
+ * {@link ConfigParseOptions#setParseCacheDirectory(java.io.File)}. Each entry
+ * is one file named after a hash of its key, holding the key, the
+ * modification time and size of every file the value was parsed from
+ * (including the files it included, and the files it looked for and did not
+ * find), the classpath resources it looked up and the URLs they were found
+ * at, and the value. An entry is only used if none of those files changed
+ * and every resource is still found at the same URLs.
+ * <p>
+ * Nothing here throws: an entry that can't be read, written, or trusted is
+ * traced and treated as missing, so the caller parses as it would without a
+ * cache. Entries are written to a temporary file and then renamed, so a
+ * reader never sees half an entry, even from another process.
+ */
+final class ParseCache {
+    private static final int MAGIC = 0x48434f4e; // "HCON"
+    // bump when the entry format changes, old entries are then ignored
+    private static final int VERSION = 2;
+    // magic, version and a CRC32 of the rest
+    private static final int HEADER_LENGTH = 12;
+
+    // a file changed this recently may change again without its
+    // modification time changing, so we don't trust it yet
+    private static final long RACY_MILLIS = 2000;
+
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+    // the ordinals here are in the entry format, caution
+    private static enum Tag {
+        NULL, TRUE, FALSE, INT, LONG, DOUBLE, QUOTED, UNQUOTED, LIST, OBJECT, REFERENCE,
+        CONCATENATION, DELAYED_MERGE, DELAYED_MERGE_OBJECT;
+
+        static Tag forInt(int b) throws IOException {
+            if (b < values().length)
+                return values()[b];
+            else
+                throw new IOException("Unknown value tag " + b);
+        }
+    }
+
+    /** A file as it was when we read it. */
+    static final class Fingerprint {
+        final String path;
+        // both -1 if the file did not exist
+        final long modified;
+        final long length;
+
+        Fingerprint(String path, long modified, long length) {
+            this.path = path;
+            this.modified = modified;
+            this.length = length;
+        }
+
+        static Fingerprint of(File file) {
+            String path = file.getAbsolutePath();
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file.toPath(),
+                        BasicFileAttributes.class);
+                return new Fingerprint(path, attributes.lastModifiedTime().toMillis(), attributes.size());
+            } catch (IOException e) {
+                return new Fingerprint(path, -1, -1);
+            }
+        }
+
+        boolean isCurrent() {
+            return equals(of(new File(path)));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof Fingerprint) {
+                Fingerprint that = (Fingerprint) other;
+                return path.equals(that.path) && modified == that.modified && length == that.length;
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return 41 * (41 * (41 + path.hashCode()) + (int) (modified ^ (modified >>> 32)))
+                    + (int) (length ^ (length >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return path + "@" + modified + "/" + length;
+        }
+    }
+
+    /**
+     * A classpath resource as it was when we looked it up: the URLs it was
+     * found at, in order, none if it was missing. The files behind the URLs
+     * are fingerprinted separately when they are parsed.
+     */
+    static final class ResourceLookup {
+        final String resource;
+        final List<String> urls;
+
+        private ResourceLookup(String resource, List<String> urls) {
+            this.resource = resource;
+            this.urls = urls;
+        }
+
+        static ResourceLookup of(String resource, List<URL> found) {
+            List<String> urls = new ArrayList<String>(found.size());
+            for (URL url : found)
+                urls.add(url.toExternalForm());
+            return new ResourceLookup(resource, urls);
+        }
+
+        boolean isCurrent(ClassLoader loader) {
+            if (loader == null)
+                return false;
+            try {
+                return equals(of(resource, Collections.list(loader.getResources(resource))));
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof ResourceLookup) {
+                ResourceLookup that = (ResourceLookup) other;
+                return resource.equals(that.resource) && urls.equals(that.urls);
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return 41 * (41 + resource.hashCode()) + urls.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return resource + "@" + urls;
+        }
+    }
+
+    /**
+     * The files a parse read and the resources it looked up, collected while
+     * it runs, including from includes parsed on other threads.
+     */
+    static final class Dependencies {
+        final private Set<Fingerprint> files = new LinkedHashSet<Fingerprint>();
+        final private Set<ResourceLookup> resources = new LinkedHashSet<ResourceLookup>();
+        private boolean cacheable = true;
+
+        synchronized void add(Fingerprint file) {
+            files.add(file);
+        }
+
+        synchronized void add(ResourceLookup resource) {
+            resources.add(resource);
+        }
+
+        synchronized void addAll(Dependencies other) {
+            List<Fingerprint> otherFiles;
+            List<ResourceLookup> otherResources;
+            boolean otherCacheable;
+            synchronized (other) {
+                otherFiles = new ArrayList<Fingerprint>(other.files);
+                otherResources = new ArrayList<ResourceLookup>(other.resources);
+                otherCacheable = other.cacheable;
+            }
+            files.addAll(otherFiles);
+            resources.addAll(otherResources);
+            if (!otherCacheable)
+                cacheable = false;
+        }
+
+        // something was read that we can't fingerprint
+        synchronized void markUncacheable() {
+            cacheable = false;
+        }
+
+        synchronized boolean isCacheable() {
+            return cacheable;
+        }
+
+        synchronized List<Fingerprint> files() {
+            return new ArrayList<Fingerprint>(files);
+        }
+
+        synchronized List<ResourceLookup> resources() {
+            return new ArrayList<ResourceLookup>(resources);
+        }
+    }
+
+    /**
+     * What a Parseable reads: a name for it, and the file whose modification
+     * time and size tell us whether it changed.
+     */
+    static final class Source {
+        final String identity;
+        final File file;
+
+        Source(String identity, File file) {
+            this.identity = identity;
+            this.file = file;
+        }
+    }
+
+    final private File directory;
+
+    private ParseCache(File directory) {
+        this.directory = directory;
+    }
+
+    // null if the options have no cache directory
+    static ParseCache forOptions(ConfigParseOptions options) {
+        File directory = options.getParseCacheDirectory();
+        return directory == null ? null : new ParseCache(directory);
+    }
+
+    // everything that decides what a source parses to, besides the
+    // contents of the files
+    static String key(Parseable parseable, Source source, ConfigOrigin origin, ConfigParseOptions options) {
+        return parseable.getClass().getName() + "\n" + source.identity + "\n" + options.getSyntax() + "\n"
+                + options.getKeepNumberText() + "\n" + origin.description();
+    }
+
+    private File entryFile(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(hash.length * 2 + 7);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return new File(directory, sb.append(".parsed").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new ConfigException.BugOrBroken("Java runtime without SHA-256", e);
+        } catch (IOException e) {
+            throw new ConfigException.BugOrBroken("Java runtime without UTF-8", e);
+        }
+    }
+
+    private static void trace(String message) {
+        if (ConfigImpl.traceLoadsEnabled())
+            ConfigImpl.trace(message);
+    }
+
+    /**
+     * Returns the value stored for the key, adding what it was parsed from to
+     * the given dependencies, or null if there is no entry or it is stale or
+     * can't be read. Resources are looked up again in the given class loader.
+     */
+    AbstractConfigValue load(String key, ConfigStringPool stringPool, ClassLoader loader, Dependencies into) {
+        File file = entryFile(key);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file.toPath());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            trace("Could not read parse cache entry " + file + ": " + e.getMessage());
+            return null;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                trace("Parse cache entry " + file + " has an old or unknown format");
+                return null;
+            }
+            // check the rest is intact before we decode any of it
+            int checksum = in.readInt();
+            CRC32 crc = new CRC32();
+            crc.update(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+            if ((int) crc.getValue() != checksum)
+                throw new IOException("wrong checksum");
+            if (!readString(in).equals(key)) {
+                trace("Parse cache entry " + file + " is for another source");
+                return null;
+            }
+            int count = readCount(in);
+            List<Fingerprint> files = new ArrayList<Fingerprint>(count);
+            for (int i = 0; i < count; ++i) {
+                Fingerprint f = new Fingerprint(readString(in), in.readLong(), in.readLong());
+                if (!f.isCurrent()) {
+                    trace("Parse cache entry " + file + " is stale, " + f.path + " changed");
+                    return null;
+                }
+                files.add(f);
+            }
+            count = readCount(in);
+            List<ResourceLookup> resources = new ArrayList<ResourceLookup>(count);
+            for (int i = 0; i < count; ++i) {
+                String resource = readString(in);
+                int urlCount = readCount(in);
+                List<String> urls = new ArrayList<String>(urlCount);
+                for (int j = 0; j < urlCount; ++j)
+                    urls.add(readString(in));
+                ResourceLookup r = new ResourceLookup(resource, urls);
+                if (!r.isCurrent(loader)) {
+                    trace("Parse cache entry " + file + " is stale, resource " + resource + " moved");
+                    return null;
+                }
+                resources.add(r);
+            }
+            AbstractConfigValue value = new ValueReader(in, stringPool).readValue(null);
+            if (in.available() != 0)
+                throw new IOException("trailing bytes");
+
+            for (Fingerprint f : files)
+                into.add(f);
+            for (ResourceLookup r : resources)
+                into.add(r);
+            trace("Loaded " + key.replace('\n', ' ') + " from parse cache entry " + file);
+            return value;
+        } catch (IOException e) {
+            trace("Parse cache entry " + file + " is corrupt: " + e.getMessage());
+            return null;
+        } catch (RuntimeException e) {
+            trace("Parse cache entry " + file + " is corrupt: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the value for the key if all the files it was parsed from can be
+     * trusted not to change unnoticed.
+     */
+    void store(String key, Dependencies dependencies, AbstractConfigValue value) {
+        if (!dependencies.isCacheable())
+            return;
+        List<Fingerprint> files = dependencies.files();
+        long now = System.currentTimeMillis();
+        for (Fingerprint f : files) {
+            if (f.modified > now - RACY_MILLIS) {
+                trace("Not storing " + key.replace('\n', ' ') + " in parse cache, " + f.path
+                        + " was modified too recently");
+                return;
+            }
+        }
+
+        File file = entryFile(key);
+        File temp = null;
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            writeString(out, key);
+            out.writeInt(files.size());
+            for (Fingerprint f : files) {
+                writeString(out, f.path);
+                out.writeLong(f.modified);
+                out.writeLong(f.length);
+            }
+            List<ResourceLookup> resources = dependencies.resources();
+            out.writeInt(resources.size());
+            for (ResourceLookup r : resources) {
+                writeString(out, r.resource);
+                out.writeInt(r.urls.size());
+                for (String url : r.urls)
+                    writeString(out, url);
+            }
+            writeValue(out, value, null);
+            out.flush();
+            CRC32 crc = new CRC32();
+            crc.update(body.toByteArray());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_LENGTH + body.size());
+            DataOutputStream header = new DataOutputStream(bytes);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeInt((int) crc.getValue());
+            body.writeTo(bytes);
+
+            if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+                throw new IOException("could not create directory " + directory);
+            temp = File.createTempFile(file.getName(), ".tmp", directory);
+            OutputStream stream = new FileOutputStream(temp);
+            try {
+                bytes.writeTo(stream);
+            } finally {
+                stream.close();
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+            trace("Stored " + key.replace('\n', ' ') + " in parse cache entry " + file);
+        } catch (IOException e) {
+            trace("Could not store parse cache entry " + file + ": " + e.getMessage());
+        } finally {
+            if (temp != null)
+                temp.delete();
+        }
+    }
+
+    // strings can be longer than writeUTF() allows, and are usually
+    // latin-1, which we can write a byte per char
+    private static void writeString(DataOutput out, String s) throws IOException {
+        int length = s.length();
+        boolean latin1 = true;
+        for (int i = 0; i < length; ++i) {
+            if (s.charAt(i) > 0xff) {
+                latin1 = false;
+                break;
+            }
+        }
+        out.writeInt(length);
+        out.writeBoolean(latin1);
+        if (latin1)
+            out.write(s.getBytes(LATIN_1));
+        else
+            out.writeChars(s);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readCount(in);
+        if (in.readBoolean()) {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, LATIN_1);
+        } else {
+            if (length * 2L > in.available())
+                throw new IOException("string longer than the entry");
+            char[] chars = new char[length];
+            for (int i = 0; i < length; ++i)
+                chars[i] = in.readChar();
+            return new String(chars);
+        }
+    }
+
+    // a count of things that each take at least a byte, so a corrupt count
+    // can't make us allocate more than the entry's size
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > in.available())
+            throw new IOException("bad count " + count);
+        return count;
+    }
+
+    private static void writeNumberText(DataOutput out, ConfigNumber number) throws IOException {
+        out.writeBoolean(number.originalText != null);
+        if (number.originalText != null)
+            writeString(out, number.originalText);
+    }
+
+    private static void writeValues(DataOutput out, Collection<? extends AbstractConfigValue> values,
+            SimpleConfigOrigin baseOrigin) throws IOException {
+        out.writeInt(values.size());
+        for (AbstractConfigValue v : values)
+            writeValue(out, v, baseOrigin);
+    }
+
+    private static void writeValue(DataOutput out, AbstractConfigValue value, SimpleConfigOrigin baseOrigin)
+            throws IOException {
+        if (value instanceof LazyConfigObject)
+            value = ((LazyConfigObject) value).force();
+        SimpleConfigOrigin origin = value.origin();
+        SerializedConfigValue.writeOrigin(out, origin, baseOrigin);
+
+        if (value instanceof ConfigNull) {
+            out.writeByte(Tag.NULL.ordinal());
+        } else if (value instanceof ConfigBoolean) {
+            out.writeByte((((ConfigBoolean) value).unwrapped() ? Tag.TRUE : Tag.FALSE).ordinal());
+        } else if (value instanceof ConfigInt) {
+            out.writeByte(Tag.INT.ordinal());
+            out.writeInt(((ConfigInt) value).unwrapped());
+            writeNumberText(out, (ConfigNumber) value);
+        } else if (value instanceof ConfigLong) {
+            out.writeByte(Tag.LONG.ordinal());
+            out.writeLong(((ConfigLong) value).unwrapped());
+            writeNumberText(out, (ConfigNumber) value);
+        } else if (value instanceof ConfigDouble) {
+            out.writeByte(Tag.DOUBLE.ordinal());
+            out.writeDouble(((ConfigDouble) value).unwrapped());
+            writeNumberText(out, (ConfigNumber) value);
+        } else if (value instanceof ConfigString) {
+            ConfigString s = (ConfigString) value;
+            out.writeByte((s.wasQuoted() ? Tag.QUOTED : Tag.UNQUOTED).ordinal());
+            writeString(out, s.unwrapped());
+        } else if (value instanceof SimpleConfigList) {
+            out.writeByte(Tag.LIST.ordinal());
+            SimpleConfigList list = (SimpleConfigList) value;
+            out.writeInt(list.size());
+            for (int i = 0; i < list.size(); ++i)
+                writeValue(out, list.get(i), origin);
+        } else if (value instanceof SimpleConfigObject) {
+            SimpleConfigObject obj = (SimpleConfigObject) value;
+            out.writeByte(Tag.OBJECT.ordinal());
+            out.writeBoolean(obj.ignoresFallbacks());
+            out.writeInt(obj.size());
+            for (String key : obj.keySet()) {
+                writeString(out, key);
+                writeValue(out, obj.attemptPeekWithPartialResolve(key), origin);
+            }
+        } else if (value instanceof ConfigReference) {
+            ConfigReference ref = (ConfigReference) value;
+            out.writeByte(Tag.REFERENCE.ordinal());
+            List<String> keys = new ArrayList<String>();
+            for (Path p = ref.expression().path(); p != null; p = p.remainder())
+                keys.add(p.first());
+            out.writeInt(keys.size());
+            for (String key : keys)
+                writeString(out, key);
+            out.writeBoolean(ref.expression().optional());
+            out.writeInt(ref.prefixLength());
+        } else if (value instanceof ConfigConcatenation) {
+            out.writeByte(Tag.CONCATENATION.ordinal());
+            writeValues(out, ((ConfigConcatenation) value).pieces(), origin);
+        } else if (value instanceof ConfigDelayedMerge) {
+            out.writeByte(Tag.DELAYED_MERGE.ordinal());
+            writeValues(out, ((ConfigDelayedMerge) value).unmergedValues(), origin);
+        } else if (value instanceof ConfigDelayedMergeObject) {
+            out.writeByte(Tag.DELAYED_MERGE_OBJECT.ordinal());
+            writeValues(out, ((ConfigDelayedMergeObject) value).unmergedValues(), origin);
+        } else {
+            // something a parse doesn't make; don't cache what we can't store
+            throw new IOException("can't store " + value.getClass().getSimpleName());
+        }
+    }
+
+    private static final class ValueReader {
+        final private DataInputStream in;
+        final private ConfigStringPool stringPool;
+
+        ValueReader(DataInputStream in, ConfigStringPool stringPool) {
+            this.in = in;
+            this.stringPool = stringPool;
+        }
+
+        // pooled like the parser pools them
+        private String readPooledString() throws IOException {
+            String s = readString(in);
+            return stringPool == null ? s : stringPool.intern(s);
+        }
+
+        private String readNumberText() throws IOException {
+            return in.readBoolean() ? readPooledString() : null;
+        }
+
+        private List<AbstractConfigValue> readValues(SimpleConfigOrigin baseOrigin) throws IOException {
+            int count = readCount(in);
+            List<AbstractConfigValue> values = new ArrayList<AbstractConfigValue>(count);
+            for (int i = 0; i < count; ++i)
+                values.add(readValue(baseOrigin));
+            return values;
+        }
+
+        AbstractConfigValue readValue(SimpleConfigOrigin baseOrigin) throws IOException {
+            SimpleConfigOrigin origin = SerializedConfigValue.readOrigin(in, baseOrigin);
+            switch (Tag.forInt(in.readUnsignedByte())) {
+            case NULL:
+                return new ConfigNull(origin);
+            case TRUE:
+                return new ConfigBoolean(origin, true);
+            case FALSE:
+                return new ConfigBoolean(origin, false);
+            case INT:
+                int i = in.readInt();
+                return new ConfigInt(origin, i, readNumberText());
+            case LONG:
+                long l = in.readLong();
+                return new ConfigLong(origin, l, readNumberText());
+            case DOUBLE:
+                double d = in.readDouble();
+                return new ConfigDouble(origin, d, readNumberText());
+            case QUOTED:
+                return new ConfigString.Quoted(origin, readPooledString());
+            case UNQUOTED:
+                return new ConfigString.Unquoted(origin, readPooledString());
+            case LIST:
+                return SimpleConfigList.packed(origin, readValues(origin));
+            case OBJECT:
+                boolean ignoresFallbacks = in.readBoolean();
+                int size = readCount(in);
+                Map<String, AbstractConfigValue> map = new HashMap<String, AbstractConfigValue>(size * 4 / 3 + 1);
+                for (int j = 0; j < size; ++j) {
+                    String key = readPooledString();
+                    map.put(key, readValue(origin));
+                }
+                return new SimpleConfigObject(origin, map, ResolveStatus.fromValues(map.values()),
+                        ignoresFallbacks);
+            case REFERENCE:
+                int length = readCount(in);
+                PathBuilder pb = new PathBuilder();
+                for (int j = 0; j < length; ++j)
+                    pb.appendKey(readPooledString());
+                boolean optional = in.readBoolean();
+                int prefixLength = in.readInt();
+                return new ConfigReference(origin, new SubstitutionExpression(pb.result(), optional), prefixLength);
+            case CONCATENATION:
+                return new ConfigConcatenation(origin, readValues(origin));
+            case DELAYED_MERGE:
+                return new ConfigDelayedMerge(origin, readValues(origin));
+            case DELAYED_MERGE_OBJECT:
+                return new ConfigDelayedMergeObject(origin, readValues(origin));
+            }
+            throw new IOException("Unhandled value tag");
+        }
+    }
+}
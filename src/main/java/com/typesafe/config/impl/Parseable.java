@@ -3,23 +3,27 @@
  */
 package com.typesafe.config.impl;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FilterReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
-import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.typesafe.config.*;
 import com.typesafe.config.parser.*;
@@ -45,12 +49,54 @@ public abstract class Parseable implements ConfigParseable {
         ConfigParseable relativeTo(String filename);
     }
 
-    private static final ThreadLocal<LinkedList<Parseable>> parseStack = new ThreadLocal<LinkedList<Parseable>>() {
+    // The chain of parses that led to the current one, innermost first. It is
+    // immutable so that a parse handed to another thread can carry its
+    // includer's chain along (see fork()) and still be checked against
+    // MAX_INCLUDE_DEPTH and cycles.
+    private static final class ParseStack {
+        final Parseable parseable;
+        final ParseStack parent;
+        final int depth;
+        // the files read by the innermost cached parse, or null
+        final ParseCache.Dependencies dependencies;
+
+        ParseStack(Parseable parseable, ParseStack parent) {
+            // a frame without a parseable only carries dependencies, it
+            // isn't part of the chain
+            this(parseable, parent == null || parent.parseable == null ? null : parent,
+                    parent == null ? 1 : parent.depth + 1, parent == null ? null : parent.dependencies);
+        }
+
+        private ParseStack(Parseable parseable, ParseStack parent, int depth,
+                ParseCache.Dependencies dependencies) {
+            this.parseable = parseable;
+            this.parent = parent;
+            this.depth = depth;
+            this.dependencies = dependencies;
+        }
+
+        // the same frame, or a frame without a parseable if there is none,
+        // with the files read from now on going to dependencies
+        static ParseStack withDependencies(ParseStack stack, ParseCache.Dependencies dependencies) {
+            if (stack == null)
+                return new ParseStack(null, null, 0, dependencies);
+            else
+                return new ParseStack(stack.parseable, stack.parent, stack.depth, dependencies);
+        }
+
         @Override
-        protected LinkedList<Parseable> initialValue() {
-            return new LinkedList<Parseable>();
+        public String toString() {
+            StringBuilder sb = new StringBuilder("[");
+            for (ParseStack s = this; s != null; s = s.parent) {
+                if (s != this)
+                    sb.append(", ");
+                sb.append(s.parseable);
+            }
+            return sb.append("]").toString();
         }
-    };
+    }
+
+    private static final ThreadLocal<ParseStack> parseStack = new ThreadLocal<ParseStack>();
 
     private static final int MAX_INCLUDE_DEPTH = 50;
 
@@ -140,21 +186,21 @@ public abstract class Parseable implements ConfigParseable {
     @Override
     public ConfigObject parse(ConfigParseOptions baseOptions) {
 
-        LinkedList<Parseable> stack = parseStack.get();
-        if (stack.size() >= MAX_INCLUDE_DEPTH) {
+        ParseStack stack = parseStack.get();
+        if (stack != null && stack.depth >= MAX_INCLUDE_DEPTH) {
             throw new ConfigException.Parse(initialOrigin, "include statements nested more than "
                     + MAX_INCLUDE_DEPTH
                     + " times, you probably have a cycle in your includes. Trace: " + stack);
         }
 
-        stack.addFirst(this);
+        parseStack.set(new ParseStack(this, stack));
         try {
             return forceParsedToObject(parseValue(baseOptions));
         } finally {
-            stack.removeFirst();
-            if (stack.isEmpty()) {
+            if (stack == null)
                 parseStack.remove();
-            }
+            else
+                parseStack.set(stack);
         }
     }
 
@@ -177,7 +223,11 @@ public abstract class Parseable implements ConfigParseable {
     final private AbstractConfigValue parseValue(ConfigOrigin origin,
             ConfigParseOptions finalOptions) {
         try {
-            return rawParseValue(origin, finalOptions);
+            ParseCache cache = ParseCache.forOptions(finalOptions);
+            if (cache == null)
+                return rawParseValue(origin, finalOptions);
+            else
+                return cachedParseValue(cache, origin, finalOptions);
         } catch (IOException e) {
             if (finalOptions.getAllowMissing()) {
                 trace(e.getMessage() + ". Allowing Missing File, this can be turned off by setting" +
@@ -226,6 +276,72 @@ public abstract class Parseable implements ConfigParseable {
         }
     }
 
+    // the file that tells whether what we parse has changed, null if there
+    // is none
+    ParseCache.Source cacheSource() {
+        return null;
+    }
+
+    // true if, without a cacheSource(), we still record everything we read
+    // in the innermost cached parse's dependencies, so an includer of ours
+    // can be cached
+    boolean recordsDependencies() {
+        return false;
+    }
+
+    // the dependencies of the innermost cached parse, or null if there is
+    // none
+    static ParseCache.Dependencies currentDependencies() {
+        ParseStack stack = parseStack.get();
+        return stack == null ? null : stack.dependencies;
+    }
+
+    // rawParseValue, but reads the value from the cache if none of the files
+    // it was parsed from changed, and otherwise stores what it parses.
+    // Whatever we read, the parse that included us read too.
+    private AbstractConfigValue cachedParseValue(ParseCache cache, ConfigOrigin origin,
+            ConfigParseOptions finalOptions) throws IOException {
+        ParseStack stack = parseStack.get();
+        ParseCache.Dependencies outer = stack == null ? null : stack.dependencies;
+        // a custom includer may read anything
+        ParseCache.Source source = finalOptions.getIncluder() == ConfigImpl.defaultIncluder() ? cacheSource()
+                : null;
+        if (source == null) {
+            if (outer != null && !recordsDependencies())
+                outer.markUncacheable();
+            return rawParseValue(origin, finalOptions);
+        }
+
+        // fingerprint before reading, so a change while we parse makes the
+        // entry stale rather than wrong
+        ParseCache.Fingerprint fingerprint = ParseCache.Fingerprint.of(source.file);
+        String key = ParseCache.key(this, source, origin, finalOptions);
+        ParseCache.Dependencies dependencies = new ParseCache.Dependencies();
+        AbstractConfigValue value = cache.load(key, finalOptions.getStringPool(), finalOptions.getClassLoader(),
+                dependencies);
+        if (value == null) {
+            dependencies.add(fingerprint);
+            parseStack.set(ParseStack.withDependencies(stack, dependencies));
+            try {
+                value = rawParseValue(origin, finalOptions);
+            } catch (IOException e) {
+                // the file is missing, which may change
+                if (outer != null)
+                    outer.addAll(dependencies);
+                throw e;
+            } finally {
+                if (stack == null)
+                    parseStack.remove();
+                else
+                    parseStack.set(stack);
+            }
+            cache.store(key, dependencies, value);
+        }
+        if (outer != null)
+            outer.addAll(dependencies);
+        return value;
+    }
+
     // this is parseValue without post-processing the IOException or handling
     // options.getAllowMissing()
     protected AbstractConfigValue rawParseValue(ConfigOrigin origin, ConfigParseOptions finalOptions)
@@ -246,21 +362,44 @@ public abstract class Parseable implements ConfigParseable {
             optionsWithContentType = finalOptions;
         }
 
+        AbstractConfigValue value;
+        try {
+            value = rawParseValue(reader, origin, optionsWithContentType);
+        } finally {
+            reader.close();
+        }
+        if (value != null)
+            return value;
+
+        // JsonParser gave up, so read the input again with the general
+        // parser, which decides what it means
+        trace(origin.description() + " is not plain JSON, parsing it again");
+        reader = reader(finalOptions);
         try {
-            return rawParseValue(reader, origin, optionsWithContentType);
+            Iterator<Token> tokens = Tokenizer.tokenize(origin, reader, optionsWithContentType);
+            return ConfigParser.parse(tokens, origin, optionsWithContentType, includeContext());
         } finally {
             reader.close();
         }
     }
 
+    // whether each call to reader() starts the input over, which lets
+    // rawParseValue() try JsonParser first
+    boolean canReread() {
+        return true;
+    }
+
+    // returns null if JsonParser gave up on the input
     private AbstractConfigValue rawParseValue(Reader reader, ConfigOrigin origin,
             ConfigParseOptions finalOptions) throws IOException {
         if (finalOptions.getSyntax() == ConfigSyntax.PROPERTIES) {
-            return PropertiesParser.parse(reader, origin);
+            return PropertiesParser.parse(reader, origin, finalOptions.getStringPool());
+        } else if (finalOptions.getSyntax() == ConfigSyntax.JSON && !finalOptions.getLazyObjects()
+                && canReread()) {
+            return JsonParser.parse(reader, origin, finalOptions);
         } else {
-            Iterator<Token> tokens = Tokenizer.tokenize(origin, reader, finalOptions.getSyntax());
-            ConfigNodeRoot document = ConfigDocumentParser.parse(tokens, origin, finalOptions);
-            return ConfigParser.parse(document, origin, finalOptions, includeContext());
+            Iterator<Token> tokens = Tokenizer.tokenize(origin, reader, finalOptions);
+            return ConfigParser.parse(tokens, origin, finalOptions, includeContext());
         }
     }
 
@@ -297,6 +436,42 @@ public abstract class Parseable implements ConfigParseable {
         return new SimpleConfigDocument(ConfigDocumentParser.parse(tokens, origin, finalOptions), finalOptions);
     }
 
+    final ConfigEventReader parseEvents(ConfigParseOptions baseOptions) {
+        ConfigParseOptions options = fixupOptions(baseOptions);
+
+        // passed-in options can override origin
+        ConfigOrigin origin;
+        if (options.getOriginDescription() != null)
+            origin = SimpleConfigOrigin.newSimple(options.getOriginDescription());
+        else
+            origin = initialOrigin;
+
+        Reader reader;
+        try {
+            reader = reader(options);
+            // after reader() we will have loaded the Content-Type.
+            ConfigSyntax contentType = contentType();
+            if (contentType != null)
+                options = options.setSyntax(contentType);
+        } catch (IOException e) {
+            if (options.getAllowMissing()) {
+                // the events of an empty object
+                reader = new StringReader("{}");
+                options = options.setSyntax(ConfigSyntax.CONF);
+            } else {
+                trace("exception loading " + origin.description() + ": " + e.getClass().getName()
+                        + ": " + e.getMessage());
+                throw new ConfigException.IO(origin,
+                        e.getClass().getName() + ": " + e.getMessage(), e);
+            }
+        }
+
+        // the reader owns the input from here and closes it once it's done
+        Iterator<Token> tokens = Tokenizer.tokenize(origin, reader, options.getSyntax());
+        return new SimpleConfigEventReader(tokens, reader, origin, options.getSyntax(),
+                SimpleIncluder.makeFull(options.getIncluder()), includeContext());
+    }
+
     public ConfigObject parse() {
         return forceParsedToObject(parseValue(options()));
     }
@@ -305,10 +480,93 @@ public abstract class Parseable implements ConfigParseable {
         return parseDocument(options());
     }
 
+    public ConfigEventReader parseConfigEvents() {
+        return parseEvents(options());
+    }
+
     AbstractConfigValue parseValue() {
         return parseValue(options());
     }
 
+    // Parses each of the parseables with its own options and returns the
+    // values in the same order, using fork() and join() when there is an
+    // executor.
+    static List<AbstractConfigValue> parseValues(Executor executor, List<Parseable> parseables,
+            ConfigOrigin origin) {
+        List<AbstractConfigValue> values = new ArrayList<AbstractConfigValue>(parseables.size());
+        if (executor == null || parseables.size() < 2) {
+            for (Parseable p : parseables)
+                values.add(p.parseValue());
+            return values;
+        }
+
+        List<FutureTask<AbstractConfigValue>> tasks = new ArrayList<FutureTask<AbstractConfigValue>>(
+                parseables.size());
+        for (final Parseable p : parseables) {
+            tasks.add(fork(executor, new Callable<AbstractConfigValue>() {
+                @Override
+                public AbstractConfigValue call() {
+                    return p.parseValue();
+                }
+            }));
+        }
+        for (FutureTask<AbstractConfigValue> task : tasks)
+            values.add(join(task, origin));
+        return values;
+    }
+
+    // Hands a parse to the executor. The task runs with the calling thread's
+    // include stack, so MAX_INCLUDE_DEPTH and cycle detection still see the
+    // includes that led here. If the executor refuses the task, join() runs
+    // it.
+    static <T> FutureTask<T> fork(Executor executor, final Callable<T> parse) {
+        final ParseStack stack = parseStack.get();
+        FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                ParseStack saved = parseStack.get();
+                parseStack.set(stack);
+                try {
+                    return parse.call();
+                } finally {
+                    if (saved == null)
+                        parseStack.remove();
+                    else
+                        parseStack.set(saved);
+                }
+            }
+        });
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // join() will run it
+        }
+        return task;
+    }
+
+    // Waits for a task from fork(). The calling thread runs the task itself if
+    // the executor has not started it yet, so we never block on a task that is
+    // waiting for a thread, even when the executor is a small pool whose
+    // threads are themselves parsing.
+    static <T> T join(FutureTask<T> task, ConfigOrigin origin) {
+        // does nothing if the executor already started the task
+        task.run();
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            else
+                throw new ConfigException.BugOrBroken("unexpected exception while parsing", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConfigException.IO(origin, "interrupted while waiting for a parse to finish", e);
+        }
+    }
+
     @Override
     public final ConfigOrigin origin() {
         return initialOrigin;
@@ -327,19 +585,21 @@ public abstract class Parseable implements ConfigParseable {
     }
 
     private static Reader readerFromStream(InputStream input) {
-        return readerFromStream(input, "UTF-8");
+        // the tokenizer reads straight from this, so it doesn't need any
+        // buffering in between
+        return new Utf8Reader(input);
     }
 
-    private static Reader readerFromStream(InputStream input, String encoding) {
+    private static Reader readerFromMappedFile(File input) throws IOException {
+        FileChannel channel = new FileInputStream(input).getChannel();
         try {
-            // well, this is messed up. If we aren't going to close
-            // the passed-in InputStream then we have no way to
-            // close these readers. So maybe we should not have an
-            // InputStream version, only a Reader version.
-            Reader reader = new InputStreamReader(input, encoding);
-            return new BufferedReader(reader);
-        } catch (UnsupportedEncodingException e) {
-            throw new ConfigException.BugOrBroken("Java runtime does not support UTF-8", e);
+            // the mapping itself goes away when the buffer is garbage
+            // collected; closing the reader only closes the channel
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new Utf8Reader(bytes, channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
         }
     }
 
@@ -408,6 +668,12 @@ public abstract class Parseable implements ConfigParseable {
             throw new FileNotFoundException(message);
         }
 
+        // reads nothing
+        @Override
+        boolean recordsDependencies() {
+            return true;
+        }
+
         @Override
         protected ConfigOrigin createOrigin() {
             return SimpleConfigOrigin.newSimple(what);
@@ -434,6 +700,11 @@ public abstract class Parseable implements ConfigParseable {
             return reader;
         }
 
+        @Override
+        boolean canReread() {
+            return false;
+        }
+
         @Override
         protected ConfigOrigin createOrigin() {
             return SimpleConfigOrigin.newSimple("Reader");
@@ -585,6 +856,26 @@ public abstract class Parseable implements ConfigParseable {
             }
         }
 
+        // a resource in a jar only changes when the jar does
+        @Override
+        ParseCache.Source cacheSource() {
+            URL url = input;
+            if (url.getProtocol().equals("jar")) {
+                String path = url.getPath();
+                int bang = path.indexOf("!/");
+                if (bang < 0)
+                    return null;
+                try {
+                    url = new URL(path.substring(0, bang));
+                } catch (MalformedURLException e) {
+                    return null;
+                }
+            }
+            if (!url.getProtocol().equals("file"))
+                return null;
+            return new ParseCache.Source(input.toExternalForm(), ConfigImplUtil.urlToFile(url));
+        }
+
         @Override
         ConfigParseable relativeTo(String filename) {
             URL url = relativeTo(input, filename);
@@ -630,11 +921,30 @@ public abstract class Parseable implements ConfigParseable {
             return readerFromStream(stream);
         }
 
+        @Override
+        protected Reader reader(ConfigParseOptions options) throws IOException {
+            long threshold = options.getMemoryMapThreshold();
+            if (threshold >= 0) {
+                long length = input.length();
+                if (length >= threshold && length <= Integer.MAX_VALUE) {
+                    if (ConfigImpl.traceLoadsEnabled())
+                        trace("Loading config from a memory mapped file: " + input);
+                    return readerFromMappedFile(input);
+                }
+            }
+            return reader();
+        }
+
         @Override
         ConfigSyntax guessSyntax() {
             return ConfigImplUtil.syntaxFromExtension(input.getName());
         }
 
+        @Override
+        ParseCache.Source cacheSource() {
+            return new ParseCache.Source(input.getAbsolutePath(), input);
+        }
+
         @Override
         ConfigParseable relativeTo(String filename) {
             File sibling;
@@ -651,6 +961,10 @@ public abstract class Parseable implements ConfigParseable {
                 return newFile(sibling, options().setOriginDescription(null));
             } else {
                 trace(sibling + " does not exist, so trying it as a classpath resource");
+                // the sibling would win if it were created
+                ParseCache.Dependencies dependencies = currentDependencies();
+                if (dependencies != null)
+                    dependencies.add(ParseCache.Fingerprint.of(sibling));
                 return super.relativeTo(filename);
             }
         }
@@ -718,25 +1032,35 @@ public abstract class Parseable implements ConfigParseable {
             if (loader == null)
                 throw new ConfigException.BugOrBroken(
                         "null class loader; pass in a class loader or use Thread.currentThread().setContextClassLoader()");
-            Enumeration<URL> e = loader.getResources(resource);
-            if (!e.hasMoreElements()) {
+            List<URL> urls = Collections.list(loader.getResources(resource));
+            // whether we found it or not, an includer's cache entry is only
+            // good while the resource is found at the same URLs
+            ParseCache.Dependencies dependencies = currentDependencies();
+            if (dependencies != null)
+                dependencies.add(ParseCache.ResourceLookup.of(resource, urls));
+            if (urls.isEmpty()) {
                 if (ConfigImpl.traceLoadsEnabled())
                     trace("Loading config from class loader " + loader
                             + " but there were no resources called " + resource);
                 throw new IOException("resource not found on classpath: " + resource);
             }
-            AbstractConfigObject merged = SimpleConfigObject.empty(origin);
-            while (e.hasMoreElements()) {
-                URL url = e.nextElement();
+            Executor executor = finalOptions.getExecutor();
+            // elements may be parsed on other threads, which must not go
+            // looking for includes in their own context class loader
+            ConfigParseOptions elementOptions = executor != null ? finalOptions.setClassLoader(loader)
+                    : finalOptions;
+            List<Parseable> elements = new ArrayList<Parseable>();
+            for (URL url : urls) {
 
                 if (ConfigImpl.traceLoadsEnabled())
                     trace("Loading config from resource '" + resource + "' URL " + url.toExternalForm() + " from class loader "
                             + loader);
 
-                Parseable element = newResourceURL(url, finalOptions, resource, this);
-
-                AbstractConfigValue v = element.parseValue();
+                elements.add(newResourceURL(url, elementOptions, resource, this));
+            }
 
+            AbstractConfigObject merged = SimpleConfigObject.empty(origin);
+            for (AbstractConfigValue v : parseValues(executor, elements, origin)) {
                 merged = merged.withFallback(v);
             }
 
@@ -748,6 +1072,11 @@ public abstract class Parseable implements ConfigParseable {
             return ConfigImplUtil.syntaxFromExtension(resource);
         }
 
+        @Override
+        boolean recordsDependencies() {
+            return true;
+        }
+
         static String parent(String resource) {
             // the "resource" is not supposed to begin with a "/"
             // because it's supposed to be the raw resource
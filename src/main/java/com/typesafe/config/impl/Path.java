@@ -9,27 +9,38 @@ import com.typesafe.config.ConfigException;
 
 final class Path {
 
-    final private String first;
-    final private Path remainder;
+    // the path is elements[start, end), at least one of them; paths made
+    // from a path, like its remainder or parent, share its array
+    final private String[] elements;
+    final private int start;
+    final private int end;
+    // computed on first use; racing threads compute the same values
+    private int hash;
+    private String rendered;
+    private Path remainder;
+
+    private Path(String[] elements, int start, int end) {
+        this.elements = elements;
+        this.start = start;
+        this.end = end;
+    }
 
     Path(String first, Path remainder) {
-        this.first = first;
-        this.remainder = remainder;
+        int rest = remainder == null ? 0 : remainder.length();
+        this.elements = new String[1 + rest];
+        this.elements[0] = first;
+        if (remainder != null)
+            System.arraycopy(remainder.elements, remainder.start, this.elements, 1, rest);
+        this.start = 0;
+        this.end = this.elements.length;
     }
 
     Path(String... elements) {
         if (elements.length == 0)
             throw new ConfigException.BugOrBroken("empty path");
-        this.first = elements[0];
-        if (elements.length > 1) {
-            PathBuilder pb = new PathBuilder();
-            for (int i = 1; i < elements.length; ++i) {
-                pb.appendKey(elements[i]);
-            }
-            this.remainder = pb.result();
-        } else {
-            this.remainder = null;
-        }
+        this.elements = elements.clone();
+        this.start = 0;
+        this.end = elements.length;
     }
 
     // append all the paths in the list together into one path
@@ -42,21 +53,37 @@ final class Path {
         if (!i.hasNext())
             throw new ConfigException.BugOrBroken("empty path");
 
-        Path firstPath = i.next();
-        this.first = firstPath.first;
-
-        PathBuilder pb = new PathBuilder();
-        if (firstPath.remainder != null) {
-            pb.appendPath(firstPath.remainder);
-        }
+        List<String> keys = new ArrayList<String>();
         while (i.hasNext()) {
-            pb.appendPath(i.next());
+            Path p = i.next();
+            for (int j = p.start; j < p.end; ++j)
+                keys.add(p.elements[j]);
         }
-        this.remainder = pb.result();
+        this.elements = keys.toArray(new String[keys.size()]);
+        this.start = 0;
+        this.end = this.elements.length;
+    }
+
+    /**
+     * A path of the given keys, which must not be empty; the array becomes
+     * the path's and must not be changed afterward.
+     */
+    static Path fromElements(String[] elements) {
+        if (elements.length == 0)
+            throw new ConfigException.BugOrBroken("empty path");
+        return new Path(elements, 0, elements.length);
     }
 
     String first() {
-        return first;
+        return elements[start];
+    }
+
+    /**
+     * The key at the given index, so a lookup can walk the path without
+     * making a remainder for each step.
+     */
+    String element(int index) {
+        return elements[start + index];
     }
 
     /**
@@ -64,7 +91,15 @@ final class Path {
      * @return path minus the first element or null if no more elements
      */
     Path remainder() {
-        return remainder;
+        if (start + 1 == end)
+            return null;
+        // kept, so walking down a path that is used again allocates nothing
+        Path r = remainder;
+        if (r == null) {
+            r = new Path(elements, start + 1, end);
+            remainder = r;
+        }
+        return r;
     }
 
     /**
@@ -72,16 +107,9 @@ final class Path {
      * @return path minus the last element or null if we have just one element
      */
     Path parent() {
-        if (remainder == null)
+        if (start + 1 == end)
             return null;
-
-        PathBuilder pb = new PathBuilder();
-        Path p = this;
-        while (p.remainder != null) {
-            pb.appendKey(p.first);
-            p = p.remainder;
-        }
-        return pb.result();
+        return new Path(elements, start, end - 1);
     }
 
     /**
@@ -89,79 +117,64 @@ final class Path {
      * @return last element in the path
      */
     String last() {
-        Path p = this;
-        while (p.remainder != null) {
-            p = p.remainder;
-        }
-        return p.first;
+        return elements[end - 1];
     }
 
     Path prepend(Path toPrepend) {
-        PathBuilder pb = new PathBuilder();
-        pb.appendPath(toPrepend);
-        pb.appendPath(this);
-        return pb.result();
+        String[] joined = new String[toPrepend.length() + length()];
+        System.arraycopy(toPrepend.elements, toPrepend.start, joined, 0, toPrepend.length());
+        System.arraycopy(elements, start, joined, toPrepend.length(), length());
+        return new Path(joined, 0, joined.length);
     }
 
     int length() {
-        int count = 1;
-        Path p = remainder;
-        while (p != null) {
-            count += 1;
-            p = p.remainder;
-        }
-        return count;
+        return end - start;
     }
 
     Path subPath(int removeFromFront) {
-        int count = removeFromFront;
-        Path p = this;
-        while (p != null && count > 0) {
-            count -= 1;
-            p = p.remainder;
-        }
-        return p;
+        if (removeFromFront <= 0)
+            return this;
+        else if (removeFromFront >= length())
+            return null;
+        else
+            return new Path(elements, start + removeFromFront, end);
     }
 
     Path subPath(int firstIndex, int lastIndex) {
-        if (lastIndex < firstIndex)
+        if (lastIndex < firstIndex || firstIndex < 0)
             throw new ConfigException.BugOrBroken("bad call to subPath");
-
-        Path from = subPath(firstIndex);
-        PathBuilder pb = new PathBuilder();
-        int count = lastIndex - firstIndex;
-        while (count > 0) {
-            count -= 1;
-            pb.appendKey(from.first());
-            from = from.remainder();
-            if (from == null)
-                throw new ConfigException.BugOrBroken("subPath lastIndex out of range " + lastIndex);
-        }
-        return pb.result();
+        if (lastIndex > length())
+            throw new ConfigException.BugOrBroken("subPath lastIndex out of range " + lastIndex);
+        if (lastIndex == firstIndex)
+            return null;
+        return new Path(elements, start + firstIndex, start + lastIndex);
     }
 
     boolean startsWith(Path other) {
-        Path myRemainder = this;
-        Path otherRemainder = other;
-        if (otherRemainder.length() <= myRemainder.length()) {
-            while(otherRemainder != null) {
-                if (!otherRemainder.first().equals(myRemainder.first()))
-                    return false;
-                myRemainder = myRemainder.remainder();
-                otherRemainder = otherRemainder.remainder();
-            }
-            return true;
+        int n = other.length();
+        if (n > length())
+            return false;
+        for (int i = 0; i < n; ++i) {
+            if (!other.elements[other.start + i].equals(elements[start + i]))
+                return false;
         }
-        return false;
+        return true;
     }
 
     @Override
     public boolean equals(Object other) {
+        if (other == this)
+            return true;
         if (other instanceof Path) {
             Path that = (Path) other;
-            return this.first.equals(that.first)
-                    && ConfigImplUtil.equalsHandlingNull(this.remainder,
-                            that.remainder);
+            int n = length();
+            if (n != that.length() || hashCode() != that.hashCode())
+                return false;
+            for (int i = 0; i < n; ++i) {
+                if (!elements[start + i].equals(that.elements[that.start + i]))
+                    return false;
+            }
+            return true;
         } else {
             return false;
         }
@@ -169,8 +182,14 @@ final class Path {
 
     @Override
     public int hashCode() {
-        return 41 * (41 + first.hashCode())
-                + (remainder == null ? 0 : remainder.hashCode());
+        int h = hash;
+        if (h == 0) {
+            // the same as hashing the first element and the remainder
+            for (int i = end - 1; i >= start; --i)
+                h = 41 * (41 + elements[i].hashCode()) + h;
+            hash = h;
+        }
+        return h;
     }
 
     // this doesn't have a very precise meaning, just to reduce
@@ -193,23 +212,20 @@ final class Path {
     }
 
     private void appendToStringBuilder(StringBuilder sb) {
-        if (hasFunkyChars(first) || first.isEmpty())
-            sb.append(ConfigImplUtil.renderJsonString(first));
-        else
-            sb.append(first);
-        if (remainder != null) {
-            sb.append(".");
-            remainder.appendToStringBuilder(sb);
+        for (int i = start; i < end; ++i) {
+            String e = elements[i];
+            if (i > start)
+                sb.append(".");
+            if (hasFunkyChars(e) || e.isEmpty())
+                sb.append(ConfigImplUtil.renderJsonString(e));
+            else
+                sb.append(e);
         }
     }
 
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Path(");
-        appendToStringBuilder(sb);
-        sb.append(")");
-        return sb.toString();
+        return "Path(" + render() + ")";
     }
 
     /**
@@ -217,9 +233,14 @@ final class Path {
      * error-message-oriented human-readable one.
      */
     String render() {
-        StringBuilder sb = new StringBuilder();
-        appendToStringBuilder(sb);
-        return sb.toString();
+        String r = rendered;
+        if (r == null) {
+            StringBuilder sb = new StringBuilder();
+            appendToStringBuilder(sb);
+            r = sb.toString();
+            rendered = r;
+        }
+        return r;
     }
 
     static Path newKey(String key) {
@@ -227,6 +248,6 @@ final class Path {
     }
 
     static Path newPath(String path) {
-        return PathParser.parsePath(path);
+        return PathCache.newPath(path);
     }
 }
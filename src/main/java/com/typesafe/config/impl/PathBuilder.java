@@ -3,17 +3,17 @@
  */
 package com.typesafe.config.impl;
 
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.typesafe.config.ConfigException;
 
 final class PathBuilder {
-    // the keys are kept "backward" (top of stack is end of path)
-    final private Stack<String> keys;
+    final private List<String> keys;
     private Path result;
 
     PathBuilder() {
-        keys = new Stack<String>();
+        keys = new ArrayList<String>();
     }
 
     private void checkCanAppend() {
@@ -25,36 +25,21 @@ final class PathBuilder {
     void appendKey(String key) {
         checkCanAppend();
 
-        keys.push(key);
+        keys.add(key);
     }
 
     void appendPath(Path path) {
         checkCanAppend();
 
-        String first = path.first();
-        Path remainder = path.remainder();
-        while (true) {
-            keys.push(first);
-            if (remainder != null) {
-                first = remainder.first();
-                remainder = remainder.remainder();
-            } else {
-                break;
-            }
-        }
+        for (Path p = path; p != null; p = p.remainder())
+            keys.add(p.first());
     }
 
     Path result() {
         // note: if keys is empty, we want to return null, which is a valid
         // empty path
-        if (result == null) {
-            Path remainder = null;
-            while (!keys.isEmpty()) {
-                String key = keys.pop();
-                remainder = new Path(key, remainder);
-            }
-            result = remainder;
-        }
+        if (result == null && !keys.isEmpty())
+            result = Path.fromElements(keys.toArray(new String[keys.size()]));
         return result;
     }
 }
@@ -0,0 +1,151 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config.impl;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the {@link Path} each path expression parsed to, so getters
+ * called over and over with the same literal paths don't parse and allocate
+ * every time, see {@link com.typesafe.config.ConfigPathCache}. Paths are
+ * immutable, so one can be handed to any number of callers.
+ * <p>
+ * The cache is a fixed array of slots; an expression can be in the slot
+ * its hash picks or the one next to it, and a new expression replaces the
+ * older of what is there. That keeps it bounded without locks or
+ * bookkeeping: a lookup is at most two array reads and string comparisons,
+ * and the paths in use take back their slots as soon as they are used
+ * again. Expressions that fail to parse are never cached.
+ */
+final class PathCache {
+    // people do -Dconfig.path_cache_size=N, 0 turns the cache off
+    private static final String SIZE_PROPERTY = "config.path_cache_size";
+    private static final int DEFAULT_SIZE = 4096;
+    // far more paths than a program uses, and only a few megabytes
+    static final int MAX_SLOTS = 1 << 20;
+
+    private static final class Entry {
+        final String expression;
+        final Path path;
+
+        Entry(String expression, Path path) {
+            this.expression = expression;
+            this.path = path;
+        }
+    }
+
+    // null if the cache is off; replaced as a whole when resized
+    private static volatile AtomicReferenceArray<Entry> slots = newSlots(sizeFromProperty());
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private PathCache() {
+    }
+
+    private static int sizeFromProperty() {
+        String s;
+        try {
+            s = System.getProperty(SIZE_PROPERTY);
+        } catch (SecurityException e) {
+            s = null;
+        }
+        if (s == null)
+            return DEFAULT_SIZE;
+        try {
+            return Math.max(0, Integer.parseInt(s.trim()));
+        } catch (NumberFormatException e) {
+            return DEFAULT_SIZE;
+        }
+    }
+
+    // rounds up to a power of two so the slot is a mask of the hash, and to
+    // at least the two slots an expression can go in; the size comes from a
+    // system property when the class loads, so anything past MAX_SLOTS gets
+    // MAX_SLOTS rather than an array too big to allocate
+    static int slotCount(int maxSize) {
+        int capped = Math.min(Math.max(maxSize, 2), MAX_SLOTS);
+        int size = Integer.highestOneBit(capped);
+        return size < capped ? size << 1 : size;
+    }
+
+    private static AtomicReferenceArray<Entry> newSlots(int maxSize) {
+        if (maxSize <= 0)
+            return null;
+        return new AtomicReferenceArray<Entry>(slotCount(maxSize));
+    }
+
+    private static int slot(String expression, int length) {
+        int h = expression.hashCode();
+        // spread the high bits down, as HashMap does
+        return (h ^ (h >>> 16)) & (length - 1);
+    }
+
+    static Path newPath(String expression) {
+        AtomicReferenceArray<Entry> s = slots;
+        if (s == null)
+            return PathParser.parsePath(expression);
+
+        int i = slot(expression, s.length());
+        Entry e = s.get(i);
+        if (e == null || !e.expression.equals(expression)) {
+            Entry other = s.get(i ^ 1);
+            if (other != null && other.expression.equals(expression))
+                e = other;
+            else
+                e = null;
+        }
+        if (e != null) {
+            hits.increment();
+            return e.path;
+        }
+        misses.increment();
+        Path path = PathParser.parsePath(expression);
+        // the newest goes first and the one it displaces moves to the
+        // neighbour, so two busy expressions that want the same slot
+        // don't keep evicting each other
+        Entry displaced = s.get(i);
+        if (displaced != null)
+            s.lazySet(i ^ 1, displaced);
+        s.lazySet(i, new Entry(expression, path));
+        return path;
+    }
+
+    static void setMaxSize(int maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("Attempt to set negative path cache size: " + maxSize);
+        slots = newSlots(maxSize);
+    }
+
+    static int maxSize() {
+        AtomicReferenceArray<Entry> s = slots;
+        return s == null ? 0 : s.length();
+    }
+
+    static int size() {
+        AtomicReferenceArray<Entry> s = slots;
+        if (s == null)
+            return 0;
+        int count = 0;
+        for (int i = 0; i < s.length(); ++i) {
+            if (s.get(i) != null)
+                count += 1;
+        }
+        return count;
+    }
+
+    static long hitCount() {
+        return hits.sum();
+    }
+
+    static long missCount() {
+        return misses.sum();
+    }
+
+    static void clear() {
+        setMaxSize(maxSize());
+        hits.reset();
+        misses.reset();
+    }
+}
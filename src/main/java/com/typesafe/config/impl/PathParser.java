@@ -5,6 +5,7 @@ package com.typesafe.config.impl;
 
 import com.typesafe.config.ConfigException;
 import com.typesafe.config.ConfigOrigin;
+import com.typesafe.config.ConfigStringPool;
 import com.typesafe.config.ConfigSyntax;
 import com.typesafe.config.ConfigValueType;
 
@@ -66,12 +67,18 @@ final class PathParser {
 
     protected static Path parsePathExpression(Iterator<Token> expression,
                                             ConfigOrigin origin) {
-        return parsePathExpression(expression, origin, null, null, ConfigSyntax.CONF);
+        return parsePathExpression(expression, origin, null, null, ConfigSyntax.CONF, null);
+    }
+
+    // takes the path elements from the pool if it isn't null
+    protected static Path parsePathExpression(Iterator<Token> expression,
+                                            ConfigOrigin origin, ConfigStringPool stringPool) {
+        return parsePathExpression(expression, origin, null, null, ConfigSyntax.CONF, stringPool);
     }
 
     protected static Path parsePathExpression(Iterator<Token> expression,
                                               ConfigOrigin origin, String originalText) {
-        return parsePathExpression(expression, origin, originalText, null, ConfigSyntax.CONF);
+        return parsePathExpression(expression, origin, originalText, null, ConfigSyntax.CONF, null);
     }
 
     protected static ConfigNodePath parsePathNodeExpression(Iterator<Token> expression,
@@ -82,7 +89,7 @@ final class PathParser {
     protected static ConfigNodePath parsePathNodeExpression(Iterator<Token> expression,
                                                             ConfigOrigin origin, String originalText, ConfigSyntax flavor) {
         ArrayList<Token> pathTokens = new ArrayList<Token>();
-        Path path = parsePathExpression(expression, origin, originalText, pathTokens, flavor);
+        Path path = parsePathExpression(expression, origin, originalText, pathTokens, flavor, null);
         return new ConfigNodePath(path, pathTokens);
     }
 
@@ -90,7 +97,7 @@ final class PathParser {
     protected static Path parsePathExpression(Iterator<Token> expression,
                                             ConfigOrigin origin, String originalText,
                                             ArrayList<Token> pathTokens,
-                                            ConfigSyntax flavor) {
+                                            ConfigSyntax flavor, ConfigStringPool stringPool) {
         // each builder in "buf" is an element in the path.
         List<Element> buf = new ArrayList<Element>();
         buf.add(new Element("", false));
@@ -134,15 +141,15 @@ final class PathParser {
                     // though there's a number in it. The fact that
                     // we tokenize non-string values is largely an
                     // implementation detail.
-                    AbstractConfigValue v = Tokens.getValue(t);
-
                     // We need to split the tokens on a . so that we can get sub-paths but still preserve
                     // the original path text when doing an insertion
                     if (pathTokens != null) {
                         pathTokens.remove(pathTokens.size() - 1);
                         pathTokens.addAll(splitTokenOnPeriod(t, flavor));
                     }
-                    text = v.transformToString();
+                    // the token's text rather than the value's, which a
+                    // number may not keep
+                    text = t.tokenText();
                 } else if (Tokens.isUnquotedText(t)) {
                     // We need to split the tokens on a . so that we can get sub-paths but still preserve
                     // the original path text when doing an insertion on ConfigNodeObjects
@@ -172,7 +179,8 @@ final class PathParser {
                         originalText,
                         "path has a leading, trailing, or two adjacent period '.' (use quoted \"\" empty string if you want an empty element)");
             } else {
-                pb.appendKey(e.sb.toString());
+                String key = e.sb.toString();
+                pb.appendKey(stringPool == null ? key : stringPool.intern(key));
             }
         }
 
@@ -240,7 +248,9 @@ final class PathParser {
                 if (lastWasDot)
                     return true; // ".." means we need to throw an error
                 lastWasDot = true;
-            } else if (c == '-') {
+            } else if (c == '-' || (c >= '0' && c <= '9')) {
+                // at the start of an element these could begin a number,
+                // after a letter they are just part of the unquoted text
                 if (lastWasDot)
                     return true;
                 continue;
@@ -255,16 +265,22 @@ final class PathParser {
         return false;
     }
 
-    private static Path fastPathBuild(Path tail, String s, int end) {
-        // lastIndexOf takes last index it should look at, end - 1 not end
-        int splitAt = s.lastIndexOf('.', end - 1);
-        // this works even if splitAt is -1; then we start the substring at 0
-        Path withOneMoreElement = new Path(s.substring(splitAt + 1, end), tail);
-        if (splitAt < 0) {
-            return withOneMoreElement;
-        } else {
-            return fastPathBuild(withOneMoreElement, s, splitAt);
+    private static Path fastPathBuild(String s) {
+        int count = 1;
+        for (int i = 0; i < s.length(); ++i) {
+            if (s.charAt(i) == '.')
+                count += 1;
+        }
+        String[] elements = new String[count];
+        int from = 0;
+        for (int i = 0; i < count - 1; ++i) {
+            int dot = s.indexOf('.', from);
+            elements[i] = s.substring(from, dot);
+            from = dot + 1;
         }
+        // this is all of s if there are no periods
+        elements[count - 1] = s.substring(from);
+        return Path.fromElements(elements);
     }
 
     // do something much faster than the full parser if
@@ -274,6 +290,6 @@ final class PathParser {
         if (looksUnsafeForFastParser(s))
             return null;
 
-        return fastPathBuild(null, s, s.length());
+        return fastPathBuild(s);
     }
 }
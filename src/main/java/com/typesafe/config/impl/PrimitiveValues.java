@@ -0,0 +1,267 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config.impl;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The elements of a {@link SimpleConfigList} that are all ints, all longs,
+ * all doubles or all booleans, kept as a primitive array instead of one
+ * value object each. Parsed lists of numbers are often long tables, and this
+ * way they take a few bytes per element and
+ * {@link com.typesafe.config.Config#getIntArray(String)} and friends can copy
+ * the array without boxing anything.
+ * <p>
+ * Only lists that can be put back exactly are packed: every element has to
+ * be the same class, have no original text other than the canonical one,
+ * and have the same origin as the first element apart from its line number.
+ * {@link #get(int)} gives a value equal to the one that was packed, so the
+ * rest of the library can treat this as any other list of values. The first
+ * {@code get} makes the values for the whole list and keeps them, so
+ * iterating, rendering or comparing the list doesn't make new ones each time
+ * and every {@code get} of an index returns the same instance; the
+ * primitive getters never need them.
+ */
+abstract class PrimitiveValues extends AbstractList<AbstractConfigValue> implements RandomAccess {
+
+    final private SimpleConfigOrigin origin;
+    // null if every element is on the origin's line
+    final private int[] lineNumbers;
+    // made by the first get(); null until then
+    private volatile AbstractConfigValue[] boxed;
+
+    private PrimitiveValues(SimpleConfigOrigin origin, int[] lineNumbers) {
+        this.origin = origin;
+        this.lineNumbers = lineNumbers;
+    }
+
+    final SimpleConfigOrigin origin(int index) {
+        if (lineNumbers == null)
+            return origin;
+        else
+            return origin.withLineNumber(lineNumbers[index]);
+    }
+
+    @Override
+    public final AbstractConfigValue get(int index) {
+        AbstractConfigValue[] b = boxed;
+        if (b == null) {
+            // racing threads may each make an array, which is harmless as
+            // the values are equal and only one array is kept
+            b = new AbstractConfigValue[size()];
+            for (int i = 0; i < b.length; ++i)
+                b[i] = box(i);
+            boxed = b;
+        }
+        return b[index];
+    }
+
+    abstract AbstractConfigValue box(int index);
+
+    // the ints, or null if they'd have to be range checked
+    int[] toIntArray() {
+        return null;
+    }
+
+    // the longs, or null if the elements aren't integers
+    long[] toLongArray() {
+        return null;
+    }
+
+    double[] toDoubleArray() {
+        return null;
+    }
+
+    boolean[] toBooleanArray() {
+        return null;
+    }
+
+    /**
+     * Packs the values if they can be packed, otherwise returns them as they
+     * are.
+     */
+    static List<AbstractConfigValue> pack(List<AbstractConfigValue> values) {
+        // a single element isn't worth an array
+        if (values.size() < 2 || values instanceof PrimitiveValues)
+            return values;
+        AbstractConfigValue first = values.get(0);
+        Class<?> klass = first.getClass();
+        if (klass != ConfigInt.class && klass != ConfigLong.class && klass != ConfigDouble.class
+                && klass != ConfigBoolean.class)
+            return values;
+        SimpleConfigOrigin origin = first.origin();
+
+        int size = values.size();
+        int[] lineNumbers = new int[size];
+        boolean sameLine = true;
+        for (int i = 0; i < size; ++i) {
+            AbstractConfigValue v = values.get(i);
+            if (v.getClass() != klass)
+                return values;
+            if (v instanceof ConfigNumber && !((ConfigNumber) v).textIsRedundant())
+                return values;
+            SimpleConfigOrigin o = v.origin();
+            // origin equality ignores comments, so compare those too
+            if (!o.equals(origin.withLineNumber(o.lineNumber()))
+                    || !ConfigImplUtil.equalsHandlingNull(o.commentsOrNull(), origin.commentsOrNull()))
+                return values;
+            lineNumbers[i] = o.lineNumber();
+            sameLine = sameLine && o.lineNumber() == origin.lineNumber();
+        }
+        if (sameLine)
+            lineNumbers = null;
+
+        if (klass == ConfigInt.class) {
+            int[] a = new int[size];
+            for (int i = 0; i < size; ++i)
+                a[i] = ((ConfigInt) values.get(i)).unwrapped();
+            return new Ints(origin, lineNumbers, a);
+        } else if (klass == ConfigLong.class) {
+            long[] a = new long[size];
+            for (int i = 0; i < size; ++i)
+                a[i] = ((ConfigLong) values.get(i)).longValue();
+            return new Longs(origin, lineNumbers, a);
+        } else if (klass == ConfigDouble.class) {
+            double[] a = new double[size];
+            for (int i = 0; i < size; ++i)
+                a[i] = ((ConfigDouble) values.get(i)).doubleValue();
+            return new Doubles(origin, lineNumbers, a);
+        } else {
+            boolean[] a = new boolean[size];
+            for (int i = 0; i < size; ++i)
+                a[i] = ((ConfigBoolean) values.get(i)).unwrapped();
+            return new Booleans(origin, lineNumbers, a);
+        }
+    }
+
+    private static final class Ints extends PrimitiveValues {
+        final private int[] values;
+
+        Ints(SimpleConfigOrigin origin, int[] lineNumbers, int[] values) {
+            super(origin, lineNumbers);
+            this.values = values;
+        }
+
+        @Override
+        AbstractConfigValue box(int index) {
+            return new ConfigInt(origin(index), values[index], null);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        int[] toIntArray() {
+            return values.clone();
+        }
+
+        @Override
+        long[] toLongArray() {
+            long[] a = new long[values.length];
+            for (int i = 0; i < a.length; ++i)
+                a[i] = values[i];
+            return a;
+        }
+
+        @Override
+        double[] toDoubleArray() {
+            double[] a = new double[values.length];
+            for (int i = 0; i < a.length; ++i)
+                a[i] = values[i];
+            return a;
+        }
+    }
+
+    private static final class Longs extends PrimitiveValues {
+        final private long[] values;
+
+        Longs(SimpleConfigOrigin origin, int[] lineNumbers, long[] values) {
+            super(origin, lineNumbers);
+            this.values = values;
+        }
+
+        @Override
+        AbstractConfigValue box(int index) {
+            return new ConfigLong(origin(index), values[index], null);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        long[] toLongArray() {
+            return values.clone();
+        }
+
+        @Override
+        double[] toDoubleArray() {
+            double[] a = new double[values.length];
+            for (int i = 0; i < a.length; ++i)
+                a[i] = values[i];
+            return a;
+        }
+    }
+
+    private static final class Doubles extends PrimitiveValues {
+        final private double[] values;
+
+        Doubles(SimpleConfigOrigin origin, int[] lineNumbers, double[] values) {
+            super(origin, lineNumbers);
+            this.values = values;
+        }
+
+        @Override
+        AbstractConfigValue box(int index) {
+            return new ConfigDouble(origin(index), values[index], null);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        long[] toLongArray() {
+            long[] a = new long[values.length];
+            for (int i = 0; i < a.length; ++i)
+                a[i] = (long) values[i];
+            return a;
+        }
+
+        @Override
+        double[] toDoubleArray() {
+            return values.clone();
+        }
+    }
+
+    private static final class Booleans extends PrimitiveValues {
+        final private boolean[] values;
+
+        Booleans(SimpleConfigOrigin origin, int[] lineNumbers, boolean[] values) {
+            super(origin, lineNumbers);
+            this.values = values;
+        }
+
+        @Override
+        AbstractConfigValue box(int index) {
+            return new ConfigBoolean(origin(index), values[index]);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        boolean[] toBooleanArray() {
+            return values.clone();
+        }
+    }
+}
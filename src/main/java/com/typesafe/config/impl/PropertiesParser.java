@@ -5,25 +5,250 @@ package com.typesafe.config.impl;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
 import com.typesafe.config.ConfigException;
 import com.typesafe.config.ConfigOrigin;
+import com.typesafe.config.ConfigStringPool;
 
 final class PropertiesParser {
     static AbstractConfigObject parse(Reader reader,
-            ConfigOrigin origin) throws IOException {
-        Properties props = new Properties();
-        props.load(reader);
-        return fromProperties(origin, props);
+            ConfigOrigin origin, ConfigStringPool stringPool) throws IOException {
+        PathNode root = new PathNode();
+        new PropertiesReader(reader, stringPool).readInto(root);
+        return fromPathTree(origin, root, true /* from properties */);
+    }
+
+    /*
+     * Reads a properties file the way Properties.load(Reader) does, but puts
+     * each key and value straight into a tree of PathNodes rather than into a
+     * Properties table first. The comment, escape and line continuation rules,
+     * including their odd corners, are those of the JDK's LineReader and
+     * loadConvert(); a malformed unicode escape throws the same
+     * IllegalArgumentException.
+     */
+    private static final class PropertiesReader {
+        final private Reader input;
+        // chars read from input but not yet consumed are
+        // inputBuffer[inputPosition, inputLimit)
+        final private char[] inputBuffer;
+        private int inputPosition;
+        private int inputLimit;
+        // the current logical line, without continuations and comments
+        private char[] line;
+        final private StringBuilder sb;
+        // null if strings are not pooled
+        final private ConfigStringPool stringPool;
+
+        PropertiesReader(Reader input, ConfigStringPool stringPool) {
+            this.input = input;
+            this.inputBuffer = new char[8192];
+            this.inputPosition = 0;
+            this.inputLimit = 0;
+            this.line = new char[1024];
+            this.sb = new StringBuilder();
+            this.stringPool = stringPool;
+        }
+
+        void readInto(PathNode root) throws IOException {
+            int limit;
+            while ((limit = readLine()) >= 0) {
+                int keyLen = 0;
+                int valueStart = limit;
+                boolean hasSeparator = false;
+                boolean keyHasBackslash = false;
+                boolean precedingBackslash = false;
+                while (keyLen < limit) {
+                    char c = line[keyLen];
+                    if ((c == '=' || c == ':') && !precedingBackslash) {
+                        valueStart = keyLen + 1;
+                        hasSeparator = true;
+                        break;
+                    } else if ((c == ' ' || c == '\t' || c == '\f') && !precedingBackslash) {
+                        valueStart = keyLen + 1;
+                        break;
+                    }
+                    if (c == '\\') {
+                        precedingBackslash = !precedingBackslash;
+                        keyHasBackslash = true;
+                    } else {
+                        precedingBackslash = false;
+                    }
+                    keyLen++;
+                }
+                while (valueStart < limit) {
+                    char c = line[valueStart];
+                    if (c != ' ' && c != '\t' && c != '\f') {
+                        if (!hasSeparator && (c == '=' || c == ':'))
+                            hasSeparator = true;
+                        else
+                            break;
+                    }
+                    valueStart++;
+                }
+
+                PathNode node;
+                if (keyHasBackslash) {
+                    // an escaped period still separates path elements
+                    node = root.descendantForPropertyKey(convert(0, keyLen));
+                } else {
+                    node = root;
+                    int start = 0;
+                    for (int i = 0; i < keyLen; ++i) {
+                        if (line[i] == '.') {
+                            node = node.child(pooled(new String(line, start, i - start)));
+                            start = i + 1;
+                        }
+                    }
+                    node = node.child(pooled(new String(line, start, keyLen - start)));
+                }
+                node.value = pooled(convert(valueStart, limit));
+                node.hasValue = true;
+            }
+        }
+
+        private String pooled(String s) {
+            return stringPool == null ? s : stringPool.intern(s);
+        }
+
+        // returns the length of the next logical line, which is in line[], or
+        // -1 at the end of the input
+        private int readLine() throws IOException {
+            int len = 0;
+            int off = inputPosition;
+            int limit = inputLimit;
+            boolean skipWhiteSpace = true;
+            boolean appendedLineBegin = false;
+            boolean precedingBackslash = false;
+            char[] buf = inputBuffer;
+            char c;
+
+            while (true) {
+                if (off >= limit) {
+                    inputLimit = limit = input.read(buf);
+                    if (limit <= 0) {
+                        if (len == 0)
+                            return -1;
+                        return precedingBackslash ? len - 1 : len;
+                    }
+                    off = 0;
+                }
+
+                c = buf[off++];
+
+                if (skipWhiteSpace) {
+                    if (c == ' ' || c == '\t' || c == '\f')
+                        continue;
+                    if (!appendedLineBegin && (c == '\r' || c == '\n'))
+                        continue;
+                    skipWhiteSpace = false;
+                    appendedLineBegin = false;
+                }
+
+                if (len == 0 && (c == '#' || c == '!')) {
+                    // a comment, skip the rest of the line
+                    commentLoop: while (true) {
+                        while (off < limit) {
+                            c = buf[off++];
+                            if (c == '\r' || c == '\n')
+                                break commentLoop;
+                        }
+                        inputLimit = limit = input.read(buf);
+                        if (limit <= 0)
+                            return -1;
+                        off = 0;
+                    }
+                    skipWhiteSpace = true;
+                    continue;
+                }
+
+                if (c != '\n' && c != '\r') {
+                    if (len == line.length)
+                        line = Arrays.copyOf(line, len * 2);
+                    line[len++] = c;
+                    precedingBackslash = (c == '\\') ? !precedingBackslash : false;
+                } else {
+                    // end of a natural line
+                    if (len == 0) {
+                        skipWhiteSpace = true;
+                        continue;
+                    }
+                    if (off >= limit) {
+                        inputLimit = limit = input.read(buf);
+                        off = 0;
+                        if (limit <= 0)
+                            return precedingBackslash ? len - 1 : len;
+                    }
+                    if (precedingBackslash) {
+                        // the line continues, without the backslash and
+                        // without the next line's leading whitespace
+                        len -= 1;
+                        skipWhiteSpace = true;
+                        appendedLineBegin = true;
+                        precedingBackslash = false;
+                        if (c == '\r' && buf[off] == '\n')
+                            off++;
+                    } else {
+                        inputPosition = off;
+                        return len;
+                    }
+                }
+            }
+        }
+
+        // unescapes line[start, end)
+        private String convert(int start, int end) {
+            int off = start;
+            while (off < end && line[off] != '\\')
+                off++;
+            if (off == end)
+                return new String(line, start, end - start);
+
+            sb.setLength(0);
+            sb.append(line, start, off - start);
+            while (off < end) {
+                char c = line[off++];
+                if (c == '\\') {
+                    c = line[off++];
+                    if (c == 'u') {
+                        if (off > end - 4)
+                            throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                        int value = 0;
+                        for (int i = 0; i < 4; i++) {
+                            c = line[off++];
+                            int digit;
+                            if (c >= '0' && c <= '9')
+                                digit = c - '0';
+                            else if (c >= 'a' && c <= 'f')
+                                digit = 10 + c - 'a';
+                            else if (c >= 'A' && c <= 'F')
+                                digit = 10 + c - 'A';
+                            else
+                                throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                            value = (value << 4) + digit;
+                        }
+                        sb.append((char) value);
+                    } else {
+                        if (c == 't')
+                            c = '\t';
+                        else if (c == 'r')
+                            c = '\r';
+                        else if (c == 'n')
+                            c = '\n';
+                        else if (c == 'f')
+                            c = '\f';
+                        sb.append(c);
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
     }
 
     static String lastElement(String path) {
@@ -43,15 +268,8 @@ final class PropertiesParser {
     }
 
     static Path pathFromPropertyKey(String key) {
-        String last = lastElement(key);
-        String exceptLast = exceptLastElement(key);
-        Path path = new Path(last, null);
-        while (exceptLast != null) {
-            last = lastElement(exceptLast);
-            exceptLast = exceptLastElement(exceptLast);
-            path = new Path(last, path);
-        }
-        return path;
+        // every period separates two elements, even empty ones
+        return Path.fromElements(key.split("\\.", -1));
     }
 
     static AbstractConfigObject fromProperties(ConfigOrigin origin,
@@ -60,20 +278,16 @@ final class PropertiesParser {
     }
 
     private static <K, V> AbstractConfigObject fromEntrySet(ConfigOrigin origin, Set<Map.Entry<K, V>> entries) {
-        final Map<Path, Object> pathMap = getPathMap(entries);
-        return fromPathMap(origin, pathMap, true /* from properties */);
-    }
-
-    private static <K, V> Map<Path, Object> getPathMap(Set<Map.Entry<K, V>> entries) {
-        Map<Path, Object> pathMap = new HashMap<Path, Object>();
+        PathNode root = new PathNode();
         for (Map.Entry<K, V> entry : entries) {
             Object key = entry.getKey();
             if (key instanceof String) {
-                Path path = pathFromPropertyKey((String) key);
-                pathMap.put(path, entry.getValue());
+                PathNode node = root.descendantForPropertyKey((String) key);
+                node.value = entry.getValue();
+                node.hasValue = true;
             }
         }
-        return pathMap;
+        return fromPathTree(origin, root, true /* from properties */);
     }
 
     static AbstractConfigObject fromStringMap(ConfigOrigin origin, Map<String, String> stringMap) {
@@ -82,7 +296,7 @@ final class PropertiesParser {
 
     static AbstractConfigObject fromPathMap(ConfigOrigin origin,
             Map<?, ?> pathExpressionMap) {
-        Map<Path, Object> pathMap = new HashMap<Path, Object>();
+        PathNode root = new PathNode();
         for (Map.Entry<?, ?> entry : pathExpressionMap.entrySet()) {
             Object keyObj = entry.getKey();
             if (!(keyObj instanceof String)) {
@@ -90,121 +304,91 @@ final class PropertiesParser {
                         "Map has a non-string as a key, expecting a path expression as a String");
             }
             Path path = Path.newPath((String) keyObj);
-            pathMap.put(path, entry.getValue());
+            PathNode node = root;
+            for (Path p = path; p != null; p = p.remainder()) {
+                if (node.hasValue)
+                    throw parentAndValue(node.path);
+                node = node.child(p.first());
+            }
+            if (node.children != null)
+                throw parentAndValue(path);
+            node.value = entry.getValue();
+            node.hasValue = true;
+            node.path = path;
         }
-        return fromPathMap(origin, pathMap, false /* from properties */);
+        return fromPathTree(origin, root, false /* from properties */);
     }
 
-    private static AbstractConfigObject fromPathMap(ConfigOrigin origin,
-            Map<Path, Object> pathMap, boolean convertedFromProperties) {
-        /*
-         * First, build a list of paths that will have values, either string or
-         * object values.
-         */
-        Set<Path> scopePaths = new HashSet<Path>();
-        Set<Path> valuePaths = new HashSet<Path>();
-        for (Path path : pathMap.keySet()) {
-            // add value's path
-            valuePaths.add(path);
-
-            // all parent paths are objects
-            Path next = path.parent();
-            while (next != null) {
-                scopePaths.add(next);
-                next = next.parent();
-            }
-        }
+    private static ConfigException parentAndValue(Path path) {
+        return new ConfigException.BugOrBroken("In the map, path '" + path.render()
+                + "' occurs as both the parent object of a value and as a value. "
+                + "Because Map has no defined ordering, this is a broken situation.");
+    }
 
-        if (convertedFromProperties) {
-            /*
-             * If any string values are also objects containing other values,
-             * drop those string values - objects "win".
-             */
-            valuePaths.removeAll(scopePaths);
-        } else {
-            /* If we didn't start out as properties, then this is an error. */
-            for (Path path : valuePaths) {
-                if (scopePaths.contains(path)) {
-                    throw new ConfigException.BugOrBroken(
-                            "In the map, path '"
-                                    + path.render()
-                                    + "' occurs as both the parent object of a value and as a value. "
-                                    + "Because Map has no defined ordering, this is a broken situation.");
-                }
+    /*
+     * The keys of a map are put into a tree of these, sharing the nodes for
+     * common prefixes, and then each node with children becomes an object.
+     * This takes one pass over the map and one over the tree, without sorting
+     * paths or looking up the parent of every path.
+     */
+    private static final class PathNode {
+        Object value;
+        boolean hasValue;
+        // the key's path, for errors; not set for properties
+        Path path;
+        // null unless this is an object
+        Map<String, PathNode> children;
+
+        PathNode child(String key) {
+            if (children == null)
+                children = new HashMap<String, PathNode>();
+            PathNode child = children.get(key);
+            if (child == null) {
+                child = new PathNode();
+                children.put(key, child);
             }
+            return child;
         }
 
-        /*
-         * Create maps for the object-valued values.
-         */
-        Map<String, AbstractConfigValue> root = new HashMap<String, AbstractConfigValue>();
-        Map<Path, Map<String, AbstractConfigValue>> scopes = new HashMap<Path, Map<String, AbstractConfigValue>>();
-
-        for (Path path : scopePaths) {
-            Map<String, AbstractConfigValue> scope = new HashMap<String, AbstractConfigValue>();
-            scopes.put(path, scope);
+        // splits the key on every period, the same as pathFromPropertyKey()
+        PathNode descendantForPropertyKey(String key) {
+            PathNode node = this;
+            int start = 0;
+            int dot;
+            while ((dot = key.indexOf('.', start)) >= 0) {
+                node = node.child(key.substring(start, dot));
+                start = dot + 1;
+            }
+            return node.child(key.substring(start));
         }
+    }
 
-        /* Store string values in the associated scope maps */
-        for (Path path : valuePaths) {
-            Path parentPath = path.parent();
-            Map<String, AbstractConfigValue> parent = parentPath != null ? scopes
-                    .get(parentPath) : root;
-
-            String last = path.last();
-            Object rawValue = pathMap.get(path);
-            AbstractConfigValue value;
-            if (convertedFromProperties) {
-                if (rawValue instanceof String) {
-                    value = new ConfigString.Quoted(origin, (String) rawValue);
+    private static AbstractConfigObject fromPathTree(ConfigOrigin origin, PathNode node,
+            boolean convertedFromProperties) {
+        Map<String, AbstractConfigValue> scope = new HashMap<String, AbstractConfigValue>();
+        if (node.children != null) {
+            for (Map.Entry<String, PathNode> entry : node.children.entrySet()) {
+                PathNode child = entry.getValue();
+                AbstractConfigValue value;
+                if (child.children != null) {
+                    // a path with children is an object; in properties that
+                    // also have a string value here, the object "wins"
+                    value = fromPathTree(origin, child, convertedFromProperties);
+                } else if (convertedFromProperties) {
+                    if (child.value instanceof String) {
+                        value = new ConfigString.Quoted(origin, (String) child.value);
+                    } else {
+                        // silently ignore non-string values in Properties
+                        value = null;
+                    }
                 } else {
-                    // silently ignore non-string values in Properties
-                    value = null;
+                    value = ConfigImpl.fromAnyRef(child.value, origin, FromMapMode.KEYS_ARE_PATHS);
                 }
-            } else {
-                value = ConfigImpl.fromAnyRef(pathMap.get(path), origin,
-                        FromMapMode.KEYS_ARE_PATHS);
-            }
-            if (value != null)
-                parent.put(last, value);
-        }
-
-        /*
-         * Make a list of scope paths from longest to shortest, so children go
-         * before parents.
-         */
-        List<Path> sortedScopePaths = new ArrayList<Path>();
-        sortedScopePaths.addAll(scopePaths);
-        // sort descending by length
-        Collections.sort(sortedScopePaths, new Comparator<Path>() {
-            @Override
-            public int compare(Path a, Path b) {
-                // Path.length() is O(n) so in theory this sucks
-                // but in practice we can make Path precompute length
-                // if it ever matters.
-                return b.length() - a.length();
+                if (value != null)
+                    scope.put(entry.getKey(), value);
             }
-        });
-
-        /*
-         * Create ConfigObject for each scope map, working from children to
-         * parents to avoid modifying any already-created ConfigObject. This is
-         * where we need the sorted list.
-         */
-        for (Path scopePath : sortedScopePaths) {
-            Map<String, AbstractConfigValue> scope = scopes.get(scopePath);
-
-            Path parentPath = scopePath.parent();
-            Map<String, AbstractConfigValue> parent = parentPath != null ? scopes
-                    .get(parentPath) : root;
-
-            AbstractConfigObject o = new SimpleConfigObject(origin, scope,
-                    ResolveStatus.RESOLVED, false /* ignoresFallbacks */);
-            parent.put(scopePath.last(), o);
         }
-
-        // return root config object
-        return new SimpleConfigObject(origin, root, ResolveStatus.RESOLVED,
+        return new SimpleConfigObject(origin, scope, ResolveStatus.RESOLVED,
                 false /* ignoresFallbacks */);
     }
 }
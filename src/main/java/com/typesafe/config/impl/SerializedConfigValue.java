@@ -36,6 +36,20 @@ import com.typesafe.config.ConfigValueType;
  * place. This class implements a lame serialization format that supports
  * skipping unknown fields, so it's moderately more extensible than the default
  * Java serialization format.
+ * <p>
+ * Version 1 stores the value as nested fields under ROOT_VALUE, with every
+ * string written out in full. Version 2 stores it under ROOT_COMPACT_VALUE
+ * instead: a single field in which each string (keys, values, origin
+ * descriptions, comments) is written once and then referred to by its index,
+ * lengths and integers are varints, origins only store what differs from
+ * their parent's, and lists of plain numbers, booleans or strings are written
+ * without a type and origin per element. Both versions can be read.
+ * <p>
+ * We write version 1 unless the system property config.serialization.version
+ * is 2. A reader from before version 2 skips ROOT_COMPACT_VALUE as an unknown
+ * field and ends up with no value, so version 2 is only safe once every
+ * reader of the stream understands it. Since then, a stream with no value we
+ * can read fails with an IOException instead.
  */
 class SerializedConfigValue extends AbstractConfigValue implements Externalizable {
 
@@ -69,7 +83,11 @@ class SerializedConfigValue extends AbstractConfigValue implements Externalizabl
         ORIGIN_NULL_URL,
         ORIGIN_NULL_COMMENTS,
         ORIGIN_RESOURCE,
-        ORIGIN_NULL_RESOURCE;
+        ORIGIN_NULL_RESOURCE,
+
+        // Field at the root holding the whole value in the compact format,
+        // written instead of ROOT_VALUE since version 2
+        ROOT_COMPACT_VALUE;
 
         static SerializedField forInt(int b) {
             if (b < values().length)
@@ -275,6 +293,7 @@ class SerializedConfigValue extends AbstractConfigValue implements Externalizabl
                 break;
             case ROOT_VALUE:
             case ROOT_WAS_CONFIG:
+            case ROOT_COMPACT_VALUE:
             case VALUE_DATA:
             case VALUE_ORIGIN:
                 throw new IOException("Not expecting this field here: " + field);
@@ -445,13 +464,474 @@ class SerializedConfigValue extends AbstractConfigValue implements Externalizabl
         }
     }
 
+    private static enum CompactValueType {
+        // the ordinals here are in the wire format, caution
+        NULL, TRUE, FALSE, INT, LONG, DOUBLE, STRING, LIST, OBJECT,
+        // lists whose elements all have the list's origin, and numbers
+        // that have no text besides their value
+        INT_LIST, LONG_LIST, DOUBLE_LIST, BOOLEAN_LIST, STRING_LIST;
+
+        static CompactValueType forInt(int b) throws IOException {
+            if (b < values().length)
+                return values()[b];
+            else
+                throw new IOException("Unknown serialized value type: " + b);
+        }
+    }
+
+    private static final int COMPACT_FORMAT_VERSION = 2;
+
+    // read each time, so the format can be switched at runtime
+    private static int formatVersion() {
+        String s = System.getProperty("config.serialization.version");
+        if (s == null || s.equals("1"))
+            return 1;
+        else if (s.equals("2"))
+            return COMPACT_FORMAT_VERSION;
+        else
+            throw new ConfigException.Generic("config.serialization.version must be 1 or 2, not '" + s + "'");
+    }
+
+    // bits saying which origin fields differ from the parent's origin
+    private static final int ORIGIN_NULL = 0x01;
+    private static final int ORIGIN_DESCRIPTION = 0x02;
+    private static final int ORIGIN_LINE_NUMBER = 0x04;
+    private static final int ORIGIN_END_LINE_NUMBER = 0x08;
+    private static final int ORIGIN_TYPE = 0x10;
+    private static final int ORIGIN_URL = 0x20;
+    private static final int ORIGIN_RESOURCE = 0x40;
+    private static final int ORIGIN_COMMENTS = 0x80;
+
+    // what the root value's origin is compared to
+    private static final SimpleConfigOrigin NO_ORIGIN = SimpleConfigOrigin.newSimple("");
+
+    private static boolean sameOrigin(SimpleConfigOrigin a, SimpleConfigOrigin b) {
+        return a == b
+                || (a != null && a.equals(b) && ConfigImplUtil.equalsHandlingNull(a.commentsOrNull(),
+                        b.commentsOrNull()));
+    }
+
+    /**
+     * Writes a value in the compact format. Strings are written the first
+     * time they are seen and then referred to as 2 + their index; 0 is null
+     * and 1 introduces a new string.
+     */
+    private static final class CompactOut {
+        final private DataOutput out;
+        final private Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        CompactOut(DataOutput out) {
+            this.out = out;
+        }
+
+        void writeVarint(long v) throws IOException {
+            while ((v & ~0x7fL) != 0) {
+                out.writeByte((int) ((v & 0x7f) | 0x80));
+                v >>>= 7;
+            }
+            out.writeByte((int) v);
+        }
+
+        // small negative numbers, which are common, stay small
+        void writeSignedVarint(long v) throws IOException {
+            writeVarint((v << 1) ^ (v >> 63));
+        }
+
+        void writeString(String s) throws IOException {
+            if (s == null) {
+                writeVarint(0);
+                return;
+            }
+            Integer index = strings.get(s);
+            if (index != null) {
+                writeVarint(2 + index);
+                return;
+            }
+            strings.put(s, strings.size());
+            writeVarint(1);
+            int length = s.length();
+            writeVarint(length);
+            // every char, even half of a surrogate pair, as a varint
+            for (int i = 0; i < length; ++i) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    out.writeByte(c);
+                } else if (c < 0x4000) {
+                    out.writeByte((c & 0x7f) | 0x80);
+                    out.writeByte(c >>> 7);
+                } else {
+                    out.writeByte((c & 0x7f) | 0x80);
+                    out.writeByte(((c >>> 7) & 0x7f) | 0x80);
+                    out.writeByte(c >>> 14);
+                }
+            }
+        }
+
+        void writeOrigin(SimpleConfigOrigin origin, SimpleConfigOrigin base) throws IOException {
+            if (origin == null) {
+                out.writeByte(ORIGIN_NULL);
+                return;
+            }
+            if (base == null)
+                base = NO_ORIGIN;
+            int flags = 0;
+            if (!origin.rawDescription().equals(base.rawDescription()))
+                flags |= ORIGIN_DESCRIPTION;
+            if (origin.lineNumber() != base.lineNumber())
+                flags |= ORIGIN_LINE_NUMBER;
+            if (origin.endLineNumber() != base.endLineNumber())
+                flags |= ORIGIN_END_LINE_NUMBER;
+            if (origin.originType() != base.originType())
+                flags |= ORIGIN_TYPE;
+            if (!ConfigImplUtil.equalsHandlingNull(origin.urlOrNull(), base.urlOrNull()))
+                flags |= ORIGIN_URL;
+            if (!ConfigImplUtil.equalsHandlingNull(origin.resourceOrNull(), base.resourceOrNull()))
+                flags |= ORIGIN_RESOURCE;
+            if (!ConfigImplUtil.equalsHandlingNull(origin.commentsOrNull(), base.commentsOrNull()))
+                flags |= ORIGIN_COMMENTS;
+
+            out.writeByte(flags);
+            if ((flags & ORIGIN_DESCRIPTION) != 0)
+                writeString(origin.rawDescription());
+            // line numbers are mostly a little after the parent's
+            if ((flags & ORIGIN_LINE_NUMBER) != 0)
+                writeSignedVarint((long) origin.lineNumber() - base.lineNumber());
+            if ((flags & ORIGIN_END_LINE_NUMBER) != 0)
+                writeSignedVarint((long) origin.endLineNumber() - origin.lineNumber());
+            if ((flags & ORIGIN_TYPE) != 0)
+                out.writeByte(origin.originType().ordinal());
+            if ((flags & ORIGIN_URL) != 0)
+                writeString(origin.urlOrNull());
+            if ((flags & ORIGIN_RESOURCE) != 0)
+                writeString(origin.resourceOrNull());
+            if ((flags & ORIGIN_COMMENTS) != 0) {
+                List<String> comments = origin.commentsOrNull();
+                if (comments == null) {
+                    writeVarint(0);
+                } else {
+                    writeVarint(comments.size() + 1);
+                    for (String c : comments)
+                        writeString(c);
+                }
+            }
+        }
+
+        // the type of list we can write without per-element origins, or LIST
+        private static CompactValueType listType(ConfigList list) {
+            if (list.isEmpty())
+                return CompactValueType.LIST;
+            SimpleConfigOrigin origin = (SimpleConfigOrigin) list.origin();
+            Class<?> klass = list.get(0).getClass();
+            for (ConfigValue v : list) {
+                if (v.getClass() != klass || !sameOrigin((SimpleConfigOrigin) v.origin(), origin))
+                    return CompactValueType.LIST;
+                // only if the value alone gives back the same text
+                if (v instanceof ConfigNumber && !((ConfigNumber) v).textIsRedundant())
+                    return CompactValueType.LIST;
+            }
+            if (klass == ConfigInt.class)
+                return CompactValueType.INT_LIST;
+            else if (klass == ConfigLong.class)
+                return CompactValueType.LONG_LIST;
+            else if (klass == ConfigDouble.class)
+                return CompactValueType.DOUBLE_LIST;
+            else if (klass == ConfigBoolean.class)
+                return CompactValueType.BOOLEAN_LIST;
+            else if (ConfigString.class.isAssignableFrom(klass))
+                return CompactValueType.STRING_LIST;
+            else
+                return CompactValueType.LIST;
+        }
+
+        void writeValue(ConfigValue value, SimpleConfigOrigin base) throws IOException {
+            if (value instanceof LazyConfigObject)
+                value = ((LazyConfigObject) value).force();
+            SimpleConfigOrigin origin = (SimpleConfigOrigin) value.origin();
+            writeOrigin(origin, base);
+
+            SerializedValueType st = SerializedValueType.forValue(value);
+            switch (st) {
+            case NULL:
+                out.writeByte(CompactValueType.NULL.ordinal());
+                break;
+            case BOOLEAN:
+                out.writeByte((((ConfigBoolean) value).unwrapped() ? CompactValueType.TRUE
+                        : CompactValueType.FALSE).ordinal());
+                break;
+            case INT:
+                out.writeByte(CompactValueType.INT.ordinal());
+                writeSignedVarint(((ConfigInt) value).unwrapped());
+                writeString(((ConfigNumber) value).originalText);
+                break;
+            case LONG:
+                out.writeByte(CompactValueType.LONG.ordinal());
+                writeSignedVarint(((ConfigLong) value).unwrapped());
+                writeString(((ConfigNumber) value).originalText);
+                break;
+            case DOUBLE:
+                out.writeByte(CompactValueType.DOUBLE.ordinal());
+                out.writeDouble(((ConfigDouble) value).unwrapped());
+                writeString(((ConfigNumber) value).originalText);
+                break;
+            case STRING:
+                out.writeByte(CompactValueType.STRING.ordinal());
+                writeString(((ConfigString) value).unwrapped());
+                break;
+            case LIST:
+                ConfigList list = (ConfigList) value;
+                CompactValueType lt = listType(list);
+                out.writeByte(lt.ordinal());
+                writeVarint(list.size());
+                switch (lt) {
+                case INT_LIST:
+                    for (ConfigValue v : list)
+                        writeSignedVarint(((ConfigInt) v).unwrapped());
+                    break;
+                case LONG_LIST:
+                    for (ConfigValue v : list)
+                        writeSignedVarint(((ConfigLong) v).unwrapped());
+                    break;
+                case DOUBLE_LIST:
+                    for (ConfigValue v : list)
+                        out.writeDouble(((ConfigDouble) v).unwrapped());
+                    break;
+                case BOOLEAN_LIST:
+                    // eight to a byte
+                    int bits = 0;
+                    for (int i = 0; i < list.size(); ++i) {
+                        if (((ConfigBoolean) list.get(i)).unwrapped())
+                            bits |= 1 << (i & 7);
+                        if ((i & 7) == 7 || i == list.size() - 1) {
+                            out.writeByte(bits);
+                            bits = 0;
+                        }
+                    }
+                    break;
+                case STRING_LIST:
+                    for (ConfigValue v : list)
+                        writeString(((ConfigString) v).unwrapped());
+                    break;
+                default:
+                    for (ConfigValue v : list)
+                        writeValue(v, origin);
+                    break;
+                }
+                break;
+            case OBJECT:
+                ConfigObject obj = (ConfigObject) value;
+                out.writeByte(CompactValueType.OBJECT.ordinal());
+                writeVarint(obj.size());
+                for (String key : obj.keySet()) {
+                    writeString(key);
+                    writeValue(obj.get(key), origin);
+                }
+                break;
+            }
+        }
+    }
+
+    /** Reads what CompactOut wrote. */
+    private static final class CompactIn {
+        final private DataInputStream in;
+        final private List<String> strings = new ArrayList<String>();
+
+        CompactIn(DataInputStream in) {
+            this.in = in;
+        }
+
+        long readVarint() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                v |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0)
+                    return v;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        long readSignedVarint() throws IOException {
+            long v = readVarint();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        // a count of things that each take at least a byte, so a corrupt
+        // stream can't make us allocate more than its size
+        int readCount() throws IOException {
+            long count = readVarint();
+            if (count > in.available())
+                throw new IOException("Count " + count + " is more than the remaining input");
+            return (int) count;
+        }
+
+        int readInt() throws IOException {
+            long v = readSignedVarint();
+            if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE)
+                throw new IOException("Int out of range: " + v);
+            return (int) v;
+        }
+
+        String readString() throws IOException {
+            long ref = readVarint();
+            if (ref == 0)
+                return null;
+            if (ref >= 2) {
+                if (ref - 2 >= strings.size())
+                    throw new IOException("Reference to unknown string " + ref);
+                return strings.get((int) (ref - 2));
+            }
+            int length = readCount();
+            char[] chars = new char[length];
+            for (int i = 0; i < length; ++i) {
+                int c = in.readUnsignedByte();
+                if (c >= 0x80) {
+                    int b = in.readUnsignedByte();
+                    c = (c & 0x7f) | ((b & 0x7f) << 7);
+                    if (b >= 0x80)
+                        c |= in.readUnsignedByte() << 14;
+                }
+                chars[i] = (char) c;
+            }
+            String s = new String(chars);
+            strings.add(s);
+            return s;
+        }
+
+        private String readNonNullString() throws IOException {
+            String s = readString();
+            if (s == null)
+                throw new IOException("Unexpected null string");
+            return s;
+        }
+
+        SimpleConfigOrigin readOrigin(SimpleConfigOrigin base) throws IOException {
+            int flags = in.readUnsignedByte();
+            if ((flags & ORIGIN_NULL) != 0)
+                return null;
+            if (base == null)
+                base = NO_ORIGIN;
+            if (flags == 0)
+                return base;
+            String description = (flags & ORIGIN_DESCRIPTION) != 0 ? readNonNullString() : base.rawDescription();
+            int lineNumber = base.lineNumber();
+            if ((flags & ORIGIN_LINE_NUMBER) != 0)
+                lineNumber = (int) (lineNumber + readSignedVarint());
+            int endLineNumber = base.endLineNumber();
+            if ((flags & ORIGIN_END_LINE_NUMBER) != 0)
+                endLineNumber = (int) (lineNumber + readSignedVarint());
+            OriginType originType = base.originType();
+            if ((flags & ORIGIN_TYPE) != 0) {
+                int t = in.readUnsignedByte();
+                if (t >= OriginType.values().length)
+                    throw new IOException("Unknown origin type " + t);
+                originType = OriginType.values()[t];
+            }
+            String url = (flags & ORIGIN_URL) != 0 ? readString() : base.urlOrNull();
+            String resource = (flags & ORIGIN_RESOURCE) != 0 ? readString() : base.resourceOrNull();
+            List<String> comments = base.commentsOrNull();
+            if ((flags & ORIGIN_COMMENTS) != 0) {
+                int count = readCount();
+                if (count == 0) {
+                    comments = null;
+                } else {
+                    comments = new ArrayList<String>(count - 1);
+                    for (int i = 0; i < count - 1; ++i)
+                        comments.add(readNonNullString());
+                }
+            }
+            return new SimpleConfigOrigin(description, lineNumber, endLineNumber, originType, url, resource,
+                    comments);
+        }
+
+        AbstractConfigValue readValue(SimpleConfigOrigin base) throws IOException {
+            SimpleConfigOrigin origin = readOrigin(base);
+            CompactValueType type = CompactValueType.forInt(in.readUnsignedByte());
+            switch (type) {
+            case NULL:
+                return new ConfigNull(origin);
+            case TRUE:
+                return new ConfigBoolean(origin, true);
+            case FALSE:
+                return new ConfigBoolean(origin, false);
+            case INT:
+                int vi = readInt();
+                return new ConfigInt(origin, vi, readString());
+            case LONG:
+                long vl = readSignedVarint();
+                return new ConfigLong(origin, vl, readString());
+            case DOUBLE:
+                double vd = in.readDouble();
+                return new ConfigDouble(origin, vd, readString());
+            case STRING:
+                return new ConfigString.Quoted(origin, readNonNullString());
+            case OBJECT:
+                int mapSize = readCount();
+                Map<String, AbstractConfigValue> map = new HashMap<String, AbstractConfigValue>(
+                        mapSize * 4 / 3 + 1);
+                for (int i = 0; i < mapSize; ++i) {
+                    String key = readNonNullString();
+                    map.put(key, readValue(origin));
+                }
+                return new SimpleConfigObject(origin, map);
+            default:
+                break;
+            }
+
+            // one of the lists
+            int listSize;
+            if (type == CompactValueType.BOOLEAN_LIST) {
+                long count = readVarint();
+                if ((count + 7) / 8 > in.available())
+                    throw new IOException("Count " + count + " is more than the remaining input");
+                listSize = (int) count;
+            } else {
+                listSize = readCount();
+            }
+            List<AbstractConfigValue> list = new ArrayList<AbstractConfigValue>(listSize);
+            int bits = 0;
+            for (int i = 0; i < listSize; ++i) {
+                switch (type) {
+                case INT_LIST:
+                    list.add(new ConfigInt(origin, readInt(), null));
+                    break;
+                case LONG_LIST:
+                    list.add(new ConfigLong(origin, readSignedVarint(), null));
+                    break;
+                case DOUBLE_LIST:
+                    list.add(new ConfigDouble(origin, in.readDouble(), null));
+                    break;
+                case BOOLEAN_LIST:
+                    if ((i & 7) == 0)
+                        bits = in.readUnsignedByte();
+                    list.add(new ConfigBoolean(origin, (bits & (1 << (i & 7))) != 0));
+                    break;
+                case STRING_LIST:
+                    list.add(new ConfigString.Quoted(origin, readNonNullString()));
+                    break;
+                default:
+                    list.add(readValue(origin));
+                    break;
+                }
+            }
+            return SimpleConfigList.packed(origin, list);
+        }
+    }
+
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
         if (((AbstractConfigValue) value).resolveStatus() != ResolveStatus.RESOLVED)
             throw new NotSerializableException(
                     "tried to serialize a value with unresolved substitutions, need to Config#resolve() first, see API docs");
-        FieldOut field = new FieldOut(SerializedField.ROOT_VALUE);
-        writeValue(field.data, value, null /* baseOrigin */);
+        FieldOut field;
+        if (formatVersion() == COMPACT_FORMAT_VERSION) {
+            field = new FieldOut(SerializedField.ROOT_COMPACT_VALUE);
+            CompactOut compact = new CompactOut(field.data);
+            compact.writeVarint(COMPACT_FORMAT_VERSION);
+            compact.writeValue(value, null /* baseOrigin */);
+        } else {
+            field = new FieldOut(SerializedField.ROOT_VALUE);
+            writeValue(field.data, value, null /* baseOrigin */);
+        }
         writeField(out, field);
 
         field = new FieldOut(SerializedField.ROOT_WAS_CONFIG);
@@ -466,19 +946,28 @@ class SerializedConfigValue extends AbstractConfigValue implements Externalizabl
         while (true) {
             SerializedField code = readCode(in);
             if (code == SerializedField.END_MARKER) {
+                // a later format we skipped as unknown
+                if (value == null)
+                    throw new IOException("No value in a format this version can read");
                 return;
             }
             
-            DataInput input = fieldIn(in);
+            DataInputStream input = fieldIn(in);
             if (code == SerializedField.ROOT_VALUE) {
                 this.value = readValue(input, null /* baseOrigin */);
+            } else if (code == SerializedField.ROOT_COMPACT_VALUE) {
+                CompactIn compact = new CompactIn(input);
+                long version = compact.readVarint();
+                if (version != COMPACT_FORMAT_VERSION)
+                    throw new IOException("Unknown serialization format version " + version);
+                this.value = compact.readValue(null /* baseOrigin */);
             } else if (code == SerializedField.ROOT_WAS_CONFIG) {
                 this.wasConfig = input.readBoolean();
             }
         }
     }
 
-    private DataInput fieldIn(ObjectInput in) throws IOException {
+    private DataInputStream fieldIn(ObjectInput in) throws IOException {
         byte[] bytes = new byte[in.readInt()];
         in.readFully(bytes);
         return new DataInputStream(new ByteArrayInputStream(bytes));
@@ -14,10 +14,15 @@ import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAmount;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -44,9 +49,71 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
     private static final long serialVersionUID = 1L;
 
     final private AbstractConfigObject object;
+    // set by withPathIndex(), only ever for a resolved object
+    final private boolean indexed;
+    // built the first time an indexed config looks up a path
+    private transient volatile PathIndex index;
 
     SimpleConfig(AbstractConfigObject object) {
+        this(object, false);
+    }
+
+    private SimpleConfig(AbstractConfigObject object, boolean indexed) {
         this.object = object;
+        this.indexed = indexed;
+    }
+
+    /**
+     * Every path in a resolved config with its value, objects and nulls
+     * included, and the entries entrySet() returns. A path that is not in
+     * the index still goes down the tree, so errors are reported the same
+     * way whether or not a config is indexed.
+     */
+    private static final class PathIndex {
+        final Map<Path, AbstractConfigValue> values;
+        final Set<Map.Entry<String, ConfigValue>> entries;
+
+        PathIndex(AbstractConfigObject root) {
+            this.values = new HashMap<Path, AbstractConfigValue>();
+            Set<Map.Entry<String, ConfigValue>> entries = new HashSet<Map.Entry<String, ConfigValue>>();
+            add(entries, null, root);
+            this.entries = Collections.unmodifiableSet(entries);
+        }
+
+        private void add(Set<Map.Entry<String, ConfigValue>> entries, Path parent, AbstractConfigObject obj) {
+            for (Map.Entry<String, ConfigValue> entry : obj.entrySet()) {
+                AbstractConfigValue v = (AbstractConfigValue) entry.getValue();
+                Path path = Path.newKey(entry.getKey());
+                if (parent != null)
+                    path = path.prepend(parent);
+                values.put(path, v);
+                if (v instanceof AbstractConfigObject) {
+                    add(entries, path, (AbstractConfigObject) v);
+                } else if (!(v instanceof ConfigNull)) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<String, ConfigValue>(path.render(), v));
+                }
+            }
+        }
+    }
+
+    private PathIndex index() {
+        if (!indexed)
+            return null;
+        PathIndex i = index;
+        if (i == null) {
+            // two threads may both build it, which is harmless
+            i = new PathIndex(object);
+            index = i;
+        }
+        return i;
+    }
+
+    @Override
+    public SimpleConfig withPathIndex() {
+        if (indexed || !isResolved())
+            return this;
+        else
+            return new SimpleConfig(object, true);
     }
 
     @Override
@@ -85,8 +152,19 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
     }
 
     private ConfigValue hasPathPeek(String pathExpression) {
-        Path path = Path.newPath(pathExpression);
-        ConfigValue peeked;
+        return peek(Path.newPath(pathExpression));
+    }
+
+    // unlike find, returns null rather than throwing if the path is missing
+    // or goes through something that isn't an object
+    private AbstractConfigValue peek(Path path) {
+        PathIndex i = index();
+        if (i != null) {
+            AbstractConfigValue v = i.values.get(path);
+            if (v != null)
+                return v;
+        }
+        AbstractConfigValue peeked;
         try {
             peeked = object.peekPath(path);
         } catch (ConfigException.NotResolved e) {
@@ -132,6 +210,9 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
 
     @Override
     public Set<Map.Entry<String, ConfigValue>> entrySet() {
+        PathIndex i = index();
+        if (i != null)
+            return new HashSet<Map.Entry<String, ConfigValue>>(i.entries);
         Set<Map.Entry<String, ConfigValue>> entries = new HashSet<Map.Entry<String, ConfigValue>>();
         findPaths(entries, null, object);
         return entries;
@@ -145,17 +226,17 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
             return v;
     }
 
-    static private AbstractConfigValue findKey(AbstractConfigObject self, String key,
-            ConfigValueType expected, Path originalPath) {
-        return throwIfNull(findKeyOrNull(self, key, expected, originalPath), expected, originalPath);
-    }
-
     static private AbstractConfigValue findKeyOrNull(AbstractConfigObject self, String key,
             ConfigValueType expected, Path originalPath) {
         AbstractConfigValue v = self.peekAssumingResolved(key, originalPath);
         if (v == null)
             throw new ConfigException.Missing(self.origin(), originalPath.render());
 
+        return checkType(v, expected, originalPath);
+    }
+
+    static private AbstractConfigValue checkType(AbstractConfigValue v, ConfigValueType expected,
+            Path originalPath) {
         if (expected != null)
             v = DefaultTransformer.transform(v, expected);
 
@@ -169,24 +250,30 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
     static private AbstractConfigValue findOrNull(AbstractConfigObject self, Path path,
             ConfigValueType expected, Path originalPath) {
         try {
-            String key = path.first();
-            Path next = path.remainder();
-            if (next == null) {
-                return findKeyOrNull(self, key, expected, originalPath);
-            } else {
-                AbstractConfigObject o = (AbstractConfigObject) findKey(self, key,
-                        ConfigValueType.OBJECT,
-                        originalPath.subPath(0, originalPath.length() - next.length()));
-                assert (o != null); // missing was supposed to throw
-                return findOrNull(o, next, expected, originalPath);
+            int last = path.length() - 1;
+            for (int i = 0; i < last; ++i) {
+                AbstractConfigValue v = self.peekAssumingResolved(path.element(i), originalPath);
+                if (v instanceof AbstractConfigObject) {
+                    self = (AbstractConfigObject) v;
+                } else {
+                    // only worth making the path to this key if it's going
+                    // in an exception, which it is unless it converts to an
+                    // object
+                    Path sub = originalPath.subPath(0, originalPath.length() - (last - i));
+                    if (v == null)
+                        throw new ConfigException.Missing(self.origin(), sub.render());
+                    self = (AbstractConfigObject) throwIfNull(checkType(v, ConfigValueType.OBJECT, sub),
+                            ConfigValueType.OBJECT, sub);
+                }
             }
+            return findKeyOrNull(self, path.element(last), expected, originalPath);
         } catch (ConfigException.NotResolved e) {
             throw ConfigImpl.improveNotResolved(path, e);
         }
     }
 
     AbstractConfigValue find(Path pathExpression, ConfigValueType expected, Path originalPath) {
-        return throwIfNull(findOrNull(object, pathExpression, expected, originalPath), expected, originalPath);
+        return throwIfNull(findOrNull(pathExpression, expected, originalPath), expected, originalPath);
     }
 
     AbstractConfigValue find(String pathExpression, ConfigValueType expected) {
@@ -195,6 +282,12 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
     }
 
     private AbstractConfigValue findOrNull(Path pathExpression, ConfigValueType expected, Path originalPath) {
+        PathIndex i = index();
+        if (i != null) {
+            AbstractConfigValue v = i.values.get(pathExpression);
+            if (v != null)
+                return checkType(v, expected, originalPath);
+        }
         return findOrNull(object, pathExpression, expected, originalPath);
     }
 
@@ -254,10 +347,29 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
 
     @Override
     public <T extends Enum<T>> T getEnum(Class<T> enumClass, String path) {
-        ConfigValue v = find(path, ConfigValueType.STRING);
+        return getEnum(enumClass, Path.newPath(path), path);
+    }
+
+    // Not remembered on the value like durations and sizes are: that would
+    // hold on to the enum class, and so its class loader, for as long as the
+    // config lives.
+    <T extends Enum<T>> T getEnum(Class<T> enumClass, Path parsed, String path) {
+        ConfigValue v = find(parsed, ConfigValueType.STRING, parsed);
         return getEnumValue(path, enumClass, v);
     }
 
+    // The value find(path, STRING) would convert to a string, for getters
+    // that parse the string and remember what they got on the value; the
+    // values in the tree are the same every time, where converting a number
+    // to a string makes a new one.
+    private AbstractConfigValue findConvertible(Path path) {
+        AbstractConfigValue v = findOrNull(path, null, path);
+        if (v instanceof ConfigString || v instanceof ConfigNumber)
+            return v;
+        else
+            return find(path, ConfigValueType.STRING, path);
+    }
+
     @Override
     public ConfigList getList(String path) {
         AbstractConfigValue v = find(path, ConfigValueType.LIST);
@@ -275,6 +387,92 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
         return getObject(path).toConfig();
     }
 
+    // what find returns, or null wherever hasPath would be false, so
+    // probing for an optional setting is one lookup and never builds a
+    // Missing exception
+    private AbstractConfigValue findIfPresent(String pathExpression, ConfigValueType expected) {
+        Path path = Path.newPath(pathExpression);
+        try {
+            AbstractConfigValue v = peek(path);
+            if (v == null || v.valueType() == ConfigValueType.NULL)
+                return null;
+            return checkType(v, expected, path);
+        } catch (ConfigException.NotResolved e) {
+            throw ConfigImpl.improveNotResolved(path, e);
+        }
+    }
+
+    @Override
+    public AbstractConfigValue lookup(String path) {
+        return findIfPresent(path, null);
+    }
+
+    @Override
+    public Optional<Boolean> findBoolean(String path) {
+        ConfigValue v = findIfPresent(path, ConfigValueType.BOOLEAN);
+        return v == null ? Optional.<Boolean> empty() : Optional.of((Boolean) v.unwrapped());
+    }
+
+    @Override
+    public OptionalInt findInt(String path) {
+        ConfigNumber n = (ConfigNumber) findIfPresent(path, ConfigValueType.NUMBER);
+        return n == null ? OptionalInt.empty() : OptionalInt.of(n.intValueRangeChecked(path));
+    }
+
+    @Override
+    public OptionalLong findLong(String path) {
+        ConfigNumber n = (ConfigNumber) findIfPresent(path, ConfigValueType.NUMBER);
+        return n == null ? OptionalLong.empty() : OptionalLong.of(n.longValue());
+    }
+
+    @Override
+    public OptionalDouble findDouble(String path) {
+        ConfigNumber n = (ConfigNumber) findIfPresent(path, ConfigValueType.NUMBER);
+        return n == null ? OptionalDouble.empty() : OptionalDouble.of(n.doubleValue());
+    }
+
+    @Override
+    public Optional<String> findString(String path) {
+        ConfigValue v = findIfPresent(path, ConfigValueType.STRING);
+        return v == null ? Optional.<String> empty() : Optional.of((String) v.unwrapped());
+    }
+
+    @Override
+    public Optional<Config> findConfig(String path) {
+        AbstractConfigObject obj = (AbstractConfigObject) findIfPresent(path, ConfigValueType.OBJECT);
+        return obj == null ? Optional.<Config> empty() : Optional.<Config> of(obj.toConfig());
+    }
+
+    @Override
+    public boolean getBooleanOrElse(String path, boolean defaultValue) {
+        ConfigValue v = findIfPresent(path, ConfigValueType.BOOLEAN);
+        return v == null ? defaultValue : (Boolean) v.unwrapped();
+    }
+
+    @Override
+    public int getIntOrElse(String path, int defaultValue) {
+        ConfigNumber n = (ConfigNumber) findIfPresent(path, ConfigValueType.NUMBER);
+        return n == null ? defaultValue : n.intValueRangeChecked(path);
+    }
+
+    @Override
+    public long getLongOrElse(String path, long defaultValue) {
+        ConfigNumber n = (ConfigNumber) findIfPresent(path, ConfigValueType.NUMBER);
+        return n == null ? defaultValue : n.longValue();
+    }
+
+    @Override
+    public double getDoubleOrElse(String path, double defaultValue) {
+        ConfigNumber n = (ConfigNumber) findIfPresent(path, ConfigValueType.NUMBER);
+        return n == null ? defaultValue : n.doubleValue();
+    }
+
+    @Override
+    public String getStringOrElse(String path, String defaultValue) {
+        ConfigValue v = findIfPresent(path, ConfigValueType.STRING);
+        return v == null ? defaultValue : (String) v.unwrapped();
+    }
+
     @Override
     public Object getAnyRef(String path) {
         ConfigValue v = find(path, null);
@@ -283,23 +481,37 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
 
     @Override
     public Long getBytes(String path) {
-        BigInteger bytes = getBytesBigInteger(path);
-        ConfigValue v = find(path, ConfigValueType.STRING);
-        return toLong(bytes, v.origin(), path);
+        return getBytes(Path.newPath(path), path);
+    }
+
+    Long getBytes(Path parsed, String path) {
+        AbstractConfigValue v = findConvertible(parsed);
+        return toLong(getBytesBigInteger(v, path), v.origin(), path);
     }
 
     private BigInteger getBytesBigInteger(String path) {
-        BigInteger bytes;
-        ConfigValue v = find(path, ConfigValueType.STRING);
-        try {
-            bytes = BigInteger.valueOf(getLong(path));
-        } catch (ConfigException.WrongType e) {
-            bytes = parseBytes((String) v.unwrapped(),
+        return getBytesBigInteger(Path.newPath(path), path);
+    }
+
+    BigInteger getBytesBigInteger(Path parsed, String path) {
+        return getBytesBigInteger(findConvertible(parsed), path);
+    }
+
+    private static BigInteger getBytesBigInteger(AbstractConfigValue v, String path) {
+        BigInteger bytes = (BigInteger) v.conversion(BigInteger.class);
+        if (bytes != null)
+            return bytes;
+        AbstractConfigValue n = DefaultTransformer.transform(v, ConfigValueType.NUMBER);
+        if (n.valueType() == ConfigValueType.NUMBER) {
+            bytes = BigInteger.valueOf(((ConfigNumber) n).longValue());
+        } else {
+            bytes = parseBytes((String) DefaultTransformer.transform(v, ConfigValueType.STRING).unwrapped(),
                 v.origin(), path);
         }
         if (bytes.signum() < 0)
             throw new ConfigException.BadValue(v.origin(), path,
                 "Attempt to construct memory size with negative number: " + bytes);
+        v.rememberConversion(BigInteger.class, bytes);
         return bytes;
     }
 
@@ -347,33 +559,69 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
 
     @Override
     public long getDuration(String path, TimeUnit unit) {
-        ConfigValue v = find(path, ConfigValueType.STRING);
         long result = unit.convert(
-                       parseDuration((String) v.unwrapped(), v.origin(), path),
+                       getDuration(path).toNanos(),
                        TimeUnit.NANOSECONDS);
         return result;
     }
 
     @Override
     public Duration getDuration(String path) {
-        ConfigValue v = find(path, ConfigValueType.STRING);
-        long nanos = parseDuration((String) v.unwrapped(), v.origin(), path);
-        return Duration.ofNanos(nanos);
+        return getDuration(Path.newPath(path), path);
+    }
+
+    Duration getDuration(Path parsed, String path) {
+        return getDuration(findConvertible(parsed), path);
+    }
+
+    private static Duration getDuration(AbstractConfigValue v, String path) {
+        Duration d = (Duration) v.conversion(Duration.class);
+        if (d == null) {
+            String s = (String) DefaultTransformer.transform(v, ConfigValueType.STRING).unwrapped();
+            d = Duration.ofNanos(parseDuration(s, v.origin(), path));
+            v.rememberConversion(Duration.class, d);
+        }
+        return d;
     }
 
     @Override
     public Period getPeriod(String path){
-        ConfigValue v = find(path, ConfigValueType.STRING);
-        return parsePeriod((String) v.unwrapped(), v.origin(), path);
+        return getPeriod(Path.newPath(path), path);
+    }
+
+    Period getPeriod(Path parsed, String path) {
+        return getPeriod(findConvertible(parsed), path);
+    }
+
+    private static Period getPeriod(AbstractConfigValue v, String path) {
+        Period p = (Period) v.conversion(Period.class);
+        if (p == null) {
+            String s = (String) DefaultTransformer.transform(v, ConfigValueType.STRING).unwrapped();
+            p = parsePeriod(s, v.origin(), path);
+            v.rememberConversion(Period.class, p);
+        }
+        return p;
     }
 
     @Override
     public TemporalAmount getTemporal(String path){
-        try{
-            return getDuration(path);
-        } catch (ConfigException.BadValue e){
-            return getPeriod(path);
+        return getTemporal(Path.newPath(path), path);
+    }
+
+    TemporalAmount getTemporal(Path parsed, String path) {
+        AbstractConfigValue v = findConvertible(parsed);
+        // remembered as a whole, since a string can be both a duration
+        // and a period and the duration wins
+        TemporalAmount t = (TemporalAmount) v.conversion(TemporalAmount.class);
+        if (t == null) {
+            try{
+                t = getDuration(v, path);
+            } catch (ConfigException.BadValue e){
+                t = getPeriod(v, path);
+            }
+            v.rememberConversion(TemporalAmount.class, t);
         }
+        return t;
     }
 
     @SuppressWarnings("unchecked")
@@ -382,23 +630,33 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
         List<T> l = new ArrayList<T>();
         List<? extends ConfigValue> list = getList(path);
         for (ConfigValue cv : list) {
-            // variance would be nice, but stupid cast will do
-            AbstractConfigValue v = (AbstractConfigValue) cv;
-            if (expected != null) {
-                v = DefaultTransformer.transform(v, expected);
-            }
-            if (v.valueType() != expected)
-                throw new ConfigException.WrongType(v.origin(), path,
-                        "list of " + expected.name(), "list of "
-                                + v.valueType().name());
-            l.add((T) v.unwrapped());
+            l.add((T) homogeneousElement(cv, path, expected).unwrapped());
         }
         return l;
     }
 
+    private static AbstractConfigValue homogeneousElement(ConfigValue cv, String path,
+            ConfigValueType expected) {
+        // variance would be nice, but stupid cast will do
+        AbstractConfigValue v = (AbstractConfigValue) cv;
+        if (expected != null) {
+            v = DefaultTransformer.transform(v, expected);
+        }
+        if (v.valueType() != expected)
+            throw new ConfigException.WrongType(v.origin(), path,
+                    "list of " + expected.name(), "list of "
+                            + v.valueType().name());
+        return v;
+    }
+
     @Override
     public List<Boolean> getBooleanList(String path) {
-        return getHomogeneousUnwrappedList(path, ConfigValueType.BOOLEAN);
+        boolean[] a = getBooleanArray(path);
+        List<Boolean> l = new ArrayList<Boolean>(a.length);
+        for (boolean b : a) {
+            l.add(b);
+        }
+        return l;
     }
 
     @Override
@@ -408,34 +666,106 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
 
     @Override
     public List<Integer> getIntList(String path) {
-        List<Integer> l = new ArrayList<Integer>();
-        List<AbstractConfigValue> numbers = getHomogeneousWrappedList(path, ConfigValueType.NUMBER);
-        for (AbstractConfigValue v : numbers) {
-            l.add(((ConfigNumber) v).intValueRangeChecked(path));
+        int[] a = getIntArray(path);
+        List<Integer> l = new ArrayList<Integer>(a.length);
+        for (int i : a) {
+            l.add(i);
         }
         return l;
     }
 
     @Override
     public List<Long> getLongList(String path) {
-        List<Long> l = new ArrayList<Long>();
-        List<Number> numbers = getNumberList(path);
-        for (Number n : numbers) {
-            l.add(n.longValue());
+        long[] a = getLongArray(path);
+        List<Long> l = new ArrayList<Long>(a.length);
+        for (long n : a) {
+            l.add(n);
         }
         return l;
     }
 
     @Override
     public List<Double> getDoubleList(String path) {
-        List<Double> l = new ArrayList<Double>();
-        List<Number> numbers = getNumberList(path);
-        for (Number n : numbers) {
-            l.add(n.doubleValue());
+        double[] a = getDoubleArray(path);
+        List<Double> l = new ArrayList<Double>(a.length);
+        for (double n : a) {
+            l.add(n);
         }
         return l;
     }
 
+    // null unless the list's elements are packed into a primitive array
+    private static PrimitiveValues primitiveValues(ConfigList list) {
+        if (list instanceof SimpleConfigList)
+            return ((SimpleConfigList) list).primitiveValuesOrNull();
+        else
+            return null;
+    }
+
+    @Override
+    public boolean[] getBooleanArray(String path) {
+        ConfigList list = getList(path);
+        PrimitiveValues packed = primitiveValues(list);
+        boolean[] a = packed != null ? packed.toBooleanArray() : null;
+        if (a == null) {
+            a = new boolean[list.size()];
+            for (int i = 0; i < a.length; ++i) {
+                a[i] = (Boolean) homogeneousElement(list.get(i), path, ConfigValueType.BOOLEAN).unwrapped();
+            }
+        }
+        return a;
+    }
+
+    @Override
+    public int[] getIntArray(String path) {
+        ConfigList list = getList(path);
+        PrimitiveValues packed = primitiveValues(list);
+        int[] a = packed != null ? packed.toIntArray() : null;
+        if (a == null) {
+            // check every element's type before any range, so a list with a
+            // string in it is the wrong type whatever its numbers are
+            ConfigNumber[] numbers = new ConfigNumber[list.size()];
+            for (int i = 0; i < numbers.length; ++i) {
+                numbers[i] = (ConfigNumber) homogeneousElement(list.get(i), path, ConfigValueType.NUMBER);
+            }
+            a = new int[numbers.length];
+            for (int i = 0; i < a.length; ++i) {
+                a[i] = numbers[i].intValueRangeChecked(path);
+            }
+        }
+        return a;
+    }
+
+    @Override
+    public long[] getLongArray(String path) {
+        ConfigList list = getList(path);
+        PrimitiveValues packed = primitiveValues(list);
+        long[] a = packed != null ? packed.toLongArray() : null;
+        if (a == null) {
+            a = new long[list.size()];
+            for (int i = 0; i < a.length; ++i) {
+                a[i] = ((ConfigNumber) homogeneousElement(list.get(i), path, ConfigValueType.NUMBER))
+                        .longValue();
+            }
+        }
+        return a;
+    }
+
+    @Override
+    public double[] getDoubleArray(String path) {
+        ConfigList list = getList(path);
+        PrimitiveValues packed = primitiveValues(list);
+        double[] a = packed != null ? packed.toDoubleArray() : null;
+        if (a == null) {
+            a = new double[list.size()];
+            for (int i = 0; i < a.length; ++i) {
+                a[i] = ((ConfigNumber) homogeneousElement(list.get(i), path, ConfigValueType.NUMBER))
+                        .doubleValue();
+            }
+        }
+        return a;
+    }
+
     @Override
     public List<String> getStringList(String path) {
         return getHomogeneousUnwrappedList(path, ConfigValueType.STRING);
@@ -451,7 +781,7 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
         return enumList;
     }
 
-    private <T extends Enum<T>> T getEnumValue(String path, Class<T> enumClass, ConfigValue enumConfigValue) {
+    private static <T extends Enum<T>> T getEnumValue(String path, Class<T> enumClass, ConfigValue enumConfigValue) {
         String enumName = (String) enumConfigValue.unwrapped();
         try {
             return Enum.valueOf(enumClass, enumName);
@@ -476,16 +806,7 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
         List<T> l = new ArrayList<T>();
         List<? extends ConfigValue> list = getList(path);
         for (ConfigValue cv : list) {
-            // variance would be nice, but stupid cast will do
-            AbstractConfigValue v = (AbstractConfigValue) cv;
-            if (expected != null) {
-                v = DefaultTransformer.transform(v, expected);
-            }
-            if (v.valueType() != expected)
-                throw new ConfigException.WrongType(v.origin(), path,
-                        "list of " + expected.name(), "list of "
-                                + v.valueType().name());
-            l.add((T) v);
+            l.add((T) homogeneousElement(cv, path, expected));
         }
         return l;
     }
@@ -523,7 +844,7 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
             .collect(Collectors.toList());
     }
 
-    private Long toLong(BigInteger value, ConfigOrigin originForException,
+    private static Long toLong(BigInteger value, ConfigOrigin originForException,
         String pathForException){
         if (value.bitLength() < 64) {
             return value.longValue();
@@ -589,7 +910,7 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
 
     @Override
     public AbstractConfigObject toFallbackValue() {
-        return object;
+        return object.toFallbackValue();
     }
 
     @Override
@@ -1002,7 +1323,7 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
             }
         } else if (referenceType == ConfigValueType.LIST) {
             // objects may be convertible to lists if they have numeric keys
-            if (value instanceof SimpleConfigList || value instanceof SimpleConfigObject) {
+            if (value instanceof SimpleConfigList || value instanceof AbstractConfigObject) {
                 return true;
             } else {
                 return false;
@@ -1069,7 +1390,7 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
     static void checkValid(Path path, ConfigValueType referenceType, AbstractConfigValue value,
             List<ConfigException.ValidationProblem> accumulator) {
         if (haveCompatibleTypes(referenceType, value)) {
-            if (referenceType == ConfigValueType.LIST && value instanceof SimpleConfigObject) {
+            if (referenceType == ConfigValueType.LIST && value instanceof AbstractConfigObject) {
                 // attempt conversion of indexed object to list
                 AbstractConfigValue listValue = DefaultTransformer.transform(value,
                         ConfigValueType.LIST);
@@ -1094,7 +1415,7 @@ final class SimpleConfig implements Config, MergeableValue, Serializable {
                 SimpleConfigList listRef = (SimpleConfigList) reference;
                 SimpleConfigList listValue = (SimpleConfigList) value;
                 checkListCompatibility(path, listRef, listValue, accumulator);
-            } else if (reference instanceof SimpleConfigList && value instanceof SimpleConfigObject) {
+            } else if (reference instanceof SimpleConfigList && value instanceof AbstractConfigObject) {
                 // attempt conversion of indexed object to list
                 SimpleConfigList listRef = (SimpleConfigList) reference;
                 AbstractConfigValue listValue = DefaultTransformer.transform(value,
@@ -42,6 +42,28 @@ final class SimpleConfigDocument implements ConfigDocument {
         return new SimpleConfigDocument(configNodeTree.setValue(path, null, parseOptions.getSyntax()), parseOptions);
     }
 
+    @Override
+    public ConfigDocument withTextEdit(int start, int end, String replacement) {
+        if (replacement == null)
+            throw new ConfigException.BugOrBroken("null replacement passed to withTextEdit");
+        int length = configNodeTree.renderedLength();
+        if (start < 0 || end < start || end > length)
+            throw new ConfigException.BugOrBroken("edit from " + start + " to " + end
+                    + " passed to withTextEdit is outside the document, which has length " + length);
+
+        ConfigNodeRoot edited = configNodeTree.withEditInField(start, end, replacement, parseOptions);
+        if (edited == null) {
+            String text = render();
+            String newText = text.substring(0, start) + replacement + text.substring(end);
+            ConfigOrigin origin = configNodeTree.origin();
+            StringReader reader = new StringReader(newText);
+            Iterator<Token> tokens = Tokenizer.tokenize(origin, reader, parseOptions.getSyntax());
+            edited = ConfigDocumentParser.parse(tokens, origin, parseOptions);
+            reader.close();
+        }
+        return new SimpleConfigDocument(edited, parseOptions);
+    }
+
     @Override
     public boolean hasPath(String path) {
         return configNodeTree.hasValue(path);
@@ -0,0 +1,838 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config.impl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigIncludeContext;
+import com.typesafe.config.ConfigOrigin;
+import com.typesafe.config.ConfigSyntax;
+import com.typesafe.config.ConfigValue;
+import com.typesafe.config.ConfigValueType;
+import com.typesafe.config.parser.ConfigEvent;
+import com.typesafe.config.parser.ConfigEventReader;
+
+/**
+ * Pulls events from the token stream. This follows the grammar of
+ * {@link ConfigParser} and fails with the same errors, but keeps only a
+ * {@link Frame} per open object or array instead of the values, so each call
+ * to {@link #next()} reads just enough tokens for one event.
+ */
+final class SimpleConfigEventReader implements ConfigEventReader {
+    // where a frame is between events
+    private enum State {
+        // expecting a field or the close brace (objects), or the first
+        // element or the close bracket (arrays)
+        START,
+        // after a key and its separator (objects) or after a comma (arrays)
+        VALUE,
+        // after part of a value, which may be followed by more parts of a
+        // concatenation
+        CONCAT,
+        // after a value, expecting a separator or the end
+        SEPARATOR
+    }
+
+    // how the last part of a concatenation ended; strings can't be
+    // concatenated with objects or arrays, while substitutions can
+    private static final int PART_NONE = 0;
+    private static final int PART_COMPLEX = 1;
+    private static final int PART_TEXT = 2;
+    private static final int PART_SUBSTITUTION = 3;
+
+    private static final class Frame {
+        final boolean isArray;
+        final boolean hadOpenCurly;
+        // keys seen so far, to reject duplicates in JSON objects
+        final Set<String> jsonKeys;
+        State state = State.START;
+        boolean afterComma = false;
+        int lastPart = PART_NONE;
+        // the field whose value is being read, for objects
+        Path field = null;
+        boolean fieldAppends = false;
+        boolean fieldInsideEquals = false;
+        // a field like "a { }" without separator can't be a concatenation
+        boolean fieldIsObject = false;
+        boolean lastInsideEquals = false;
+
+        Frame(boolean isArray, boolean hadOpenCurly, boolean json) {
+            this.isArray = isArray;
+            this.hadOpenCurly = hadOpenCurly;
+            this.jsonKeys = json && !isArray ? new HashSet<String>() : null;
+        }
+    }
+
+    // an event queued by expandInclude()
+    private static final class Pending {
+        final ConfigEvent event;
+        final ConfigOrigin origin;
+        final String key;
+        final AbstractConfigValue value;
+
+        Pending(ConfigEvent event, ConfigOrigin origin, String key, AbstractConfigValue value) {
+            this.event = event;
+            this.origin = origin;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    final private Iterator<Token> tokens;
+    final private ArrayDeque<Token> buffer = new ArrayDeque<Token>();
+    final private ConfigSyntax flavor;
+    final private ConfigOrigin baseOrigin;
+    final private FullIncluder includer;
+    final private ConfigIncludeContext includeContext;
+    final private ArrayDeque<Frame> frames = new ArrayDeque<Frame>();
+    final private ArrayDeque<Pending> pending = new ArrayDeque<Pending>();
+    // the tokens of the last key, kept to render it in errors
+    final private List<Token> keyTokens = new ArrayList<Token>();
+    private Closeable input;
+    private int lineNumber = 1;
+    private boolean started = false;
+    private boolean finished = false;
+
+    // the current event
+    private ConfigEvent event = null;
+    private ConfigOrigin origin = null;
+    private String key = null;
+    private boolean append = false;
+    private AbstractConfigValue value = null;
+    private boolean continues = false;
+    private ConfigIncludeKind includeKind = null;
+    private String includeName = null;
+    private boolean includeRequired = false;
+    private boolean includeExpanded = false;
+
+    SimpleConfigEventReader(Iterator<Token> tokens, Closeable input, ConfigOrigin origin,
+            ConfigSyntax flavor, FullIncluder includer, ConfigIncludeContext includeContext) {
+        this.tokens = tokens;
+        this.input = input;
+        this.baseOrigin = origin;
+        this.flavor = flavor == ConfigSyntax.JSON ? ConfigSyntax.JSON : ConfigSyntax.CONF;
+        this.includer = includer;
+        this.includeContext = includeContext;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !pending.isEmpty() || !finished;
+    }
+
+    @Override
+    public ConfigEvent next() {
+        if (!hasNext())
+            throw new NoSuchElementException("no more events in " + baseOrigin.description());
+
+        event = null;
+        origin = null;
+        key = null;
+        append = false;
+        value = null;
+        continues = false;
+        includeKind = null;
+        includeName = null;
+        includeRequired = false;
+        includeExpanded = false;
+
+        Pending p = pending.poll();
+        if (p != null) {
+            event = p.event;
+            origin = p.origin;
+            key = p.key;
+            value = p.value;
+            return event;
+        }
+
+        try {
+            if (!started) {
+                started = true;
+                startRoot();
+            }
+            while (event == null)
+                step(frames.peek());
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        return event;
+    }
+
+    @Override
+    public ConfigOrigin origin() {
+        return origin;
+    }
+
+    @Override
+    public String key() {
+        return key;
+    }
+
+    @Override
+    public boolean isAppend() {
+        return append;
+    }
+
+    @Override
+    public ConfigValue value() {
+        return value;
+    }
+
+    @Override
+    public boolean continuesValue() {
+        return continues;
+    }
+
+    @Override
+    public String includeName() {
+        return includeName;
+    }
+
+    @Override
+    public String includeKind() {
+        return includeKind == null ? null : includeKind.name().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public boolean isIncludeRequired() {
+        return includeRequired;
+    }
+
+    @Override
+    public void expandInclude() {
+        if (event != ConfigEvent.INCLUDE || includeExpanded)
+            throw new IllegalStateException("expandInclude() must be called once, right after an INCLUDE event");
+        includeExpanded = true;
+
+        ConfigIncludeContext cic = includeContext.setParseOptions(includeContext.parseOptions().setAllowMissing(
+                !includeRequired));
+        AbstractConfigObject obj;
+        switch (includeKind) {
+            case URL:
+                URL url;
+                try {
+                    url = new URL(includeName);
+                } catch (MalformedURLException e) {
+                    throw new ConfigException.Parse(origin, "include url() specifies an invalid URL: "
+                            + includeName, e);
+                }
+                obj = (AbstractConfigObject) includer.includeURL(cic, url);
+                break;
+
+            case FILE:
+                obj = (AbstractConfigObject) includer.includeFile(cic, new File(includeName));
+                break;
+
+            case CLASSPATH:
+                obj = (AbstractConfigObject) includer.includeResources(cic, includeName);
+                break;
+
+            case HEURISTIC:
+                obj = (AbstractConfigObject) includer.include(cic, includeName);
+                break;
+
+            default:
+                throw new ConfigException.BugOrBroken("should not be reached");
+        }
+
+        // same limitation as ConfigParser, see there
+        if (insideList() && obj.resolveStatus() != ResolveStatus.RESOLVED)
+            throw new ConfigException.Parse(origin, "Due to current limitations of the config parser, when an include statement is nested inside a list value, "
+                    + "${} substitutions inside the included file cannot be resolved correctly. Either move the include outside of the list value or "
+                    + "remove the ${} statements from the included file.");
+
+        Path prefix = currentPath();
+        if (prefix != null)
+            obj = obj.relativized(prefix);
+
+        queueFields(obj);
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        frames.clear();
+        if (input != null) {
+            try {
+                input.close();
+            } catch (IOException e) {
+                // nothing useful to do, we already have what we wanted
+            }
+            input = null;
+        }
+    }
+
+    private void queueFields(AbstractConfigObject obj) {
+        List<String> keys = new ArrayList<String>(obj.keySet());
+        Collections.sort(keys);
+        for (String k : keys) {
+            AbstractConfigValue v = obj.get(k);
+            pending.add(new Pending(ConfigEvent.KEY, v.origin(), Path.newKey(k).render(), null));
+            queueValue(v);
+        }
+    }
+
+    private void queueValue(AbstractConfigValue v) {
+        if (v instanceof SimpleConfigObject || v instanceof LazyConfigObject) {
+            pending.add(new Pending(ConfigEvent.START_OBJECT, v.origin(), null, null));
+            queueFields((AbstractConfigObject) v);
+            pending.add(new Pending(ConfigEvent.END_OBJECT, v.origin(), null, null));
+        } else if (v instanceof SimpleConfigList) {
+            pending.add(new Pending(ConfigEvent.START_ARRAY, v.origin(), null, null));
+            for (ConfigValue element : (SimpleConfigList) v)
+                queueValue((AbstractConfigValue) element);
+            pending.add(new Pending(ConfigEvent.END_ARRAY, v.origin(), null, null));
+        } else {
+            pending.add(new Pending(v.resolveStatus() == ResolveStatus.RESOLVED ? ConfigEvent.VALUE
+                    : ConfigEvent.UNRESOLVED_VALUE, v.origin(), null, v));
+        }
+    }
+
+    private void startRoot() {
+        Token t = nextToken();
+        if (t != Tokens.START)
+            throw new ConfigException.BugOrBroken("token stream did not begin with START, had " + t);
+
+        t = nextTokenSkippingWhitespace();
+        if (t == Tokens.OPEN_CURLY || t == Tokens.OPEN_SQUARE) {
+            startComplex(t);
+        } else if (flavor == ConfigSyntax.JSON) {
+            if (t == Tokens.END)
+                throw parseError("Empty document");
+            else
+                throw parseError("Document must have an object or array at root, unexpected token: " + t);
+        } else {
+            // the root object can omit the surrounding braces
+            putBack(t);
+            frames.push(new Frame(false, false, false));
+            setEvent(ConfigEvent.START_OBJECT);
+        }
+    }
+
+    // reads tokens until there is an event, or the frame changes state
+    private void step(Frame f) {
+        switch (f.state) {
+            case START:
+                if (f.isArray)
+                    arrayStart(f);
+                else
+                    objectStart(f);
+                break;
+            case VALUE:
+                if (f.isArray)
+                    arrayValue(f);
+                else
+                    startValue(f, nextTokenSkippingWhitespace());
+                break;
+            case CONCAT:
+                concat(f);
+                break;
+            case SEPARATOR:
+                f.lastPart = PART_NONE;
+                f.field = null;
+                f.fieldAppends = false;
+                f.fieldInsideEquals = false;
+                f.fieldIsObject = false;
+                if (f.isArray)
+                    arraySeparator(f);
+                else
+                    objectSeparator(f);
+                break;
+            default:
+                throw new ConfigException.BugOrBroken("unknown state " + f.state);
+        }
+    }
+
+    private void objectStart(Frame f) {
+        Token t = nextTokenSkippingWhitespace();
+        if (t == Tokens.CLOSE_CURLY) {
+            if (flavor == ConfigSyntax.JSON && f.afterComma) {
+                throw parseError(addQuoteSuggestion(t.toString(),
+                        "expecting a field name after a comma, got a close brace } instead"));
+            } else if (!f.hadOpenCurly) {
+                throw parseError(addQuoteSuggestion(t.toString(),
+                        "unbalanced close brace '}' with no open brace"));
+            }
+            endComplex();
+        } else if (t == Tokens.END && !f.hadOpenCurly) {
+            putBack(t);
+            endComplex();
+        } else if (flavor != ConfigSyntax.JSON && ConfigDocumentParser.isIncludeKeyword(t)) {
+            parseInclude();
+            f.afterComma = false;
+            f.state = State.SEPARATOR;
+            setEvent(ConfigEvent.INCLUDE);
+        } else {
+            Path path = parseKey(t);
+            int keyLine = lineNumber;
+            Token afterKey = nextTokenSkippingWhitespace();
+            boolean plusEquals = afterKey == Tokens.PLUS_EQUALS;
+            boolean insideEquals = false;
+
+            // same limitation as ConfigParser, see there
+            if (plusEquals && insideList())
+                throw parseError("Due to current limitations of the config parser, += does not work nested inside a list. "
+                        + "+= expands to a ${} substitution and the path in ${} cannot currently refer to list elements. "
+                        + "You might be able to move the += outside of the list and then refer to it from inside the list with ${}.");
+
+            if (flavor == ConfigSyntax.CONF && afterKey == Tokens.OPEN_CURLY) {
+                // can omit the ':' or '=' before an object value
+                putBack(afterKey);
+                f.fieldIsObject = true;
+            } else if (!isKeyValueSeparatorToken(afterKey)) {
+                throw parseError(addQuoteSuggestion(afterKey.toString(),
+                        "Key '" + renderKey() + "' may not be followed by token: " + afterKey));
+            } else {
+                insideEquals = afterKey == Tokens.EQUALS;
+            }
+
+            if (f.jsonKeys != null && !f.jsonKeys.add(path.first()))
+                throw parseError("JSON does not allow duplicate fields: '" + path.first()
+                        + "' was already seen");
+
+            f.field = path;
+            f.fieldAppends = plusEquals;
+            f.fieldInsideEquals = insideEquals;
+            f.lastInsideEquals = insideEquals;
+            f.afterComma = false;
+            f.state = State.VALUE;
+            event = ConfigEvent.KEY;
+            origin = baseOrigin.withLineNumber(keyLine);
+            key = path.render();
+            append = plusEquals;
+        }
+    }
+
+    private void objectSeparator(Frame f) {
+        if (checkElementSeparator()) {
+            f.afterComma = true;
+            f.state = State.START;
+            return;
+        }
+        Token t = nextTokenSkippingWhitespace();
+        if (t == Tokens.CLOSE_CURLY) {
+            if (!f.hadOpenCurly) {
+                throw parseError(ConfigDocumentParser.addQuoteSuggestion(null, f.lastInsideEquals,
+                        t.toString(), "unbalanced close brace '}' with no open brace"));
+            }
+            endComplex();
+        } else if (f.hadOpenCurly) {
+            throw parseError(ConfigDocumentParser.addQuoteSuggestion(null, f.lastInsideEquals,
+                    t.toString(), "Expecting close brace } or a comma, got " + t));
+        } else if (t == Tokens.END) {
+            putBack(t);
+            endComplex();
+        } else {
+            throw parseError(ConfigDocumentParser.addQuoteSuggestion(null, f.lastInsideEquals,
+                    t.toString(), "Expecting end of input or a comma, got " + t));
+        }
+    }
+
+    private void arrayStart(Frame f) {
+        Token t = nextTokenSkippingWhitespace();
+        if (t == Tokens.CLOSE_SQUARE) {
+            endComplex();
+        } else if (isValueStart(t)) {
+            startValue(f, t);
+        } else {
+            throw parseError("List should have ] or a first element after the open [, instead had token: "
+                    + t
+                    + " (if you want "
+                    + t
+                    + " to be part of a string value, then double-quote it)");
+        }
+    }
+
+    private void arrayValue(Frame f) {
+        Token t = nextTokenSkippingWhitespace();
+        if (isValueStart(t)) {
+            startValue(f, t);
+        } else if (flavor != ConfigSyntax.JSON && t == Tokens.CLOSE_SQUARE) {
+            // we allow one trailing comma
+            endComplex();
+        } else {
+            throw parseError("List should have had new element after a comma, instead had token: "
+                    + t
+                    + " (if you want the comma or "
+                    + t
+                    + " to be part of a string value, then double-quote it)");
+        }
+    }
+
+    private void arraySeparator(Frame f) {
+        if (checkElementSeparator()) {
+            f.state = State.VALUE;
+            return;
+        }
+        Token t = nextTokenSkippingWhitespace();
+        if (t == Tokens.CLOSE_SQUARE) {
+            endComplex();
+        } else {
+            throw parseError("List should have ended with ] or had a comma, instead had token: "
+                    + t
+                    + " (if you want "
+                    + t
+                    + " to be part of a string value, then double-quote it)");
+        }
+    }
+
+    // after one part of a value, looks for another part on the same line
+    private void concat(Frame f) {
+        Token t = nextToken();
+        if (Tokens.isIgnoredWhitespace(t))
+            t = nextToken();
+        if (isValueStart(t)) {
+            startValue(f, t);
+        } else {
+            putBack(t);
+            f.state = State.SEPARATOR;
+        }
+    }
+
+    // t is the first token of a value, or of the next part of a concatenation
+    private void startValue(Frame f, Token t) {
+        continues = f.lastPart != PART_NONE;
+        if (t == Tokens.OPEN_CURLY || t == Tokens.OPEN_SQUARE) {
+            if (f.lastPart == PART_TEXT)
+                throw concatenationError(t);
+            f.lastPart = PART_COMPLEX;
+            f.state = f.fieldIsObject ? State.SEPARATOR : State.CONCAT;
+            startComplex(t);
+        } else if (Tokens.isValue(t) || Tokens.isUnquotedText(t) || Tokens.isSubstitution(t)) {
+            if (f.lastPart == PART_COMPLEX) {
+                // ConfigConcatenation drops unquoted text after an object or
+                // array like whitespace, and anything else but a
+                // substitution can't be concatenated with them
+                while (Tokens.isUnquotedText(t))
+                    t = nextToken();
+                if (!Tokens.isSubstitution(t)) {
+                    if (Tokens.isValue(t))
+                        throw concatenationError(t);
+                    putBack(t);
+                    continues = false;
+                    return;
+                }
+            }
+
+            AbstractConfigValue first = ConfigNodeSimpleValue.value(t);
+            List<AbstractConfigValue> values = null;
+            Token last = t;
+            if (flavor != ConfigSyntax.JSON) {
+                // the tokenizer only puts whitespace that belongs to the
+                // value between simple values, so they all go together
+                t = nextToken();
+                while (Tokens.isValue(t) || Tokens.isUnquotedText(t) || Tokens.isSubstitution(t)) {
+                    if (values == null) {
+                        values = new ArrayList<AbstractConfigValue>();
+                        values.add(first);
+                    }
+                    values.add(ConfigNodeSimpleValue.value(t));
+                    last = t;
+                    t = nextToken();
+                }
+                putBack(t);
+            }
+
+            f.lastPart = Tokens.isSubstitution(last) ? PART_SUBSTITUTION : PART_TEXT;
+            f.state = flavor == ConfigSyntax.JSON ? State.SEPARATOR : State.CONCAT;
+
+            value = values == null ? first : ConfigConcatenation.concatenate(values);
+            event = value.resolveStatus() == ResolveStatus.RESOLVED ? ConfigEvent.VALUE
+                    : ConfigEvent.UNRESOLVED_VALUE;
+            origin = value.origin();
+        } else {
+            throw parseError(addQuoteSuggestion(t.toString(),
+                    "Expecting a value but got wrong token: " + t));
+        }
+    }
+
+    private void startComplex(Token t) {
+        boolean isArray = t == Tokens.OPEN_SQUARE;
+        frames.push(new Frame(isArray, true, flavor == ConfigSyntax.JSON));
+        setEvent(isArray ? ConfigEvent.START_ARRAY : ConfigEvent.START_OBJECT);
+    }
+
+    private void endComplex() {
+        Frame f = frames.pop();
+        setEvent(f.isArray ? ConfigEvent.END_ARRAY : ConfigEvent.END_OBJECT);
+
+        Frame parent = frames.peek();
+        if (parent == null) {
+            Token t = nextTokenSkippingWhitespace();
+            if (t != Tokens.END)
+                throw parseError("Document has trailing tokens after first object or array: " + t);
+            close();
+        } else if (flavor == ConfigSyntax.JSON) {
+            parent.state = State.SEPARATOR;
+        }
+    }
+
+    private void parseInclude() {
+        Token t = nextTokenSkippingWhitespace();
+
+        // we either have a 'required()' or a quoted string or the "file()" syntax
+        if (Tokens.isUnquotedText(t) && Tokens.getUnquotedText(t).startsWith("required(")) {
+            String r = Tokens.getUnquotedText(t).replaceFirst("required\\(", "");
+            if (r.length() > 0)
+                putBack(Tokens.newUnquotedText(t.origin(), r));
+
+            parseIncludeResource(true);
+
+            t = nextTokenSkippingWhitespace();
+            if (!(Tokens.isUnquotedText(t) && Tokens.getUnquotedText(t).equals(")")))
+                throw parseError(ConfigDocumentParser.ExpectingClosingParenthesisError + t);
+        } else {
+            putBack(t);
+            parseIncludeResource(false);
+        }
+    }
+
+    private void parseIncludeResource(boolean isRequired) {
+        Token t = nextTokenSkippingWhitespace();
+
+        // we either have a quoted string or the "file()" syntax
+        if (Tokens.isUnquotedText(t)) {
+            // get foo(
+            String kindText = Tokens.getUnquotedText(t);
+            ConfigIncludeKind kind;
+            String prefix;
+
+            if (kindText.startsWith("url(")) {
+                kind = ConfigIncludeKind.URL;
+                prefix = "url(";
+            } else if (kindText.startsWith("file(")) {
+                kind = ConfigIncludeKind.FILE;
+                prefix = "file(";
+            } else if (kindText.startsWith("classpath(")) {
+                kind = ConfigIncludeKind.CLASSPATH;
+                prefix = "classpath(";
+            } else {
+                throw parseError("expecting include parameter to be quoted filename, file(), classpath(), or url(). No spaces are allowed before the open paren. Not expecting: "
+                        + t);
+            }
+            String r = kindText.replaceFirst("[^(]*\\(", "");
+            if (r.length() > 0)
+                putBack(Tokens.newUnquotedText(t.origin(), r));
+
+            // skip space inside parens
+            t = nextTokenSkippingWhitespace();
+
+            // quoted string
+            if (!Tokens.isValueWithType(t, ConfigValueType.STRING))
+                throw parseError("expecting include " + prefix + ") parameter to be a quoted string, rather than: " + t);
+            Token name = t;
+            // skip space after string, inside parens
+            t = nextTokenSkippingWhitespace();
+
+            if (Tokens.isUnquotedText(t) && Tokens.getUnquotedText(t).startsWith(")")) {
+                String rest = Tokens.getUnquotedText(t).substring(1);
+                if (rest.length() > 0)
+                    putBack(Tokens.newUnquotedText(t.origin(), rest));
+            } else {
+                throw parseError(ConfigDocumentParser.ExpectingClosingParenthesisError + t);
+            }
+
+            setInclude(kind, (String) Tokens.getValue(name).unwrapped(), isRequired);
+        } else if (Tokens.isValueWithType(t, ConfigValueType.STRING)) {
+            setInclude(ConfigIncludeKind.HEURISTIC, (String) Tokens.getValue(t).unwrapped(), isRequired);
+        } else {
+            throw parseError("include keyword is not followed by a quoted string, but by: " + t);
+        }
+    }
+
+    private void setInclude(ConfigIncludeKind kind, String name, boolean isRequired) {
+        includeKind = kind;
+        includeName = name;
+        includeRequired = isRequired;
+    }
+
+    private Path parseKey(Token token) {
+        keyTokens.clear();
+        if (flavor == ConfigSyntax.JSON) {
+            if (Tokens.isValueWithType(token, ConfigValueType.STRING)) {
+                keyTokens.add(token);
+                return PathParser.parsePathExpression(keyTokens.iterator(),
+                        baseOrigin.withLineNumber(lineNumber));
+            } else {
+                throw parseError("Expecting close brace } or a field name here, got " + token);
+            }
+        } else {
+            Token t = token;
+            while (Tokens.isValue(t) || Tokens.isUnquotedText(t)) {
+                keyTokens.add(t);
+                t = nextToken(); // note: don't cross a newline
+            }
+
+            if (keyTokens.isEmpty())
+                throw parseError(ConfigDocumentParser.ExpectingClosingParenthesisError + t);
+
+            putBack(t); // put back the token we ended with
+            return PathParser.parsePathExpression(keyTokens.iterator(),
+                    baseOrigin.withLineNumber(lineNumber));
+        }
+    }
+
+    private String renderKey() {
+        StringBuilder sb = new StringBuilder();
+        for (Token t : keyTokens)
+            sb.append(t.tokenText());
+        return sb.toString();
+    }
+
+    private boolean isKeyValueSeparatorToken(Token t) {
+        if (flavor == ConfigSyntax.JSON) {
+            return t == Tokens.COLON;
+        } else {
+            return t == Tokens.COLON || t == Tokens.EQUALS || t == Tokens.PLUS_EQUALS;
+        }
+    }
+
+    private static boolean isValueStart(Token t) {
+        return Tokens.isValue(t) || Tokens.isUnquotedText(t)
+                || Tokens.isSubstitution(t) || t == Tokens.OPEN_CURLY
+                || t == Tokens.OPEN_SQUARE;
+    }
+
+    // true inside a list, or inside a += value, which becomes a list
+    private boolean insideList() {
+        for (Frame f : frames) {
+            if (f.isArray || f.fieldAppends)
+                return true;
+        }
+        return false;
+    }
+
+    private boolean insideEquals() {
+        for (Frame f : frames) {
+            if (f.fieldInsideEquals)
+                return true;
+        }
+        return false;
+    }
+
+    // the path of the fields whose values we are in, or null at the root
+    private Path currentPath() {
+        List<Path> paths = new ArrayList<Path>();
+        // frames has the innermost frame first
+        Iterator<Frame> i = frames.descendingIterator();
+        while (i.hasNext()) {
+            Frame f = i.next();
+            if (f.field != null)
+                paths.add(f.field);
+        }
+        return paths.isEmpty() ? null : new Path(paths);
+    }
+
+    private void setEvent(ConfigEvent e) {
+        event = e;
+        origin = baseOrigin.withLineNumber(lineNumber);
+    }
+
+    private Token popToken() {
+        if (buffer.isEmpty())
+            return tokens.next();
+        return buffer.pop();
+    }
+
+    private Token nextToken() {
+        Token t = popToken();
+        if (flavor == ConfigSyntax.JSON) {
+            if (Tokens.isUnquotedText(t) && !ConfigDocumentParser.isUnquotedWhitespace(t)) {
+                throw parseError("Token not allowed in valid JSON: '"
+                        + Tokens.getUnquotedText(t) + "'");
+            } else if (Tokens.isSubstitution(t)) {
+                throw parseError("Substitutions (${} syntax) not allowed in JSON");
+            }
+        }
+        return t;
+    }
+
+    // skips whitespace, newlines and comments
+    private Token nextTokenSkippingWhitespace() {
+        while (true) {
+            Token t = nextToken();
+            if (Tokens.isNewline(t)) {
+                lineNumber = t.lineNumber() + 1;
+            } else if (!Tokens.isIgnoredWhitespace(t) && !ConfigDocumentParser.isUnquotedWhitespace(t)
+                    && !Tokens.isComment(t)) {
+                int newNumber = t.lineNumber();
+                if (newNumber >= 0)
+                    lineNumber = newNumber;
+                return t;
+            }
+        }
+    }
+
+    private void putBack(Token token) {
+        buffer.push(token);
+    }
+
+    // In arrays and objects, comma can be omitted
+    // as long as there's at least one newline instead.
+    // this skips any newlines in front of a comma,
+    // skips the comma, and returns true if it found
+    // either a newline or a comma. The iterator
+    // is left just after the comma or the newline.
+    private boolean checkElementSeparator() {
+        if (flavor == ConfigSyntax.JSON) {
+            Token t = nextTokenSkippingWhitespace();
+            if (t == Tokens.COMMA) {
+                return true;
+            } else {
+                putBack(t);
+                return false;
+            }
+        } else {
+            boolean sawSeparatorOrNewline = false;
+            Token t = nextToken();
+            while (true) {
+                if (Tokens.isIgnoredWhitespace(t) || ConfigDocumentParser.isUnquotedWhitespace(t)
+                        || Tokens.isComment(t)) {
+                    // skip
+                } else if (Tokens.isNewline(t)) {
+                    sawSeparatorOrNewline = true;
+                    lineNumber++;
+                    // we want to continue to also eat
+                    // a comma if there is one.
+                } else if (t == Tokens.COMMA) {
+                    return true;
+                } else {
+                    // non-newline-or-comma
+                    putBack(t);
+                    return sawSeparatorOrNewline;
+                }
+                t = nextToken();
+            }
+        }
+    }
+
+    private ConfigException concatenationError(Token t) {
+        return new ConfigException.WrongType(baseOrigin.withLineNumber(lineNumber),
+                "Cannot concatenate object or list with a non-object-or-list, " + t
+                        + " is not compatible with the value before it");
+    }
+
+    private ConfigException parseError(String message) {
+        return new ConfigException.Parse(baseOrigin.withLineNumber(lineNumber), message, null);
+    }
+
+    private String addQuoteSuggestion(String badToken, String message) {
+        return ConfigDocumentParser.addQuoteSuggestion(null, insideEquals(), badToken, message);
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config.impl;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.time.Period;
+import java.time.temporal.TemporalAmount;
+import java.util.concurrent.TimeUnit;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigKey;
+import com.typesafe.config.ConfigList;
+import com.typesafe.config.ConfigMemorySize;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigValue;
+import com.typesafe.config.ConfigValueType;
+
+/**
+ * A {@link ConfigKey} that parses its path once and reads it with the same
+ * lookups and conversions as the matching {@link SimpleConfig} getter, so
+ * values and error messages are the same as with the getter. A key that
+ * converts the setting to a Java value remembers the last config it read and
+ * what it got; configs are immutable, so asking the same config again
+ * returns that without looking anything up. The config is only weakly held,
+ * so a key kept in a static field doesn't keep an old config alive. Keys for
+ * values, lists, objects and configs read a part of the config itself, which
+ * would keep it alive, so they don't remember anything; for them a lookup is
+ * all there is to do anyway.
+ */
+abstract class SimpleConfigKey<T> implements ConfigKey<T> {
+
+    private static final class Memo<T> {
+        final WeakReference<Config> config;
+        final T value;
+
+        Memo(Config config, T value) {
+            this.config = new WeakReference<Config>(config);
+            this.value = value;
+        }
+    }
+
+    final private String path;
+    final private Path parsed;
+    // false if the value is part of the config it was read from
+    final private boolean remembers;
+    private volatile Memo<T> last;
+
+    private SimpleConfigKey(String path, boolean remembers) {
+        this.path = path;
+        this.parsed = Path.newPath(path);
+        this.remembers = remembers;
+    }
+
+    private SimpleConfigKey(String path) {
+        this(path, true);
+    }
+
+    @Override
+    public String path() {
+        return path;
+    }
+
+    @Override
+    public T get(Config config) {
+        if (!remembers)
+            return read((SimpleConfig) config);
+        Memo<T> m = last;
+        // a cleared reference must not match a null config
+        if (m != null && config != null && m.config.get() == config)
+            return m.value;
+        T value = read((SimpleConfig) config);
+        last = new Memo<T>(config, value);
+        return value;
+    }
+
+    abstract T read(SimpleConfig config);
+
+    final Path parsed() {
+        return parsed;
+    }
+
+    final AbstractConfigValue find(SimpleConfig config, ConfigValueType expected) {
+        return config.find(parsed, expected, parsed);
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigKey(" + path + ")";
+    }
+
+    static ConfigKey<Boolean> booleanValue(String path) {
+        return new SimpleConfigKey<Boolean>(path) {
+            @Override
+            Boolean read(SimpleConfig config) {
+                return (Boolean) find(config, ConfigValueType.BOOLEAN).unwrapped();
+            }
+        };
+    }
+
+    static ConfigKey<Number> number(String path) {
+        return new SimpleConfigKey<Number>(path) {
+            @Override
+            Number read(SimpleConfig config) {
+                return ((ConfigNumber) find(config, ConfigValueType.NUMBER)).unwrapped();
+            }
+        };
+    }
+
+    static ConfigKey<Integer> intValue(final String path) {
+        return new SimpleConfigKey<Integer>(path) {
+            @Override
+            Integer read(SimpleConfig config) {
+                return ((ConfigNumber) find(config, ConfigValueType.NUMBER)).intValueRangeChecked(path);
+            }
+        };
+    }
+
+    static ConfigKey<Long> longValue(String path) {
+        return new SimpleConfigKey<Long>(path) {
+            @Override
+            Long read(SimpleConfig config) {
+                return ((ConfigNumber) find(config, ConfigValueType.NUMBER)).unwrapped().longValue();
+            }
+        };
+    }
+
+    static ConfigKey<Double> doubleValue(String path) {
+        return new SimpleConfigKey<Double>(path) {
+            @Override
+            Double read(SimpleConfig config) {
+                return ((ConfigNumber) find(config, ConfigValueType.NUMBER)).unwrapped().doubleValue();
+            }
+        };
+    }
+
+    static ConfigKey<String> string(String path) {
+        return new SimpleConfigKey<String>(path) {
+            @Override
+            String read(SimpleConfig config) {
+                return (String) find(config, ConfigValueType.STRING).unwrapped();
+            }
+        };
+    }
+
+    static <E extends Enum<E>> ConfigKey<E> enumValue(final Class<E> enumClass, final String path) {
+        return new SimpleConfigKey<E>(path) {
+            @Override
+            E read(SimpleConfig config) {
+                return config.getEnum(enumClass, parsed(), path);
+            }
+        };
+    }
+
+    static ConfigKey<ConfigValue> value(String path) {
+        return new SimpleConfigKey<ConfigValue>(path, false) {
+            @Override
+            ConfigValue read(SimpleConfig config) {
+                return find(config, null);
+            }
+        };
+    }
+
+    static ConfigKey<ConfigList> list(String path) {
+        return new SimpleConfigKey<ConfigList>(path, false) {
+            @Override
+            ConfigList read(SimpleConfig config) {
+                return (ConfigList) find(config, ConfigValueType.LIST);
+            }
+        };
+    }
+
+    static ConfigKey<ConfigObject> object(String path) {
+        return new SimpleConfigKey<ConfigObject>(path, false) {
+            @Override
+            ConfigObject read(SimpleConfig config) {
+                return (AbstractConfigObject) find(config, ConfigValueType.OBJECT);
+            }
+        };
+    }
+
+    static ConfigKey<Config> config(String path) {
+        return new SimpleConfigKey<Config>(path, false) {
+            @Override
+            Config read(SimpleConfig config) {
+                return ((AbstractConfigObject) find(config, ConfigValueType.OBJECT)).toConfig();
+            }
+        };
+    }
+
+    static ConfigKey<Long> bytes(final String path) {
+        return new SimpleConfigKey<Long>(path) {
+            @Override
+            Long read(SimpleConfig config) {
+                return config.getBytes(parsed(), path);
+            }
+        };
+    }
+
+    static ConfigKey<ConfigMemorySize> memorySize(final String path) {
+        return new SimpleConfigKey<ConfigMemorySize>(path) {
+            @Override
+            ConfigMemorySize read(SimpleConfig config) {
+                return ConfigMemorySize.ofBytes(config.getBytesBigInteger(parsed(), path));
+            }
+        };
+    }
+
+    static ConfigKey<Duration> duration(final String path) {
+        return new SimpleConfigKey<Duration>(path) {
+            @Override
+            Duration read(SimpleConfig config) {
+                return config.getDuration(parsed(), path);
+            }
+        };
+    }
+
+    static ConfigKey<Long> duration(final String path, final TimeUnit unit) {
+        return new SimpleConfigKey<Long>(path) {
+            @Override
+            Long read(SimpleConfig config) {
+                return unit.convert(config.getDuration(parsed(), path).toNanos(), TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    static ConfigKey<Period> period(final String path) {
+        return new SimpleConfigKey<Period>(path) {
+            @Override
+            Period read(SimpleConfig config) {
+                return config.getPeriod(parsed(), path);
+            }
+        };
+    }
+
+    static ConfigKey<TemporalAmount> temporal(final String path) {
+        return new SimpleConfigKey<TemporalAmount>(path) {
+            @Override
+            TemporalAmount read(SimpleConfig config) {
+                return config.getTemporal(parsed(), path);
+            }
+        };
+    }
+}
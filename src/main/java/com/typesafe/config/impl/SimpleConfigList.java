@@ -26,8 +26,7 @@ final class SimpleConfigList extends AbstractConfigValue implements ConfigList,
     final private boolean resolved;
 
     SimpleConfigList(ConfigOrigin origin, List<AbstractConfigValue> value) {
-        this(origin, value, ResolveStatus
-                .fromValues(value));
+        this(origin, value, resolveStatus(value));
     }
 
     SimpleConfigList(ConfigOrigin origin, List<AbstractConfigValue> value,
@@ -37,11 +36,36 @@ final class SimpleConfigList extends AbstractConfigValue implements ConfigList,
         this.resolved = status == ResolveStatus.RESOLVED;
 
         // kind of an expensive debug check (makes this constructor pointless)
-        if (status != ResolveStatus.fromValues(value))
+        if (status != resolveStatus(value))
             throw new ConfigException.BugOrBroken(
                     "SimpleConfigList created with wrong resolve status: " + this);
     }
 
+    // a new list of values that were just read in, by a parser or from a
+    // cache or stream, with numbers or booleans packed into an array if they
+    // can be
+    static SimpleConfigList packed(ConfigOrigin origin, List<AbstractConfigValue> values) {
+        return new SimpleConfigList(origin, PrimitiveValues.pack(values));
+    }
+
+    private static ResolveStatus resolveStatus(List<AbstractConfigValue> value) {
+        // packed values are always resolved, and looking at each one would
+        // unpack it
+        if (value instanceof PrimitiveValues)
+            return ResolveStatus.RESOLVED;
+        else
+            return ResolveStatus.fromValues(value);
+    }
+
+    // the elements as a primitive array if they are packed into one that
+    // converts without any checks, or null
+    PrimitiveValues primitiveValuesOrNull() {
+        if (value instanceof PrimitiveValues)
+            return (PrimitiveValues) value;
+        else
+            return null;
+    }
+
     @Override
     public ConfigValueType valueType() {
         return ConfigValueType.LIST;
@@ -386,6 +386,32 @@ final class SimpleConfigOrigin implements ConfigOrigin {
         }
     }
 
+    // the fields as they are, for the compact format in SerializedConfigValue
+
+    String rawDescription() {
+        return description;
+    }
+
+    int endLineNumber() {
+        return endLineNumber;
+    }
+
+    OriginType originType() {
+        return originType;
+    }
+
+    String urlOrNull() {
+        return urlOrNull;
+    }
+
+    String resourceOrNull() {
+        return resourceOrNull;
+    }
+
+    List<String> commentsOrNull() {
+        return commentsOrNull;
+    }
+
     Map<SerializedField, Object> toFields() {
         Map<SerializedField, Object> m = new EnumMap<SerializedField, Object>(SerializedField.class);
 
@@ -460,6 +486,7 @@ final class SimpleConfigOrigin implements ConfigOrigin {
                 case END_MARKER:
                 case ROOT_VALUE:
                 case ROOT_WAS_CONFIG:
+                case ROOT_COMPACT_VALUE:
                 case UNKNOWN:
                 case VALUE_DATA:
                 case VALUE_ORIGIN:
@@ -552,6 +579,7 @@ final class SimpleConfigOrigin implements ConfigOrigin {
                 case END_MARKER:
                 case ROOT_VALUE:
                 case ROOT_WAS_CONFIG:
+                case ROOT_COMPACT_VALUE:
                 case UNKNOWN:
                 case VALUE_DATA:
                 case VALUE_ORIGIN:
@@ -13,6 +13,8 @@ import java.util.Queue;
 
 import com.typesafe.config.ConfigException;
 import com.typesafe.config.ConfigOrigin;
+import com.typesafe.config.ConfigParseOptions;
+import com.typesafe.config.ConfigStringPool;
 import com.typesafe.config.ConfigSyntax;
 
 final class Tokenizer {
@@ -49,7 +51,16 @@ final class Tokenizer {
      * that after you're done with the returned iterator.
      */
     static Iterator<Token> tokenize(ConfigOrigin origin, Reader input, ConfigSyntax flavor) {
-        return new TokenIterator(origin, input, flavor != ConfigSyntax.JSON);
+        return new TokenIterator(origin, input, flavor != ConfigSyntax.JSON, null, true);
+    }
+
+    /**
+     * Tokenizes a Reader for ConfigParser, with the syntax, string pool and
+     * number text of the options.
+     */
+    static Iterator<Token> tokenize(ConfigOrigin origin, Reader input, ConfigParseOptions options) {
+        return new TokenIterator(origin, input, options.getSyntax() != ConfigSyntax.JSON,
+                options.getStringPool(), options.getKeepNumberText());
     }
 
     static String render(Iterator<Token> tokens) {
@@ -124,20 +135,51 @@ final class Tokenizer {
             }
         }
 
+        // size of the blocks we pull from the Reader; reading a block at a
+        // time avoids a synchronized Reader.read() call per char
+        private static final int INPUT_BLOCK_SIZE = 4096;
+        // we never need to look ahead more than this
+        private static final int MAX_PUTBACK = 3;
+
         final private SimpleConfigOrigin origin;
         final private Reader input;
-        final private LinkedList<Integer> buffer;
+        // chars read from input but not yet consumed are
+        // inputBuffer[inputPosition, inputLimit)
+        final private char[] inputBuffer;
+        private int inputPosition;
+        private int inputLimit;
+        private boolean inputEnded;
+        // chars that were put back, used as a stack so the last one put
+        // back is the next one returned; stored as int so we can hold -1
+        final private int[] putBackBuffer;
+        private int putBackCount;
         private int lineNumber;
         private ConfigOrigin lineOrigin;
         final private Queue<Token> tokens;
         final private WhitespaceSaver whitespaceSaver;
         final private boolean allowComments;
-
-        TokenIterator(ConfigOrigin origin, Reader input, boolean allowComments) {
+        // null if strings are not pooled
+        final private ConfigStringPool stringPool;
+        // whether number values keep their text when it differs from
+        // the text of their value
+        final private boolean keepNumberText;
+        // reused for the text of each number
+        final private StringBuilder numberText;
+
+        TokenIterator(ConfigOrigin origin, Reader input, boolean allowComments,
+                ConfigStringPool stringPool, boolean keepNumberText) {
             this.origin = (SimpleConfigOrigin) origin;
             this.input = input;
             this.allowComments = allowComments;
-            this.buffer = new LinkedList<Integer>();
+            this.stringPool = stringPool;
+            this.keepNumberText = keepNumberText;
+            this.numberText = new StringBuilder();
+            this.inputBuffer = new char[INPUT_BLOCK_SIZE];
+            this.inputPosition = 0;
+            this.inputLimit = 0;
+            this.inputEnded = false;
+            this.putBackBuffer = new int[MAX_PUTBACK];
+            this.putBackCount = 0;
             lineNumber = 1;
             lineOrigin = this.origin.withLineNumber(lineNumber);
             tokens = new LinkedList<Token>();
@@ -151,25 +193,47 @@ final class Tokenizer {
         // like ${ or +=, everything else should use
         // nextCharSkippingComments().
         private int nextCharRaw() {
-            if (buffer.isEmpty()) {
-                try {
-                    return input.read();
-                } catch (IOException e) {
-                    throw new ConfigException.IO(origin, "read error: "
-                            + e.getMessage(), e);
-                }
+            if (putBackCount > 0) {
+                putBackCount -= 1;
+                return putBackBuffer[putBackCount];
+            } else if (inputPosition < inputLimit) {
+                return inputBuffer[inputPosition++];
+            } else if (fillInputBuffer()) {
+                return inputBuffer[inputPosition++];
             } else {
-                int c = buffer.pop();
-                return c;
+                return -1;
+            }
+        }
+
+        // returns false at end of input
+        private boolean fillInputBuffer() {
+            if (inputEnded)
+                return false;
+            try {
+                int n;
+                do {
+                    n = input.read(inputBuffer, 0, inputBuffer.length);
+                } while (n == 0);
+                if (n < 0) {
+                    inputEnded = true;
+                    return false;
+                }
+                inputPosition = 0;
+                inputLimit = n;
+                return true;
+            } catch (IOException e) {
+                throw new ConfigException.IO(origin, "read error: "
+                        + e.getMessage(), e);
             }
         }
 
         private void putBack(int c) {
-            if (buffer.size() > 2) {
+            if (putBackCount >= MAX_PUTBACK) {
                 throw new ConfigException.BugOrBroken(
                         "bug: putBack() three times, undesirable look-ahead");
             }
-            buffer.push(c);
+            putBackBuffer[putBackCount] = c;
+            putBackCount += 1;
         }
 
         static boolean isWhitespace(int c) {
@@ -301,6 +365,10 @@ final class Tokenizer {
         // chars that stop an unquoted string
         static final String notInUnquotedText = "$\"{}[]:=,+#`^?!@*&\\";
 
+        private String pooled(String s) {
+            return stringPool == null ? s : stringPool.intern(s);
+        }
+
         // The rules here are intended to maximize convenience while
         // avoiding confusion with real valid JSON. Basically anything
         // that parses as JSON is treated the JSON way and otherwise
@@ -343,29 +411,61 @@ final class Tokenizer {
             // put back the char that ended the unquoted text
             putBack(c);
 
-            String s = sb.toString();
+            String s = pooled(sb.toString());
             return Tokens.newUnquotedText(origin, s);
         }
 
         private Token pullNumber(int firstChar) throws ProblemException {
-            StringBuilder sb = new StringBuilder();
-            sb.appendCodePoint(firstChar);
+            StringBuilder sb = numberText;
+            sb.setLength(0);
+            sb.append((char) firstChar);
+            // a minus sign and digits are converted while we scan them,
+            // negated the way Long.parseLong() does so that Long.MIN_VALUE
+            // fits; isLong is cleared by anything else or an overflow
+            boolean negative = firstChar == '-';
+            long value = negative ? 0 : -(firstChar - '0');
+            int digits = negative ? 0 : 1;
+            boolean isLong = true;
             boolean containedDecimalOrE = false;
             int c = nextCharRaw();
             while (c != -1 && numberChars.indexOf(c) >= 0) {
-                if (c == '.' || c == 'e' || c == 'E')
-                    containedDecimalOrE = true;
-                sb.appendCodePoint(c);
+                if (c >= '0' && c <= '9') {
+                    int digit = c - '0';
+                    if (value < Long.MIN_VALUE / 10 || value * 10 < Long.MIN_VALUE + digit)
+                        isLong = false;
+                    else
+                        value = value * 10 - digit;
+                    digits += 1;
+                } else {
+                    isLong = false;
+                    if (c == '.' || c == 'e' || c == 'E')
+                        containedDecimalOrE = true;
+                }
+                sb.append((char) c);
                 c = nextCharRaw();
             }
             // the last character we looked at wasn't part of the number, put it
             // back
             putBack(c);
-            String s = sb.toString();
+
+            if (isLong && digits > 0 && (negative || value != Long.MIN_VALUE)) {
+                if (!negative)
+                    value = -value;
+                // no leading zeros and no "-0", so the value prints as
+                // written and we don't need the text
+                boolean asWritten = sb.charAt(negative ? 1 : 0) != '0' || (digits == 1 && !negative);
+                if (asWritten)
+                    return Tokens.newLong(lineOrigin, value, null);
+                String s = pooled(sb.toString());
+                return Tokens.newValue(ConfigNumber.newNumber(lineOrigin, value, keepNumberText ? s : null), s);
+            }
+
+            String s = pooled(sb.toString());
             try {
                 if (containedDecimalOrE) {
                     // force floating point representation
-                    return Tokens.newDouble(lineOrigin, Double.parseDouble(s), s);
+                    double d = Double.parseDouble(s);
+                    return Tokens.newValue(ConfigNumber.newNumber(lineOrigin, d, keepNumberText ? s : null), s);
                 } else {
                     // this should throw if the integer is too large for Long
                     return Tokens.newLong(lineOrigin, Long.parseLong(s), s);
@@ -518,7 +618,7 @@ final class Tokenizer {
                 }
 
             }
-            return Tokens.newString(lineOrigin, sb.toString(), sbOrig.toString());
+            return Tokens.newString(lineOrigin, pooled(sb.toString()), sbOrig.toString());
         }
 
         private Token pullPlusEquals() throws ProblemException {
@@ -28,6 +28,13 @@ final class Tokens {
             return value;
         }
 
+        // numbers that read the same as their value don't keep their text
+        @Override
+        public String tokenText() {
+            String text = super.tokenText();
+            return text != null ? text : value.transformToString();
+        }
+
         @Override
         public String toString() {
             if (value().resolveStatus() == ResolveStatus.RESOLVED)
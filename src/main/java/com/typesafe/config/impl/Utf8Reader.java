@@ -0,0 +1,245 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes UTF-8 bytes from a stream or a (memory mapped) buffer straight into
+ * the array passed to {@link #read(char[], int, int)}, which for the tokenizer
+ * is its own input block, so there is no InputStreamReader and no second char
+ * buffer in between. Config files are almost all ASCII, so ASCII bytes are
+ * copied with a cast and well-formed multi-byte sequences are decoded inline.
+ * <p>
+ * At the first malformed byte the rest of the input goes through a standard
+ * {@link CharsetDecoder} that replaces malformed input, which is what
+ * InputStreamReader does; a reader gives the same chars as
+ * {@code new InputStreamReader(stream, "UTF-8")}, including a byte order mark.
+ */
+final class Utf8Reader extends Reader {
+    private static final int BLOCK_SIZE = 8192;
+
+    // exactly one of these is set
+    final private InputStream stream;
+    final private ByteBuffer buffer;
+    final private Closeable closeable;
+    // bytes read but not yet decoded are bytes[position, limit)
+    final private byte[] bytes;
+    private int position;
+    private int limit;
+    private boolean inputEnded;
+    // set once we meet malformed input
+    private CharsetDecoder decoder;
+    private boolean flushed;
+    // second half of a surrogate pair that did not fit into the caller's
+    // array, or -1
+    private int carry;
+
+    private Utf8Reader(InputStream stream, ByteBuffer buffer, Closeable closeable) {
+        this.stream = stream;
+        this.buffer = buffer;
+        this.closeable = closeable;
+        this.bytes = new byte[BLOCK_SIZE];
+        this.position = 0;
+        this.limit = 0;
+        this.inputEnded = false;
+        this.decoder = null;
+        this.flushed = false;
+        this.carry = -1;
+    }
+
+    /** Reads the stream, and closes it on close(). */
+    Utf8Reader(InputStream stream) {
+        this(stream, null, stream);
+    }
+
+    /**
+     * Reads the remaining bytes of the buffer, and closes the given closeable
+     * (which may be null) on close().
+     */
+    Utf8Reader(ByteBuffer buffer, Closeable closeable) {
+        this(null, buffer, closeable);
+    }
+
+    // keeps the undecoded bytes and reads more after them; returns false if
+    // nothing was added because the input has ended
+    private boolean fill() throws IOException {
+        if (inputEnded)
+            return false;
+        int remaining = limit - position;
+        if (position > 0) {
+            System.arraycopy(bytes, position, bytes, 0, remaining);
+            position = 0;
+            limit = remaining;
+        }
+        int n;
+        if (stream != null) {
+            do {
+                n = stream.read(bytes, limit, bytes.length - limit);
+            } while (n == 0);
+        } else {
+            n = Math.min(buffer.remaining(), bytes.length - limit);
+            if (n == 0)
+                n = -1;
+            else
+                buffer.get(bytes, limit, n);
+        }
+        if (n < 0) {
+            inputEnded = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    private static boolean isContinuation(int b) {
+        return (b & 0xc0) == 0x80;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+
+        int count = 0;
+        if (carry >= 0) {
+            cbuf[off] = (char) carry;
+            carry = -1;
+            count = 1;
+        }
+
+        while (count < len && decoder == null) {
+            // ASCII, the fast path
+            int end = off + len;
+            int o = off + count;
+            int p = position;
+            int l = Math.min(limit, p + (end - o));
+            while (p < l && bytes[p] >= 0)
+                cbuf[o++] = (char) bytes[p++];
+            position = p;
+            count = o - off;
+            if (count == len)
+                break;
+
+            if (position == limit) {
+                if (!fill())
+                    break;
+                continue;
+            }
+
+            // a multi-byte sequence, make sure it's all in the block
+            while (limit - position < 4 && fill()) {
+            }
+            int b1 = bytes[position] & 0xff;
+            int available = limit - position;
+            if (b1 >= 0xc2 && b1 <= 0xdf) {
+                if (available >= 2) {
+                    int b2 = bytes[position + 1];
+                    if (isContinuation(b2)) {
+                        cbuf[off + count] = (char) (((b1 & 0x1f) << 6) | (b2 & 0x3f));
+                        count += 1;
+                        position += 2;
+                        continue;
+                    }
+                }
+            } else if (b1 >= 0xe0 && b1 <= 0xef) {
+                if (available >= 3) {
+                    int b2 = bytes[position + 1] & 0xff;
+                    int b3 = bytes[position + 2];
+                    // no overlong forms and no surrogates
+                    boolean secondOk = b1 == 0xe0 ? (b2 >= 0xa0 && b2 <= 0xbf)
+                            : b1 == 0xed ? (b2 >= 0x80 && b2 <= 0x9f) : isContinuation(b2);
+                    if (secondOk && isContinuation(b3)) {
+                        cbuf[off + count] = (char) (((b1 & 0x0f) << 12) | ((b2 & 0x3f) << 6) | (b3 & 0x3f));
+                        count += 1;
+                        position += 3;
+                        continue;
+                    }
+                }
+            } else if (b1 >= 0xf0 && b1 <= 0xf4) {
+                if (available >= 4) {
+                    int b2 = bytes[position + 1] & 0xff;
+                    int b3 = bytes[position + 2];
+                    int b4 = bytes[position + 3];
+                    // no overlong forms and nothing past U+10FFFF
+                    boolean secondOk = b1 == 0xf0 ? (b2 >= 0x90 && b2 <= 0xbf)
+                            : b1 == 0xf4 ? (b2 >= 0x80 && b2 <= 0x8f) : isContinuation(b2);
+                    if (secondOk && isContinuation(b3) && isContinuation(b4)) {
+                        int codepoint = ((b1 & 0x07) << 18) | ((b2 & 0x3f) << 12) | ((b3 & 0x3f) << 6)
+                                | (b4 & 0x3f);
+                        position += 4;
+                        cbuf[off + count] = Character.highSurrogate(codepoint);
+                        count += 1;
+                        if (count < len) {
+                            cbuf[off + count] = Character.lowSurrogate(codepoint);
+                            count += 1;
+                        } else {
+                            carry = Character.lowSurrogate(codepoint);
+                        }
+                        continue;
+                    }
+                }
+            }
+
+            // malformed or cut short by the end of input; the decoder knows
+            // how many replacement chars that is
+            decoder = Charset.forName("UTF-8").newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        if (count < len && decoder != null)
+            count += decodeSlowly(cbuf, off + count, len - count);
+
+        return count == 0 ? -1 : count;
+    }
+
+    private int decodeSlowly(char[] cbuf, int off, int len) throws IOException {
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        if (carry >= 0) {
+            out.put((char) carry);
+            carry = -1;
+        }
+        while (out.hasRemaining() && !flushed) {
+            ByteBuffer in = ByteBuffer.wrap(bytes, position, limit - position);
+            CoderResult result = decoder.decode(in, out, inputEnded);
+            position = in.position();
+            if (result.isError())
+                result.throwException();
+            if (result.isOverflow()) {
+                if (out.position() == off) {
+                    // no room for a surrogate pair, decode it on the side
+                    CharBuffer pair = CharBuffer.allocate(2);
+                    result = decoder.decode(in, pair, inputEnded);
+                    position = in.position();
+                    pair.flip();
+                    out.put(pair.get());
+                    if (pair.hasRemaining())
+                        carry = pair.get();
+                }
+                break;
+            }
+            if (inputEnded) {
+                flushed = decoder.flush(out).isUnderflow();
+            } else {
+                fill();
+            }
+        }
+        return out.position() - off;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeable != null)
+            closeable.close();
+    }
+}
@@ -65,6 +65,24 @@ public interface ConfigDocument {
      */
     ConfigDocument withoutPath(String path);
 
+    /**
+     * Returns a new ConfigDocument for the text of this one with the characters
+     * from {@code start} to {@code end} replaced, as if that text had been
+     * parsed with the options used for this document. This is meant for editors
+     * making many small edits to a large file: an edit inside a single field
+     * only parses that field again and shares everything else with this
+     * document, while other edits parse the whole text.
+     *
+     * @param start the index in {@link #render()} of the first character to replace
+     * @param end the index in {@link #render()} after the last character to replace;
+     *            equal to start to insert text
+     * @param replacement the text to put in place of the replaced characters
+     * @return a copy of the ConfigDocument with the text edited
+     * @throws com.typesafe.config.ConfigException.Parse if the edited text
+     *             doesn't parse, with the same error as parsing all of it
+     */
+    ConfigDocument withTextEdit(int start, int end, String replacement);
+
     /**
      * Returns a boolean indicating whether or not a ConfigDocument has a value at the desired path.
      * null counts as a value for purposes of this check.
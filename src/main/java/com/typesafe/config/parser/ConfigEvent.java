@@ -0,0 +1,43 @@
+package com.typesafe.config.parser;
+
+/**
+ * The kinds of event returned by {@link ConfigEventReader#next()}.
+ */
+public enum ConfigEvent {
+    /**
+     * The start of an object; the root object of a HOCON file starts with this
+     * event even if it has no braces.
+     */
+    START_OBJECT,
+    /** The end of the object most recently started. */
+    END_OBJECT,
+    /** The start of an array. */
+    START_ARRAY,
+    /** The end of the array most recently started. */
+    END_ARRAY,
+    /**
+     * A field name in an object, available from
+     * {@link ConfigEventReader#key()}; the events for its value follow.
+     */
+    KEY,
+    /**
+     * A value that is not an object or array, available from
+     * {@link ConfigEventReader#value()}. A HOCON concatenation of such values,
+     * as in {@code a = foo bar}, is a single event.
+     */
+    VALUE,
+    /**
+     * A value containing {@code ${}} substitutions, available from
+     * {@link ConfigEventReader#value()} but not resolved. Calling methods
+     * such as {@link com.typesafe.config.ConfigValue#unwrapped()} on it
+     * throws {@link com.typesafe.config.ConfigException.NotResolved}; its
+     * {@link com.typesafe.config.ConfigValue#render()} shows the
+     * substitutions.
+     */
+    UNRESOLVED_VALUE,
+    /**
+     * An include statement. Its target is not loaded unless the caller asks
+     * for it with {@link ConfigEventReader#expandInclude()}.
+     */
+    INCLUDE
+}
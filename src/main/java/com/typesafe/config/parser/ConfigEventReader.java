@@ -0,0 +1,148 @@
+package com.typesafe.config.parser;
+
+import com.typesafe.config.ConfigOrigin;
+import com.typesafe.config.ConfigValue;
+
+import java.io.Closeable;
+
+/**
+ * Reads a HOCON or JSON file as a series of {@link ConfigEvent}s, one at a
+ * time, without building the whole config in memory. This is for large,
+ * data-like files such as a long array of objects; for everyday config see
+ * {@link com.typesafe.config.ConfigFactory}.
+ *
+ * <p>
+ * The events describe the file as written: duplicate keys are reported
+ * twice rather than merged, a key such as {@code a.b.c} is a single
+ * {@link ConfigEvent#KEY} event, and substitutions are reported as
+ * {@link ConfigEvent#UNRESOLVED_VALUE} events rather than resolved. Comments
+ * are skipped. A value in a HOCON concatenation of objects or arrays, such as
+ * {@code a = { x = 1 } { y = 2 }}, appears as several complete values in a
+ * row, the later ones marked by {@link #continuesValue()}; HOCON merges
+ * adjacent objects and concatenates adjacent arrays, and the reader leaves
+ * that to the caller.
+ *
+ * <p>
+ * Syntax errors are thrown from {@link #next()} as
+ * {@link com.typesafe.config.ConfigException}, once the reader reaches them;
+ * the events before an error have already been returned.
+ *
+ * <p>
+ * A reader is not safe to use from several threads. Close it to release
+ * the underlying file if you stop before the end; it is closed automatically
+ * once {@link #hasNext()} returns false or {@link #next()} throws.
+ *
+ * <p>
+ * <em>Do not implement interface {@code ConfigEventReader}</em>; it should
+ * only be implemented by the config library. Arbitrary implementations will
+ * not work because the library internals assume a specific concrete
+ * implementation. Also, this interface is likely to grow new methods over
+ * time, so third-party implementations will break.
+ */
+public interface ConfigEventReader extends Closeable {
+    /**
+     * Returns whether there are more events; false once the root value has
+     * ended.
+     *
+     * @return true if {@link #next()} will return an event
+     */
+    boolean hasNext();
+
+    /**
+     * Reads the next event. The accessors below then describe it.
+     *
+     * @return the next event
+     * @throws java.util.NoSuchElementException if there are no more events
+     * @throws com.typesafe.config.ConfigException on IO or parse errors
+     */
+    ConfigEvent next();
+
+    /**
+     * The origin of the current event, including its line number.
+     *
+     * @return the origin of the last event returned by {@link #next()}
+     */
+    ConfigOrigin origin();
+
+    /**
+     * The field name of a {@link ConfigEvent#KEY} event, as a path expression
+     * that {@link com.typesafe.config.ConfigUtil#splitPath(String)} can split.
+     *
+     * @return the key, or null if the current event is not a key
+     */
+    String key();
+
+    /**
+     * Whether a {@link ConfigEvent#KEY} event was followed by {@code +=},
+     * which appends its value to the array at that key.
+     *
+     * @return true if the current event is a key using {@code +=}
+     */
+    boolean isAppend();
+
+    /**
+     * The value of a {@link ConfigEvent#VALUE} or
+     * {@link ConfigEvent#UNRESOLVED_VALUE} event.
+     *
+     * @return the value, or null if the current event is not a value
+     */
+    ConfigValue value();
+
+    /**
+     * Whether the value started by the current event is a further part of
+     * the value before it, rather than a value of its own; this is the case
+     * for {@code { y = 2 }} in {@code [ { x = 1 } { y = 2 } ]}, which is an
+     * array with one element.
+     *
+     * @return true if the current event starts a value continuing a
+     *         concatenation
+     */
+    boolean continuesValue();
+
+    /**
+     * The name given in an {@link ConfigEvent#INCLUDE} statement, without the
+     * quotes or the surrounding {@code file()}, {@code url()} or
+     * {@code classpath()}.
+     *
+     * @return the name, or null if the current event is not an include
+     */
+    String includeName();
+
+    /**
+     * How the name of an {@link ConfigEvent#INCLUDE} statement is looked up:
+     * {@code "file"}, {@code "url"} or {@code "classpath"}, or
+     * {@code "heuristic"} for a bare quoted name.
+     *
+     * @return the kind of include, or null if the current event is not an
+     *         include
+     */
+    String includeKind();
+
+    /**
+     * Whether an {@link ConfigEvent#INCLUDE} statement was wrapped in
+     * {@code required()}.
+     *
+     * @return true if the current event is a required include
+     */
+    boolean isIncludeRequired();
+
+    /**
+     * Loads the target of the current {@link ConfigEvent#INCLUDE} event
+     * using the includer from the parse options, and makes its fields the
+     * next events, as {@link ConfigEvent#KEY} events and their values, before
+     * the reader continues with the including file. The included config is
+     * loaded in full, so this is meant for the small files usually included.
+     * If this is not called, the include is skipped.
+     *
+     * @throws IllegalStateException if the current event is not an include
+     * @throws com.typesafe.config.ConfigException on IO or parse errors
+     */
+    void expandInclude();
+
+    /**
+     * Stops reading and releases the underlying input. Does nothing if the
+     * reader is already closed.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,95 @@
+package com.typesafe.config.parser;
+
+import com.typesafe.config.ConfigParseOptions;
+
+import com.typesafe.config.impl.Parseable;
+
+import java.io.File;
+import java.io.Reader;
+
+/**
+ * Factory for creating {@link
+ * com.typesafe.config.parser.ConfigEventReader} instances.
+ */
+public final class ConfigEventReaderFactory {
+
+    /**
+     * Reads events from a Reader. The event reader closes the Reader once it
+     * is closed or reaches the end.
+     *
+     * @param reader
+     *       the reader to read
+     * @param options
+     *       parse options to control how the reader is interpreted
+     * @return an event reader positioned before the first event
+     * @throws com.typesafe.config.ConfigException on IO errors
+     */
+    public static ConfigEventReader parseReader(Reader reader, ConfigParseOptions options) {
+        return Parseable.newReader(reader, options).parseConfigEvents();
+    }
+
+    /**
+     * Reads events from a Reader as with
+     * {@link #parseReader(Reader,ConfigParseOptions)} but always uses the
+     * default parse options.
+     *
+     * @param reader
+     *       the reader to read
+     * @return an event reader positioned before the first event
+     * @throws com.typesafe.config.ConfigException on IO errors
+     */
+    public static ConfigEventReader parseReader(Reader reader) {
+        return parseReader(reader, ConfigParseOptions.defaults());
+    }
+
+    /**
+     * Reads events from a file. A missing file gives the events of an empty
+     * object if {@link ConfigParseOptions#setAllowMissing(boolean)} is set.
+     *
+     * @param file
+     *       the file to read
+     * @param options
+     *       parse options to control how the file is interpreted
+     * @return an event reader positioned before the first event
+     * @throws com.typesafe.config.ConfigException on IO errors
+     */
+    public static ConfigEventReader parseFile(File file, ConfigParseOptions options) {
+        return Parseable.newFile(file, options).parseConfigEvents();
+    }
+
+    /**
+     * Reads events from a file as with
+     * {@link #parseFile(File,ConfigParseOptions)} but always uses the
+     * default parse options.
+     *
+     * @param file
+     *       the file to read
+     * @return an event reader positioned before the first event
+     * @throws com.typesafe.config.ConfigException on IO errors
+     */
+    public static ConfigEventReader parseFile(File file) {
+        return parseFile(file, ConfigParseOptions.defaults());
+    }
+
+    /**
+     * Reads events from a string which should be valid HOCON or JSON.
+     *
+     * @param s string to read
+     * @param options parse options
+     * @return an event reader positioned before the first event
+     */
+    public static ConfigEventReader parseString(String s, ConfigParseOptions options) {
+        return Parseable.newString(s, options).parseConfigEvents();
+    }
+
+    /**
+     * Reads events from a string (which should be valid HOCON or JSON). Uses
+     * the default parse options.
+     *
+     * @param s string to read
+     * @return an event reader positioned before the first event
+     */
+    public static ConfigEventReader parseString(String s) {
+        return parseString(s, ConfigParseOptions.defaults());
+    }
+}
@@ -887,4 +887,227 @@ class ConfParserTest extends TestUtils {
         val conf3 = ConfigFactory.parseString("ABC.0.1.2.3=foobar3")
         assertEquals("foobar3", conf3.getString("ABC.0.1.2.3"))
     }
+
+    // the way values were parsed before ConfigParser parsed tokens directly
+    private def parseThroughDocument(p: Parseable): AbstractConfigValue = {
+        val reader = p.reader()
+        try {
+            val tokens = Tokenizer.tokenize(p.origin, reader, p.options.getSyntax)
+            val root = ConfigDocumentParser.parse(tokens, p.origin, p.options)
+            ConfigNodeParser.parse(root, p.origin, p.options, p.includeContext)
+        } finally {
+            reader.close()
+        }
+    }
+
+    private def parseDirectly(p: Parseable): AbstractConfigValue = {
+        val reader = p.reader()
+        try {
+            ConfigParser.parse(Tokenizer.tokenize(p.origin, reader, p.options), p.origin, p.options, p.includeContext)
+        } finally {
+            reader.close()
+        }
+    }
+
+    private def assertSameParse(where: String, expected: ConfigValue, actual: ConfigValue): Unit = {
+        assertEquals(where, expected.origin, actual.origin)
+        assertEquals(where, expected.origin.lineNumber, actual.origin.lineNumber)
+        assertEquals(where, expected.origin.comments, actual.origin.comments)
+        (expected, actual) match {
+            case (e: AbstractConfigValue, a: AbstractConfigValue) if e.resolveStatus != ResolveStatus.RESOLVED =>
+                assertEquals(where, e, a)
+            case (e: ConfigObject, a: ConfigObject) =>
+                assertEquals(where, e.keySet, a.keySet)
+                for (k <- e.keySet.asScala)
+                    assertSameParse(where + "." + k, e.get(k), a.get(k))
+            case (e: ConfigList, a: ConfigList) =>
+                assertEquals(where, e.size, a.size)
+                for (i <- 0 until e.size)
+                    assertSameParse(where + "[" + i + "]", e.get(i), a.get(i))
+            case _ =>
+                assertEquals(where, expected, actual)
+        }
+    }
+
+    private def resourcesToParse(dir: File): Seq[File] =
+        dir.listFiles.toSeq.sortBy(_.getName).flatMap { f =>
+            if (f.isDirectory) resourcesToParse(f)
+            else if (f.getName.endsWith(".conf") || f.getName.endsWith(".json")) Seq(f)
+            else Seq.empty
+        }
+
+    @Test
+    def directParseMatchesDocumentParse(): Unit = {
+        val files = resourcesToParse(resourceFile("."))
+        assertTrue(files.size > 20)
+        for (f <- files) {
+            val p = Parseable.newFile(f, ConfigParseOptions.defaults())
+            val viaDocument = try Right(parseThroughDocument(p)) catch { case e: ConfigException => Left(e) }
+            val direct = try Right(parseDirectly(p)) catch { case e: ConfigException => Left(e) }
+            (viaDocument, direct) match {
+                case (Right(e), Right(a)) =>
+                    assertSameParse(f.getPath, e, a)
+                    assertEquals(f.getPath, e.render(), a.render())
+                case (Left(e), Left(a)) =>
+                    assertEquals(f.getPath, e.getClass, a.getClass)
+                    assertEquals(f.getPath, e.getMessage, a.getMessage)
+                case _ =>
+                    fail(s"${f.getPath}: $viaDocument through the document but $direct directly")
+            }
+        }
+    }
+
+    @Test
+    def syntaxErrorReportedBeforeFailedInclude(): Unit = {
+        val missing = "include required(\"nonexistent-resource-xyz\")\n"
+        // the syntax error is reported whether it is before or after the
+        // include, as it was when the whole document was parsed first
+        for (
+            text <- Seq(missing + "a : 1\nb : [", "a : }\n" + missing, missing + "a { " + missing + "}\nb : }");
+            executor <- Seq(null, new java.util.concurrent.Executor { def execute(r: Runnable) = r.run() })
+        ) {
+            val e = intercept[ConfigException.Parse] {
+                ConfigFactory.parseString(text, ConfigParseOptions.defaults().setExecutor(executor))
+            }
+            assertTrue(e.getMessage, e.getMessage.contains("String: "))
+            assertFalse(e.getMessage, e.getMessage.contains("nonexistent-resource-xyz"))
+        }
+
+        // without a syntax error, it's the first include that failed
+        val first = intercept[ConfigException.IO] {
+            ConfigFactory.parseString("a { include required(\"nonexistent-first\") }\n" +
+                "include required(\"nonexistent-second\")")
+        }
+        assertTrue(first.getMessage, first.getMessage.contains("nonexistent-first"))
+        val outer = intercept[ConfigException.IO] {
+            ConfigFactory.parseString("include required(\"nonexistent-first\")\n" +
+                "a { include required(\"nonexistent-second\") }",
+                ConfigParseOptions.defaults().setExecutor(new java.util.concurrent.Executor {
+                    def execute(r: Runnable) = r.run()
+                }))
+        }
+        assertTrue(outer.getMessage, outer.getMessage.contains("nonexistent-first"))
+    }
+
+    private def writeIncludeFiles(dir: File): Unit = {
+        for (i <- 0 until 6) {
+            writeFile(new File(dir, s"f$i.conf"), s"a : $i\nshared { x$i : $i, last : $i }\n" +
+                (if (i < 5) "include \"f" + (i + 1) + ".conf\"\n" else "") +
+                "k" + i + " { include \"g" + i + ".conf\" }\nb : " + i)
+            writeFile(new File(dir, s"g$i.conf"), s"g : $i, shared : $i")
+        }
+        writeFile(new File(dir, "top.conf"), "include \"f0.conf\"\ninclude \"f3.conf\"\nz { include \"g1.conf\" }\na : top")
+        writeFile(new File(dir, "cycle.conf"), "include \"cycle.conf\"")
+        for (i <- 0 until 60)
+            writeFile(new File(dir, s"deep$i.conf"), s"d$i : $i\n" + "include \"deep" + (i + 1) + ".conf\"")
+        writeFile(new File(dir, "bad.conf"), "include \"f1.conf\"\nx { include \"broken.conf\" }")
+        writeFile(new File(dir, "broken.conf"), "a : [")
+        writeFile(new File(dir, "needs.conf"), "include \"f1.conf\"\ninclude required(\"nope.conf\")")
+    }
+
+    @Test
+    def includesOnExecutorMergeInSourceOrder(): Unit = {
+        withScratchDirectory("includesOnExecutorMergeInSourceOrder") { dir =>
+            writeIncludeFiles(dir)
+            val sequential = ConfigFactory.parseFile(new File(dir, "top.conf"))
+            assertEquals("top", sequential.getString("a"))
+            assertEquals(5, sequential.getInt("shared.last"))
+            withParseExecutors { executor =>
+                val options = ConfigParseOptions.defaults().setExecutor(executor)
+                for (i <- 1 to 10) {
+                    val parallel = ConfigFactory.parseFile(new File(dir, "top.conf"), options)
+                    assertEquals(sequential, parallel)
+                    checkEqualOrigins(sequential.root, parallel.root)
+                    assertEquals(sequential.root.render(), parallel.root.render())
+                }
+            }
+        }
+    }
+
+    @Test
+    def includesOnExecutorKeepIncludeLimit(): Unit = {
+        withScratchDirectory("includesOnExecutorKeepIncludeLimit") { dir =>
+            writeIncludeFiles(dir)
+            withParseExecutors { executor =>
+                val options = ConfigParseOptions.defaults().setExecutor(executor)
+                for (name <- Seq("cycle.conf", "deep0.conf")) {
+                    val e = intercept[ConfigException.Parse] {
+                        ConfigFactory.parseFile(new File(dir, name), options)
+                    }
+                    assertTrue(e.getMessage, e.getMessage.contains("nested more than 50 times"))
+                }
+                // forty deep is fine
+                assertEquals(59, ConfigFactory.parseFile(new File(dir, "deep20.conf"), options).getInt("d59"))
+            }
+        }
+    }
+
+    @Test
+    def includesOnExecutorThrowOriginalException(): Unit = {
+        withScratchDirectory("includesOnExecutorThrowOriginalException") { dir =>
+            writeIncludeFiles(dir)
+            val throwingIncluder = new ConfigIncluder() {
+                override def withFallback(fallback: ConfigIncluder) = this
+                override def include(context: ConfigIncludeContext, what: String) =
+                    throw new IllegalStateException("can't include " + what)
+            }
+            withParseExecutors { executor =>
+                val options = ConfigParseOptions.defaults().setExecutor(executor)
+                val syntax = intercept[ConfigException.Parse] {
+                    ConfigFactory.parseFile(new File(dir, "bad.conf"), options)
+                }
+                assertTrue(syntax.getMessage, syntax.getMessage.contains("broken.conf: 1"))
+                intercept[ConfigException.IO] {
+                    ConfigFactory.parseFile(new File(dir, "needs.conf"), options)
+                }
+                val e = intercept[IllegalStateException] {
+                    ConfigFactory.parseString("x { include \"anything\" }", options.setIncluder(throwingIncluder))
+                }
+                assertEquals("can't include anything", e.getMessage)
+            }
+        }
+    }
+
+    @Test
+    def lazyObjectsMatchEagerObjects(): Unit = {
+        val lazyOptions = ConfigParseOptions.defaults().setLazyObjects(true)
+        for (f <- resourcesToParse(resourceFile("."))) {
+            val eager = try Right(Parseable.newFile(f, ConfigParseOptions.defaults()).parse()) catch { case e: ConfigException => Left(e) }
+            def parseLazily() = try Right(Parseable.newFile(f, lazyOptions).parse()) catch { case e: ConfigException => Left(e) }
+            (eager, parseLazily()) match {
+                case (Right(e), Right(a)) =>
+                    // each comparison starts from objects nothing has looked into
+                    assertEquals(f.getPath, e, a)
+                    assertEquals(f.getPath, e.hashCode, a.hashCode)
+                    assertEquals(f.getPath, e.render(), parseLazily().right.get.render())
+                    val resolvedEagerly = try Right(e.toConfig.resolve().root) catch { case x: ConfigException => Left(x.getMessage) }
+                    val resolvedLazily = try Right(parseLazily().right.get.toConfig.resolve().root) catch { case x: ConfigException => Left(x.getMessage) }
+                    assertEquals(f.getPath, resolvedEagerly, resolvedLazily)
+                    assertSameParse(f.getPath, e, parseLazily().right.get)
+                case (Left(e), Left(a)) =>
+                    assertEquals(f.getPath, e.getClass, a.getClass)
+                    assertEquals(f.getPath, e.getMessage, a.getMessage)
+                case (e, a) =>
+                    fail(s"${f.getPath}: $e eagerly but $a lazily")
+            }
+        }
+    }
+
+    @Test
+    def lazyObjectsOnlyAtTopLevelWithoutSubstitutions(): Unit = {
+        val text = "# about f\nf { g : 2, c : [1, 2], d { e : x } }\nh : ${f.g}\ni { j : ${h} }\n" +
+            "k { l += 1 }\nm { include \"nonexistent\" }\na { b : 1 }\na { n : 3 }"
+        val eager = ConfigFactory.parseString(text)
+        val parsed = ConfigFactory.parseString(text, ConfigParseOptions.defaults().setLazyObjects(true))
+        assertTrue(parsed.root.get("f").isInstanceOf[LazyConfigObject])
+        for (k <- Seq("i", "k", "m", "a"))
+            assertTrue(k, parsed.root.get(k).isInstanceOf[SimpleConfigObject])
+        assertEquals(Seq(" about f"), parsed.root.get("f").origin.comments.asScala)
+        assertEquals(2, parsed.root.get("f").origin.lineNumber)
+        assertEquals("x", parsed.getString("f.d.e"))
+        assertEquals(Set("b", "n"), parsed.getObject("a").keySet.asScala)
+        val resolved = parsed.resolve()
+        assertEquals(eager.resolve(), resolved)
+        assertEquals(2, resolved.getInt("i.j"))
+    }
 }
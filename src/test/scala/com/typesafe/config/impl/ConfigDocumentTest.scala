@@ -457,4 +457,76 @@ class ConfigDocumentTest extends TestUtils {
         assertEquals("{ a : {\n     \"a\" : 1,\n     \"b\" : 2\n } }",
             configDocument.withValue("a", configVal).render)
     }
+
+    // an edited document has to be the document of the edited text, however
+    // much of it withTextEdit parsed again
+    private def configDocumentTextEditTest(origText: String, start: Int, end: Int, replacement: String,
+        options: ConfigParseOptions = ConfigParseOptions.defaults()) {
+        val newText = origText.substring(0, start) + replacement + origText.substring(end)
+        val edited = ConfigDocumentFactory.parseString(origText, options).withTextEdit(start, end, replacement)
+        val reparsed = ConfigDocumentFactory.parseString(newText, options)
+        assertEquals(newText, edited.render())
+        // further edits see the same node structure as a fresh parse
+        assertEquals(reparsed.withValueText("zz.y", "1").render(), edited.withValueText("zz.y", "1").render())
+        assertEquals(reparsed.hasPath("a.b"), edited.hasPath("a.b"))
+    }
+
+    @Test
+    def configDocumentTextEditInsideField() {
+        configDocumentTextEditTest("a : 1\nb : 2\nc : 3", 10, 10, "4")
+        configDocumentTextEditTest("a { b { c : 1, d : 22 } }\ne : 5", 19, 20, "7")
+        configDocumentTextEditTest("abc : 1", 1, 2, "x")
+        configDocumentTextEditTest("a : \"hello\"", 6, 8, "EE")
+        configDocumentTextEditTest("a { b : 1 }", 8, 8, " x y ")
+        configDocumentTextEditTest("{\"a\":1,\"bb\":22}", 13, 13, "3",
+            ConfigParseOptions.defaults().setSyntax(ConfigSyntax.JSON))
+    }
+
+    @Test
+    def configDocumentTextEditOutsideField() {
+        // across fields, in a comment, and splitting one field into several
+        configDocumentTextEditTest("a : 1\nb : 2\nc : 3", 4, 7, "7\nd")
+        configDocumentTextEditTest("a : 1\n# comment\nb : 2", 8, 10, "note")
+        configDocumentTextEditTest("a : 12\nb : 2", 5, 5, "\nz : 3\ny : 1")
+    }
+
+    @Test
+    def configDocumentTextEditManyEdits() {
+        val options = ConfigParseOptions.defaults()
+        var text = "a {\n  b : 1\n  c : [1, 2]\n}\nd : \"x\"\n"
+        var doc = ConfigDocumentFactory.parseString(text, options)
+        val edits = Seq((11, 11, "0"), (24, 24, ", 3"), (37, 37, "yz"), (15, 16, "cc"), (0, 0, "e : 1\n"))
+        for ((start, end, replacement) <- edits) {
+            text = text.substring(0, start) + replacement + text.substring(end)
+            doc = doc.withTextEdit(start, end, replacement)
+            assertEquals(text, doc.render())
+            assertEquals(ConfigDocumentFactory.parseString(text, options).withValueText("a.b", "5").render(),
+                doc.withValueText("a.b", "5").render())
+        }
+    }
+
+    @Test
+    def configDocumentTextEditErrors() {
+        // errors are the ones a full parse of the edited text gives
+        def parseError(origText: String, start: Int, end: Int, replacement: String, options: ConfigParseOptions) {
+            val newText = origText.substring(0, start) + replacement + origText.substring(end)
+            val expected = intercept[ConfigException.Parse] {
+                ConfigDocumentFactory.parseString(newText, options)
+            }
+            val e = intercept[ConfigException.Parse] {
+                ConfigDocumentFactory.parseString(origText, options).withTextEdit(start, end, replacement)
+            }
+            assertEquals(expected.getMessage, e.getMessage)
+        }
+        parseError("a : [1, 2]", 6, 6, "]]", ConfigParseOptions.defaults())
+        parseError("a : 1\nb : 2\nc : 3", 4, 8, "", ConfigParseOptions.defaults())
+        // changing a key in JSON has to check for duplicates
+        parseError("{\"a\":1,\"ab\":2}", 9, 10, "", ConfigParseOptions.defaults().setSyntax(ConfigSyntax.JSON))
+
+        val doc = ConfigDocumentFactory.parseString("a : 1")
+        intercept[ConfigException.BugOrBroken] { doc.withTextEdit(-1, 0, "x") }
+        intercept[ConfigException.BugOrBroken] { doc.withTextEdit(3, 2, "x") }
+        intercept[ConfigException.BugOrBroken] { doc.withTextEdit(0, 6, "x") }
+        intercept[ConfigException.BugOrBroken] { doc.withTextEdit(0, 1, null) }
+    }
 }
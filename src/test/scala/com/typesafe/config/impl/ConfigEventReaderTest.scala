@@ -0,0 +1,239 @@
+package com.typesafe.config.impl
+
+import java.io.{ File, StringReader }
+
+import com.typesafe.config._
+import com.typesafe.config.parser._
+import org.junit.Assert._
+import org.junit.Test
+
+import scala.collection.mutable
+
+class ConfigEventReaderTest extends TestUtils {
+
+    // each event as text, with what the accessors say about it and its line
+    private def describe(reader: ConfigEventReader): String = {
+        val event = reader.next()
+        val detail = event match {
+            case ConfigEvent.KEY =>
+                " " + reader.key + (if (reader.isAppend) " +=" else "")
+            case ConfigEvent.VALUE | ConfigEvent.UNRESOLVED_VALUE =>
+                " " + reader.value.render(ConfigRenderOptions.concise())
+            case ConfigEvent.INCLUDE =>
+                " " + reader.includeKind + " " + reader.includeName + (if (reader.isIncludeRequired) " required" else "")
+            case _ =>
+                ""
+        }
+        event + detail + (if (reader.continuesValue) " continued" else "") + " @" + reader.origin.lineNumber
+    }
+
+    private def events(reader: ConfigEventReader): Seq[String] = {
+        val result = mutable.ArrayBuffer[String]()
+        while (reader.hasNext)
+            result += describe(reader)
+        result
+    }
+
+    private def events(s: String, syntax: ConfigSyntax = ConfigSyntax.CONF): Seq[String] =
+        events(ConfigEventReaderFactory.parseString(s, ConfigParseOptions.defaults().setSyntax(syntax)))
+
+    @Test
+    def eventsForObjectsAndArrays() {
+        assertEquals(Seq("START_OBJECT @1", "KEY a @1", "VALUE 1 @1", "KEY b @1", "START_OBJECT @1",
+            "KEY c @1", "START_ARRAY @1", "VALUE 1 @1", "VALUE 2 @1", "START_OBJECT @1", "KEY d @1",
+            "VALUE \"x\" @1", "END_OBJECT @1", "END_ARRAY @1", "END_OBJECT @1", "END_OBJECT @1"),
+            events("a : 1, b : { c : [1, 2, { d : x }] }"))
+        // braces around the root don't add an object
+        assertEquals(Seq("START_OBJECT @1", "KEY a @1", "VALUE 1 @1", "END_OBJECT @1"), events("{ a : 1 }"))
+        assertEquals(Seq("START_OBJECT @1", "END_OBJECT @1"), events(""))
+        assertEquals(Seq("START_ARRAY @1", "VALUE 1 @1", "VALUE 2 @1", "END_ARRAY @1"), events("[1, 2]"))
+        assertEquals(Seq("START_OBJECT @1", "KEY a @1", "START_ARRAY @1", "VALUE 1 @1", "VALUE true @1",
+            "VALUE null @1", "VALUE \"s\" @1", "END_ARRAY @1", "KEY b @1", "START_OBJECT @1", "END_OBJECT @1",
+            "END_OBJECT @1"),
+            events("{ \"a\" : [1, true, null, \"s\"], \"b\" : {} }", ConfigSyntax.JSON))
+        assertEquals(Seq("START_ARRAY @1", "END_ARRAY @1"), events("[ ]", ConfigSyntax.JSON))
+    }
+
+    @Test
+    def eventsForDuplicateAndDottedKeys() {
+        // nothing is merged or split up
+        assertEquals(Seq("START_OBJECT @1", "KEY a @1", "VALUE 1 @1", "KEY a @2", "VALUE 2 @2",
+            "KEY a.b.c @3", "VALUE 3 @3", "KEY d += @4", "VALUE 4 @4", "END_OBJECT @4"),
+            events("a : 1\na : 2\na.b.c : 3\nd += 4"))
+    }
+
+    @Test
+    def eventsForConcatenations() {
+        assertEquals(Seq("START_OBJECT @1", "KEY a @1", "VALUE \"foo bar\" @1",
+            "KEY b @2", "UNRESOLVED_VALUE ${x}\" y\" @2",
+            "KEY c @3", "START_OBJECT @3", "KEY x @3", "VALUE 1 @3", "END_OBJECT @3",
+            "START_OBJECT continued @3", "KEY y @3", "VALUE 2 @3", "END_OBJECT @3",
+            "KEY d @4", "START_ARRAY @4", "VALUE 1 @4", "END_ARRAY @4",
+            "START_ARRAY continued @4", "VALUE 2 @4", "END_ARRAY @4", "END_OBJECT @4"),
+            events("a = foo bar\nb = ${x} y\nc = { x = 1 } { y = 2 }\nd = [1] [2]"))
+        val reader = ConfigEventReaderFactory.parseString("b = ${x}")
+        while (reader.next() != ConfigEvent.UNRESOLVED_VALUE) {}
+        intercept[ConfigException.NotResolved] {
+            reader.value.unwrapped
+        }
+    }
+
+    @Test
+    def syntaxErrorsMatchParser() {
+        val invalid = Seq(
+            (ConfigSyntax.CONF, "a : 1\nb : [1,\n2,\n}", 4, 7),
+            (ConfigSyntax.CONF, "a : 1\n}", 2, 3),
+            (ConfigSyntax.CONF, "a : 1\nb : ${", 2, 4),
+            (ConfigSyntax.CONF, "{ a : 1 } x", 1, 4),
+            (ConfigSyntax.JSON, "{ \"a\" : 1,\n\"b\" : foo }", 2, 4),
+            (ConfigSyntax.JSON, "{ \"a\" : 1\n, }", 2, 3),
+            (ConfigSyntax.JSON, "a : 1", 1, 0),
+            (ConfigSyntax.JSON, "{ \"a\" : 1 } x", 1, 4),
+            // fine as HOCON
+            (ConfigSyntax.JSON, "{ \"a\" : 1, }", 1, 3))
+        for ((syntax, text, line, before) <- invalid) {
+            val options = ConfigParseOptions.defaults().setSyntax(syntax)
+            val expected = intercept[ConfigException.Parse] {
+                ConfigFactory.parseString(text, options)
+            }
+            val reader = ConfigEventReaderFactory.parseString(text, options)
+            var count = 0
+            val e = intercept[ConfigException.Parse] {
+                while (reader.hasNext) {
+                    reader.next()
+                    count += 1
+                }
+            }
+            assertEquals(text, expected.getMessage, e.getMessage)
+            assertEquals(text, line, e.origin.lineNumber)
+            assertEquals(text, "String: " + line, e.origin.description)
+            // the events before the error came out first
+            assertEquals(text, before, count)
+            assertFalse(reader.hasNext)
+        }
+        assertEquals(4, events("{ a : 1, }").size)
+    }
+
+    @Test
+    def includeEvents() {
+        assertEquals(Seq("START_OBJECT @1", "INCLUDE heuristic x @1", "INCLUDE file y.conf required @2",
+            "INCLUDE classpath z @3", "INCLUDE url http://example.com/a @4", "END_OBJECT @4"),
+            events("include \"x\"\ninclude required(file(\"y.conf\"))\ninclude classpath(\"z\")\n" +
+                "include url(\"http://example.com/a\")"))
+    }
+
+    @Test
+    def expandInclude() {
+        withScratchDirectory("expandInclude") { dir =>
+            writeFile(new File(dir, "inc.conf"), "x : 1\ny { z : 2 }")
+            writeFile(new File(dir, "main.conf"), "a : 1\ninclude \"inc.conf\"\nb { include \"inc.conf\" }\n" +
+                "include \"missing.conf\"\nc : 2\ninclude required(\"missing.conf\")")
+            val reader = ConfigEventReaderFactory.parseFile(new File(dir, "main.conf"))
+            val seen = mutable.ArrayBuffer[String]()
+            val e = intercept[ConfigException.IO] {
+                while (reader.hasNext) {
+                    val event = describe(reader)
+                    seen += event + " " + new File(reader.origin.filename).getName
+                    if (event.startsWith("INCLUDE"))
+                        reader.expandInclude()
+                }
+            }
+            assertTrue(e.getMessage, e.getMessage.contains("missing.conf"))
+            assertEquals(Seq("START_OBJECT @1 main.conf", "KEY a @1 main.conf", "VALUE 1 @1 main.conf",
+                "INCLUDE heuristic inc.conf @2 main.conf",
+                "KEY x @1 inc.conf", "VALUE 1 @1 inc.conf", "KEY y @2 inc.conf", "START_OBJECT @2 inc.conf",
+                "KEY z @2 inc.conf", "VALUE 2 @2 inc.conf", "END_OBJECT @2 inc.conf",
+                "KEY b @3 main.conf", "START_OBJECT @3 main.conf", "INCLUDE heuristic inc.conf @3 main.conf",
+                "KEY x @1 inc.conf", "VALUE 1 @1 inc.conf", "KEY y @2 inc.conf", "START_OBJECT @2 inc.conf",
+                "KEY z @2 inc.conf", "VALUE 2 @2 inc.conf", "END_OBJECT @2 inc.conf", "END_OBJECT @3 main.conf",
+                // not required, so nothing
+                "INCLUDE heuristic missing.conf @4 main.conf",
+                "KEY c @5 main.conf", "VALUE 2 @5 main.conf",
+                "INCLUDE heuristic missing.conf required @6 main.conf"), seen)
+        }
+    }
+
+    @Test
+    def expandIncludeOnlyRightAfterInclude() {
+        val reader = ConfigEventReaderFactory.parseString("a : 1\ninclude \"x\"")
+        reader.next()
+        intercept[IllegalStateException] {
+            reader.expandInclude()
+        }
+        while (reader.next() != ConfigEvent.INCLUDE) {}
+        reader.expandInclude()
+        intercept[IllegalStateException] {
+            reader.expandInclude()
+        }
+        assertEquals(ConfigEvent.END_OBJECT, reader.next())
+        assertFalse(reader.hasNext)
+        intercept[java.util.NoSuchElementException] {
+            reader.next()
+        }
+    }
+
+    @Test
+    def missingFile() {
+        withScratchDirectory("missingFile") { dir =>
+            val missing = new File(dir, "missing.conf")
+            assertEquals(Seq("START_OBJECT @1", "END_OBJECT @1"), events(ConfigEventReaderFactory.parseFile(missing)))
+            assertEquals(Seq("START_OBJECT @1", "END_OBJECT @1"), events(ConfigEventReaderFactory.parseFile(
+                new File(dir, "missing.json"), ConfigParseOptions.defaults().setSyntax(ConfigSyntax.JSON))))
+            val e = intercept[ConfigException.IO] {
+                ConfigEventReaderFactory.parseFile(missing, ConfigParseOptions.defaults().setAllowMissing(false))
+            }
+            assertTrue(e.getMessage, e.getMessage.contains("missing.conf"))
+        }
+    }
+
+    // a reader over the given text that counts how often it's closed
+    private class CountingReader(text: String) extends StringReader(text) {
+        var closes = 0
+        override def close() {
+            closes += 1
+            super.close()
+        }
+    }
+
+    private def readerOver(input: CountingReader): ConfigEventReader = {
+        // parseReader() leaves the caller's reader open, so make one that
+        // owns its input the way one from parseFile() does
+        val origin = SimpleConfigOrigin.newSimple("events")
+        new SimpleConfigEventReader(Tokenizer.tokenize(origin, input, ConfigSyntax.CONF), input, origin,
+            ConfigSyntax.CONF, SimpleIncluder.makeFull(ConfigImpl.defaultIncluder()),
+            Parseable.newString("", ConfigParseOptions.defaults()).includeContext())
+    }
+
+    @Test
+    def readerClosedAtEndOrOnError() {
+        for (text <- Seq("a : 1, b : [", "{ a : 1 } }", "a : 1, b : 2")) {
+            val input = new CountingReader(text)
+            val reader = readerOver(input)
+            try {
+                while (reader.hasNext)
+                    reader.next()
+            } catch {
+                case e: ConfigException.Parse =>
+            }
+            assertEquals(text, 1, input.closes)
+            assertFalse(reader.hasNext)
+            reader.close()
+            assertEquals(text, 1, input.closes)
+        }
+
+        val input = new CountingReader("a : 1, b : 2")
+        val reader = readerOver(input)
+        reader.next()
+        reader.close()
+        reader.close()
+        assertEquals(1, input.closes)
+        assertFalse(reader.hasNext)
+
+        // the caller's reader is the caller's to close
+        val own = new CountingReader("a : 1, b : [")
+        intercept[ConfigException.Parse] {
+            events(ConfigEventReaderFactory.parseReader(own))
+        }
+        assertEquals(0, own.closes)
+    }
+}
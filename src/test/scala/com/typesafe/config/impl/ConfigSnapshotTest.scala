@@ -0,0 +1,142 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config.impl
+
+import java.io.File
+import java.nio.file.Files
+
+import org.junit.Assert._
+import org.junit._
+import com.typesafe.config._
+import scala.collection.JavaConverters._
+
+class ConfigSnapshotTest extends TestUtils {
+
+    private def testConfig = ConfigFactory.parseString("""
+# the top
+a : 1
+b : "h\u00e9llo \u2603"
+c {
+    # inside
+    d : [1, 2.50, 10000000000, true, null, [x, y]]
+    e : { f : 3 }
+}
+g : 1.5e3
+""").resolve()
+
+    // reads everything in the value, so a broken image fails here if at all
+    private def walk(v: ConfigValue): Unit = {
+        v.origin.comments
+        v match {
+            case o: ConfigObject =>
+                for (e <- o.entrySet.asScala) {
+                    walk(e.getValue)
+                    o.get(e.getKey)
+                }
+                o.get("not-there")
+            case l: ConfigList =>
+                l.asScala.foreach(walk)
+            case _ =>
+                v.unwrapped
+        }
+    }
+
+    @Test
+    def snapshotRoundTrips(): Unit = {
+        withScratchDirectory("snapshotRoundTrips") { dir =>
+            val f = new File(dir, "snapshot")
+            val conf = testConfig
+            ConfigSnapshot.write(conf, f)
+            val mapped = ConfigSnapshot.map(f)
+            assertEquals(conf, mapped)
+            checkEqualOrigins(conf.root, mapped.root)
+            assertEquals(conf.root.render(), mapped.root.render())
+            assertEquals(3, mapped.getInt("c.e.f"))
+            assertEquals("2.50", mapped.getList("c.d").get(1).asInstanceOf[ConfigNumber].transformToString)
+            assertEquals("h\u00e9llo \u2603", mapped.getString("b"))
+            assertEquals(Seq(" inside"), mapped.getValue("c.d").origin.comments.asScala)
+            assertFalse(mapped.hasPath("c.nope"))
+            assertEquals(conf.withFallback(parseConfig("z : 1")), mapped.withFallback(parseConfig("z : 1")))
+        }
+    }
+
+    @Test
+    def snapshotNeedsResolvedConfig(): Unit = {
+        withScratchDirectory("snapshotNeedsResolvedConfig") { dir =>
+            intercept[ConfigException.NotResolved] {
+                ConfigSnapshot.write(parseConfig("a : ${b}, b : 1"), new File(dir, "snapshot"))
+            }
+        }
+    }
+
+    @Test
+    def snapshotReplacedWhileMapped(): Unit = {
+        withScratchDirectory("snapshotReplacedWhileMapped") { dir =>
+            // a name too short to be a temporary file's prefix
+            val f = new File(dir, "s")
+            ConfigSnapshot.write(parseConfig("a : 1"), f)
+            val first = ConfigSnapshot.map(f)
+            ConfigSnapshot.write(parseConfig("a : 2"), f)
+            assertEquals(1, first.getInt("a"))
+            assertEquals(2, ConfigSnapshot.map(f).getInt("a"))
+        }
+    }
+
+    @Test
+    def mapNotASnapshot(): Unit = {
+        withScratchDirectory("mapNotASnapshot") { dir =>
+            val f = new File(dir, "snapshot")
+            writeFile(f, "a : 1\n" * 10)
+            intercept[ConfigException.IO] {
+                ConfigSnapshot.map(f)
+            }
+            intercept[ConfigException.IO] {
+                ConfigSnapshot.map(new File(dir, "missing"))
+            }
+        }
+    }
+
+    @Test
+    def truncatedSnapshotIsRejected(): Unit = {
+        withScratchDirectory("truncatedSnapshotIsRejected") { dir =>
+            val f = new File(dir, "snapshot")
+            ConfigSnapshot.write(testConfig, f)
+            val image = Files.readAllBytes(f.toPath)
+            for (length <- 0 until image.length) {
+                val truncated = new File(dir, "truncated-" + length)
+                Files.write(truncated.toPath, java.util.Arrays.copyOf(image, length))
+                intercept[ConfigException.IO] {
+                    ConfigSnapshot.map(truncated)
+                }
+            }
+        }
+    }
+
+    @Test
+    def corruptSnapshotIsRejected(): Unit = {
+        withScratchDirectory("corruptSnapshotIsRejected") { dir =>
+            val f = new File(dir, "snapshot")
+            ConfigSnapshot.write(testConfig, f)
+            val image = Files.readAllBytes(f.toPath)
+            // a flipped bit may go unnoticed, if it's in a number or a
+            // string, but it must never get past us as anything other
+            // than a ConfigException
+            var rejected = 0
+            for (bit <- 0 until image.length * 8) {
+                val corrupt = image.clone()
+                corrupt(bit / 8) = (corrupt(bit / 8) ^ (1 << (bit % 8))).toByte
+                val g = new File(dir, "corrupt-" + bit)
+                Files.write(g.toPath, corrupt)
+                try {
+                    walk(ConfigSnapshot.map(g).root)
+                } catch {
+                    case e: ConfigException.IO => rejected += 1
+                    case e: ConfigException.BugOrBroken => rejected += 1
+                    case e: ConfigException =>
+                }
+            }
+            assertTrue(s"only $rejected of ${image.length * 8} flips rejected", rejected > image.length * 8 / 2)
+        }
+    }
+}
@@ -1362,4 +1362,420 @@ class ConfigTest extends TestUtils {
         assertTrue(e.getMessage.contains("${a.b.c}"))
     }
 
+    // what a getter returned, or the exception it threw
+    private def outcome(get: => Any): Either[ConfigException, Any] =
+        try Right(get) catch { case e: ConfigException => Left(e) }
+
+    // both return equal values, or throw the same exception
+    private def assertSameOutcome(what: String, expected: => Any, actual: => Any): Unit = {
+        (outcome(expected), outcome(actual)) match {
+            case (Right(a), Right(b)) =>
+                assertEquals(what, a, b)
+            case (Left(a), Left(b)) =>
+                assertEquals(what, a.getClass, b.getClass)
+                assertEquals(what, a.getMessage, b.getMessage)
+            case (a, b) =>
+                fail(s"$what: expected $a but got $b")
+        }
+    }
+
+    // every path in test01 and a few that aren't there or go through a
+    // value that isn't an object
+    private def test01Paths(conf: Config): Seq[String] =
+        (conf.entrySet.asScala.map(_.getKey).toSeq.sorted ++
+            Seq("ints", "arrays", "nulls.null", "nulls.nullAgain", "doesnotexist", "ints.fortyTwo.nope",
+                "nulls.null.nope", "arrays.ofInt.nope", "durations.doesnotexist"))
+
+    private val keyedGetters: Seq[(String, String => ConfigKey[_], (Config, String) => Any)] = Seq(
+        ("boolean", p => ConfigKey.booleanValue(p), (c, p) => c.getBoolean(p)),
+        ("number", p => ConfigKey.number(p), (c, p) => c.getNumber(p)),
+        ("int", p => ConfigKey.intValue(p), (c, p) => c.getInt(p)),
+        ("long", p => ConfigKey.longValue(p), (c, p) => c.getLong(p)),
+        ("double", p => ConfigKey.doubleValue(p), (c, p) => c.getDouble(p)),
+        ("string", p => ConfigKey.string(p), (c, p) => c.getString(p)),
+        ("value", p => ConfigKey.value(p), (c, p) => c.getValue(p)),
+        ("list", p => ConfigKey.list(p), (c, p) => c.getList(p)),
+        ("object", p => ConfigKey.`object`(p), (c, p) => c.getObject(p)),
+        ("config", p => ConfigKey.config(p), (c, p) => c.getConfig(p)),
+        ("bytes", p => ConfigKey.bytes(p), (c, p) => c.getBytes(p)),
+        ("memorySize", p => ConfigKey.memorySize(p), (c, p) => c.getMemorySize(p)),
+        ("duration", p => ConfigKey.duration(p), (c, p) => c.getDuration(p)),
+        ("durationMillis", p => ConfigKey.duration(p, MILLISECONDS), (c, p) => c.getDuration(p, MILLISECONDS)),
+        ("period", p => ConfigKey.period(p), (c, p) => c.getPeriod(p)),
+        ("temporal", p => ConfigKey.temporal(p), (c, p) => c.getTemporal(p)))
+
+    @Test
+    def configKeyReadsLikeGetters() {
+        val conf = ConfigFactory.load("test01")
+        for (path <- test01Paths(conf); (name, key, getter) <- keyedGetters) {
+            val k = key(path)
+            assertEquals(path, k.path)
+            assertSameOutcome(s"$name at $path", getter(conf, path), k.get(conf))
+            // again, from what the key remembered
+            assertSameOutcome(s"$name at $path again", getter(conf, path), k.get(conf))
+        }
+    }
+
+    @Test
+    def configKeyReadsEnums() {
+        val conf = parseConfig("unit : SECONDS, bad : SECS, number : 1")
+        for (path <- Seq("unit", "bad", "number", "missing")) {
+            val k = ConfigKey.enumValue(classOf[TimeUnit], path)
+            assertSameOutcome(path, conf.getEnum(classOf[TimeUnit], path), k.get(conf))
+        }
+        assertEquals(SECONDS, ConfigKey.enumValue(classOf[TimeUnit], "unit").get(conf))
+    }
+
+    @Test
+    def configKeyBadPath() {
+        intercept[ConfigException.BadPath] {
+            ConfigKey.intValue("bad..bad")
+        }
+        intercept[ConfigException.BadPath] {
+            ConfigKey.duration(".bad", SECONDS)
+        }
+    }
+
+    @Test
+    def configKeyRemembersLastConfig() {
+        val first = parseConfig("a : 1s, b : 1")
+        val second = parseConfig("a : 2s")
+        val key = ConfigKey.duration("a")
+        val d = key.get(first)
+        assertSame(d, key.get(first))
+        assertEquals(java.time.Duration.ofSeconds(2), key.get(second))
+        assertEquals(java.time.Duration.ofSeconds(1), key.get(first))
+        // an equal config is looked up again, not mistaken for the last one
+        assertEquals(java.time.Duration.ofSeconds(1), key.get(first.withValue("b", intValue(2))))
+        intercept[ConfigException.Missing] {
+            ConfigKey.intValue("a").get(second.withoutPath("a"))
+        }
+    }
+
+    // reads the key from a config nothing else holds, and returns a weak
+    // reference to the part of the config it read
+    private def readFromThrowawayConfig(key: ConfigKey[_]): java.lang.ref.WeakReference[ConfigValue] = {
+        val conf = parseConfig("a { b : [1, 2] }")
+        key.get(conf)
+        new java.lang.ref.WeakReference[ConfigValue](conf.getValue(key.path))
+    }
+
+    @Test
+    def configKeyDoesNotKeepConfigAlive() {
+        val keys = Seq[ConfigKey[_]](ConfigKey.value("a"), ConfigKey.`object`("a"), ConfigKey.config("a"),
+            ConfigKey.list("a.b"))
+        for (key <- keys) {
+            val conf = parseConfig("a { b : [1, 2] }")
+            assertEquals(key.toString, key.get(conf), key.get(conf))
+            val read = readFromThrowawayConfig(key)
+            for (i <- 1 to 50 if read.get != null) {
+                System.gc()
+                Thread.sleep(20)
+            }
+            assertNull(key.toString, read.get)
+        }
+        val conf = parseConfig("a { b : [1, 2] }")
+        assertSame(conf.getValue("a"), ConfigKey.value("a").get(conf))
+        assertSame(conf.getList("a.b"), ConfigKey.list("a.b").get(conf))
+    }
+
+    // each one against what it's documented to be the same as
+    private val findGetters: Seq[(String, (Config, String) => Any, (Config, String) => Any)] = Seq(
+        ("lookup", (c, p) => if (c.hasPath(p)) c.getValue(p) else null, (c, p) => c.lookup(p)),
+        ("findBoolean", (c, p) => if (c.hasPath(p)) java.util.Optional.of(c.getBoolean(p)) else java.util.Optional.empty(),
+            (c, p) => c.findBoolean(p)),
+        ("findInt", (c, p) => if (c.hasPath(p)) java.util.OptionalInt.of(c.getInt(p)) else java.util.OptionalInt.empty(),
+            (c, p) => c.findInt(p)),
+        ("findLong", (c, p) => if (c.hasPath(p)) java.util.OptionalLong.of(c.getLong(p)) else java.util.OptionalLong.empty(),
+            (c, p) => c.findLong(p)),
+        ("findDouble", (c, p) => if (c.hasPath(p)) java.util.OptionalDouble.of(c.getDouble(p)) else java.util.OptionalDouble.empty(),
+            (c, p) => c.findDouble(p)),
+        ("findString", (c, p) => if (c.hasPath(p)) java.util.Optional.of(c.getString(p)) else java.util.Optional.empty(),
+            (c, p) => c.findString(p)),
+        ("findConfig", (c, p) => if (c.hasPath(p)) java.util.Optional.of(c.getConfig(p)) else java.util.Optional.empty(),
+            (c, p) => c.findConfig(p)),
+        ("getBooleanOrElse", (c, p) => if (c.hasPath(p)) c.getBoolean(p) else true, (c, p) => c.getBooleanOrElse(p, true)),
+        ("getIntOrElse", (c, p) => if (c.hasPath(p)) c.getInt(p) else -7, (c, p) => c.getIntOrElse(p, -7)),
+        ("getLongOrElse", (c, p) => if (c.hasPath(p)) c.getLong(p) else -7L, (c, p) => c.getLongOrElse(p, -7L)),
+        ("getDoubleOrElse", (c, p) => if (c.hasPath(p)) c.getDouble(p) else -7.5, (c, p) => c.getDoubleOrElse(p, -7.5)),
+        ("getStringOrElse", (c, p) => if (c.hasPath(p)) c.getString(p) else "default", (c, p) => c.getStringOrElse(p, "default")),
+        ("getStringOrElse null", (c, p) => if (c.hasPath(p)) c.getString(p) else null, (c, p) => c.getStringOrElse(p, null)))
+
+    @Test
+    def findReadsLikeHasPathAndGet() {
+        val test01 = ConfigFactory.load("test01")
+        val custom = parseConfig("a : 1, b : null, c { d : true, e : x, f : 2.5 }, g : [1], h : 10000000000")
+        val customPaths = Seq("a", "b", "b.x", "c", "c.d", "c.e", "c.f", "c.nope", "g", "g.x", "h", "a.b", "missing")
+        for ((conf, paths) <- Seq((test01, test01Paths(test01)), (test01.withPathIndex(), test01Paths(test01)), (custom, customPaths));
+            path <- paths; (name, expected, actual) <- findGetters)
+            assertSameOutcome(s"$name at $path", expected(conf, path), actual(conf, path))
+
+        assertEquals(intValue(1), custom.lookup("a"))
+        assertNull(custom.lookup("b"))
+        assertNull(custom.lookup("a.b"))
+        assertEquals(java.util.OptionalInt.of(1), custom.findInt("a"))
+        assertEquals(java.util.OptionalInt.empty(), custom.findInt("b"))
+        assertEquals(java.util.Optional.of("x"), custom.findString("c.e"))
+        assertEquals(2.5, custom.findConfig("c").get.getDouble("f"), 0.0)
+        assertEquals(3, custom.getIntOrElse("missing", 3))
+        assertEquals(10000000000L, custom.getLongOrElse("h", 3))
+        assertEquals("x", custom.getStringOrElse("c.e", null))
+        intercept[ConfigException.WrongType] {
+            custom.findInt("h")
+        }
+        intercept[ConfigException.WrongType] {
+            custom.getBooleanOrElse("a", false)
+        }
+        intercept[ConfigException.WrongType] {
+            custom.findConfig("g")
+        }
+    }
+
+    @Test
+    def findBadPathOrUnresolved() {
+        val conf = parseConfig("a : ${b}, b : 1")
+        for (path <- Seq("bad..bad", ".x", "")) {
+            intercept[ConfigException.BadPath] {
+                conf.lookup(path)
+            }
+            intercept[ConfigException.BadPath] {
+                conf.findString(path)
+            }
+            intercept[ConfigException.BadPath] {
+                conf.getIntOrElse(path, 1)
+            }
+        }
+        intercept[ConfigException.NotResolved] {
+            conf.lookup("a")
+        }
+        intercept[ConfigException.NotResolved] {
+            conf.getIntOrElse("a", 1)
+        }
+        assertEquals(1, conf.resolve().getIntOrElse("a", 2))
+    }
+
+    @Test
+    def gettersRememberConversions() {
+        val conf = parseConfig("d : 10s, n : 5, b : 10k, p : 3d, unit : SECONDS")
+        def value(path: String) = conf.getValue(path).asInstanceOf[AbstractConfigValue]
+
+        assertNull(value("d").conversion(classOf[java.time.Duration]))
+        val d = conf.getDuration("d")
+        assertEquals(d, value("d").conversion(classOf[java.time.Duration]))
+        assertEquals(d, conf.getDuration("d"))
+        assertEquals(10000L, conf.getDuration("d", MILLISECONDS))
+
+        val n = conf.getDuration("n")
+        assertEquals(n, value("n").conversion(classOf[java.time.Duration]))
+        assertEquals(java.time.Duration.ofMillis(5), conf.getDuration("n"))
+
+        val b = conf.getBytes("b")
+        assertEquals(BigInteger.valueOf(b), value("b").conversion(classOf[BigInteger]))
+        assertEquals(b, conf.getBytes("b"))
+        assertEquals(10240L, conf.getBytes("b").longValue)
+        assertEquals(ConfigMemorySize.ofBytes(10240), conf.getMemorySize("b"))
+
+        val p = conf.getPeriod("p")
+        assertEquals(p, value("p").conversion(classOf[java.time.Period]))
+        assertEquals(p, conf.getPeriod("p"))
+        assertEquals(java.time.Period.ofDays(3), conf.getPeriod("p"))
+
+        // only one conversion is kept, and asking for another type replaces it
+        assertEquals(java.time.Duration.ofDays(3), conf.getDuration("p"))
+        assertNull(value("p").conversion(classOf[java.time.Period]))
+        assertEquals(java.time.Period.ofDays(3), conf.getPeriod("p"))
+
+        // an enum class belongs to the application, so it isn't kept
+        assertEquals(SECONDS, conf.getEnum(classOf[TimeUnit], "unit"))
+        assertNull(value("unit").conversion(classOf[TimeUnit]))
+        assertEquals(SECONDS, conf.getEnum(classOf[TimeUnit], "unit"))
+        assertNull(value("unit").conversion(classOf[TimeUnit]))
+    }
+
+    // getters for a path below some value, which all fail the same way
+    private val throughGetters: Seq[(String, Config => String => Any)] = Seq(
+        ("int", c => p => c.getInt(p)), ("string", c => p => c.getString(p)), ("value", c => p => c.getValue(p)),
+        ("config", c => p => c.getConfig(p)), ("int list", c => p => c.getIntList(p)),
+        ("is null", c => p => c.getIsNull(p)), ("key", c => p => ConfigKey.intValue(p).get(c)))
+
+    @Test
+    def lookupThroughNonObject() {
+        val conf = parseConfig("a : 1, s : str, l : [1], o : { b : { c : 2 } }, t : \"{}\"")
+        for (
+            (path, at, kind) <- Seq(("a.b", "a", "NUMBER"), ("a.b.c", "a", "NUMBER"), ("s.b", "s", "STRING"),
+                ("l.b", "l", "LIST"), ("l.0", "l", "LIST"), ("o.b.c.d", "o.b.c", "NUMBER"), ("t.b", "t", "STRING"));
+            (name, getter) <- throughGetters
+        ) {
+            val e = intercept[ConfigException.WrongType] {
+                getter(conf)(path)
+            }
+            assertEquals(s"$name at $path", s"String: 1: $at has type $kind rather than OBJECT", e.getMessage)
+            assertFalse(path, conf.hasPath(path))
+            assertFalse(path, conf.hasPathOrNull(path))
+        }
+        // missing partway along reports the missing part
+        val e = intercept[ConfigException.Missing] {
+            conf.getInt("o.b.x.y")
+        }
+        assertEquals("String: 1: No configuration setting found for key 'o.b.x'", e.getMessage)
+        assertEquals(2, conf.getInt("o.b.c"))
+    }
+
+    @Test
+    def lookupThroughNull() {
+        val conf = parseConfig("n : null, o : { x : null }")
+        for (
+            (path, at) <- Seq(("n.b", "n"), ("n.b.c", "n"), ("o.x.c", "o.x"));
+            (name, getter) <- throughGetters
+        ) {
+            val e = intercept[ConfigException.Null] {
+                getter(conf)(path)
+            }
+            assertEquals(s"$name at $path",
+                s"String: 1: Configuration key '$at' is set to null but expected OBJECT", e.getMessage)
+            assertFalse(path, conf.hasPath(path))
+            assertFalse(path, conf.hasPathOrNull(path))
+        }
+        // the null itself is there, just not set
+        assertTrue(conf.getIsNull("o.x"))
+        assertFalse(conf.hasPath("o.x"))
+        assertTrue(conf.hasPathOrNull("o.x"))
+        val e = intercept[ConfigException.Null] {
+            conf.getInt("o.x")
+        }
+        assertEquals("String: 1: Configuration key 'o.x' is set to null but expected NUMBER", e.getMessage)
+    }
+
+    private val arrayGetters: Seq[(String, (Config, String) => Any, (Config, String) => Any)] = Seq(
+        ("int", (c, p) => c.getIntList(p).asScala, (c, p) => c.getIntArray(p).toSeq),
+        ("long", (c, p) => c.getLongList(p).asScala, (c, p) => c.getLongArray(p).toSeq),
+        ("double", (c, p) => c.getDoubleList(p).asScala, (c, p) => c.getDoubleArray(p).toSeq),
+        ("boolean", (c, p) => c.getBooleanList(p).asScala, (c, p) => c.getBooleanArray(p).toSeq))
+
+    private def isPacked(conf: Config, path: String) =
+        conf.getList(path).asInstanceOf[SimpleConfigList].primitiveValuesOrNull != null
+
+    @Test
+    def arrayGettersReadLikeListGetters() {
+        val test01 = ConfigFactory.load("test01")
+        val custom = parseConfig("""
+            ints : [1, 2, 3], doubles : [1.5, 2.5], longs : [10000000000, 20000000000],
+            mixed : [1, 2.5, 3], big : [1, 10000000000], bools : [true, false],
+            strings : ["1", "2"], stringBools : ["true", "no"], empty : [], withNull : [1, null],
+            nested : [[1]], notList : 1, numbered : { 0 : 1, 1 : 2 }, joined : ${ints} [4], self : ${ints}
+            """).resolve()
+            .withValue("built", ConfigValueFactory.fromIterable(Seq(1, 2, 3).asJava))
+            .withValue("builtDoubles", ConfigValueFactory.fromIterable(Seq(1.5, 2.0).asJava))
+        for (path <- Seq("ints", "doubles", "longs", "bools", "self"))
+            assertTrue(s"$path packed", isPacked(custom, path))
+        for (path <- Seq("mixed", "strings", "joined", "built"))
+            assertFalse(s"$path packed", isPacked(custom, path))
+
+        val customPaths = custom.root.keySet.asScala.toSeq.sorted :+ "missing"
+        // twice, in case the first read left something behind
+        for ((conf, paths) <- Seq((test01, test01Paths(test01)), (custom, customPaths)); round <- 1 to 2;
+            path <- paths; (name, list, array) <- arrayGetters)
+            assertSameOutcome(s"$name array at $path", list(conf, path), array(conf, path))
+
+        assertEquals(Seq(1, 2, 3), custom.getIntArray("ints").toSeq)
+        assertEquals(Seq(10000000000L, 20000000000L), custom.getLongArray("longs").toSeq)
+        assertEquals(Seq(1.0, 1e10), custom.getDoubleArray("big").toSeq)
+        assertEquals(Seq.empty, custom.getIntArray("empty").toSeq)
+        // out of range for an int, packed or not
+        intercept[ConfigException.WrongType] {
+            custom.getIntArray("longs")
+        }
+        intercept[ConfigException.WrongType] {
+            custom.getIntArray("big")
+        }
+        intercept[ConfigException.WrongType] {
+            custom.getBooleanArray("ints")
+        }
+        intercept[ConfigException.Missing] {
+            custom.getDoubleArray("missing")
+        }
+    }
+
+    @Test
+    def arrayGettersReturnCopies() {
+        val conf = parseConfig("ints : [1, 2, 3], longs : [10000000000, 1], doubles : [1.5, 2.5], bools : [true, false]")
+        conf.getIntArray("ints")(0) = 100
+        conf.getLongArray("longs")(0) = 100
+        conf.getDoubleArray("doubles")(0) = 100
+        conf.getBooleanArray("bools")(0) = false
+        assertEquals(1, conf.getIntArray("ints")(0))
+        assertEquals(10000000000L, conf.getLongArray("longs")(0))
+        assertEquals(1.5, conf.getDoubleArray("doubles")(0), 0.0)
+        assertTrue(conf.getBooleanArray("bools")(0))
+        assertEquals(Seq(1, 2, 3), conf.getIntList("ints").asScala)
+    }
+
+    @Test
+    def intArrayChecksTypesBeforeRange() {
+        val conf = parseConfig("""a : [3000000000, "x"], b : ["x", 3000000000], c : [3000000000, "5"]""")
+        for (path <- Seq("a", "b")) {
+            val e = intercept[ConfigException.WrongType] {
+                conf.getIntArray(path)
+            }
+            assertTrue(e.getMessage, e.getMessage.contains("list of NUMBER"))
+            intercept[ConfigException.WrongType] {
+                conf.getIntList(path)
+            }
+        }
+        // every element is a number, so the range is what's wrong
+        val e = intercept[ConfigException.WrongType] {
+            conf.getIntArray("c")
+        }
+        assertTrue(e.getMessage, e.getMessage.contains("out-of-range"))
+    }
+
+    @Test
+    def packedListGivesSameValues() {
+        val conf = parseConfig("ints : [1,\n2, 3], doubles : [1.5, 2.5], bools : [true, false]")
+        for (path <- Seq("ints", "doubles", "bools")) {
+            assertTrue(s"$path packed", isPacked(conf, path))
+            val list = conf.getList(path)
+            val first = list.asScala.toList
+            assertEquals(first, list.asScala.toList)
+            for (i <- 0 until list.size)
+                assertSame(s"$path element $i", first(i), list.get(i))
+        }
+        assertEquals(Seq(1, 2, 2), conf.getList("ints").asScala.map(_.origin.lineNumber))
+    }
+
+    @Test
+    def pathIndexReadsLikeTree() {
+        val conf = ConfigFactory.load("test01")
+        val indexed = conf.withPathIndex()
+        val getters: Seq[(String, (Config, String) => Any)] = keyedGetters.map(g => (g._1, g._3)) ++ Seq(
+            ("hasPath", (c: Config, p: String) => c.hasPath(p)),
+            ("hasPathOrNull", (c: Config, p: String) => c.hasPathOrNull(p)),
+            ("getIsNull", (c: Config, p: String) => c.getIsNull(p)),
+            ("anyRef", (c: Config, p: String) => c.getAnyRef(p)),
+            ("intList", (c: Config, p: String) => c.getIntList(p)),
+            ("stringList", (c: Config, p: String) => c.getStringList(p)),
+            ("objectList", (c: Config, p: String) => c.getObjectList(p)))
+        // twice, so the second time goes through the built index
+        for (round <- 1 to 2; path <- test01Paths(conf) ++ Seq("\"ints\".fortyTwo", "ints.\"fortyTwo\""); (name, getter) <- getters)
+            assertSameOutcome(s"$name at $path", getter(conf, path), getter(indexed, path))
+        assertEquals(conf, indexed)
+        assertEquals(conf.entrySet, indexed.entrySet)
+        intercept[ConfigException.BadPath] {
+            indexed.getInt("bad..bad")
+        }
+    }
+
+    @Test
+    def pathIndexOnlyForResolvedConfigs() {
+        val unresolved = parseConfig("a : ${b}, b : 1")
+        assertSame(unresolved, unresolved.withPathIndex())
+        val indexed = unresolved.resolve().withPathIndex()
+        assertSame(indexed, indexed.withPathIndex())
+        assertEquals(1, indexed.getInt("a"))
+        // not carried over to configs made from it
+        val merged = indexed.withFallback(parseConfig("c : 2"))
+        assertEquals(2, merged.getInt("c"))
+        assertEquals(1, merged.getInt("a"))
+    }
+
 }
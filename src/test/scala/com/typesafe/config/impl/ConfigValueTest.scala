@@ -16,6 +16,7 @@ import com.typesafe.config.ConfigValueType
 import com.typesafe.config.ConfigRenderOptions
 import com.typesafe.config.ConfigValueFactory
 import com.typesafe.config.ConfigFactory
+import com.typesafe.config.Config
 
 class ConfigValueTest extends TestUtils {
 
@@ -296,6 +297,143 @@ class ConfigValueTest extends TestUtils {
         assertEquals(expected, actual)
     }
 
+    private def withSerializationVersion[T](version: String)(body: => T): T = {
+        val old = System.getProperty("config.serialization.version")
+        System.setProperty("config.serialization.version", version)
+        try {
+            body
+        } finally {
+            if (old == null)
+                System.clearProperty("config.serialization.version")
+            else
+                System.setProperty("config.serialization.version", old)
+        }
+    }
+
+    private def serialize(o: AnyRef): Array[Byte] = {
+        val byteStream = new java.io.ByteArrayOutputStream()
+        val objectStream = new java.io.ObjectOutputStream(byteStream)
+        objectStream.writeObject(o)
+        objectStream.close()
+        byteStream.toByteArray
+    }
+
+    private def deserialize(bytes: Array[Byte]): AnyRef = {
+        val objectStream = new java.io.ObjectInputStream(new java.io.ByteArrayInputStream(bytes))
+        try objectStream.readObject()
+        finally objectStream.close()
+    }
+
+    private def serializationTestConfig = ConfigFactory.parseString("""
+# a comment
+a : 1
+b : [1, 2, 3]
+c {
+    d : "x"
+    # kept as written
+    e : 1.50
+    f : [true, false, true, true, false, true, false, false, true]
+    g : [x, "y", z]
+}
+h : null
+i : 10000000000
+j : [2.5, 3.5]
+k : [1, "mixed", [2, 3], { l : 4 }]
+""").resolve()
+
+    @Test
+    def compactSerializationRoundTrips() {
+        val conf = serializationTestConfig
+        withSerializationVersion("2") {
+            val b = checkSerializable(conf)
+            checkEqualOrigins(conf.root, b.root)
+            assertEquals(conf.root.render(), b.root.render())
+            assertEquals("1.50", b.getString("c.e"))
+
+            checkSerializable(conf.root)
+            checkSerializable(conf.getList("k"))
+            checkSerializable(conf.getValue("c.f"))
+            checkSerializable(conf.getValue("i"))
+        }
+    }
+
+    @Test
+    def compactSerializationIsSmaller() {
+        val conf = serializationTestConfig
+        val v1 = withSerializationVersion("1") { serialize(conf) }
+        val v2 = withSerializationVersion("2") { serialize(conf) }
+        assertTrue(s"compact ${v2.length} bytes, old ${v1.length}", v2.length < v1.length)
+    }
+
+    @Test
+    def compactSerializationWritesLongStrings() {
+        val long = "x" * 70000
+        val conf = ConfigFactory.parseMap(Map[String, AnyRef]("a" -> long, long -> Integer.valueOf(1)).asJava)
+        // the old format can't write strings longer than writeUTF() allows
+        intercept[java.io.UTFDataFormatException] {
+            serialize(conf)
+        }
+        withSerializationVersion("2") {
+            val b = checkSerializable(conf)
+            assertEquals(long, b.getString("a"))
+        }
+    }
+
+    @Test
+    def serializationVersionsReadEachOther() {
+        val conf = serializationTestConfig
+        val v1 = withSerializationVersion("1") { serialize(conf) }
+        val v2 = withSerializationVersion("2") { serialize(conf) }
+        // reading doesn't depend on the version we write
+        for (version <- Seq("1", "2")) {
+            withSerializationVersion(version) {
+                assertEquals(conf, deserialize(v1))
+                assertEquals(conf, deserialize(v2))
+                assertEquals(conf.root.render(), deserialize(v2).asInstanceOf[Config].root.render())
+            }
+        }
+    }
+
+    @Test
+    def defaultSerializationIsVersion1() {
+        val conf = serializationTestConfig
+        val v1 = withSerializationVersion("1") { serialize(conf) }
+        val old = System.getProperty("config.serialization.version")
+        System.clearProperty("config.serialization.version")
+        try {
+            assertArrayEquals(v1, serialize(conf))
+        } finally {
+            if (old != null)
+                System.setProperty("config.serialization.version", old)
+        }
+    }
+
+    @Test
+    def badSerializationVersion() {
+        withSerializationVersion("3") {
+            val e = intercept[ConfigException.Generic] {
+                serialize(serializationTestConfig)
+            }
+            assertTrue("error mentions the property: " + e.getMessage,
+                e.getMessage.contains("config.serialization.version"))
+        }
+    }
+
+    @Test
+    def unknownSerializationFormatFailsCleanly() {
+        val bytes = serialize(intValue(42))
+        // the value is the first field of the first block of data, turn its
+        // code into one no version knows, as a later format's would be
+        val block = bytes.indexOfSlice(Seq[Byte](0x78, 0x70, 0x77))
+        assertTrue(block > 0)
+        assertEquals(SerializedConfigValue.SerializedField.ROOT_VALUE.ordinal, bytes(block + 4).toInt)
+        bytes(block + 4) = 0x7f
+        val e = intercept[java.io.IOException] {
+            deserialize(bytes)
+        }
+        assertTrue("error says there is no value: " + e.getMessage, e.getMessage.contains("No value"))
+    }
+
     @Test
     def configListEquality() {
         val aScalaSeq = Seq(1, 2, 3) map { intValue(_): AbstractConfigValue }
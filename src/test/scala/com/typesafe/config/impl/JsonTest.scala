@@ -3,7 +3,7 @@
  */
 package com.typesafe.config.impl
 
-import java.io.Reader
+import java.io.{ File, Reader, StringReader }
 import java.util
 
 import com.typesafe.config._
@@ -187,4 +187,67 @@ class JsonTest extends TestUtils {
         // are weird and happen on the source file before doing other processing.
         assertEquals("\"\\" + "u001f\"", r("\u001f"))
     }
+
+    // what parse() gives without JsonParser, from the tokenizer and ConfigParser
+    private def parseWithTokenizer(p: Parseable): ConfigValue = {
+        val reader = p.reader()
+        try {
+            ConfigParser.parse(Tokenizer.tokenize(p.origin, reader, p.options), p.origin, p.options, p.includeContext)
+        } finally {
+            reader.close()
+        }
+    }
+
+    private def outcome(parse: => ConfigValue): Either[(Class[_], String), ConfigValue] =
+        try Right(parse) catch { case e: ConfigException => Left((e.getClass, e.getMessage)) }
+
+    @Test
+    def plainJsonParserMatchesTokenizer(): Unit = {
+        val options = ConfigParseOptions.defaults().
+            setOriginDescription("test json string").
+            setSyntax(ConfigSyntax.JSON)
+        var fellBack = 0
+        for (t <- whitespaceVariations(validJson ++ invalidJson, validInLift = true)) {
+            addOffendingJsonToException("json", t.test) {
+                val expected = outcome(parseWithTokenizer(Parseable.newString(t.test, options)))
+                // a reader can't be read twice, so it never goes through JsonParser
+                val fromString = outcome(Parseable.newString(t.test, options).parseValue())
+                val fromReader = outcome(Parseable.newReader(new StringReader(t.test), options).parseValue())
+                assertEquals(expected, fromString)
+                assertEquals(expected, fromReader)
+                for (v <- expected.right) {
+                    checkEqualOrigins(v, fromString.right.get)
+                    checkEqualOrigins(v, fromReader.right.get)
+                    if (JsonParser.parse(new StringReader(t.test), SimpleConfigOrigin.newSimple("test json string"), options) == null)
+                        fellBack += 1
+                }
+            }
+        }
+        // some of them only parse after falling back
+        assertTrue(fellBack > 0)
+    }
+
+    @Test
+    def plainJsonParserFallsBackOnFile(): Unit = {
+        withScratchDirectory("plainJsonParserFallsBackOnFile") { dir =>
+            // plain JSON up to well past JsonParser's first block of input
+            val f = new File(dir, "long.json")
+            writeFile(f, (0 until 2000).mkString("{ \"a\" : [", ", ", "],\n\"b\" : 01,\n\"c\" : 1e400 }"))
+            val p = Parseable.newFile(f, ConfigParseOptions.defaults().setSyntax(ConfigSyntax.JSON))
+            val reader = p.reader()
+            try {
+                assertNull(JsonParser.parse(reader, p.origin, p.options))
+            } finally {
+                reader.close()
+            }
+            val value = p.parseValue()
+            val expected = parseWithTokenizer(p)
+            assertEquals(expected, value)
+            checkEqualOrigins(expected, value)
+            val conf = value.asInstanceOf[ConfigObject].toConfig
+            assertEquals(2000, conf.getIntList("a").size)
+            assertEquals(1, conf.getInt("b"))
+            assertEquals(3, conf.getValue("c").origin.lineNumber)
+        }
+    }
 }
@@ -0,0 +1,169 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config.impl
+
+import java.io.File
+import java.net.URLClassLoader
+
+import org.junit.Assert._
+import org.junit._
+import com.typesafe.config._
+
+class ParseCacheTest extends TestUtils {
+
+    // the cache doesn't trust files modified in the last couple of
+    // seconds, so the files here are all made to look older
+    private def writeOldFile(f: File, content: String): Unit = {
+        f.getParentFile.mkdirs()
+        writeFile(f, content)
+        f.setLastModified(System.currentTimeMillis() - 60000)
+    }
+
+    // an edit the cache can't see: same size, same modification time
+    private def writeUnnoticed(f: File, content: String): Unit = {
+        val modified = f.lastModified()
+        assertEquals(f.length(), content.getBytes("UTF-8").length.toLong)
+        writeFile(f, content)
+        f.setLastModified(modified)
+    }
+
+    private def cacheOptions(dir: File) =
+        ConfigParseOptions.defaults().setParseCacheDirectory(new File(dir, "cache"))
+
+    private def entries(dir: File) = {
+        val files = new File(dir, "cache").listFiles()
+        if (files == null) 0 else files.count(_.getName.endsWith(".parsed"))
+    }
+
+    @Test
+    def unchangedFileIsReadFromCache(): Unit = {
+        withScratchDirectory("unchangedFileIsReadFromCache") { dir =>
+            val f = new File(dir, "a.conf")
+            writeOldFile(f, "a = 1, b = [1, 2.5, x], c { d : ${a} }")
+            val options = cacheOptions(dir)
+            val parsed = ConfigFactory.parseFile(f, options)
+            assertEquals(1, entries(dir))
+
+            writeUnnoticed(f, "a = 2, b = [1, 2.5, x], c { d : ${a} }")
+            val cached = ConfigFactory.parseFile(f, options)
+            assertEquals(parsed, cached)
+            assertEquals(parsed.origin, cached.origin)
+            assertEquals(1, cached.resolve().getInt("c.d"))
+            assertEquals(parsed.root.render(), cached.root.render())
+        }
+    }
+
+    @Test
+    def changedFileIsParsedAgain(): Unit = {
+        withScratchDirectory("changedFileIsParsedAgain") { dir =>
+            val f = new File(dir, "a.conf")
+            writeOldFile(f, "a = 1")
+            val options = cacheOptions(dir)
+            assertEquals(1, ConfigFactory.parseFile(f, options).getInt("a"))
+
+            writeOldFile(f, "a = 10")
+            assertEquals(10, ConfigFactory.parseFile(f, options).getInt("a"))
+        }
+    }
+
+    @Test
+    def changedIncludeIsParsedAgain(): Unit = {
+        withScratchDirectory("changedIncludeIsParsedAgain") { dir =>
+            val f = new File(dir, "a.conf")
+            val b = new File(dir, "b.conf")
+            writeOldFile(f, "include \"b\"\na = 1")
+            writeOldFile(b, "b = 1")
+            val options = cacheOptions(dir)
+            assertEquals(1, ConfigFactory.parseFile(f, options).getInt("b"))
+
+            writeOldFile(b, "b = 10")
+            val conf = ConfigFactory.parseFile(f, options)
+            assertEquals(1, conf.getInt("a"))
+            assertEquals(10, conf.getInt("b"))
+        }
+    }
+
+    @Test
+    def missingIncludeIsCachedUntilCreated(): Unit = {
+        withScratchDirectory("missingIncludeIsCachedUntilCreated") { dir =>
+            val f = new File(dir, "a.conf")
+            writeOldFile(f, "include \"b\"\na = 1")
+            val options = cacheOptions(dir)
+            assertFalse(ConfigFactory.parseFile(f, options).hasPath("b"))
+
+            // the include was looked up on the classpath too, and the
+            // entry was still stored
+            writeUnnoticed(f, "include \"b\"\na = 2")
+            assertEquals(1, ConfigFactory.parseFile(f, options).getInt("a"))
+
+            writeOldFile(new File(dir, "b.conf"), "b = 1")
+            val conf = ConfigFactory.parseFile(f, options)
+            assertEquals(2, conf.getInt("a"))
+            assertEquals(1, conf.getInt("b"))
+        }
+    }
+
+    @Test
+    def resourceIncludeIsCachedUntilItMoves(): Unit = {
+        withScratchDirectory("resourceIncludeIsCachedUntilItMoves") { dir =>
+            val first = new File(dir, "cp1")
+            val second = new File(dir, "cp2")
+            first.mkdirs()
+            second.mkdirs()
+            val loader = new URLClassLoader(Array(first.toURI.toURL, second.toURI.toURL), null)
+            val f = new File(dir, "conf/a.conf")
+            writeOldFile(f, "include \"c\"\na = 1")
+            writeOldFile(new File(first, "c.conf"), "c = 1")
+            val options = cacheOptions(dir).setClassLoader(loader)
+            assertEquals(1, ConfigFactory.parseFile(f, options).getInt("c"))
+
+            writeUnnoticed(f, "include \"c\"\na = 2")
+            assertEquals(1, ConfigFactory.parseFile(f, options).getInt("a"))
+
+            // found at one more URL now
+            writeOldFile(new File(second, "c.conf"), "c = 2, d = 2")
+            val conf = ConfigFactory.parseFile(f, options)
+            assertEquals(2, conf.getInt("a"))
+            assertEquals(1, conf.getInt("c"))
+            assertEquals(2, conf.getInt("d"))
+        }
+    }
+
+    @Test
+    def customIncluderIsNotCached(): Unit = {
+        withScratchDirectory("customIncluderIsNotCached") { dir =>
+            val f = new File(dir, "a.conf")
+            writeOldFile(f, "a = 1")
+            val includer = new ConfigIncluder() {
+                override def withFallback(fallback: ConfigIncluder) = this
+                override def include(context: ConfigIncludeContext, what: String) = ConfigFactory.empty().root
+            }
+            val options = cacheOptions(dir).setIncluder(includer)
+            assertEquals(1, ConfigFactory.parseFile(f, options).getInt("a"))
+            assertEquals(0, entries(dir))
+        }
+    }
+
+    @Test
+    def corruptEntryIsIgnored(): Unit = {
+        withScratchDirectory("corruptEntryIsIgnored") { dir =>
+            val f = new File(dir, "a.conf")
+            writeOldFile(f, "a = 1")
+            val options = cacheOptions(dir)
+            ConfigFactory.parseFile(f, options)
+            val entry = new File(dir, "cache").listFiles().filter(_.getName.endsWith(".parsed")).head
+            val bytes = java.nio.file.Files.readAllBytes(entry.toPath)
+
+            writeUnnoticed(f, "a = 2")
+            for (i <- 0 until bytes.length) {
+                val corrupt = bytes.clone()
+                corrupt(i) = (corrupt(i) ^ 0x10).toByte
+                java.nio.file.Files.write(entry.toPath, corrupt)
+                assertEquals(2, ConfigFactory.parseFile(f, options).getInt("a"))
+            }
+            java.nio.file.Files.write(entry.toPath, java.util.Arrays.copyOf(bytes, bytes.length / 2))
+            assertEquals(2, ConfigFactory.parseFile(f, options).getInt("a"))
+        }
+    }
+}
@@ -7,6 +7,8 @@ import org.junit.Assert._
 import org.junit._
 import scala.collection.JavaConverters._
 import com.typesafe.config.ConfigException
+import com.typesafe.config.ConfigFactory
+import com.typesafe.config.ConfigPathCache
 
 class PathTest extends TestUtils {
 
@@ -104,6 +106,70 @@ class PathTest extends TestUtils {
         assertEquals(path("a", "b"), path("a", "b", "c").parent())
     }
 
+    @Test
+    def pathSubPath() {
+        val abcd = path("a", "b", "c", "d")
+        assertSame(abcd, abcd.subPath(0))
+        assertSame(abcd, abcd.subPath(-1))
+        assertEquals(path("d"), abcd.subPath(3))
+        assertNull(abcd.subPath(4))
+        assertNull(abcd.subPath(5))
+
+        assertEquals(abcd, abcd.subPath(0, 4))
+        assertEquals(abcd.remainder(), abcd.subPath(1, 4))
+        assertEquals(path("a"), abcd.subPath(0, 1))
+        assertEquals(path("b", "c"), abcd.subPath(1, 3))
+        assertNull(abcd.subPath(4, 4))
+        intercept[ConfigException.BugOrBroken] {
+            abcd.subPath(0, 5)
+        }
+        intercept[ConfigException.BugOrBroken] {
+            abcd.subPath(2, 1)
+        }
+        intercept[ConfigException.BugOrBroken] {
+            abcd.subPath(-1, 1)
+        }
+
+        // a sub path shares its array, so index from its own start and end
+        val bcd = abcd.subPath(1)
+        assertEquals(path("c", "d"), bcd.subPath(1, 3))
+        assertEquals(2, bcd.subPath(1, 3).length())
+        assertEquals(path("d"), bcd.subPath(2))
+        assertNull(bcd.subPath(3))
+        assertEquals("d", bcd.element(2))
+        intercept[ConfigException.BugOrBroken] {
+            bcd.subPath(0, 4)
+        }
+
+        // equal to the same path made from scratch
+        assertEquals(path("b", "c").hashCode(), abcd.subPath(1, 3).hashCode())
+        assertEquals("b.c", abcd.subPath(1, 3).render())
+        assertTrue(bcd.startsWith(abcd.subPath(1, 2)))
+        assertFalse(bcd.parent().startsWith(bcd))
+    }
+
+    @Test
+    def pathParentAndRemainderOfSubPaths() {
+        val abcd = path("a", "b", "c", "d")
+        val bcd = abcd.subPath(1)
+        assertEquals(path("b", "c"), bcd.parent())
+        assertEquals(path("b"), bcd.parent().parent())
+        assertNull(bcd.parent().parent().parent())
+        assertEquals("c", bcd.parent().last())
+        assertEquals("b", bcd.parent().first())
+
+        assertEquals(path("b", "c"), abcd.parent().remainder())
+        assertEquals(path("d"), bcd.remainder().remainder())
+        assertNull(bcd.remainder().remainder().remainder())
+        assertSame(abcd.remainder(), abcd.remainder())
+
+        assertEquals(path("x", "b", "c", "d"), bcd.prepend(path("x", "y").parent()))
+        assertEquals(path("d", "b", "c"), bcd.parent().prepend(abcd.subPath(3)))
+        assertEquals(path("b", "c", "d", "b", "c", "d"), bcd.prepend(bcd))
+        assertEquals(path("x", "b", "c"), new Path("x", bcd.parent()))
+        assertEquals(path("b", "c", "d"), new Path(List(bcd.parent(), abcd.subPath(3)).asJava))
+    }
+
     @Test
     def pathLast() {
         assertEquals("a", path("a").last())
@@ -130,4 +196,100 @@ class PathTest extends TestUtils {
             Path.newPath("..")
         }
     }
+
+    // the cache is shared by the whole process, so put it back afterward
+    private def withPathCache(maxSize: Int)(body: => Unit) {
+        val original = ConfigPathCache.maxSize
+        try {
+            ConfigPathCache.setMaxSize(maxSize)
+            ConfigPathCache.clear()
+            body
+        } finally {
+            ConfigPathCache.setMaxSize(original)
+        }
+    }
+
+    @Test
+    def pathCacheSlotCount() {
+        assertEquals(2, PathCache.slotCount(1))
+        assertEquals(2, PathCache.slotCount(2))
+        assertEquals(4, PathCache.slotCount(3))
+        assertEquals(4096, PathCache.slotCount(4096))
+        assertEquals(8192, PathCache.slotCount(4097))
+        assertEquals(PathCache.MAX_SLOTS, PathCache.slotCount(PathCache.MAX_SLOTS))
+        assertEquals(PathCache.MAX_SLOTS, PathCache.slotCount(PathCache.MAX_SLOTS + 1))
+        assertEquals(PathCache.MAX_SLOTS, PathCache.slotCount((1 << 30) + 1))
+        assertEquals(PathCache.MAX_SLOTS, PathCache.slotCount(Int.MaxValue))
+        intercept[IllegalArgumentException] {
+            ConfigPathCache.setMaxSize(-1)
+        }
+    }
+
+    @Test
+    def pathCacheHitsAndMisses() {
+        withPathCache(5) {
+            assertEquals(8, ConfigPathCache.maxSize)
+            val first = Path.newPath("a.b")
+            assertSame(first, Path.newPath("a.b"))
+            assertEquals(1, ConfigPathCache.hitCount)
+            assertEquals(1, ConfigPathCache.missCount)
+            assertEquals(1, ConfigPathCache.size)
+
+            // getters go through the cache too
+            val conf = ConfigFactory.parseString("a.b = 1")
+            ConfigPathCache.clear()
+            assertEquals(1, conf.getInt("a.b"))
+            assertEquals(1, conf.getInt("a.b"))
+            assertEquals(1, ConfigPathCache.hitCount)
+            assertEquals(1, ConfigPathCache.missCount)
+        }
+    }
+
+    @Test
+    def pathCacheEvicts() {
+        withPathCache(2) {
+            assertEquals(2, ConfigPathCache.maxSize)
+            Path.newPath("a")
+            Path.newPath("b")
+            Path.newPath("c")
+            assertEquals(2, ConfigPathCache.size)
+            assertEquals(3, ConfigPathCache.missCount)
+            // the newest is kept
+            Path.newPath("c")
+            assertEquals(1, ConfigPathCache.hitCount)
+            Path.newPath("a")
+            Path.newPath("b")
+            assertTrue(ConfigPathCache.missCount > 3)
+        }
+    }
+
+    @Test
+    def pathCacheOff() {
+        withPathCache(0) {
+            assertEquals(0, ConfigPathCache.maxSize)
+            val first = Path.newPath("a.b")
+            val second = Path.newPath("a.b")
+            assertEquals(first, second)
+            assertNotSame(first, second)
+            assertEquals(0, ConfigPathCache.size)
+            assertEquals(0, ConfigPathCache.hitCount)
+            assertEquals(0, ConfigPathCache.missCount)
+        }
+    }
+
+    @Test
+    def pathCacheSkipsBadPaths() {
+        withPathCache(16) {
+            for (i <- 1 to 2) {
+                intercept[ConfigException.BadPath] {
+                    Path.newPath("a..b")
+                }
+            }
+            assertEquals(0, ConfigPathCache.size)
+            assertEquals(2, ConfigPathCache.missCount)
+            intercept[ConfigException.BadPath] {
+                ConfigFactory.empty().hasPath("a..b")
+            }
+        }
+    }
 }
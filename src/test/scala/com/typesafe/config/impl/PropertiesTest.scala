@@ -195,4 +195,36 @@ class PropertiesTest extends TestUtils {
 
         assertEquals(0, conf.root().size())
     }
+
+    @Test
+    def parseMatchesPropertiesLoad() {
+        // bits of properties syntax, put together at random
+        val fragments = Seq("a", "b", "c", ".", "=", ":", " ", "\t", "\f", "\\", "\n", "\r", "\r\n", "#", "!",
+            "1", "0", "\\\n", "\\\r\n", "  \\\n  ", "\\ ", "\\=", "\\t", "\\n", "\u00e9", "\\" + "u0041")
+        val malformedEscapes = Seq("\\" + "u00", "\\" + "uzzzz")
+        val random = new java.util.Random(1234)
+        val origin = SimpleConfigOrigin.newSimple("properties")
+        def outcome(parse: => AbstractConfigObject): Either[Class[_], AbstractConfigObject] =
+            try Right(parse) catch { case e: IllegalArgumentException => Left(e.getClass) }
+        // returns a few chars at a time, so lines and escapes are cut up
+        def trickle(s: String) = new java.io.StringReader(s) {
+            override def read(buf: Array[Char], off: Int, len: Int) =
+                super.read(buf, off, Math.min(len, 1 + random.nextInt(3)))
+        }
+        var nonEmpty = 0
+        for (i <- 0 until 5000) {
+            val pool = if (i % 10 == 0) fragments ++ malformedEscapes else fragments
+            val text = Seq.fill(random.nextInt(60))(pool(random.nextInt(pool.size))).mkString
+            val expected = outcome {
+                val props = new Properties()
+                props.load(new java.io.StringReader(text))
+                PropertiesParser.fromProperties(origin, props)
+            }
+            assertEquals(text, expected, outcome(PropertiesParser.parse(new java.io.StringReader(text), origin, null)))
+            assertEquals(text, expected, outcome(PropertiesParser.parse(trickle(text), origin, null)))
+            if (expected.right.exists(!_.isEmpty))
+                nonEmpty += 1
+        }
+        assertTrue(nonEmpty > 1000)
+    }
 }
@@ -1174,6 +1174,146 @@ include "onclasspath"
         ConfigFactory.load(loader)
     }
 
+    // a class loader that finds "r.conf" in each of five directories, with
+    // the extra directories between the second and the third
+    private def sameNamedResources(dir: File, extra: File*): ClassLoader = {
+        val roots = for (i <- 0 until 5) yield {
+            val root = new File(dir, "cp" + i)
+            root.mkdirs()
+            writeFile(new File(root, "r.conf"), s"a : $i\nlist : [$i]\nshared { x$i : $i, last : $i }\n" +
+                "include \"sub" + i + ".conf\"")
+            writeFile(new File(root, "sub" + i + ".conf"), s"sub$i : $i")
+            root
+        }
+        val (first, rest) = roots.splitAt(2)
+        new java.net.URLClassLoader((first ++ extra ++ rest).map(_.toURI.toURL).toArray, null)
+    }
+
+    @Test
+    def resourcesOnExecutorMergeInClasspathOrder() {
+        withScratchDirectory("resourcesOnExecutorMergeInClasspathOrder") { dir =>
+            val loader = sameNamedResources(dir)
+            val sequential = ConfigFactory.parseResources(loader, "r.conf")
+            assertEquals(0, sequential.getInt("a"))
+            assertEquals(0, sequential.getInt("shared.last"))
+            assertEquals(4, sequential.getInt("sub4"))
+            withParseExecutors { executor =>
+                for (i <- 1 to 10) {
+                    val parallel = ConfigFactory.parseResources(loader, "r.conf",
+                        ConfigParseOptions.defaults().setExecutor(executor))
+                    assertEquals(sequential, parallel)
+                    checkEqualOrigins(sequential.root, parallel.root)
+                    assertEquals(sequential.root.render(), parallel.root.render())
+                }
+            }
+        }
+    }
+
+    @Test
+    def resourcesOnExecutorThrowOriginalException() {
+        withScratchDirectory("resourcesOnExecutorThrowOriginalException") { dir =>
+            val broken = new File(dir, "broken")
+            broken.mkdirs()
+            writeFile(new File(broken, "r.conf"), "a : {")
+            val loader = sameNamedResources(dir, broken)
+            withParseExecutors { executor =>
+                val e = intercept[ConfigException.Parse] {
+                    ConfigFactory.parseResources(loader, "r.conf", ConfigParseOptions.defaults().setExecutor(executor))
+                }
+                assertTrue(e.getMessage, e.getMessage.contains("broken"))
+            }
+        }
+    }
+
+    @Test
+    def resourcesOnExecutorKeepIncludeLimit() {
+        withScratchDirectory("resourcesOnExecutorKeepIncludeLimit") { dir =>
+            // found twice, so each include of it is parsed on the executor
+            val roots = for ((name, text) <- Seq(("cycle", "include classpath(\"c.conf\")"), ("plain", "x : 1"))) yield {
+                val root = new File(dir, name)
+                root.mkdirs()
+                writeFile(new File(root, "c.conf"), text)
+                root.toURI.toURL
+            }
+            val loader = new java.net.URLClassLoader(roots.toArray, null)
+            withParseExecutors { executor =>
+                val e = intercept[ConfigException.Parse] {
+                    ConfigFactory.parseResources(loader, "c.conf", ConfigParseOptions.defaults().setExecutor(executor))
+                }
+                assertTrue(e.getMessage, e.getMessage.contains("nested more than 50 times"))
+            }
+        }
+    }
+
+    @Test
+    def stringPoolInterns() {
+        val pool = ConfigStringPool.newPool(2)
+        val a = new String("enabled")
+        assertSame(a, pool.intern(a))
+        assertSame(a, pool.intern(new String("enabled")))
+        assertEquals(1, pool.hitCount)
+        assertEquals(1, pool.missCount)
+        // long strings are never pooled
+        val long = "x" * 200
+        assertSame(long, pool.intern(long))
+        assertNotSame(long, pool.intern(new String(long)))
+        assertEquals(1, pool.size)
+        // once full, new strings come back as they are
+        pool.intern("timeout")
+        val late = new String("late")
+        assertSame(late, pool.intern(late))
+        assertNotSame(late, pool.intern(new String("late")))
+        assertEquals(2, pool.size)
+        assertEquals(2, pool.maxSize)
+        val empty = ConfigStringPool.newPool(0)
+        assertSame(a, empty.intern(a))
+        assertEquals(0, empty.size)
+        intercept[IllegalArgumentException] {
+            ConfigStringPool.newPool(-1)
+        }
+    }
+
+    @Test
+    def stringPoolSharedAcrossParses() {
+        val pool = ConfigStringPool.newPool(1000)
+        val jsonText = "{ \"server\" : { \"enabled\" : \"yes\", \"name\" : \"fooserver\" } }"
+        val texts = Seq(ConfigSyntax.CONF -> jsonText, ConfigSyntax.JSON -> jsonText,
+            ConfigSyntax.PROPERTIES -> "server.enabled=yes\nserver.name=fooserver")
+        for ((syntax, text) <- texts) {
+            val options = ConfigParseOptions.defaults().setSyntax(syntax)
+            val first = ConfigFactory.parseString(text, options.setStringPool(pool))
+            val second = ConfigFactory.parseString(text, options.setStringPool(pool))
+            val unpooled = ConfigFactory.parseString(text, options)
+            def key(c: Config) = c.getObject("server").keySet.asScala.find(_ == "enabled").get
+            assertSame(syntax.toString, key(first), key(second))
+            assertSame(syntax.toString, first.root.keySet.iterator.next, second.root.keySet.iterator.next)
+            assertSame(syntax.toString, first.getString("server.name"), second.getString("server.name"))
+            assertNotSame(syntax.toString, first.getString("server.name"), unpooled.getString("server.name"))
+            assertEquals(syntax.toString, unpooled, first)
+        }
+        assertTrue(pool.toString, pool.hitCount > 0)
+    }
+
+    @Test
+    def stringPoolLeavesParseResultsAlone() {
+        def resources(dir: File): Seq[File] =
+            dir.listFiles.toSeq.sortBy(_.getName).flatMap { f =>
+                if (f.isDirectory) resources(f)
+                else if (Seq(".conf", ".json", ".properties").exists(f.getName.endsWith(_))) Seq(f)
+                else Seq.empty
+            }
+        def outcome(options: ConfigParseOptions, f: File): Either[String, ConfigObject] =
+            try Right(ConfigFactory.parseFile(f, options).root) catch { case e: ConfigException => Left(e.getMessage) }
+        val files = resources(resourceFile("."))
+        assertTrue(files.size > 50)
+        for (f <- files) {
+            val expected = outcome(ConfigParseOptions.defaults(), f)
+            val pooled = outcome(ConfigParseOptions.defaults().setStringPool(ConfigStringPool.newPool(100)), f)
+            assertEquals(f.getPath, expected, pooled)
+            for (e <- expected.right)
+                checkEqualOrigins(e, pooled.right.get)
+        }
+    }
 }
 
 class TestStrategy extends DefaultConfigLoadingStrategy {
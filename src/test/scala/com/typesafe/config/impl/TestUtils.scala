@@ -872,6 +872,28 @@ abstract trait TestUtils {
         }
     }
 
+    // a pool of one thread, where a parse waiting for an include it forked
+    // has to run it itself; a bigger pool; an executor that refuses every
+    // task; and one that runs each task as soon as it's handed over
+    protected def withParseExecutors(body: java.util.concurrent.Executor => Unit): Unit = {
+        import java.util.concurrent._
+        val one = Executors.newFixedThreadPool(1)
+        val four = Executors.newFixedThreadPool(4)
+        try {
+            body(one)
+            body(four)
+            body(new Executor {
+                def execute(r: Runnable) = throw new RejectedExecutionException("not today")
+            })
+            body(new Executor {
+                def execute(r: Runnable) = r.run()
+            })
+        } finally {
+            one.shutdown()
+            four.shutdown()
+        }
+    }
+
     protected def withScratchDirectory[T](testcase: String)(body: File => T): Unit = {
         val target = new File("target")
         if (!target.isDirectory)
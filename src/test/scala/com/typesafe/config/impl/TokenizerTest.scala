@@ -6,7 +6,11 @@ package com.typesafe.config.impl
 import org.junit.Assert._
 import org.junit.Test
 import com.typesafe.config.ConfigException
+import com.typesafe.config.ConfigFactory
+import com.typesafe.config.ConfigParseOptions
+import com.typesafe.config.ConfigSyntax
 import language.implicitConversions
+import scala.collection.JavaConverters._
 
 class TokenizerTest extends TestUtils {
 
@@ -267,6 +271,71 @@ class TokenizerTest extends TestUtils {
         }
     }
 
+    @Test
+    def tokenizerParseNumbersAtBoundaries(): Unit = {
+        // integers are converted as they are scanned; check where an int
+        // becomes a long and where a long no longer fits
+        val tests = List[(String, AnyRef)](("2147483647", Int.box(Int.MaxValue)),
+            ("2147483648", Long.box(Int.MaxValue + 1L)),
+            ("-2147483648", Int.box(Int.MinValue)),
+            ("-2147483649", Long.box(Int.MinValue - 1L)),
+            ("9223372036854775807", Long.box(Long.MaxValue)),
+            ("-9223372036854775808", Long.box(Long.MinValue)),
+            ("1e308", Double.box(1e308)),
+            ("1e309", Double.box(Double.PositiveInfinity)),
+            ("-1e309", Double.box(Double.NegativeInfinity)))
+
+        for ((s, expected) <- tests) {
+            describeFailure(s) {
+                val tokens = tokenizeAsList(s)
+                assertEquals(3, tokens.size)
+                assertTrue(Tokens.isValue(tokens(1)))
+                assertEquals(expected, Tokens.getValue(tokens(1)).unwrapped)
+                assertEquals(s, tokens(1).tokenText)
+                assertEquals(s, tokenizeAsString(s))
+            }
+        }
+
+        // too big for a long and not a double, so they are strings
+        for (s <- List("9223372036854775808", "-9223372036854775809", "99999999999999999999")) {
+            describeFailure(s) {
+                tokenizerTest(List(tokenUnquoted(s)), s)
+            }
+        }
+    }
+
+    @Test
+    def keepNumberTextKeepsWhatWasWritten(): Unit = {
+        // as written, and as Java prints the value
+        val tests = List(("1.0", "1"), ("1.50", "1.5"), ("1e3", "1000"), ("007", "7"), ("-0", "0"),
+            ("-0.0", "0"), ("1e309", "Infinity"), ("2147483648", "2147483648"), ("12", "12"))
+
+        for ((s, printed) <- tests; syntax <- List(ConfigSyntax.CONF, ConfigSyntax.JSON)) {
+            describeFailure(s + " as " + syntax) {
+                val text = "{ \"a\" : " + s + " }"
+                val options = ConfigParseOptions.defaults().setSyntax(syntax)
+                assertEquals(s, ConfigFactory.parseString(text, options).getString("a"))
+                assertEquals(printed, ConfigFactory.parseString(text, options.setKeepNumberText(false)).getString("a"))
+                val tokens = Tokenizer.tokenize(SimpleConfigOrigin.newSimple("numbers"), new java.io.StringReader(s),
+                    options.setKeepNumberText(false)).asScala.toList
+                // tokens keep their text either way
+                assertEquals(s, tokens(1).tokenText)
+            }
+        }
+
+        val dropText = ConfigParseOptions.defaults().setKeepNumberText(false)
+        // 0 then unquoted x10, concatenated
+        assertEquals("0x10", ConfigFactory.parseString("a = 0x10").getString("a"))
+        assertEquals("0x10", ConfigFactory.parseString("a = 0x10", dropText).getString("a"))
+        assertEquals("1.50 x", ConfigFactory.parseString("a = 1.50 x").getString("a"))
+        assertEquals("1.5 x", ConfigFactory.parseString("a = 1.50 x", dropText).getString("a"))
+        assertEquals(List("1.50", "007"), ConfigFactory.parseString("a = [1.50, 007]").getStringList("a").asScala)
+        assertEquals(List("1.5", "7"), ConfigFactory.parseString("a = [1.50, 007]", dropText).getStringList("a").asScala)
+        assertEquals(7, ConfigFactory.parseString("a = 007", dropText).getInt("a"))
+        // keys always use the text
+        assertEquals("x", ConfigFactory.parseString("1.50 : x", dropText).getString("1.50"))
+    }
+
     @Test
     def commentsHandledInVariousContexts() {
         tokenizerTest(List(tokenString("//bar")), "\"//bar\"")
@@ -312,4 +381,42 @@ class TokenizerTest extends TestUtils {
                 assertEquals("" + invalid, Tokens.getProblemWhat(problem))
         }
     }
+
+    @Test
+    def tokenizeAcrossBlockBoundary() {
+        // the tokenizer reads its input in blocks of 4096 chars; move each
+        // of these across the end of the first block
+        val samples = Seq("\"quoted\\u0041\"", "\"\"\"triple \"\" quote\"\"\"", "${a.b}", "${?x.y}", "a += 1",
+            "// comment\nb", "# hash\nb", "1.5e3", "-12345678901", "true", "null", "foo.bar baz",
+            "{ a : [1, 2] }", "/ notcomment")
+        for (s <- samples; padding <- (4096 - 12) to (4096 + 2)) {
+            val pad = " " * padding
+            assertEquals(s"$s after $padding spaces",
+                List(Tokens.START, tokenWhitespace(pad)) ++ tokenizeAsList(s).tail,
+                tokenizeAsList(pad + s))
+            assertEquals(pad + s, tokenizeAsString(pad + s))
+        }
+    }
+
+    @Test
+    def tokenizeReaderReturningOneCharAtATime() {
+        import scala.collection.JavaConverters._
+        val text = new String(java.nio.file.Files.readAllBytes(resourceFile("test01.conf").toPath), "UTF-8")
+        val oneAtATime = new java.io.Reader() {
+            var i = 0
+            override def read(buf: Array[Char], off: Int, len: Int): Int = {
+                if (i >= text.length) {
+                    -1
+                } else if (len == 0) {
+                    0
+                } else {
+                    buf(off) = text.charAt(i)
+                    i += 1
+                    1
+                }
+            }
+            override def close() {}
+        }
+        assertEquals(tokenizeAsList(text), tokenize(oneAtATime).asScala.toList)
+    }
 }
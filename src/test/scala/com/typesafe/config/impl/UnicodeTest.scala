@@ -0,0 +1,128 @@
+/**
+ *   Copyright (C) 2015 Typesafe Inc. <http://typesafe.com>
+ */
+package com.typesafe.config.impl
+
+import java.io.{ ByteArrayInputStream, ByteArrayOutputStream, File, InputStream, InputStreamReader, Reader }
+import java.nio.ByteBuffer
+
+import com.typesafe.config._
+import org.junit.Assert._
+import org.junit._
+
+class UnicodeTest extends TestUtils {
+
+    // Utf8Reader reads its input in blocks of this many bytes
+    private val blockSize = 8192
+
+    private val emoji = new String(Character.toChars(0x1F600))
+
+    private def utf8(s: String): Array[Byte] = s.getBytes("UTF-8")
+
+    private def bytes(b: Int*): Array[Byte] = b.map(_.toByte).toArray
+
+    private def concat(parts: Array[Byte]*): Array[Byte] = {
+        val out = new ByteArrayOutputStream()
+        for (p <- parts)
+            out.write(p)
+        out.toByteArray
+    }
+
+    // reads using a caller's array of the given size, so a surrogate pair
+    // may not fit
+    private def readAll(reader: Reader, chunk: Int): String = {
+        val sb = new StringBuilder
+        val buf = new Array[Char](chunk)
+        var n = reader.read(buf, 0, chunk)
+        while (n >= 0) {
+            assertTrue("read nothing", n > 0)
+            sb.appendAll(buf, 0, n)
+            n = reader.read(buf, 0, chunk)
+        }
+        reader.close()
+        sb.toString
+    }
+
+    // a stream giving one byte per read(), so every sequence is cut up
+    private def trickle(b: Array[Byte]): InputStream = new InputStream {
+        private val in = new ByteArrayInputStream(b)
+        override def read() = in.read()
+        override def read(dest: Array[Byte], off: Int, len: Int) =
+            if (len == 0) 0 else in.read(dest, off, 1)
+    }
+
+    // what InputStreamReader makes of the bytes, which Utf8Reader should
+    // match however its input and output are cut up
+    private def assertDecodesLikeInputStreamReader(input: Array[Byte]): Unit = {
+        val expected = readAll(new InputStreamReader(new ByteArrayInputStream(input), "UTF-8"), 4096)
+        for (chunk <- Seq(1, 2, 3, 4096, blockSize + 10)) {
+            assertEquals(expected, readAll(new Utf8Reader(new ByteArrayInputStream(input)), chunk))
+            assertEquals(expected, readAll(new Utf8Reader(trickle(input)), chunk))
+            assertEquals(expected, readAll(new Utf8Reader(ByteBuffer.wrap(input), null), chunk))
+        }
+    }
+
+    @Test
+    def wellFormedUtf8(): Unit = {
+        val text = "a\u00e9\u20ac" + emoji + "\ufeff"
+        assertDecodesLikeInputStreamReader(utf8(text))
+        assertEquals(text, readAll(new Utf8Reader(new ByteArrayInputStream(utf8(text))), 1))
+        // a byte order mark is kept, as InputStreamReader keeps it
+        assertEquals("\ufeffa", readAll(new Utf8Reader(new ByteArrayInputStream(utf8("\ufeffa"))), 10))
+    }
+
+    @Test
+    def malformedUtf8(): Unit = {
+        val malformed = Seq(
+            bytes(0x80), // continuation byte on its own
+            bytes(0xc0, 0x80), // overlong
+            bytes(0xe0, 0x80, 0x80), // overlong
+            bytes(0xed, 0xa0, 0x80), // a surrogate
+            bytes(0xf4, 0x90, 0x80, 0x80), // past U+10FFFF
+            bytes(0xf5), // never valid
+            bytes(0xe2, 0x82), // cut short
+            bytes(0xf0, 0x9f, 0x98)) // cut short
+        for (m <- malformed) {
+            assertDecodesLikeInputStreamReader(m)
+            assertDecodesLikeInputStreamReader(concat(utf8("a"), m, utf8("b" + emoji)))
+            assertTrue(readAll(new Utf8Reader(new ByteArrayInputStream(m)), 10).forall(_ == '\ufffd'))
+        }
+    }
+
+    @Test
+    def sequencesSplitAcrossBlocks(): Unit = {
+        val malformed = bytes(0xe2, 0x82, 0x41)
+        for (
+            shift <- 0 to 4;
+            middle <- Seq(utf8(emoji), utf8("\u20ac"), utf8("\u00e9"), malformed)
+        ) {
+            val padding = utf8("x" * (blockSize - shift))
+            assertDecodesLikeInputStreamReader(concat(padding, middle, utf8("y")))
+        }
+        // the low surrogate waits for the next read() when only one char fits
+        val input = concat(utf8("x" * (blockSize - 2)), utf8(emoji))
+        val reader = new Utf8Reader(new ByteArrayInputStream(input))
+        val buf = new Array[Char](blockSize - 1)
+        assertEquals(blockSize - 1, reader.read(buf, 0, blockSize - 1))
+        assertEquals(Character.highSurrogate(0x1F600), buf(blockSize - 2))
+        assertEquals(1, reader.read(buf, 0, 1))
+        assertEquals(Character.lowSurrogate(0x1F600), buf(0))
+        assertEquals(-1, reader.read(buf, 0, 1))
+    }
+
+    @Test
+    def parseFileWithSurrogatePairAcrossBlocks(): Unit = {
+        withScratchDirectory("parseFileWithSurrogatePairAcrossBlocks") { dir =>
+            val f = new File(dir, "emoji.conf")
+            // the opening quote, then the emoji from 2 bytes before the end
+            // of the first block
+            val padding = "p : \"" + ("x" * (blockSize - 14)) + "\"\n"
+            assertEquals(blockSize - 2, utf8(padding).length + utf8("a : \"").length)
+            writeFile(f, padding + "a : \"" + emoji + "\"\nb : \"\u00e9\"\n")
+            val conf = ConfigFactory.parseFile(f)
+            assertEquals(emoji, conf.getString("a"))
+            assertEquals("\u00e9", conf.getString("b"))
+            assertEquals(3, conf.getValue("b").origin.lineNumber)
+        }
+    }
+}